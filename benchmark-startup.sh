@@ -0,0 +1,53 @@
+#!/bin/bash
+set -e
+
+# Compares startup of the app image with and without its AOT cache. Build the image first with
+#   mvn -Paot package        (or ./build-macos-app.sh --aot)
+# Each run opens the window over the procedural map, prints the time from JVM start to the
+# first complete frame and exits; the process time is measured around it.
+RUNS=${RUNS:-10}
+
+if [ "$(uname)" == "Darwin" ]; then
+  LAUNCHER=target/dist/Mapster.app/Contents/MacOS/Mapster
+  CACHE=target/dist/Mapster.app/Contents/app/mapster.aot
+else
+  LAUNCHER=target/dist/Mapster/bin/Mapster
+  CACHE=target/dist/Mapster/lib/app/mapster.aot
+fi
+
+if [ ! -f "$CACHE" ]; then
+  echo "No AOT cache at $CACHE; build with: mvn -Paot package"
+  exit 1
+fi
+
+millis() {
+  perl -MTime::HiRes=time -e 'printf "%d\n", time * 1000'
+}
+
+median() {
+  sort -n | awk '{ v[NR] = $1 } END { print (NR % 2 ? v[(NR + 1) / 2] : (v[NR / 2] + v[NR / 2 + 1]) / 2) }'
+}
+
+# Prints "<first complete frame ms> <process ms>" for each run
+measure() {
+  for i in $(seq "$RUNS"); do
+    start=$(millis)
+    frame=$("$LAUNCHER" --measure-startup 2>/dev/null | sed -n 's/^First complete frame \([0-9]*\) ms.*/\1/p')
+    echo "$frame $(( $(millis) - start ))"
+  done
+}
+
+report() {
+  local label=$1 results=$2
+  printf "%-16s first complete frame %5s ms, process %5s ms (median of %d)\n" "$label" \
+    "$(echo "$results" | cut -d' ' -f1 | median)" "$(echo "$results" | cut -d' ' -f2 | median)" "$RUNS"
+}
+
+with=$(measure)
+# Without the cache the JVM warns and starts as usual
+mv "$CACHE" "$CACHE.off"
+trap 'mv "$CACHE.off" "$CACHE"' EXIT
+without=$(measure)
+
+report "With AOT cache" "$with"
+report "Without" "$without"
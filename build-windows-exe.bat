@@ -1,4 +1,8 @@
 @echo off
+rem --aot also trains and bundles an AOT cache for faster startup (JDK 25, see the aot profile in pom.xml)
+set AOT_OPTIONS=
+if /I "%~1"=="--aot" set AOT_OPTIONS=--java-options "-XX:AOTCache=$APPDIR/mapster.aot" --add-launcher MapsterTraining=src/jpackage/MapsterTraining.properties
+
 echo Building Mapster Windows Executable...
 
 rem Clean and build
@@ -18,13 +22,19 @@ jpackage ^
   --main-jar mapster-1.0-SNAPSHOT.jar ^
   --main-class com.johnreah.mapster.App ^
   --module-path "target/jmods" ^
-  --add-modules javafx.controls,javafx.graphics,java.net.http ^
+  --add-modules javafx.controls,javafx.graphics,java.net.http,java.xml,java.desktop,java.management,jdk.httpserver,jdk.jfr ^
   --type app-image ^
   --dest target/dist ^
   --app-version 1.0.0 ^
   --vendor johnreah ^
   --java-options "-Dfile.encoding=UTF-8" ^
-  --java-options "--enable-native-access=javafx.graphics"
+  --java-options "--enable-native-access=javafx.graphics" ^
+  %AOT_OPTIONS%
+
+if /I "%~1"=="--aot" (
+    echo Training AOT cache...
+    target\dist\Mapster\MapsterTraining.exe
+)
 
 rem Make executable writable
 attrib -R "target\dist\Mapster\Mapster.exe"
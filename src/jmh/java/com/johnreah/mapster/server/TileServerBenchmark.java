@@ -0,0 +1,158 @@
+package com.johnreah.mapster.server;
+
+import com.johnreah.mapster.util.TileAddress;
+import com.johnreah.mapster.view.maptiles.TileDiskStore;
+import com.johnreah.mapster.view.maptiles.TileFetcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * {@link TileServer} under a burst of {@value #CLIENTS} concurrent clients, each requesting
+ * {@value #REQUESTS} tiles of one shared area, like an office browsing the same city. The
+ * upstream is a {@link StandInTileServer} answering after {@value #LATENCY_MS} ms. {@code cold}
+ * starts each burst with an empty disk cache, so it measures fetching and coalescing; {@code warm}
+ * serves every tile from the cache. Run with
+ * {@code mvn -Pjmh test-compile exec:exec@jmh -Djmh.args=TileServer}.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+public class TileServerBenchmark {
+
+    private static final int AREA = 16; // tiles per side of the shared area
+    private static final int CLIENTS = 200;
+    private static final int REQUESTS = 20;
+    private static final long LATENCY_MS = 50;
+
+    /** The stand-in upstream with every tile of the area encoded in advance, so PNG encoding is not measured. */
+    @State(Scope.Benchmark)
+    public static class Upstream {
+        StandInTileServer server;
+        HttpClient client;
+
+        @Setup(Level.Trial)
+        public void start() throws IOException {
+            server = StandInTileServer.start(StandInTileServer.Profile.instant().withLatency(LATENCY_MS, 0));
+            for (int x = 2040; x < 2040 + AREA; x++) {
+                for (int y = 1360; y < 1360 + AREA; y++) server.tileBytes(new TileAddress(12, x, y));
+            }
+            client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            server.close();
+        }
+    }
+
+    /** A tile server in front of the upstream, with its own disk cache. */
+    @State(Scope.Benchmark)
+    public abstract static class Server {
+        TileServer server;
+        Path cache;
+
+        void start(Upstream upstream) throws IOException {
+            cache = Files.createTempDirectory("tile-server-bench");
+            server = TileServer.start(new InetSocketAddress("127.0.0.1", 0), List.of(upstream.server.source("stub")),
+                    new TileFetcher(new TileDiskStore(cache, Long.MAX_VALUE)));
+        }
+
+        void stop() throws IOException {
+            server.close();
+            try (Stream<Path> files = Files.walk(cache)) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) Files.delete(file);
+            }
+        }
+    }
+
+    public static class ColdServer extends Server {
+        @Setup(Level.Invocation)
+        public void setUp(Upstream upstream) throws IOException {
+            start(upstream);
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() throws IOException {
+            stop();
+        }
+    }
+
+    public static class WarmServer extends Server {
+        @Setup(Level.Trial)
+        public void setUp(Upstream upstream) throws Exception {
+            start(upstream);
+            burst(upstream.client, this);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            stop();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    public void cold(Upstream upstream, ColdServer server) throws Exception {
+        burst(upstream.client, server);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 2, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public void warm(Upstream upstream, WarmServer server) throws Exception {
+        burst(upstream.client, server);
+    }
+
+    /** Sends every client's requests at once, each client on its own virtual thread. */
+    private static void burst(HttpClient client, Server server) throws Exception {
+        String base = "http://127.0.0.1:" + server.server.getPort() + "/stub/12/";
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> done = new ArrayList<>();
+            for (int c = 0; c < CLIENTS; c++) {
+                int clientIndex = c;
+                done.add(pool.submit(() -> {
+                    Random random = new Random(clientIndex);
+                    for (int r = 0; r < REQUESTS; r++) {
+                        int x = 2040 + random.nextInt(AREA);
+                        int y = 1360 + random.nextInt(AREA);
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(base + x + "/" + y + ".png")).build();
+                        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                        if (response.statusCode() != 200) throw new IllegalStateException("HTTP " + response.statusCode());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : done) f.get();
+        }
+    }
+}
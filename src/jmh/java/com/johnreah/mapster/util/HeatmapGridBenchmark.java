@@ -0,0 +1,67 @@
+package com.johnreah.mapster.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link HeatmapGrid} aggregation of synthetic GPS traces, appended in import-sized batches into
+ * an empty grid. Run with {@code mvn -Pjmh test-compile exec:exec@jmh -Djmh.args=HeatmapGrid};
+ * add {@code -prof gc} to see the bytes allocated per run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class HeatmapGridBenchmark {
+
+    @Param("5000000")
+    public int points;
+
+    @Param("500000")
+    public int batch;
+
+    private double[] lats;
+    private double[] lons;
+
+    @Setup
+    public void setUp() {
+        // Random walks, like vehicle traces around a city
+        Random random = new Random(42);
+        lats = new double[points];
+        lons = new double[points];
+        double lat = 51.5, lon = -0.12;
+        for (int i = 0; i < points; i++) {
+            if (i % 10_000 == 0) {
+                lat = 51.5 + random.nextGaussian() * 0.2;
+                lon = -0.12 + random.nextGaussian() * 0.3;
+            }
+            lat += random.nextGaussian() * 1e-4;
+            lon += random.nextGaussian() * 1e-4;
+            lats[i] = lat;
+            lons[i] = lon;
+        }
+    }
+
+    @Benchmark
+    public HeatmapGrid aggregate() {
+        HeatmapGrid grid = new HeatmapGrid();
+        for (int from = 0; from < points; from += batch) {
+            grid.append(lats, lons, from, Math.min(points, from + batch));
+        }
+        return grid;
+    }
+}
@@ -0,0 +1,100 @@
+package com.johnreah.mapster.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Projection cost per point: the scalar {@link TileMath} conversions, the exact and fast
+ * {@link Projection}s, and the batch form used to project whole lines. Run with
+ * {@code mvn -Pjmh test-compile exec:exec@jmh -Djmh.args=TileMath}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TileMathBenchmark {
+
+    private static final int POINTS = 4096;
+    private static final int ZOOM = 15;
+
+    private final double[] lats = new double[POINTS];
+    private final double[] lons = new double[POINTS];
+    private final double[] tileYs = new double[POINTS];
+    private final double[] xs = new double[POINTS];
+    private final double[] ys = new double[POINTS];
+    private double centreX;
+    private double centreY;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < POINTS; i++) {
+            lats[i] = 51.3 + random.nextDouble() * 0.4;
+            lons[i] = -0.5 + random.nextDouble() * 0.7;
+            tileYs[i] = TileMath.latToTileY(lats[i], ZOOM);
+        }
+        centreX = TileMath.lonToTileX(-0.1, ZOOM);
+        centreY = TileMath.latToTileY(51.5, ZOOM);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void lonToTileX(Blackhole bh) {
+        for (int i = 0; i < POINTS; i++) bh.consume(TileMath.lonToTileX(lons[i], ZOOM));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void exactLatToTileY(Blackhole bh) {
+        for (int i = 0; i < POINTS; i++) bh.consume(Projection.EXACT.latToTileY(lats[i], ZOOM));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void fastLatToTileY(Blackhole bh) {
+        for (int i = 0; i < POINTS; i++) bh.consume(Projection.FAST.latToTileY(lats[i], ZOOM));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void exactTileYToLat(Blackhole bh) {
+        for (int i = 0; i < POINTS; i++) bh.consume(Projection.EXACT.tileYToLat(tileYs[i], ZOOM));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void fastTileYToLat(Blackhole bh) {
+        for (int i = 0; i < POINTS; i++) bh.consume(Projection.FAST.tileYToLat(tileYs[i], ZOOM));
+    }
+
+    /** One allocated pair per point, as the drawing tool converts points. */
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void latLonToScreen(Blackhole bh) {
+        for (int i = 0; i < POINTS; i++) {
+            bh.consume(TileMath.latLonToScreen(lats[i], lons[i], ZOOM, centreX, centreY, 1920, 1080));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public double[] batchLatLonToScreen() {
+        TileMath.latLonToScreen(lats, lons, xs, ys, POINTS, ZOOM, centreX, centreY, 1920, 1080);
+        return ys;
+    }
+}
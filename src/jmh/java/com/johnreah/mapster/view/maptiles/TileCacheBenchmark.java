@@ -0,0 +1,173 @@
+package com.johnreah.mapster.view.maptiles;
+
+import com.johnreah.mapster.server.StandInTileServer;
+import com.johnreah.mapster.util.LocalTileSource;
+import com.johnreah.mapster.util.TileAddress;
+import com.johnreah.mapster.util.TileMath;
+import javafx.scene.image.Image;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The per-frame cost of {@link TileCache}: a cache hit, a miss for a tile still loading, an
+ * overzoomed tile enlarged from its cached ancestor, and the whole tile loop of
+ * {@code TileLayerView.render} over a full-HD view (lookups plus prefetch, without drawing).
+ *
+ * <p>The benchmark thread owns the caches, as the FX thread does in the application: loaded
+ * tiles are published on the loader threads directly. Remote tiles come from a
+ * {@link StandInTileServer} through a temporary disk cache, so no network is used. Run with
+ * {@code mvn -Pjmh test-compile exec:exec@jmh -Djmh.args=TileCache}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TileCacheBenchmark {
+
+    private static final int TILE_SIZE = TileMath.TILE_SIZE;
+    private static final int ZOOM = 12;
+    private static final int VIEW_WIDTH = 1920;
+    private static final int VIEW_HEIGHT = 1080;
+    private static final int MISS_TILES = 64;
+    private static final int OVERZOOM_SOURCE_MAX = 10;
+    private static final int OVERZOOM_DEPTH = 5;
+
+    private StandInTileServer standIn;
+    private Path diskCache;
+    private TileCache remote;
+    private TileCache loading;
+    private TileCache overzoom;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private double centreX;
+    private double centreY;
+    private TileAddress hitTile;
+    private TileAddress overzoomParent;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        standIn = StandInTileServer.start(StandInTileServer.Profile.instant());
+        diskCache = Files.createTempDirectory("tile-cache-bench");
+        TileFetcher fetcher = new TileFetcher(new TileDiskStore(diskCache, Long.MAX_VALUE));
+        remote = new TileCache(standIn.source("stand-in"), () -> {}, fetcher, Runnable::run);
+        centreX = TileMath.lonToTileX(-0.1, ZOOM);
+        centreY = TileMath.latToTileY(51.5, ZOOM);
+        // Load every tile the render loop touches, prefetch ring included
+        for (TileAddress tile : viewTiles(1)) awaitTile(remote, tile);
+        hitTile = new TileAddress(ZOOM, (int) centreX, (int) centreY);
+
+        // Loads that never finish, so every lookup takes the miss path
+        LocalTileSource blocked = new ProceduralTileSource() {
+            @Override
+            public int[] renderTile(int zoom, int x, int y) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }
+        };
+        loading = new TileCache(blocked, () -> {}, fetcher, Runnable::run);
+        for (int i = 0; i < MISS_TILES; i++) loading.getTile(14, 8000 + i, 5000);
+
+        LocalTileSource shallow = new ProceduralTileSource() {
+            @Override
+            public int getMaxZoom() { return OVERZOOM_SOURCE_MAX; }
+        };
+        overzoom = new TileCache(shallow, () -> {}, fetcher, Runnable::run);
+        overzoomParent = new TileAddress(OVERZOOM_SOURCE_MAX, 511, 340);
+        awaitTile(overzoom, overzoomParent);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        release.countDown();
+        remote.shutdown();
+        loading.shutdown();
+        overzoom.shutdown();
+        standIn.close();
+        try (Stream<Path> files = Files.walk(diskCache)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) Files.delete(file);
+        }
+    }
+
+    @Benchmark
+    public Image hit() {
+        return remote.getTile(hitTile.zoom(), hitTile.x(), hitTile.y());
+    }
+
+    @Benchmark
+    public Image missWhileLoading() {
+        next = (next + 1) % MISS_TILES;
+        return loading.getTile(14, 8000 + next, 5000);
+    }
+
+    /** Cycles through more enlarged tiles than the cache holds, so each one is scaled again. */
+    @Benchmark
+    public Image overzoom() {
+        int side = 1 << OVERZOOM_DEPTH;
+        next = (next + 1) % (side * side);
+        return overzoom.getTile(OVERZOOM_SOURCE_MAX + OVERZOOM_DEPTH,
+                (overzoomParent.x() << OVERZOOM_DEPTH) + next % side,
+                (overzoomParent.y() << OVERZOOM_DEPTH) + next / side);
+    }
+
+    /** The tile loop of {@code TileLayerView.render}, with every tile cached. */
+    @Benchmark
+    public void renderLoop(Blackhole bh) {
+        double max = TileMath.maxTile(ZOOM);
+        double offsetX = VIEW_WIDTH / 2.0 - centreX * TILE_SIZE;
+        double offsetY = VIEW_HEIGHT / 2.0 - centreY * TILE_SIZE;
+        int tileLeft = (int) Math.floor(-offsetX / TILE_SIZE);
+        int tileRight = (int) Math.floor((-offsetX + VIEW_WIDTH) / TILE_SIZE);
+        int tileTop = (int) Math.floor(-offsetY / TILE_SIZE);
+        int tileBottom = (int) Math.floor((-offsetY + VIEW_HEIGHT) / TILE_SIZE);
+        for (int ty = tileTop; ty <= tileBottom; ty++) {
+            if (ty < 0 || ty >= (int) max) continue;
+            for (int tx = tileLeft; tx <= tileRight; tx++) {
+                int wrappedX = ((tx % (int) max) + (int) max) % (int) max;
+                bh.consume(remote.getTile(ZOOM, wrappedX, ty));
+            }
+        }
+        remote.prefetch(TileAddress.range(ZOOM, tileLeft - 1, tileTop - 1, tileRight + 1, tileBottom + 1));
+    }
+
+    private Iterable<TileAddress> viewTiles(int margin) {
+        double offsetX = VIEW_WIDTH / 2.0 - centreX * TILE_SIZE;
+        double offsetY = VIEW_HEIGHT / 2.0 - centreY * TILE_SIZE;
+        return TileAddress.range(ZOOM,
+                (long) Math.floor(-offsetX / TILE_SIZE) - margin, (long) Math.floor(-offsetY / TILE_SIZE) - margin,
+                (long) Math.floor((-offsetX + VIEW_WIDTH) / TILE_SIZE) + margin,
+                (long) Math.floor((-offsetY + VIEW_HEIGHT) / TILE_SIZE) + margin);
+    }
+
+    private static void awaitTile(TileCache cache, TileAddress tile) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (cache.getTile(tile.zoom(), tile.x(), tile.y()) == null) {
+            if (System.nanoTime() > deadline) throw new IllegalStateException("Tile never loaded: " + tile);
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.johnreah.mapster.view.maptiles;
+
+import com.johnreah.mapster.util.TileAddress;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Disk cache cost per tile: reading a stored tile, probing for a missing one (every first
+ * view of a new area), and writing one. Tiles are real {@link ProceduralTileSource} PNGs in a
+ * 32x32 block, read in Morton order as the prefetcher does. Run with
+ * {@code mvn -Pjmh test-compile exec:exec@jmh -Djmh.args=TileDiskStore}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TileDiskStoreBenchmark {
+
+    private static final String SOURCE = "bench";
+
+    private Path root;
+    private TileDiskStore store;
+    private final List<TileAddress> stored = new ArrayList<>();
+    private byte[] png;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("tile-disk-bench");
+        store = new TileDiskStore(root, Long.MAX_VALUE);
+        ProceduralTileSource source = new ProceduralTileSource();
+        png = source.encodeTile(15, 16370, 10896);
+        for (TileAddress tile : TileAddress.range(15, 16352, 10880, 16383, 10911)) {
+            store.write(SOURCE, tile, png);
+            stored.add(tile);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) Files.delete(file);
+        }
+    }
+
+    @Benchmark
+    public byte[] readHit() {
+        next = (next + 1) % stored.size();
+        return store.read(SOURCE, stored.get(next));
+    }
+
+    @Benchmark
+    public byte[] readMiss() {
+        next = (next + 1) % stored.size();
+        TileAddress tile = stored.get(next);
+        return store.read(SOURCE, new TileAddress(16, tile.x() * 2, tile.y() * 2));
+    }
+
+    @Benchmark
+    public void write() {
+        next = (next + 1) % stored.size();
+        store.write(SOURCE, stored.get(next), png);
+    }
+}
@@ -0,0 +1,86 @@
+package com.johnreah.mapster.viewmodel;
+
+import com.johnreah.mapster.util.TileMath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hit-testing cost of {@link DrawingTool} as a drawing grows: the check run on every mouse move
+ * for the cursor when nothing is near (a full scan), and selecting the last point drawn. The
+ * line is a random walk around London seen at zoom 14 in a full-HD view. Run with
+ * {@code mvn -Pjmh test-compile exec:exec@jmh -Djmh.args=DrawingTool}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DrawingToolBenchmark {
+
+    private static final int ZOOM = 14;
+    private static final double WIDTH = 1920;
+    private static final double HEIGHT = 1080;
+
+    @Param({"1000", "100000", "1000000"})
+    public int vertices;
+
+    private DrawingTool tool;
+    private CoordinateConverter converter;
+    private double[] lastPointOnScreen;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        List<double[]> line = new ArrayList<>(vertices);
+        double lat = 51.5;
+        double lon = -0.1;
+        for (int i = 0; i < vertices; i++) {
+            lat += (random.nextDouble() - 0.5) * 1e-4;
+            lon += (random.nextDouble() - 0.5) * 1e-4;
+            line.add(new double[]{lat, lon});
+        }
+        tool = new DrawingTool();
+        tool.replaceLines(List.of(line));
+
+        double centreX = TileMath.lonToTileX(-0.1, ZOOM);
+        double centreY = TileMath.latToTileY(51.5, ZOOM);
+        converter = new CoordinateConverter() {
+            @Override
+            public double[] latLonToScreen(double lat, double lon) {
+                return TileMath.latLonToScreen(lat, lon, ZOOM, centreX, centreY, WIDTH, HEIGHT);
+            }
+
+            @Override
+            public double[] screenToLatLon(double screenX, double screenY) {
+                return TileMath.screenToLatLon(screenX, screenY, ZOOM, centreX, centreY, WIDTH, HEIGHT);
+            }
+        };
+        double[] last = line.get(vertices - 1);
+        lastPointOnScreen = converter.latLonToScreen(last[0], last[1]);
+    }
+
+    @Benchmark
+    public boolean nothingNearMouse() {
+        return tool.isPointNearMouse(-1000, -1000, converter);
+    }
+
+    @Benchmark
+    public boolean selectLastPoint() {
+        return tool.selectPointNearMouse(lastPointOnScreen[0], lastPointOnScreen[1], converter);
+    }
+}
@@ -1,18 +1,57 @@
 package com.johnreah.mapster;
 
 import com.johnreah.mapster.view.MainWindow;
+import com.johnreah.mapster.viewmodel.MapStateStore;
+import com.johnreah.mapster.viewmodel.ViewportSession;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.stage.Stage;
 
+import java.util.List;
+
+/**
+ * The application. Two arguments run a scripted session over the procedural map instead, with
+ * no saved state, and exit when done:
+ * <ul>
+ *   <li>{@value #TRAIN} waits for the first complete frame and replays
+ *       {@link ViewportSession#tour}, the training run for the AOT cache built by
+ *       {@code mvn -Paot package};</li>
+ *   <li>{@value #MEASURE_STARTUP} prints the time from JVM start to the first complete frame,
+ *       as compared by {@code benchmark-startup.sh}.</li>
+ * </ul>
+ */
 public class App extends Application {
 
+    public static final String TRAIN = "--train";
+    public static final String MEASURE_STARTUP = "--measure-startup";
+
     private MainWindow mainWindow;
 
     @Override
     public void start(Stage stage) {
+        List<String> args = getParameters().getRaw();
+        boolean train = args.contains(TRAIN);
+        boolean measureStartup = args.contains(MEASURE_STARTUP);
         mainWindow = new MainWindow();
-        mainWindow.show(stage, MapSession.create());
+        if (train || measureStartup) {
+            mainWindow.show(stage, MapSession.createScripted(), MapStateStore.none());
+        } else {
+            MapStateStore stateStore = new MapStateStore(MapStateStore.DEFAULT_FILE);
+            mainWindow.show(stage, MapSession.create(stateStore), stateStore);
+        }
+        if (train) {
+            mainWindow.mapComplete().thenAccept(millis -> mainWindow.play(
+                    ViewportSession.tour((int) stage.getWidth(), (int) stage.getHeight()), summary -> {
+                        System.out.println(summary);
+                        Platform.exit();
+                    }));
+        } else if (measureStartup) {
+            mainWindow.mapComplete().thenAccept(millis -> {
+                System.out.println("First complete frame " + millis + " ms after JVM start");
+                Platform.exit();
+            });
+        }
     }
 
     @Override
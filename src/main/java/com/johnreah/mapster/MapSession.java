@@ -1,21 +1,21 @@
 package com.johnreah.mapster;
 
 import com.johnreah.mapster.util.TileSource;
-import com.johnreah.mapster.view.maptiles.GoogleSatelliteTileSource;
-import com.johnreah.mapster.view.maptiles.GoogleStreetMapsTileSource;
-import com.johnreah.mapster.view.maptiles.OrdnanceSurveyTileSource;
-import com.johnreah.mapster.view.maptiles.OsmTileSource;
+import com.johnreah.mapster.view.maptiles.ProceduralTileSource;
+import com.johnreah.mapster.view.maptiles.TileSources;
 import com.johnreah.mapster.viewmodel.DrawingLayerViewModel;
 import com.johnreah.mapster.viewmodel.LayerStack;
+import com.johnreah.mapster.viewmodel.MapState;
+import com.johnreah.mapster.viewmodel.MapStateStore;
 import com.johnreah.mapster.viewmodel.MapViewport;
 import com.johnreah.mapster.viewmodel.TileLayerViewModel;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Wires together the application's ViewModels and tile sources into a ready-to-use session.
- * Created by {@link App} and handed to {@link com.johnreah.mapster.view.MainWindow}.
+ * Created by {@link App} and handed to {@link com.johnreah.mapster.view.MainWindow}. The view
+ * and layer settings saved by the last run are restored from a {@link MapStateStore}.
  */
 public class MapSession {
 
@@ -24,8 +24,8 @@ public class MapSession {
     public final TileLayerViewModel baseTileLayer;
     public final List<TileSource> availableSources;
 
-    private MapSession(MapViewport viewport, LayerStack layerStack,
-                       TileLayerViewModel baseTileLayer, List<TileSource> availableSources) {
+    private MapSession(MapViewport viewport, LayerStack layerStack, TileLayerViewModel baseTileLayer,
+                       List<TileSource> availableSources) {
         this.viewport = viewport;
         this.layerStack = layerStack;
         this.baseTileLayer = baseTileLayer;
@@ -33,10 +33,28 @@ public class MapSession {
     }
 
     public static MapSession create() {
+        return create(new MapStateStore(MapStateStore.DEFAULT_FILE));
+    }
+
+    /**
+     * The same every time, for training and startup measurement: the default view over the
+     * procedural map, so nothing is fetched, with no saved state restored or saved.
+     */
+    public static MapSession createScripted() {
+        MapSession session = create(MapStateStore.none());
+        session.availableSources.stream()
+                .filter(s -> s instanceof ProceduralTileSource)
+                .findFirst()
+                .ifPresent(session.baseTileLayer::setTileSource);
+        return session;
+    }
+
+    /** A session restored from {@code stateStore}, which the window later saves to. */
+    static MapSession create(MapStateStore stateStore) {
         MapViewport viewport = new MapViewport();
         LayerStack layerStack = new LayerStack();
 
-        List<TileSource> sources = buildAvailableSources();
+        List<TileSource> sources = TileSources.builtIn();
         TileSource defaultSource = sources.get(0);
 
         TileLayerViewModel baseTileLayer = new TileLayerViewModel(
@@ -47,13 +65,13 @@ public class MapSession {
                 .filter(s -> "google-satellite".equals(s.getId()))
                 .findFirst()
                 .ifPresent(s -> layerStack.addLayer(
-                        new TileLayerViewModel("tile-satellite", s.getDisplayName(), s)));
+                        hidden(new TileLayerViewModel("tile-satellite", s.getDisplayName(), s))));
 
         sources.stream()
                 .filter(s -> "os-road-3857".equals(s.getId()))
                 .findFirst()
                 .ifPresent(s -> layerStack.addLayer(
-                        new TileLayerViewModel("tile-os-road", s.getDisplayName(), s)));
+                        hidden(new TileLayerViewModel("tile-os-road", s.getDisplayName(), s))));
 
         DrawingLayerViewModel drawingLayer = new DrawingLayerViewModel("drawing-0", "Drawing Layer");
         layerStack.addLayer(drawingLayer);
@@ -63,23 +81,14 @@ public class MapSession {
         baseTileLayer.tileSourceProperty().addListener((obs, old, newSource) ->
                 viewport.ensureMinZoom(newSource.getMinZoom()));
 
+        MapState state = stateStore.restored();
+        if (state != null) state.applyTo(viewport, layerStack, sources);
         return new MapSession(viewport, layerStack, baseTileLayer, sources);
     }
 
-    private static List<TileSource> buildAvailableSources() {
-        List<TileSource> sources = new ArrayList<>();
-        sources.add(new OsmTileSource());
-        sources.add(new GoogleStreetMapsTileSource());
-        sources.add(new GoogleSatelliteTileSource());
-
-        OrdnanceSurveyTileSource osRoad = new OrdnanceSurveyTileSource(
-                OrdnanceSurveyTileSource.ROAD_LAYER, OrdnanceSurveyTileSource.ROAD_DISPLAY_NAME);
-        if (osRoad.isAvailable()) sources.add(osRoad);
-
-        OrdnanceSurveyTileSource osOutdoor = new OrdnanceSurveyTileSource(
-                OrdnanceSurveyTileSource.OUTDOOR_LAYER, OrdnanceSurveyTileSource.OUTDOOR_DISPLAY_NAME);
-        if (osOutdoor.isAvailable()) sources.add(osOutdoor);
-
-        return sources;
+    /** Overlay layers start hidden, and so load nothing until the user turns them on. */
+    private static TileLayerViewModel hidden(TileLayerViewModel layer) {
+        layer.visibleProperty().set(false);
+        return layer;
     }
 }
@@ -0,0 +1,118 @@
+package com.johnreah.mapster.io;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Shared point encoding for {@link DrawingFile}: coordinates are stored as fixed-point integers
+ * of 1e-7 degrees (about 1 cm), the first point of a run absolutely and each later point as
+ * the difference from its predecessor, all as zig-zag varints. Typical track data packs into
+ * 2-4 bytes per coordinate.
+ */
+final class DrawingCodec {
+
+    static final double SCALE = 1e7;
+
+    private DrawingCodec() {}
+
+    static int toFixed(double degrees) {
+        return (int) Math.round(degrees * SCALE);
+    }
+
+    static double fromFixed(int fixed) {
+        return fixed / SCALE;
+    }
+
+    /** Appends points {@code from..to} (inclusive) of {@code points} delta-encoded. */
+    static void encodePoints(List<double[]> points, int from, int to, Output out) {
+        long prevLat = 0;
+        long prevLon = 0;
+        for (int i = from; i <= to; i++) {
+            double[] p = points.get(i);
+            int lat = toFixed(p[0]);
+            int lon = toFixed(p[1]);
+            out.writeSignedVarint(lat - prevLat);
+            out.writeSignedVarint(lon - prevLon);
+            prevLat = lat;
+            prevLon = lon;
+        }
+    }
+
+    /** Decodes {@code count} delta-encoded points starting at the input's position. */
+    static double[][] decodePoints(Input in, int count) {
+        double[][] points = new double[count][];
+        long lat = 0;
+        long lon = 0;
+        for (int i = 0; i < count; i++) {
+            lat += in.readSignedVarint();
+            lon += in.readSignedVarint();
+            points[i] = new double[]{fromFixed((int) lat), fromFixed((int) lon)};
+        }
+        return points;
+    }
+
+    /** Growable byte array for building chunks and journal records. */
+    static final class Output {
+        private byte[] bytes = new byte[256];
+        private int size;
+
+        void writeByte(int b) {
+            if (size == bytes.length) bytes = Arrays.copyOf(bytes, size * 2);
+            bytes[size++] = (byte) b;
+        }
+
+        void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        void writeSignedVarint(long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        int size() { return size; }
+        byte[] array() { return bytes; }
+
+        void reset() { size = 0; }
+    }
+
+    /** Cursor over a buffer using absolute reads, so many cursors can share one mapping. */
+    static final class Input {
+        private final ByteBuffer buf;
+        private int pos;
+        private final int limit;
+
+        Input(ByteBuffer buf, int pos, int limit) {
+            this.buf = buf;
+            this.pos = pos;
+            this.limit = limit;
+        }
+
+        int position() { return pos; }
+        boolean hasRemaining() { return pos < limit; }
+
+        int readByte() {
+            if (pos >= limit) throw new IllegalStateException("Read past end of record");
+            return buf.get(pos++) & 0xFF;
+        }
+
+        long readVarint() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return result;
+            }
+            throw new IllegalStateException("Varint too long");
+        }
+
+        long readSignedVarint() {
+            long raw = readVarint();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+    }
+}
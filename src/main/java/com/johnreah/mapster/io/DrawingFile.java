@@ -0,0 +1,466 @@
+package com.johnreah.mapster.io;
+
+import com.johnreah.mapster.util.ChunkedLine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+
+/**
+ * Compact on-disk store for the completed lines of a drawing layer: a memory-mapped base
+ * snapshot plus an append-only edit journal alongside it ({@code <file>.journal}).
+ *
+ * <p>The base holds each line as chunks of {@link #CHUNK_SIZE} points, delta-encoded by
+ * {@link DrawingCodec}, followed by an index giving each chunk's offset and bounding box.
+ * Opening a file maps it and reads only the index; points are decoded chunk by chunk as they
+ * are touched (see {@link MappedLine}), so reopening a multi-million-point drawing is near
+ * instant and off-screen chunks are never decoded.
+ *
+ * <p>{@link #save} appends one checksummed record per edited point range to the journal, so a
+ * save costs O(changed points). Once the journal outgrows the base it is folded into a fresh
+ * base, written beside the old one and renamed over it. Unchanged chunks are copied
+ * byte-for-byte. A journal is tied to its base by a random id, so one left behind by a crash
+ * mid-compaction is ignored, and a torn record at the end of the journal is dropped.
+ *
+ * <p>Not thread-safe: use from the thread that owns the lines (the FX thread).
+ */
+public final class DrawingFile implements Closeable {
+
+    static final int CHUNK_SIZE = 1024;
+
+    private static final int BASE_MAGIC = 0x4D445257;    // "MDRW"
+    private static final int JOURNAL_MAGIC = 0x4D44524A; // "MDRJ"
+    private static final int VERSION = 1;
+    private static final int BASE_HEADER_SIZE = 32;
+    private static final int JOURNAL_HEADER_SIZE = 16;
+    private static final int CHUNK_ENTRY_INTS = 6;
+    private static final byte RECORD_PUT = 1;
+    private static final long MIN_COMPACT_BYTES = 1L << 20;
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+
+    private final Path path;
+    private final Path journalPath;
+    private final List<List<double[]>> lines;
+    private final FileChannel journal;
+    // Edited point ranges per line since the last save, in line order
+    private final Map<Integer, List<int[]>> dirty = new TreeMap<>();
+    private MappedByteBuffer base;
+    private long baseId;
+
+    private DrawingFile(Path path, MappedByteBuffer base, long baseId, List<List<double[]>> lines,
+                        FileChannel journal) {
+        this.path = path;
+        this.journalPath = journalPathFor(path);
+        this.base = base;
+        this.baseId = baseId;
+        this.lines = lines;
+        this.journal = journal;
+    }
+
+    /**
+     * Writes {@code lines} as a new drawing file, replacing any existing one. The lines may be
+     * those of the file being replaced: it is written beside the old one and renamed over it,
+     * so chunks not yet loaded are still read from the old mapping.
+     */
+    public static DrawingFile create(Path path, List<List<double[]>> lines) throws IOException {
+        long id = ThreadLocalRandom.current().nextLong();
+        replaceBase(path, lines, id, null);
+        Files.deleteIfExists(journalPathFor(path));
+        return open(path);
+    }
+
+    /** Maps an existing drawing file and replays its journal. */
+    public static DrawingFile open(Path path) throws IOException {
+        MappedByteBuffer base;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("Drawing file too large: " + path);
+            base = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        base.order(ByteOrder.LITTLE_ENDIAN);
+        if (base.capacity() < BASE_HEADER_SIZE || base.getInt(0) != BASE_MAGIC) {
+            throw new IOException("Not a drawing file: " + path);
+        }
+        if (base.getInt(4) != VERSION) throw new IOException("Unsupported drawing file version " + base.getInt(4));
+        long id = base.getLong(8);
+        List<List<double[]>> lines = readLines(base);
+
+        Path journalPath = journalPathFor(path);
+        FileChannel journal = FileChannel.open(journalPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long valid = replayJournal(journal, id, lines);
+            if (valid < 0) {
+                resetJournal(journal, id);
+            } else if (valid < journal.size()) {
+                journal.truncate(valid);
+            }
+            journal.position(journal.size());
+        } catch (IOException | RuntimeException e) {
+            journal.close();
+            throw e;
+        }
+        return new DrawingFile(path, base, id, lines, journal);
+    }
+
+    public Path getPath() { return path; }
+
+    /**
+     * The lines as loaded. Hand these to the drawing layer and report every later change
+     * through {@link #recordEdit} so that {@link #save} can journal it.
+     */
+    public List<List<double[]>> getLines() { return lines; }
+
+    /** Notes that points {@code fromPoint..toPoint} of a line were added or changed. */
+    public void recordEdit(int lineIndex, int fromPoint, int toPoint) {
+        List<int[]> ranges = dirty.computeIfAbsent(lineIndex, k -> new ArrayList<>());
+        if (!ranges.isEmpty()) {
+            int[] last = ranges.get(ranges.size() - 1);
+            if (fromPoint <= last[1] + 1 && toPoint >= last[0] - 1) {
+                last[0] = Math.min(last[0], fromPoint);
+                last[1] = Math.max(last[1], toPoint);
+                return;
+            }
+        }
+        ranges.add(new int[]{fromPoint, toPoint});
+    }
+
+    public boolean hasUnsavedEdits() {
+        return !dirty.isEmpty();
+    }
+
+    /** Journals every edit recorded since the last save, compacting if the journal has grown large. */
+    public void save(List<List<double[]>> currentLines) throws IOException {
+        if (dirty.isEmpty()) return;
+        DrawingCodec.Output out = new DrawingCodec.Output();
+        DrawingCodec.Output payload = new DrawingCodec.Output();
+        CRC32 crc = new CRC32();
+        for (Map.Entry<Integer, List<int[]>> entry : dirty.entrySet()) {
+            int lineIndex = entry.getKey();
+            List<double[]> line = currentLines.get(lineIndex);
+            for (int[] range : merge(entry.getValue())) {
+                int from = Math.max(0, range[0]);
+                int to = Math.min(line.size() - 1, range[1]);
+                if (from > to) continue;
+                payload.reset();
+                payload.writeVarint(lineIndex);
+                payload.writeVarint(from);
+                payload.writeVarint(to - from + 1);
+                DrawingCodec.encodePoints(line, from, to, payload);
+
+                int recordStart = out.size();
+                out.writeByte(RECORD_PUT);
+                out.writeVarint(payload.size());
+                for (int i = 0; i < payload.size(); i++) out.writeByte(payload.array()[i]);
+                crc.reset();
+                crc.update(out.array(), recordStart, out.size() - recordStart);
+                int checksum = (int) crc.getValue();
+                for (int shift = 0; shift < 32; shift += 8) out.writeByte(checksum >>> shift);
+            }
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(out.array(), 0, out.size());
+        while (bytes.hasRemaining()) journal.write(bytes);
+        journal.force(false);
+        dirty.clear();
+
+        if (journal.size() > Math.max(MIN_COMPACT_BYTES, base.capacity())) {
+            compact(currentLines);
+        }
+    }
+
+    /**
+     * Folds the journal into a fresh base. If the new base cannot be renamed over the old one
+     * (e.g. Windows refusing to replace a mapped file), the journal is kept and stays valid.
+     */
+    public void compact(List<List<double[]>> currentLines) throws IOException {
+        long newId = ThreadLocalRandom.current().nextLong();
+        try {
+            replaceBase(path, currentLines, newId, base);
+        } catch (IOException e) {
+            return;
+        }
+        resetJournal(journal, newId);
+        baseId = newId;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            base = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            base.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        // Moves mapped lines onto the new base, so the next compaction can copy their chunks again
+        List<List<double[]>> remapped = readLines(base);
+        for (int i = 0; i < currentLines.size(); i++) {
+            if (currentLines.get(i) instanceof MappedLine line) line.remap((MappedLine) remapped.get(i));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        journal.close();
+    }
+
+    private static Path journalPathFor(Path path) {
+        return path.resolveSibling(path.getFileName() + ".journal");
+    }
+
+    private static List<int[]> merge(List<int[]> ranges) {
+        List<int[]> sorted = new ArrayList<>(ranges);
+        sorted.sort(Comparator.comparingInt(r -> r[0]));
+        List<int[]> merged = new ArrayList<>();
+        for (int[] r : sorted) {
+            int[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && r[0] <= last[1] + 1) {
+                last[1] = Math.max(last[1], r[1]);
+            } else {
+                merged.add(new int[]{r[0], r[1]});
+            }
+        }
+        return merged;
+    }
+
+    // --- Base snapshot ---
+
+    private static List<List<double[]>> readLines(MappedByteBuffer base) throws IOException {
+        int lineCount = base.getInt(16);
+        int chunkCount = base.getInt(20);
+        long indexOffset = base.getLong(24);
+        long indexEnd = indexOffset + lineCount * 8L + chunkCount * (long) CHUNK_ENTRY_INTS * 4;
+        if (lineCount < 0 || chunkCount < 0 || indexOffset < BASE_HEADER_SIZE || indexEnd > base.capacity()) {
+            throw new IOException("Corrupt drawing file index");
+        }
+
+        int chunkTable = (int) (indexOffset + lineCount * 8L);
+        List<List<double[]>> lines = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            int pointCount = base.getInt((int) indexOffset + i * 8);
+            int firstChunk = base.getInt((int) indexOffset + i * 8 + 4);
+            int chunks = (pointCount + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            if (pointCount < 0 || firstChunk < 0 || firstChunk + chunks > chunkCount) {
+                throw new IOException("Corrupt drawing file index");
+            }
+            int[] offsets = new int[chunks];
+            int[] lengths = new int[chunks];
+            int[] bounds = new int[chunks * 4];
+            for (int c = 0; c < chunks; c++) {
+                int entry = chunkTable + (firstChunk + c) * CHUNK_ENTRY_INTS * 4;
+                offsets[c] = base.getInt(entry);
+                lengths[c] = base.getInt(entry + 4);
+                for (int b = 0; b < 4; b++) bounds[c * 4 + b] = base.getInt(entry + 8 + b * 4);
+                if (offsets[c] < BASE_HEADER_SIZE || (long) offsets[c] + lengths[c] > indexOffset) {
+                    throw new IOException("Corrupt drawing file index");
+                }
+            }
+            lines.add(new MappedLine(base, pointCount, offsets, lengths, bounds));
+        }
+        return lines;
+    }
+
+    /** Writes a base snapshot beside {@code path} and renames it over any file already there. */
+    private static void replaceBase(Path path, List<List<double[]>> lines, long id,
+                                    MappedByteBuffer previous) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            writeBase(tmp, lines, id, previous);
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a complete base snapshot. Chunks of {@code previous} that are still unloaded and
+     * whose recorded bounds still hold are copied across without decoding.
+     */
+    private static void writeBase(Path target, List<List<double[]>> lines, long id,
+                                  MappedByteBuffer previous) throws IOException {
+        List<int[]> chunkEntries = new ArrayList<>();
+        int[] lineTable = new int[lines.size() * 2];
+
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer pending = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+            long position = BASE_HEADER_SIZE;
+            channel.position(position);
+            DrawingCodec.Output chunk = new DrawingCodec.Output();
+
+            for (int i = 0; i < lines.size(); i++) {
+                List<double[]> line = lines.get(i);
+                lineTable[i * 2] = line.size();
+                lineTable[i * 2 + 1] = chunkEntries.size();
+                MappedLine mapped = line instanceof MappedLine m && previous != null ? m : null;
+                for (int start = 0; start < line.size(); start += CHUNK_SIZE) {
+                    int c = start / CHUNK_SIZE;
+                    int end = Math.min(start + CHUNK_SIZE, line.size()) - 1;
+                    int[] entry = new int[CHUNK_ENTRY_INTS];
+                    entry[0] = (int) position;
+
+                    if (mapped != null && mapped.canCopyChunk(c, previous)) {
+                        ByteBuffer raw = mapped.rawChunk(c);
+                        entry[1] = raw.remaining();
+                        mapped.fixedChunkBounds(c, entry, 2);
+                        position += raw.remaining();
+                        pending = writeThrough(channel, pending, raw);
+                    } else {
+                        chunk.reset();
+                        DrawingCodec.encodePoints(line, start, end, chunk);
+                        entry[1] = chunk.size();
+                        int[] bounds = fixedBounds(line, start, end);
+                        if (end + 1 < line.size()) {
+                            // Peeked rather than read, so the next chunk is not loaded and can still be copied
+                            double[] next = line instanceof MappedLine m ? m.peek(end + 1) : line.get(end + 1);
+                            int lat = DrawingCodec.toFixed(next[0]);
+                            int lon = DrawingCodec.toFixed(next[1]);
+                            bounds[0] = Math.min(bounds[0], lat);
+                            bounds[1] = Math.min(bounds[1], lon);
+                            bounds[2] = Math.max(bounds[2], lat);
+                            bounds[3] = Math.max(bounds[3], lon);
+                        }
+                        System.arraycopy(bounds, 0, entry, 2, 4);
+                        position += chunk.size();
+                        pending = writeThrough(channel, pending, ByteBuffer.wrap(chunk.array(), 0, chunk.size()));
+                    }
+                    if (position > Integer.MAX_VALUE) throw new IOException("Drawing too large for one file");
+                    chunkEntries.add(entry);
+                }
+            }
+
+            long indexOffset = position;
+            ByteBuffer index = ByteBuffer.allocate(lineTable.length * 4 + chunkEntries.size() * CHUNK_ENTRY_INTS * 4)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            for (int v : lineTable) index.putInt(v);
+            for (int[] entry : chunkEntries) {
+                for (int v : entry) index.putInt(v);
+            }
+            index.flip();
+            pending = writeThrough(channel, pending, index);
+            pending.flip();
+            while (pending.hasRemaining()) channel.write(pending);
+
+            ByteBuffer header = ByteBuffer.allocate(BASE_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(BASE_MAGIC).putInt(VERSION).putLong(id)
+                    .putInt(lines.size()).putInt(chunkEntries.size()).putLong(indexOffset);
+            header.flip();
+            channel.write(header, 0);
+            channel.force(true);
+        }
+    }
+
+    /** Copies {@code data} into {@code pending}, flushing to the channel whenever it fills. */
+    private static ByteBuffer writeThrough(FileChannel channel, ByteBuffer pending, ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            if (!pending.hasRemaining()) {
+                pending.flip();
+                while (pending.hasRemaining()) channel.write(pending);
+                pending.clear();
+            }
+            int n = Math.min(pending.remaining(), data.remaining());
+            ByteBuffer slice = data.slice(data.position(), n);
+            pending.put(slice);
+            data.position(data.position() + n);
+        }
+        return pending;
+    }
+
+    private static int[] fixedBounds(List<double[]> line, int from, int to) {
+        int minLat = Integer.MAX_VALUE, minLon = Integer.MAX_VALUE;
+        int maxLat = Integer.MIN_VALUE, maxLon = Integer.MIN_VALUE;
+        for (int i = from; i <= to; i++) {
+            double[] p = line.get(i);
+            int lat = DrawingCodec.toFixed(p[0]);
+            int lon = DrawingCodec.toFixed(p[1]);
+            minLat = Math.min(minLat, lat);
+            minLon = Math.min(minLon, lon);
+            maxLat = Math.max(maxLat, lat);
+            maxLon = Math.max(maxLon, lon);
+        }
+        return new int[]{minLat, minLon, maxLat, maxLon};
+    }
+
+    // --- Journal ---
+
+    private static void resetJournal(FileChannel journal, long id) throws IOException {
+        journal.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(JOURNAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(JOURNAL_MAGIC).putInt(VERSION).putLong(id);
+        header.flip();
+        journal.write(header, 0);
+        journal.force(true);
+        journal.position(JOURNAL_HEADER_SIZE);
+    }
+
+    /**
+     * Applies journal records to {@code lines}. Returns the length of the valid prefix, or -1 if
+     * the journal is missing, empty or belongs to a different base and should be started afresh.
+     */
+    private static long replayJournal(FileChannel journal, long id, List<List<double[]>> lines) throws IOException {
+        long size = journal.size();
+        if (size < JOURNAL_HEADER_SIZE) return -1;
+        if (size > Integer.MAX_VALUE) throw new IOException("Journal too large");
+        ByteBuffer bytes = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        while (bytes.hasRemaining() && journal.read(bytes, bytes.position()) > 0) {
+            // read(dst, position) does not advance the channel
+        }
+        bytes.flip();
+        if (bytes.getInt(0) != JOURNAL_MAGIC || bytes.getInt(4) != VERSION || bytes.getLong(8) != id) return -1;
+
+        CRC32 crc = new CRC32();
+        int pos = JOURNAL_HEADER_SIZE;
+        while (pos < size) {
+            try {
+                DrawingCodec.Input in = new DrawingCodec.Input(bytes, pos, (int) size);
+                int type = in.readByte();
+                long payloadLength = in.readVarint();
+                int payloadStart = in.position();
+                long recordEnd = payloadStart + payloadLength + 4;
+                if (type != RECORD_PUT || recordEnd > size) break;
+                crc.reset();
+                crc.update(bytes.array(), pos, (int) (payloadStart + payloadLength - pos));
+                if ((int) crc.getValue() != bytes.getInt((int) (payloadStart + payloadLength))) break;
+
+                DrawingCodec.Input payload = new DrawingCodec.Input(bytes, payloadStart, (int) (payloadStart + payloadLength));
+                int lineIndex = (int) payload.readVarint();
+                int start = (int) payload.readVarint();
+                int count = (int) payload.readVarint();
+                double[][] points = DrawingCodec.decodePoints(payload, count);
+                applyPut(lines, lineIndex, start, points);
+                pos = (int) recordEnd;
+            } catch (IllegalStateException e) {
+                break;
+            }
+        }
+        return pos;
+    }
+
+    private static void applyPut(List<List<double[]>> lines, int lineIndex, int start, double[][] points)
+            throws IOException {
+        if (lineIndex == lines.size()) lines.add(new ArrayList<>());
+        if (lineIndex > lines.size()) throw new IOException("Journal refers to missing line " + lineIndex);
+        List<double[]> line = lines.get(lineIndex);
+        if (start > line.size()) throw new IOException("Journal leaves a gap in line " + lineIndex);
+        for (int i = 0; i < points.length; i++) {
+            if (start + i < line.size()) line.set(start + i, points[i]);
+            else line.add(points[i]);
+        }
+    }
+
+    /** Exposed for tests: true if any chunk of a loaded line has been decoded. */
+    static boolean anyChunkLoaded(List<double[]> line) {
+        if (!(line instanceof ChunkedLine chunked)) return true;
+        for (int c = 0; c < chunked.chunkCount(); c++) {
+            if (chunked.isChunkLoaded(c)) return true;
+        }
+        return false;
+    }
+}
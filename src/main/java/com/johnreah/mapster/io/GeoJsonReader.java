@@ -0,0 +1,247 @@
+package com.johnreah.mapster.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streams line geometry out of a GeoJSON document with a small hand-rolled tokenizer, so
+ * multi-million-point files never have to be held as a tree. Every {@code coordinates} array
+ * is walked as it is read: each innermost array of positions becomes one line, which covers
+ * LineString, MultiLineString, Polygon rings and MultiPolygon rings at any nesting depth
+ * (FeatureCollection, Feature, GeometryCollection). Point and MultiPoint geometries are
+ * reported as markers when their {@code type} appears before {@code coordinates}, as it does in
+ * practice; otherwise a MultiPoint is indistinguishable from a LineString and is read as one.
+ */
+public class GeoJsonReader implements TrackReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Override
+    public void read(InputStream in, TrackSink sink) throws IOException {
+        new Parser(new InputStreamReader(in, StandardCharsets.UTF_8), sink).parseDocument();
+    }
+
+    private static final class Parser {
+
+        private final Reader reader;
+        private final TrackSink sink;
+        private final char[] buf = new char[BUFFER_SIZE];
+        private final StringBuilder scratch = new StringBuilder();
+        private int pos;
+        private int limit;
+        private double positionLat;
+        private double positionLon;
+
+        Parser(Reader reader, TrackSink sink) {
+            this.reader = reader;
+            this.sink = sink;
+        }
+
+        void parseDocument() throws IOException {
+            parseValue();
+            if (skipWhitespace() != -1) throw error("Trailing content");
+        }
+
+        private void parseValue() throws IOException {
+            int c = skipWhitespace();
+            switch (c) {
+                case '{' -> parseObject();
+                case '[' -> parseArray();
+                case '"' -> parseString();
+                case -1 -> throw error("Unexpected end of input");
+                default -> parseScalar();
+            }
+        }
+
+        private void parseObject() throws IOException {
+            expect('{');
+            if (skipWhitespace() == '}') {
+                pos++;
+                return;
+            }
+            String type = null;
+            while (true) {
+                if (skipWhitespace() != '"') throw error("Expected object key");
+                String key = parseString();
+                if (skipWhitespace() != ':') throw error("Expected ':'");
+                pos++;
+                int c = skipWhitespace();
+                if ("coordinates".equals(key) && c == '[') {
+                    boolean pointsOnly = "Point".equals(type) || "MultiPoint".equals(type);
+                    if (parseCoordinates(!pointsOnly) && pointsOnly) sink.marker(positionLat, positionLon);
+                } else if ("type".equals(key) && c == '"') {
+                    type = parseString();
+                } else {
+                    parseValue();
+                }
+                c = skipWhitespace();
+                pos++;
+                if (c == '}') return;
+                if (c != ',') throw error("Expected ',' or '}'");
+            }
+        }
+
+        private void parseArray() throws IOException {
+            expect('[');
+            if (skipWhitespace() == ']') {
+                pos++;
+                return;
+            }
+            while (true) {
+                parseValue();
+                int c = skipWhitespace();
+                pos++;
+                if (c == ']') return;
+                if (c != ',') throw error("Expected ',' or ']'");
+            }
+        }
+
+        /**
+         * Parses one level of a coordinates array. Returns true if the array was a single
+         * position, whose values are left in {@code positionLat}/{@code positionLon}.
+         */
+        private boolean parseCoordinates(boolean emitLines) throws IOException {
+            expect('[');
+            int c = skipWhitespace();
+            if (c == ']') {
+                pos++;
+                return false;
+            }
+            if (c != '[') {
+                positionLon = parseNumber();
+                if (skipWhitespace() != ',') throw error("Position needs at least two values");
+                pos++;
+                positionLat = parseNumber();
+                // Altitude and any further ordinates are ignored
+                while ((c = skipWhitespace()) == ',') {
+                    pos++;
+                    parseNumber();
+                }
+                if (c != ']') throw error("Expected ']' after position");
+                pos++;
+                return true;
+            }
+
+            boolean first = true;
+            boolean isLine = false;
+            while (true) {
+                boolean childIsPosition = parseCoordinates(emitLines);
+                if (first) {
+                    isLine = childIsPosition && emitLines;
+                    if (isLine) sink.startLine();
+                    first = false;
+                }
+                if (isLine && childIsPosition) sink.point(positionLat, positionLon);
+                else if (!emitLines && childIsPosition) sink.marker(positionLat, positionLon);
+                c = skipWhitespace();
+                pos++;
+                if (c == ']') break;
+                if (c != ',') throw error("Expected ',' or ']' in coordinates");
+            }
+            if (isLine) sink.endLine();
+            return false;
+        }
+
+        private String parseString() throws IOException {
+            expect('"');
+            scratch.setLength(0);
+            while (true) {
+                int c = read();
+                if (c == -1) throw error("Unterminated string");
+                if (c == '"') return scratch.toString();
+                if (c == '\\') {
+                    int e = read();
+                    switch (e) {
+                        case 'n' -> scratch.append('\n');
+                        case 't' -> scratch.append('\t');
+                        case 'r' -> scratch.append('\r');
+                        case 'b' -> scratch.append('\b');
+                        case 'f' -> scratch.append('\f');
+                        case 'u' -> {
+                            int code = 0;
+                            for (int i = 0; i < 4; i++) {
+                                int h = Character.digit(read(), 16);
+                                if (h < 0) throw error("Bad unicode escape");
+                                code = code * 16 + h;
+                            }
+                            scratch.append((char) code);
+                        }
+                        case -1 -> throw error("Unterminated string");
+                        default -> scratch.append((char) e);
+                    }
+                } else {
+                    scratch.append((char) c);
+                }
+            }
+        }
+
+        private double parseNumber() throws IOException {
+            skipWhitespace();
+            scratch.setLength(0);
+            while (true) {
+                int c = peek();
+                if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+                    scratch.append((char) c);
+                    pos++;
+                } else {
+                    break;
+                }
+            }
+            if (scratch.isEmpty()) throw error("Expected number");
+            try {
+                return Double.parseDouble(scratch.toString());
+            } catch (NumberFormatException e) {
+                throw error("Bad number '" + scratch + "'");
+            }
+        }
+
+        /** Skips a number or a {@code true}/{@code false}/{@code null} literal. */
+        private void parseScalar() throws IOException {
+            int start = pos;
+            int c;
+            while ((c = peek()) != -1 && c != ',' && c != '}' && c != ']' && !Character.isWhitespace(c)) {
+                pos++;
+            }
+            if (pos == start) throw error("Unexpected character");
+        }
+
+        private void expect(char expected) throws IOException {
+            if (skipWhitespace() != expected) throw error("Expected '" + expected + "'");
+            pos++;
+        }
+
+        /** Advances past whitespace and returns the next character without consuming it. */
+        private int skipWhitespace() throws IOException {
+            int c;
+            while ((c = peek()) == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                pos++;
+            }
+            return c;
+        }
+
+        private int peek() throws IOException {
+            if (pos >= limit && !fill()) return -1;
+            return buf[pos];
+        }
+
+        private int read() throws IOException {
+            if (pos >= limit && !fill()) return -1;
+            return buf[pos++];
+        }
+
+        private boolean fill() throws IOException {
+            int n = reader.read(buf, 0, buf.length);
+            if (n <= 0) return false;
+            pos = 0;
+            limit = n;
+            return true;
+        }
+
+        private IOException error(String message) {
+            return new IOException("Malformed GeoJSON: " + message);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.johnreah.mapster.io;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streams GPX track segments ({@code trkseg/trkpt}) and routes ({@code rte/rtept}) as lines
+ * using StAX. Waypoints ({@code wpt}) are reported as markers.
+ */
+public class GpxReader implements TrackReader {
+
+    @Override
+    public void read(InputStream in, TrackSink sink) throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        // GPX never needs a DTD; refusing them also blocks external entity expansion
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        XMLStreamReader reader = null;
+        try {
+            reader = factory.createXMLStreamReader(in);
+            boolean inLine = false;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if ("trkseg".equals(name) || "rte".equals(name)) {
+                        sink.startLine();
+                        inLine = true;
+                    } else if (inLine && ("trkpt".equals(name) || "rtept".equals(name))) {
+                        String lat = reader.getAttributeValue(null, "lat");
+                        String lon = reader.getAttributeValue(null, "lon");
+                        if (lat != null && lon != null) {
+                            sink.point(Double.parseDouble(lat), Double.parseDouble(lon));
+                        }
+                    } else if (!inLine && "wpt".equals(name)) {
+                        String lat = reader.getAttributeValue(null, "lat");
+                        String lon = reader.getAttributeValue(null, "lon");
+                        if (lat != null && lon != null) {
+                            sink.marker(Double.parseDouble(lat), Double.parseDouble(lon));
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (inLine && ("trkseg".equals(name) || "rte".equals(name))) {
+                        sink.endLine();
+                        inLine = false;
+                    }
+                }
+            }
+        } catch (XMLStreamException | NumberFormatException e) {
+            throw new IOException("Malformed GPX: " + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    // Nothing useful to do — the underlying stream is closed by the caller
+                }
+            }
+        }
+    }
+}
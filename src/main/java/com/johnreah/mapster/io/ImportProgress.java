@@ -0,0 +1,21 @@
+package com.johnreah.mapster.io;
+
+/**
+ * Snapshot of a running or finished import, used to report parse throughput.
+ */
+public record ImportProgress(long points, long lines, long bytesRead, long elapsedNanos) {
+
+    public double pointsPerSecond() {
+        return elapsedNanos > 0 ? points * 1e9 / elapsedNanos : 0;
+    }
+
+    public double megabytesPerSecond() {
+        return elapsedNanos > 0 ? bytesRead / (1024.0 * 1024.0) * 1e9 / elapsedNanos : 0;
+    }
+
+    public String summary() {
+        return String.format("%,d points, %,d lines, %.1f MB in %.2f s (%,.0f pts/s, %.1f MB/s)",
+                points, lines, bytesRead / (1024.0 * 1024.0), elapsedNanos / 1e9,
+                pointsPerSecond(), megabytesPerSecond());
+    }
+}
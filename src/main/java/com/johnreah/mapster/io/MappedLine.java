@@ -0,0 +1,155 @@
+package com.johnreah.mapster.io;
+
+import com.johnreah.mapster.util.ChunkedLine;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A line read from a memory-mapped {@link DrawingFile}. Chunks are decoded the first time one
+ * of their points is touched and kept from then on, so the returned {@code double[]} points
+ * can be edited in place like those of any other line. Points may be appended; removal is
+ * not supported since {@code DrawingTool} never removes points.
+ */
+final class MappedLine extends AbstractList<double[]> implements ChunkedLine, RandomAccess {
+
+    // All but appended replaced by remap() when the file is compacted
+    private ByteBuffer buffer;
+    private int baseSize;
+    private int[] chunkOffsets;
+    private int[] chunkLengths;
+    private int[] chunkBounds; // fixed-point minLat, minLon, maxLat, maxLon per chunk
+    private double[][][] loaded;
+    private final List<double[]> appended = new ArrayList<>();
+
+    MappedLine(ByteBuffer buffer, int baseSize, int[] chunkOffsets, int[] chunkLengths, int[] chunkBounds) {
+        this.buffer = buffer;
+        this.baseSize = baseSize;
+        this.chunkOffsets = chunkOffsets;
+        this.chunkLengths = chunkLengths;
+        this.chunkBounds = chunkBounds;
+        this.loaded = new double[chunkOffsets.length][][];
+    }
+
+    @Override
+    public double[] get(int index) {
+        if (index < baseSize) {
+            if (index < 0) throw new IndexOutOfBoundsException(index);
+            return chunk(index / DrawingFile.CHUNK_SIZE)[index % DrawingFile.CHUNK_SIZE];
+        }
+        return appended.get(index - baseSize);
+    }
+
+    /**
+     * The point at {@code index} without loading its chunk: the first point of an unloaded
+     * chunk is decoded on its own, being stored whole rather than as a delta.
+     */
+    double[] peek(int index) {
+        int c = index / DrawingFile.CHUNK_SIZE;
+        if (index >= baseSize || index % DrawingFile.CHUNK_SIZE != 0 || loaded[c] != null) return get(index);
+        DrawingCodec.Input in = new DrawingCodec.Input(buffer, chunkOffsets[c], chunkOffsets[c] + chunkLengths[c]);
+        return DrawingCodec.decodePoints(in, 1)[0];
+    }
+
+    @Override
+    public double[] set(int index, double[] point) {
+        if (index < baseSize) {
+            double[][] chunk = chunk(index / DrawingFile.CHUNK_SIZE);
+            double[] old = chunk[index % DrawingFile.CHUNK_SIZE];
+            chunk[index % DrawingFile.CHUNK_SIZE] = point;
+            return old;
+        }
+        return appended.set(index - baseSize, point);
+    }
+
+    @Override
+    public void add(int index, double[] point) {
+        if (index != size()) throw new UnsupportedOperationException("Points can only be appended");
+        appended.add(point);
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return baseSize + appended.size();
+    }
+
+    @Override
+    public int chunkSize() {
+        return DrawingFile.CHUNK_SIZE;
+    }
+
+    @Override
+    public int chunkCount() {
+        return loaded.length;
+    }
+
+    @Override
+    public boolean isChunkLoaded(int chunk) {
+        return loaded[chunk] != null;
+    }
+
+    @Override
+    public double[] chunkBounds(int chunk) {
+        int b = chunk * 4;
+        return new double[]{
+            DrawingCodec.fromFixed(chunkBounds[b]), DrawingCodec.fromFixed(chunkBounds[b + 1]),
+            DrawingCodec.fromFixed(chunkBounds[b + 2]), DrawingCodec.fromFixed(chunkBounds[b + 3])
+        };
+    }
+
+    /**
+     * True if chunk {@code c} can be copied verbatim into a new base: it comes from
+     * {@code mapping}, is untouched, and no appended point changes its extent or bounds.
+     */
+    boolean canCopyChunk(int c, ByteBuffer mapping) {
+        return buffer == mapping && c < chunkCount() && hasStableBounds(c)
+                && (c < chunkCount() - 1 || appended.isEmpty());
+    }
+
+    /**
+     * Switches this line to {@code compacted}, the same line read back from a new base that
+     * holds every point this one has, appended ones included. Loaded chunks that cover the same
+     * points there are kept, with any edits; the rest are decoded from the new base on access.
+     */
+    void remap(MappedLine compacted) {
+        double[][][] kept = new double[compacted.chunkCount()][][];
+        for (int c = 0; c < Math.min(loaded.length, kept.length); c++) {
+            if (loaded[c] != null && loaded[c].length == compacted.chunkPointCount(c)) kept[c] = loaded[c];
+        }
+        buffer = compacted.buffer;
+        baseSize = compacted.baseSize;
+        chunkOffsets = compacted.chunkOffsets;
+        chunkLengths = compacted.chunkLengths;
+        chunkBounds = compacted.chunkBounds;
+        loaded = kept;
+        appended.clear();
+    }
+
+    private int chunkPointCount(int c) {
+        return Math.min(DrawingFile.CHUNK_SIZE, baseSize - c * DrawingFile.CHUNK_SIZE);
+    }
+
+    /** The encoded bytes of chunk {@code c}, as a view of the mapping. */
+    ByteBuffer rawChunk(int c) {
+        return buffer.slice(chunkOffsets[c], chunkLengths[c]);
+    }
+
+    /** Copies the fixed-point bounds of chunk {@code c} into {@code dest} at {@code offset}. */
+    void fixedChunkBounds(int c, int[] dest, int offset) {
+        System.arraycopy(chunkBounds, c * 4, dest, offset, 4);
+    }
+
+    private double[][] chunk(int c) {
+        double[][] points = loaded[c];
+        if (points == null) {
+            DrawingCodec.Input in = new DrawingCodec.Input(buffer, chunkOffsets[c], chunkOffsets[c] + chunkLengths[c]);
+            points = DrawingCodec.decodePoints(in, chunkPointCount(c));
+            loaded[c] = points;
+        }
+        return points;
+    }
+}
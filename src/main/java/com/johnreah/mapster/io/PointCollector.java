@@ -0,0 +1,64 @@
+package com.johnreah.mapster.io;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Gathers every position in a geometry file — markers and line points alike — into flat
+ * coordinate arrays, for layers that treat data as a cloud of points rather than as lines.
+ */
+public final class PointCollector implements TrackSink {
+
+    private double[] lats = new double[1024];
+    private double[] lons = new double[1024];
+    private int size;
+
+    /** Reads all points of a GPX or GeoJSON file. */
+    public static PointCollector read(Path path) throws IOException {
+        PointCollector collector = new PointCollector();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            TrackReader.forPath(path).read(in, collector);
+        }
+        return collector;
+    }
+
+    @Override
+    public void startLine() {
+    }
+
+    @Override
+    public void point(double lat, double lon) {
+        add(lat, lon);
+    }
+
+    @Override
+    public void endLine() {
+    }
+
+    @Override
+    public void marker(double lat, double lon) {
+        add(lat, lon);
+    }
+
+    public void add(double lat, double lon) {
+        if (size == lats.length) {
+            lats = Arrays.copyOf(lats, size * 2);
+            lons = Arrays.copyOf(lons, size * 2);
+        }
+        lats[size] = lat;
+        lons[size] = lon;
+        size++;
+    }
+
+    public int size() { return size; }
+
+    /** Latitudes, trimmed to {@link #size()}. */
+    public double[] lats() { return Arrays.copyOf(lats, size); }
+
+    /** Longitudes, trimmed to {@link #size()}. */
+    public double[] lons() { return Arrays.copyOf(lons, size); }
+}
@@ -0,0 +1,11 @@
+package com.johnreah.mapster.io;
+
+import java.util.List;
+
+/**
+ * A slice of imported geometry handed to the UI. Long lines are split across batches:
+ * when {@code continuesLastLine} is set, the first entry of {@code lines} extends the last
+ * line of the previous batch instead of starting a new one. Points are {@code [lat, lon]}.
+ */
+public record TrackBatch(List<List<double[]>> lines, boolean continuesLastLine, ImportProgress progress) {
+}
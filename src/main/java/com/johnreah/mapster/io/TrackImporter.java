@@ -0,0 +1,199 @@
+package com.johnreah.mapster.io;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Parses GPX and GeoJSON files on a background thread and hands the geometry over in batches,
+ * so the map can render progressively while a large file is still loading.
+ *
+ * <p>Batches are flushed at most every {@link #FLUSH_INTERVAL_MS} once {@link #MIN_BATCH_POINTS}
+ * have accumulated, or immediately at {@link #MAX_BATCH_POINTS}. This keeps the number of
+ * re-renders per second bounded regardless of how fast the parser runs. All listener callbacks
+ * are dispatched through the {@code deliveryExecutor} (typically {@code Platform::runLater}).
+ */
+public class TrackImporter {
+
+    static final int MIN_BATCH_POINTS = 10_000;
+    static final int MAX_BATCH_POINTS = 500_000;
+    static final long FLUSH_INTERVAL_MS = 100;
+
+    public interface Listener {
+        void onBatch(TrackBatch batch);
+        void onComplete(ImportProgress progress);
+        void onFailed(Exception error);
+    }
+
+    private final Executor deliveryExecutor;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "track-import");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public TrackImporter(Executor deliveryExecutor) {
+        this.deliveryExecutor = deliveryExecutor;
+    }
+
+    /** Starts importing {@code file}; cancel the returned future to abort. */
+    public Future<?> importFile(Path file, Listener listener) {
+        return importFile(file, false, listener);
+    }
+
+    /**
+     * Starts importing {@code file}, optionally delivering each marker as a line of one point
+     * (for consumers that treat everything as points); cancel the returned future to abort.
+     */
+    public Future<?> importFile(Path file, boolean includeMarkers, Listener listener) {
+        return executor.submit(() -> {
+            try (CountingInputStream in = new CountingInputStream(
+                    new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+                importStream(TrackReader.forPath(file), in, includeMarkers, listener);
+            } catch (IOException | IllegalArgumentException e) {
+                // Unreadable, or a file type there is no reader for
+                deliveryExecutor.execute(() -> listener.onFailed(e));
+            }
+        });
+    }
+
+    /** Runs an import synchronously on the calling thread. */
+    void importStream(TrackReader reader, CountingInputStream in, Listener listener) {
+        importStream(reader, in, false, listener);
+    }
+
+    void importStream(TrackReader reader, CountingInputStream in, boolean includeMarkers, Listener listener) {
+        BatchingSink sink = new BatchingSink(in, includeMarkers, listener);
+        try {
+            reader.read(in, sink);
+            sink.flush();
+            ImportProgress progress = sink.progress();
+            deliveryExecutor.execute(() -> listener.onComplete(progress));
+        } catch (CancellationException | ClosedByInterruptException e) {
+            // Cancelled — geometry delivered so far stays on the map
+        } catch (IOException | RuntimeException e) {
+            if (Thread.currentThread().isInterrupted()) return;
+            sink.flush();
+            deliveryExecutor.execute(() -> listener.onFailed(e));
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private final class BatchingSink implements TrackSink {
+
+        private final CountingInputStream in;
+        private final boolean includeMarkers;
+        private final Listener listener;
+        private final long startNanos = System.nanoTime();
+        private List<List<double[]>> lines = new ArrayList<>();
+        private List<double[]> current;
+        private List<double[]> carried;
+        private int batchPoints;
+        private long totalPoints;
+        private long totalLines;
+        private long lastFlushMs = System.currentTimeMillis();
+
+        BatchingSink(CountingInputStream in, boolean includeMarkers, Listener listener) {
+            this.in = in;
+            this.includeMarkers = includeMarkers;
+            this.listener = listener;
+        }
+
+        @Override
+        public void startLine() {
+            checkCancelled();
+            current = new ArrayList<>();
+            lines.add(current);
+            totalLines++;
+        }
+
+        @Override
+        public void point(double lat, double lon) {
+            checkCancelled();
+            current.add(new double[]{lat, lon});
+            totalPoints++;
+            if (++batchPoints >= MIN_BATCH_POINTS) {
+                long now = System.currentTimeMillis();
+                if (batchPoints >= MAX_BATCH_POINTS || now - lastFlushMs >= FLUSH_INTERVAL_MS) {
+                    flush();
+                    lastFlushMs = now;
+                    // Carry the open line into the next batch
+                    current = new ArrayList<>();
+                    lines.add(current);
+                    carried = current;
+                }
+            }
+        }
+
+        @Override
+        public void endLine() {
+            current = null;
+        }
+
+        @Override
+        public void marker(double lat, double lon) {
+            checkCancelled();
+            if (!includeMarkers) return;
+            startLine();
+            point(lat, lon);
+            endLine();
+        }
+
+        // Checked for every element, so a long single track stops promptly
+        private void checkCancelled() {
+            if (Thread.currentThread().isInterrupted()) throw new CancellationException();
+        }
+
+        void flush() {
+            boolean continuesLastLine = !lines.isEmpty() && lines.get(0) == carried && !carried.isEmpty();
+            lines.removeIf(List::isEmpty);
+            carried = null;
+            batchPoints = 0;
+            if (lines.isEmpty()) return;
+            TrackBatch batch = new TrackBatch(lines, continuesLastLine, progress());
+            deliveryExecutor.execute(() -> listener.onBatch(batch));
+            lines = new ArrayList<>();
+        }
+
+        ImportProgress progress() {
+            return new ImportProgress(totalPoints, totalLines, in.count, System.nanoTime() - startNanos);
+        }
+    }
+
+    static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+}
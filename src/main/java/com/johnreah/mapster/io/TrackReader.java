@@ -0,0 +1,23 @@
+package com.johnreah.mapster.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Streaming parser for a geometry file format. Implementations read the input incrementally
+ * and push lines to a {@link TrackSink} without building an in-memory document tree.
+ */
+public interface TrackReader {
+
+    void read(InputStream in, TrackSink sink) throws IOException;
+
+    /** Picks a reader from the file extension: {@code .gpx}, or {@code .geojson}/{@code .json}. */
+    static TrackReader forPath(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".gpx")) return new GpxReader();
+        if (name.endsWith(".geojson") || name.endsWith(".json")) return new GeoJsonReader();
+        throw new IllegalArgumentException("Unsupported file type: " + path.getFileName());
+    }
+}
@@ -0,0 +1,15 @@
+package com.johnreah.mapster.io;
+
+/**
+ * Receives geometry from a {@link TrackReader} as it is parsed. Calls arrive in order on the
+ * parsing thread: {@code startLine}, any number of {@code point}s, then {@code endLine}.
+ * Standalone points (GPX waypoints, GeoJSON Point/MultiPoint) arrive as {@code marker}s
+ * between lines.
+ */
+public interface TrackSink {
+    void startLine();
+    void point(double lat, double lon);
+    void endLine();
+
+    default void marker(double lat, double lon) {}
+}
@@ -0,0 +1,39 @@
+package com.johnreah.mapster.metrics;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Every frame time of a run, kept exactly for percentiles. Unlike {@link LatencyHistogram} it
+ * grows with the run, so it suits bounded runs such as a replayed session. Not thread-safe.
+ */
+public class FrameTimes {
+
+    private long[] nanos = new long[1024];
+    private int count;
+
+    public void record(long frameNanos) {
+        if (count == nanos.length) nanos = Arrays.copyOf(nanos, count * 2);
+        nanos[count++] = frameNanos;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /** The frame time at {@code quantile} (0..1) by the nearest-rank method, or 0 with no frames. */
+    public double getPercentileMillis(double quantile) {
+        if (count == 0) return 0;
+        long[] sorted = Arrays.copyOf(nanos, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(quantile * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))] / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%d frames, p50 %.2f ms, p95 %.2f ms, p99 %.2f ms, max %.2f ms",
+                count, getPercentileMillis(0.5), getPercentileMillis(0.95), getPercentileMillis(0.99),
+                getPercentileMillis(1.0));
+    }
+}
@@ -0,0 +1,41 @@
+package com.johnreah.mapster.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** One repaint of a map layer's canvas on the FX thread. */
+@Name("com.johnreah.mapster.LayerRender")
+@Label("Layer Render")
+@Category({"Mapster", "Rendering"})
+@Description("A map layer redrawn")
+public class LayerRenderEvent extends jdk.jfr.Event {
+
+    @Label("Layer")
+    public String layer;
+
+    @Label("Kind")
+    @Description("tiles, drawing, or drawing-raster for a drawing shown as tiles")
+    public String kind;
+
+    @Label("Partial")
+    @Description("Only a dirty region was repainted")
+    public boolean partial;
+
+    @Label("Tiles")
+    public int tiles;
+
+    @Label("Missing Tiles")
+    @Description("Tiles in view not loaded yet")
+    public int missingTiles;
+
+    @Label("Vertices")
+    @Description("Line vertices drawn")
+    public int vertices;
+
+    public LayerRenderEvent(String layer, String kind) {
+        this.layer = layer;
+        this.kind = kind;
+    }
+}
@@ -0,0 +1,47 @@
+package com.johnreah.mapster.metrics;
+
+import com.johnreah.mapster.util.TileAddress;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** A {@code TileFetcher} lookup: the disk cache and, when that has no fresh copy, the network. */
+@Name("com.johnreah.mapster.TileFetch")
+@Label("Tile Fetch")
+@Category({"Mapster", "Tiles"})
+@Description("Encoded tile read from the disk cache or downloaded")
+public class TileFetchEvent extends jdk.jfr.Event {
+
+    @Label("Source")
+    public String source;
+
+    @Label("Zoom")
+    public int zoom;
+
+    @Label("X")
+    public int x;
+
+    @Label("Y")
+    public int y;
+
+    @Label("Origin")
+    @Description("disk, network, revalidated (304), stale (expired copy kept) or none")
+    public String origin;
+
+    @Label("HTTP Status")
+    @Description("0 when the network was not used or did not answer")
+    public int status;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    public TileFetchEvent(String source, TileAddress tile) {
+        this.source = source;
+        this.zoom = tile.zoom();
+        this.x = tile.x();
+        this.y = tile.y();
+    }
+}
@@ -0,0 +1,67 @@
+package com.johnreah.mapster.metrics;
+
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Frame timings behind {@link TileLayerMetricsMXBean}, recorded on the FX thread. The source
+ * and backlog are read live from the layer, so they follow a change of source.
+ */
+public class TileLayerMetrics implements TileLayerMetricsMXBean {
+
+    private final String layerId;
+    private final Supplier<String> sourceId;
+    private final IntSupplier queueDepth;
+    private final IntSupplier inFlight;
+    private final LatencyHistogram frames = new LatencyHistogram();
+    private volatile int lastFrameTiles;
+    private volatile int lastFrameMissing;
+
+    public TileLayerMetrics(String layerId, Supplier<String> sourceId, IntSupplier queueDepth, IntSupplier inFlight) {
+        this.layerId = layerId;
+        this.sourceId = sourceId;
+        this.queueDepth = queueDepth;
+        this.inFlight = inFlight;
+    }
+
+    public void frameRendered(long nanos, int tiles, int missing) {
+        frames.record(nanos);
+        lastFrameTiles = tiles;
+        lastFrameMissing = missing;
+    }
+
+    @Override
+    public String getLayerId() { return layerId; }
+
+    @Override
+    public String getSourceId() { return sourceId.get(); }
+
+    @Override
+    public long getFrames() { return frames.getCount(); }
+
+    @Override
+    public double getFrameMeanMillis() { return frames.getMeanMillis(); }
+
+    @Override
+    public double getFrameP95Millis() { return frames.getPercentileMillis(0.95); }
+
+    @Override
+    public double getFrameMaxMillis() { return frames.getMaxMillis(); }
+
+    @Override
+    public int getLastFrameTiles() { return lastFrameTiles; }
+
+    @Override
+    public int getLastFrameMissing() { return lastFrameMissing; }
+
+    @Override
+    public int getQueueDepth() { return queueDepth.getAsInt(); }
+
+    @Override
+    public int getInFlight() { return inFlight.getAsInt(); }
+
+    @Override
+    public void reset() {
+        frames.reset();
+    }
+}
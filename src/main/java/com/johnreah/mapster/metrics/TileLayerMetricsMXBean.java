@@ -0,0 +1,35 @@
+package com.johnreah.mapster.metrics;
+
+/**
+ * Frame rendering and loading backlog of one tile layer on screen. Published as
+ * {@code com.johnreah.mapster:type=TileLayer,name=<layer id>}.
+ */
+public interface TileLayerMetricsMXBean {
+
+    String getLayerId();
+
+    String getSourceId();
+
+    /** Times the layer has been redrawn. */
+    long getFrames();
+
+    double getFrameMeanMillis();
+
+    double getFrameP95Millis();
+
+    double getFrameMaxMillis();
+
+    /** Tiles in view in the last frame. */
+    int getLastFrameTiles();
+
+    /** Tiles in view in the last frame that were not loaded yet. */
+    int getLastFrameMissing();
+
+    /** Loads waiting for a loader thread. */
+    int getQueueDepth();
+
+    /** Loads not yet finished, queued ones included. */
+    int getInFlight();
+
+    void reset();
+}
@@ -0,0 +1,80 @@
+package com.johnreah.mapster.metrics;
+
+import com.johnreah.mapster.util.TileAddress;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * One tile load by a {@code TileCache}, from being queued to being published as an image on
+ * the cache's thread. The event spans the whole lifecycle; the phases are broken out so a
+ * recording shows whether a slow tile waited for a loader thread, for the disk or network
+ * (see the nested {@link TileFetchEvent}), for decoding, or for the FX thread.
+ */
+@Name("com.johnreah.mapster.TileLoad")
+@Label("Tile Load")
+@Category({"Mapster", "Tiles"})
+@Description("A tile loaded into a layer's memory cache")
+public class TileLoadEvent extends jdk.jfr.Event {
+
+    @Label("Source")
+    public String source;
+
+    @Label("Zoom")
+    public int zoom;
+
+    @Label("X")
+    public int x;
+
+    @Label("Y")
+    public int y;
+
+    @Label("Outcome")
+    @Description("published, not-found, failed, or dropped when the layer's source changed; "
+            + "preloaded or not-on-disk for a disk read at startup")
+    public String outcome;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("Queued")
+    @Description("Waiting for a loader thread")
+    @Timespan
+    public long queued;
+
+    @Label("Load")
+    @Description("Fetching a remote tile or rendering a local one")
+    @Timespan
+    public long load;
+
+    @Label("Publish Delay")
+    @Description("Waiting for the cache's thread once loaded")
+    @Timespan
+    public long publishDelay;
+
+    @Label("Decode")
+    @Description("Turning the loaded tile into an image")
+    @Timespan
+    public long decode;
+
+    @Label("Shared")
+    @Description("The image was already decoded from a tile with the same bytes")
+    public boolean shared;
+
+    public TileLoadEvent(String source, TileAddress tile) {
+        this.source = source;
+        this.zoom = tile.zoom();
+        this.x = tile.x();
+        this.y = tile.y();
+    }
+
+    /** Records the outcome and commits, ending the event now. */
+    public void finish(String outcome) {
+        this.outcome = outcome;
+        commit();
+    }
+}
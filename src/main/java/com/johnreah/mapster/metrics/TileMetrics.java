@@ -0,0 +1,74 @@
+package com.johnreah.mapster.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the tile pipeline's metrics, published as MXBeans on the platform MBean server
+ * under the {@code com.johnreah.mapster} domain so they can be watched live in JConsole,
+ * VisualVM or any JMX client. Source metrics live as long as the process; layer metrics are
+ * registered while the layer is on screen. Metrics are diagnostics only: if JMX refuses a bean,
+ * it is still counted, just not published.
+ */
+public final class TileMetrics {
+
+    public static final String DOMAIN = "com.johnreah.mapster";
+
+    private static final Map<String, TileSourceMetrics> SOURCES = new ConcurrentHashMap<>();
+
+    private TileMetrics() {
+    }
+
+    /** The metrics of the source with this ID, published on first use. */
+    public static TileSourceMetrics source(String sourceId) {
+        TileSourceMetrics metrics = SOURCES.get(sourceId);
+        if (metrics != null) return metrics;
+        return SOURCES.computeIfAbsent(sourceId, id -> {
+            TileSourceMetrics created = new TileSourceMetrics(id);
+            register(created, objectName("TileSource", id));
+            return created;
+        });
+    }
+
+    /** Every source's metrics created so far. */
+    public static Collection<TileSourceMetrics> sources() {
+        return Collections.unmodifiableCollection(SOURCES.values());
+    }
+
+    /** Publishes a layer's metrics, replacing any earlier layer with the same ID. */
+    public static void register(TileLayerMetrics layer) {
+        register(layer, objectName("TileLayer", layer.getLayerId()));
+    }
+
+    public static void unregister(TileLayerMetrics layer) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName("TileLayer", layer.getLayerId()));
+        } catch (JMException e) {
+            // Never published, or already replaced
+        }
+    }
+
+    public static ObjectName objectName(String type, String name) {
+        try {
+            return new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+        } catch (JMException e) {
+            throw new IllegalArgumentException(name, e);
+        }
+    }
+
+    private static void register(Object bean, ObjectName name) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+            server.registerMBean(bean, name);
+        } catch (JMException e) {
+            // Metrics keep counting unpublished
+        }
+    }
+}
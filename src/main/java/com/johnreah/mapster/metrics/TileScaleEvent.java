@@ -0,0 +1,29 @@
+package com.johnreah.mapster.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** An overzoomed tile enlarged from its cached ancestor, on the cache's thread. */
+@Name("com.johnreah.mapster.TileScale")
+@Label("Tile Scale")
+@Category({"Mapster", "Tiles"})
+@Description("Tile beyond the source's maximum zoom scaled up from an ancestor")
+public class TileScaleEvent extends jdk.jfr.Event {
+
+    @Label("Source")
+    public String source;
+
+    @Label("Zoom")
+    public int zoom;
+
+    @Label("X")
+    public int x;
+
+    @Label("Y")
+    public int y;
+
+    @Label("Ancestor Zoom")
+    public int ancestorZoom;
+}
@@ -0,0 +1,92 @@
+package com.johnreah.mapster.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Counters behind {@link TileSourceMetricsMXBean}, updated from any thread. */
+public class TileSourceMetrics implements TileSourceMetricsMXBean {
+
+    private final String sourceId;
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder memoryMisses = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final Map<Integer, LongAdder> networkByStatus = new ConcurrentHashMap<>();
+    private final LongAdder networkFailures = new LongAdder();
+    private final LongAdder bytesDownloaded = new LongAdder();
+    private final LatencyHistogram decode = new LatencyHistogram();
+
+    public TileSourceMetrics(String sourceId) {
+        this.sourceId = sourceId;
+    }
+
+    public void memoryHit() { memoryHits.increment(); }
+    public void memoryMiss() { memoryMisses.increment(); }
+    public void diskHit() { diskHits.increment(); }
+    public void networkFailure() { networkFailures.increment(); }
+
+    public void networkResponse(int status, long bytes) {
+        networkByStatus.computeIfAbsent(status, s -> new LongAdder()).increment();
+        bytesDownloaded.add(bytes);
+    }
+
+    public void decoded(long nanos) {
+        decode.record(nanos);
+    }
+
+    @Override
+    public String getSourceId() { return sourceId; }
+
+    @Override
+    public long getMemoryHits() { return memoryHits.sum(); }
+
+    @Override
+    public long getMemoryMisses() { return memoryMisses.sum(); }
+
+    @Override
+    public double getMemoryHitRatio() {
+        long hits = getMemoryHits();
+        long total = hits + getMemoryMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public long getDiskHits() { return diskHits.sum(); }
+
+    @Override
+    public Map<Integer, Long> getNetworkFetchesByStatus() {
+        Map<Integer, Long> counts = new TreeMap<>();
+        networkByStatus.forEach((status, count) -> counts.put(status, count.sum()));
+        return counts;
+    }
+
+    @Override
+    public long getNetworkFailures() { return networkFailures.sum(); }
+
+    @Override
+    public long getBytesDownloaded() { return bytesDownloaded.sum(); }
+
+    @Override
+    public long getDecodeCount() { return decode.getCount(); }
+
+    @Override
+    public double getDecodeMeanMillis() { return decode.getMeanMillis(); }
+
+    @Override
+    public double getDecodeP95Millis() { return decode.getPercentileMillis(0.95); }
+
+    @Override
+    public double getDecodeMaxMillis() { return decode.getMaxMillis(); }
+
+    @Override
+    public void reset() {
+        memoryHits.reset();
+        memoryMisses.reset();
+        diskHits.reset();
+        networkByStatus.clear();
+        networkFailures.reset();
+        bytesDownloaded.reset();
+        decode.reset();
+    }
+}
@@ -0,0 +1,43 @@
+package com.johnreah.mapster.metrics;
+
+import java.util.Map;
+
+/**
+ * Tile loading for one tile source, across every layer and fetcher using it. Published as
+ * {@code com.johnreah.mapster:type=TileSource,name=<source id>}.
+ */
+public interface TileSourceMetricsMXBean {
+
+    String getSourceId();
+
+    /** Tiles drawn straight from a layer's memory cache, overzoomed tiles included. */
+    long getMemoryHits();
+
+    /** Tiles a layer asked for and did not yet have. */
+    long getMemoryMisses();
+
+    double getMemoryHitRatio();
+
+    /** Fetches answered by a fresh copy in the disk cache. */
+    long getDiskHits();
+
+    /** Network requests by HTTP status; 304 is an expired disk copy revalidated. */
+    Map<Integer, Long> getNetworkFetchesByStatus();
+
+    /** Network requests that got no response at all. */
+    long getNetworkFailures();
+
+    /** Tile bytes received from the network. */
+    long getBytesDownloaded();
+
+    /** Loaded tiles turned into images: remote tiles decoded, local ones rendered. */
+    long getDecodeCount();
+
+    double getDecodeMeanMillis();
+
+    double getDecodeP95Millis();
+
+    double getDecodeMaxMillis();
+
+    void reset();
+}
@@ -0,0 +1,37 @@
+package com.johnreah.mapster.metrics;
+
+import java.util.Locale;
+
+/**
+ * Totals of every source's {@link TileSourceMetrics} at one moment. The difference between two
+ * snapshots is the tile traffic in between.
+ */
+public record TileTraffic(long memoryHits, long memoryMisses, long diskHits, long networkFetches, long bytesDownloaded) {
+
+    public static TileTraffic snapshot() {
+        long hits = 0, misses = 0, disk = 0, network = 0, bytes = 0;
+        for (TileSourceMetrics source : TileMetrics.sources()) {
+            hits += source.getMemoryHits();
+            misses += source.getMemoryMisses();
+            disk += source.getDiskHits();
+            for (long count : source.getNetworkFetchesByStatus().values()) network += count;
+            network += source.getNetworkFailures();
+            bytes += source.getBytesDownloaded();
+        }
+        return new TileTraffic(hits, misses, disk, network, bytes);
+    }
+
+    public TileTraffic since(TileTraffic earlier) {
+        return new TileTraffic(memoryHits - earlier.memoryHits, memoryMisses - earlier.memoryMisses,
+                diskHits - earlier.diskHits, networkFetches - earlier.networkFetches,
+                bytesDownloaded - earlier.bytesDownloaded);
+    }
+
+    @Override
+    public String toString() {
+        long lookups = memoryHits + memoryMisses;
+        return String.format(Locale.ROOT, "%d lookups, %.1f%% memory hits, %d disk hits, %d network fetches, %.2f MB",
+                lookups, lookups == 0 ? 0 : 100.0 * memoryHits / lookups, diskHits, networkFetches,
+                bytesDownloaded / (1024.0 * 1024.0));
+    }
+}
@@ -0,0 +1,226 @@
+package com.johnreah.mapster.render;
+
+import com.johnreah.mapster.metrics.FrameTimes;
+import com.johnreah.mapster.metrics.TileTraffic;
+import com.johnreah.mapster.server.StandInTileServer;
+import com.johnreah.mapster.util.TileAddress;
+import com.johnreah.mapster.util.TileMath;
+import com.johnreah.mapster.util.TileSource;
+import com.johnreah.mapster.view.maptiles.ProceduralTileSource;
+import com.johnreah.mapster.view.maptiles.TileCache;
+import com.johnreah.mapster.view.maptiles.TileDiskStore;
+import com.johnreah.mapster.view.maptiles.TileFetcher;
+import com.johnreah.mapster.viewmodel.MapViewport;
+import com.johnreah.mapster.viewmodel.ViewportSession;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Replays a recorded {@link ViewportSession} without a display, as a repeatable test of pan
+ * and zoom smoothness:
+ *
+ * <pre>
+ * java -m com.johnreah.mapster/com.johnreah.mapster.render.SessionReplay \
+ *     --session pan.mvs --source stand-in --latency 80 --speed max
+ * </pre>
+ *
+ * <p>Each layer behaves as a {@code TileLayerView} does: it redraws on every change of the
+ * viewport's properties and whenever a tile arrives, looking up the tiles in view and queueing
+ * the prefetch ring through its own {@link TileCache}. Loaded tiles are handed to the replay
+ * thread, which stands in for the FX thread and runs them as they come in between calls. Only
+ * the canvas drawing is left out, so frame times are the cost of the tile lookups. After the
+ * last call, the replay waits for outstanding loads so the tile traffic is complete.
+ */
+public final class SessionReplay {
+
+    private static final String USAGE = """
+            Usage: SessionReplay --session FILE|tour [options]
+              --source ID            procedural (default) or stand-in
+              --speed S              recorded (default) or max
+              --latency MS           stand-in response latency (default 0)
+              --bandwidth BYTES/S    stand-in bandwidth per response (default unlimited)
+            """;
+
+    // --session tour replays the scripted tour in a view of this size
+    private static final String TOUR = "tour";
+    private static final int TOUR_WIDTH = 1280;
+    private static final int TOUR_HEIGHT = 800;
+    private static final long SETTLE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(60);
+    private static final int PREFETCH_MARGIN = 1;
+
+    public enum Speed { RECORDED, MAXIMUM }
+
+    /** Frame times, tile traffic, and the time taken to replay the calls and then to settle. */
+    public record Result(int calls, Speed speed, long replayNanos, long settleNanos, FrameTimes frames,
+                         TileTraffic traffic) {
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "Replayed %d calls at %s speed in %.2f s, settled in %.2f s%n"
+                            + "Frames: %s%nTiles: %s", calls, speed.name().toLowerCase(Locale.ROOT),
+                    replayNanos / 1e9, settleNanos / 1e9, frames, traffic);
+        }
+    }
+
+    private SessionReplay() {
+    }
+
+    /** Replays the session with one layer per source, bottom first, loading remote tiles through {@code fetcher}. */
+    public static Result replay(ViewportSession session, List<TileSource> sources, TileFetcher fetcher, Speed speed)
+            throws InterruptedException {
+        MapViewport viewport = new MapViewport();
+        session.moveToStart(viewport);
+        BlockingQueue<Runnable> published = new LinkedBlockingQueue<>();
+        FrameTimes frames = new FrameTimes();
+        TileTraffic before = TileTraffic.snapshot();
+        List<Layer> layers = new ArrayList<>();
+        for (TileSource source : sources) {
+            layers.add(new Layer(source, fetcher, published, viewport, session, frames));
+        }
+        try {
+            long start = System.nanoTime();
+            for (ViewportSession.Call call : session.calls()) {
+                if (speed == Speed.RECORDED) runUntil(published, start + call.atNanos());
+                call.applyTo(viewport);
+                runPending(published);
+            }
+            long replayed = System.nanoTime();
+            long deadline = replayed + SETTLE_TIMEOUT_NANOS;
+            while (System.nanoTime() < deadline
+                    && (!published.isEmpty() || layers.stream().anyMatch(l -> l.cache.getInFlightCount() > 0))) {
+                Runnable task = published.poll(10, TimeUnit.MILLISECONDS);
+                if (task != null) task.run();
+            }
+            long settled = System.nanoTime();
+            return new Result(session.calls().size(), speed, replayed - start, settled - replayed, frames,
+                    TileTraffic.snapshot().since(before));
+        } finally {
+            for (Layer layer : layers) layer.cache.shutdown();
+        }
+    }
+
+    /** Runs tasks as they are published until {@code deadline}, as the FX thread would while idle. */
+    private static void runUntil(BlockingQueue<Runnable> published, long deadline) throws InterruptedException {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            Runnable task = published.poll(remaining, TimeUnit.NANOSECONDS);
+            if (task != null) task.run();
+        }
+    }
+
+    private static void runPending(BlockingQueue<Runnable> published) {
+        Runnable task;
+        while ((task = published.poll()) != null) task.run();
+    }
+
+    /** A headless {@code TileLayerView}. */
+    private static final class Layer {
+
+        private static final int TILE_SIZE = TileMath.TILE_SIZE;
+
+        private final TileCache cache;
+        private final MapViewport viewport;
+        private final double width;
+        private final double height;
+        private final FrameTimes frames;
+
+        Layer(TileSource source, TileFetcher fetcher, BlockingQueue<Runnable> published, MapViewport viewport,
+              ViewportSession session, FrameTimes frames) {
+            this.cache = new TileCache(source, this::render, fetcher, published::add);
+            this.viewport = viewport;
+            this.width = session.width();
+            this.height = session.height();
+            this.frames = frames;
+            viewport.centerXProperty().addListener((obs, old, val) -> render());
+            viewport.centerYProperty().addListener((obs, old, val) -> render());
+            viewport.zoomProperty().addListener((obs, old, val) -> render());
+            render();
+        }
+
+        void render() {
+            long start = System.nanoTime();
+            int zoom = viewport.getZoom();
+            double max = TileMath.maxTile(zoom);
+            double offsetX = width / 2.0 - viewport.getCenterX() * TILE_SIZE;
+            double offsetY = height / 2.0 - viewport.getCenterY() * TILE_SIZE;
+            int tileLeft   = (int) Math.floor(-offsetX / TILE_SIZE);
+            int tileRight  = (int) Math.floor((-offsetX + width) / TILE_SIZE);
+            int tileTop    = (int) Math.floor(-offsetY / TILE_SIZE);
+            int tileBottom = (int) Math.floor((-offsetY + height) / TILE_SIZE);
+            for (int ty = tileTop; ty <= tileBottom; ty++) {
+                if (ty < 0 || ty >= (int) max) continue;
+                for (int tx = tileLeft; tx <= tileRight; tx++) {
+                    int wrappedX = ((tx % (int) max) + (int) max) % (int) max;
+                    cache.getTile(zoom, wrappedX, ty);
+                }
+            }
+            cache.prefetch(TileAddress.range(zoom, tileLeft - PREFETCH_MARGIN, tileTop - PREFETCH_MARGIN,
+                    tileRight + PREFETCH_MARGIN, tileBottom + PREFETCH_MARGIN));
+            frames.record(System.nanoTime() - start);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        Path sessionFile = null;
+        String sourceId = ProceduralTileSource.ID;
+        Speed speed = Speed.RECORDED;
+        StandInTileServer.Profile profile = StandInTileServer.Profile.instant();
+        ViewportSession session;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + arg);
+                String value = args[++i];
+                switch (arg) {
+                    case "--session" -> sessionFile = Path.of(value);
+                    case "--source" -> sourceId = value;
+                    case "--speed" -> speed = switch (value) {
+                        case "recorded" -> Speed.RECORDED;
+                        case "max" -> Speed.MAXIMUM;
+                        default -> throw new IllegalArgumentException("Unknown speed: " + value);
+                    };
+                    case "--latency" -> profile = profile.withLatency(Long.parseLong(value), 0);
+                    case "--bandwidth" -> profile = profile.withBandwidth(Long.parseLong(value));
+                    default -> throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            }
+            if (sessionFile == null) throw new IllegalArgumentException("--session is required");
+            if (!sourceId.equals(ProceduralTileSource.ID) && !sourceId.equals("stand-in")) {
+                throw new IllegalArgumentException("Unknown source: " + sourceId);
+            }
+            session = sessionFile.toString().equals(TOUR) ? ViewportSession.tour(TOUR_WIDTH, TOUR_HEIGHT)
+                    : ViewportSession.load(sessionFile);
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        Path cacheDir = Files.createTempDirectory("mapster-replay");
+        TileFetcher fetcher = new TileFetcher(new TileDiskStore(cacheDir, Long.MAX_VALUE));
+        try {
+            if (sourceId.equals("stand-in")) {
+                try (StandInTileServer standIn = StandInTileServer.start(profile)) {
+                    System.out.println(replay(session, List.of(standIn.source("stand-in")), fetcher, speed));
+                }
+            } else {
+                System.out.println(replay(session, List.of(new ProceduralTileSource()), fetcher, speed));
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(cacheDir)) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) Files.delete(file);
+            }
+        }
+    }
+}
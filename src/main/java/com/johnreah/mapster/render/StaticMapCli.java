@@ -0,0 +1,260 @@
+package com.johnreah.mapster.render;
+
+import com.johnreah.mapster.io.DrawingFile;
+import com.johnreah.mapster.io.TrackReader;
+import com.johnreah.mapster.io.TrackSink;
+import com.johnreah.mapster.util.TileSource;
+import com.johnreah.mapster.view.maptiles.DrawingTileSource;
+import com.johnreah.mapster.view.maptiles.TileFetcher;
+import com.johnreah.mapster.view.maptiles.TileSources;
+import com.johnreah.mapster.viewmodel.MapViewport;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Command-line front end for {@link StaticMapRenderer}. Runs without a display:
+ *
+ * <pre>
+ * java -m com.johnreah.mapster/com.johnreah.mapster.render.StaticMapCli \
+ *     --out map.png --size 1024x768 --bbox 51.4,-0.3,51.6,0.1 --layer osm --track ride.gpx
+ * </pre>
+ *
+ * With {@code --batch FILE}, each non-blank line of the file not starting with {@code #} holds
+ * the options for one map, and the maps are rendered concurrently.
+ */
+public final class StaticMapCli {
+
+    private static final String USAGE = """
+            Usage: StaticMapCli --out FILE.png [options]
+                   StaticMapCli --batch FILE [--jobs N] [--threads N]
+              --size WxH             image size in pixels (default 800x600)
+              --center LAT,LON       centre of the map, with --zoom Z
+              --zoom Z               zoom level (default 12)
+              --bbox S,W,N,E         fit a bounding box instead of --center
+              --padding PX           space around a fitted bounding box (default 16)
+              --layer ID             tile source to draw, bottom first; repeatable (default osm)
+              --track FILE           GPX or GeoJSON lines to draw on top; repeatable
+              --drawing FILE         Mapster drawing (.mdraw) to draw on top; repeatable
+              --threads N            concurrent tile fetches (default 4)
+              --jobs N               maps rendered at once in batch mode (default: CPU count)
+            """;
+
+    private static final AtomicInteger drawingLayers = new AtomicInteger();
+
+    private StaticMapCli() {
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int status;
+        try {
+            status = run(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            status = 2;
+        }
+        System.exit(status);
+    }
+
+    static int run(String[] args) {
+        Options common = Options.parse(args);
+        ExecutorService fetchPool = Executors.newFixedThreadPool(common.threads, r -> {
+            Thread t = new Thread(r, "static-map-fetch");
+            t.setDaemon(true);
+            return t;
+        });
+        StaticMapRenderer renderer = new StaticMapRenderer(TileFetcher.shared(), fetchPool);
+        try {
+            if (common.batch == null) {
+                return renderOne(renderer, common) ? 0 : 1;
+            }
+            List<Options> jobs = new ArrayList<>();
+            for (String line : readLines(common.batch)) {
+                jobs.add(Options.parse(line.trim().split("\\s+")));
+            }
+            ExecutorService jobPool = Executors.newFixedThreadPool(common.jobs);
+            try {
+                List<Future<Boolean>> results = new ArrayList<>();
+                for (Options job : jobs) results.add(jobPool.submit(() -> renderOne(renderer, job)));
+                int failures = 0;
+                for (Future<Boolean> result : results) {
+                    try {
+                        if (!result.get()) failures++;
+                    } catch (Exception e) {
+                        failures++;
+                    }
+                }
+                System.out.println("Rendered " + (jobs.size() - failures) + " of " + jobs.size() + " maps");
+                return failures == 0 ? 0 : 1;
+            } finally {
+                jobPool.shutdown();
+            }
+        } finally {
+            fetchPool.shutdownNow();
+        }
+    }
+
+    private static boolean renderOne(StaticMapRenderer renderer, Options options) {
+        try {
+            StaticMapRequest request = options.toRequest();
+            long start = System.nanoTime();
+            int[] pixels = renderer.render(request);
+            Path out = options.out;
+            Path parent = out.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+            try (OutputStream stream = Files.newOutputStream(out)) {
+                StaticMapRenderer.writePng(pixels, request.width(), request.height(), stream);
+            }
+            System.out.printf(Locale.ROOT, "%s: %dx%d z%d in %d ms%n", out, request.width(), request.height(),
+                    request.zoom(), (System.nanoTime() - start) / 1_000_000);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println((options.out != null ? options.out + ": " : "") + e.getMessage());
+            return false;
+        }
+    }
+
+    private static List<String> readLines(Path file) {
+        try {
+            return Files.readAllLines(file).stream()
+                    .filter(line -> !line.isBlank() && !line.stripLeading().startsWith("#"))
+                    .toList();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read batch file " + file + ": " + e.getMessage());
+        }
+    }
+
+    /** Parsed options for one map, or the shared options in batch mode. */
+    private static final class Options {
+        Path out;
+        Path batch;
+        int width = 800;
+        int height = 600;
+        double[] center;
+        int zoom = 12;
+        double[] bbox;
+        int padding = 16;
+        final List<String> layerIds = new ArrayList<>();
+        final List<Path> tracks = new ArrayList<>();
+        final List<Path> drawings = new ArrayList<>();
+        int threads = 4;
+        int jobs = Runtime.getRuntime().availableProcessors();
+
+        static Options parse(String[] args) {
+            Options o = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + arg);
+                String value = args[++i];
+                switch (arg) {
+                    case "--out" -> o.out = Path.of(value);
+                    case "--batch" -> o.batch = Path.of(value);
+                    case "--size" -> {
+                        String[] parts = value.toLowerCase(Locale.ROOT).split("x");
+                        if (parts.length != 2) throw new IllegalArgumentException("Invalid size: " + value);
+                        o.width = parseInt(parts[0]);
+                        o.height = parseInt(parts[1]);
+                    }
+                    case "--center" -> o.center = parseNumbers(value, 2);
+                    case "--zoom" -> o.zoom = parseInt(value);
+                    case "--bbox" -> o.bbox = parseNumbers(value, 4);
+                    case "--padding" -> o.padding = parseInt(value);
+                    case "--layer" -> o.layerIds.add(value);
+                    case "--track" -> o.tracks.add(Path.of(value));
+                    case "--drawing" -> o.drawings.add(Path.of(value));
+                    case "--threads" -> o.threads = Math.max(1, parseInt(value));
+                    case "--jobs" -> o.jobs = Math.max(1, parseInt(value));
+                    default -> throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            }
+            if (o.batch == null && o.out == null) throw new IllegalArgumentException("--out or --batch is required");
+            return o;
+        }
+
+        StaticMapRequest toRequest() throws IOException {
+            List<TileSource> layers = new ArrayList<>();
+            List<TileSource> available = TileSources.builtIn();
+            for (String id : layerIds.isEmpty() ? List.of("osm") : layerIds) {
+                layers.add(available.stream().filter(s -> s.getId().equals(id)).findFirst()
+                        .orElseThrow(() -> new IllegalArgumentException("Unknown layer: " + id)));
+            }
+            List<List<double[]>> lines = new ArrayList<>();
+            for (Path track : tracks) lines.addAll(readTrack(track));
+            for (Path drawing : drawings) {
+                try (DrawingFile file = DrawingFile.open(drawing)) {
+                    lines.addAll(file.getLines());
+                }
+            }
+            if (!lines.isEmpty()) {
+                DrawingTileSource overlay = new DrawingTileSource("static-" + drawingLayers.incrementAndGet());
+                overlay.reset(lines);
+                layers.add(overlay);
+            }
+
+            if (bbox != null) {
+                return StaticMapRequest.fitting(bbox[0], bbox[1], bbox[2], bbox[3], width, height, padding,
+                        MapViewport.MAX_ZOOM, layers);
+            }
+            if (center == null) throw new IllegalArgumentException("--center or --bbox is required");
+            return StaticMapRequest.centredOn(center[0], center[1], zoom, width, height, layers);
+        }
+
+        private static List<List<double[]>> readTrack(Path path) throws IOException {
+            List<List<double[]>> lines = new ArrayList<>();
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+                TrackReader.forPath(path).read(in, new TrackSink() {
+                    private List<double[]> line;
+
+                    @Override
+                    public void startLine() {
+                        line = new ArrayList<>();
+                    }
+
+                    @Override
+                    public void point(double lat, double lon) {
+                        line.add(new double[]{lat, lon});
+                    }
+
+                    @Override
+                    public void endLine() {
+                        if (!line.isEmpty()) lines.add(line);
+                    }
+                });
+            }
+            return lines;
+        }
+
+        private static int parseInt(String value) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number: " + value);
+            }
+        }
+
+        private static double[] parseNumbers(String value, int count) {
+            String[] parts = value.split(",");
+            if (parts.length != count) throw new IllegalArgumentException("Expected " + count + " numbers: " + value);
+            double[] numbers = new double[count];
+            try {
+                for (int i = 0; i < count; i++) numbers[i] = Double.parseDouble(parts[i].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number: " + value);
+            }
+            return numbers;
+        }
+    }
+}
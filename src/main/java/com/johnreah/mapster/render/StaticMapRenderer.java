@@ -0,0 +1,212 @@
+package com.johnreah.mapster.render;
+
+import com.johnreah.mapster.util.LocalTileSource;
+import com.johnreah.mapster.util.TileAddress;
+import com.johnreah.mapster.util.TileMath;
+import com.johnreah.mapster.util.TileSource;
+import com.johnreah.mapster.view.maptiles.TileFetcher;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Renders maps into off-screen ARGB buffers without JavaFX, for snapshots written to PNG.
+ *
+ * <p>The tile layout matches {@code TileLayerView}: the same tiles are placed at the same pixel
+ * offsets, wrapping east-west, and zooms past a source's maximum are upscaled from the deepest
+ * tile it has. Every tile of every layer is requested before anything is composed: remote tiles
+ * are fetched and decoded on the fetch executor through the shared {@link TileFetcher} (and so
+ * the disk cache), local sources render on it directly. Layers are then composed bottom to top,
+ * the tiles of a layer in parallel since they never overlap.
+ *
+ * <p>A renderer is thread-safe and meant to be shared: concurrent renders that need the same
+ * tile wait on a single fetch.
+ */
+public class StaticMapRenderer {
+
+    private static final int TILE_SIZE = TileMath.TILE_SIZE;
+
+    private record TileKey(String sourceId, TileAddress tile) {}
+
+    /** Where a tile's pixels land in the output image. */
+    private record Placement(int x, int y, CompletableFuture<int[]> pixels) {}
+
+    private final TileFetcher fetcher;
+    private final Executor fetchExecutor;
+    private final Executor composeExecutor;
+    private final Map<TileKey, CompletableFuture<int[]>> inflight = new ConcurrentHashMap<>();
+
+    public StaticMapRenderer(TileFetcher fetcher, Executor fetchExecutor) {
+        this(fetcher, fetchExecutor, ForkJoinPool.commonPool());
+    }
+
+    public StaticMapRenderer(TileFetcher fetcher, Executor fetchExecutor, Executor composeExecutor) {
+        this.fetcher = fetcher;
+        this.fetchExecutor = fetchExecutor;
+        this.composeExecutor = composeExecutor;
+    }
+
+    /**
+     * Renders the map, blocking until it is complete, as {@code width * height} non-premultiplied
+     * ARGB pixels, row-major. Tiles that cannot be loaded are left transparent.
+     */
+    public int[] render(StaticMapRequest request) {
+        int w = request.width();
+        int h = request.height();
+        int zoom = request.zoom();
+        int max = (int) TileMath.maxTile(zoom);
+        double offsetX = w / 2.0 - request.centerX() * TILE_SIZE;
+        double offsetY = h / 2.0 - request.centerY() * TILE_SIZE;
+
+        int tileLeft   = (int) Math.floor(-offsetX / TILE_SIZE);
+        int tileRight  = (int) Math.floor((-offsetX + w) / TILE_SIZE);
+        int tileTop    = Math.max(0, (int) Math.floor(-offsetY / TILE_SIZE));
+        int tileBottom = Math.min(max - 1, (int) Math.floor((-offsetY + h) / TILE_SIZE));
+
+        // Request every tile of every layer up front so fetches overlap
+        List<List<Placement>> layers = new ArrayList<>();
+        for (TileSource source : request.layers()) {
+            List<Placement> placements = new ArrayList<>();
+            for (int ty = tileTop; ty <= tileBottom; ty++) {
+                for (int tx = tileLeft; tx <= tileRight; tx++) {
+                    int wrappedX = Math.floorMod(tx, max);
+                    placements.add(new Placement(
+                            (int) Math.round(offsetX + tx * (double) TILE_SIZE),
+                            (int) Math.round(offsetY + ty * (double) TILE_SIZE),
+                            tilePixels(source, new TileAddress(zoom, wrappedX, ty))));
+                }
+            }
+            layers.add(placements);
+        }
+
+        int[] out = new int[w * h];
+        for (List<Placement> placements : layers) {
+            CompletableFuture<?>[] composed = new CompletableFuture<?>[placements.size()];
+            for (int i = 0; i < composed.length; i++) {
+                Placement p = placements.get(i);
+                composed[i] = p.pixels().thenAcceptAsync(pixels -> {
+                    if (pixels != null) composite(out, w, h, pixels, p.x(), p.y());
+                }, composeExecutor);
+            }
+            CompletableFuture.allOf(composed).join();
+        }
+        return out;
+    }
+
+    private CompletableFuture<int[]> tilePixels(TileSource source, TileAddress tile) {
+        if (tile.zoom() < source.getMinZoom()) return CompletableFuture.completedFuture(null);
+        if (tile.zoom() <= source.getMaxZoom()) return sharedLoad(source, tile);
+        int depth = tile.zoom() - source.getMaxZoom();
+        return sharedLoad(source, tile.ancestor(source.getMaxZoom()))
+                .thenApply(parent -> parent == null ? null : upscale(parent, depth, tile.x(), tile.y()));
+    }
+
+    /** Loads a tile on the fetch executor, joining a load already in progress for it. */
+    private CompletableFuture<int[]> sharedLoad(TileSource source, TileAddress tile) {
+        TileKey key = new TileKey(source.getId(), tile);
+        CompletableFuture<int[]> promise = new CompletableFuture<>();
+        CompletableFuture<int[]> existing = inflight.putIfAbsent(key, promise);
+        if (existing != null) return existing;
+        fetchExecutor.execute(() -> {
+            int[] pixels = null;
+            try {
+                pixels = load(source, tile);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                // Missing tile — left transparent
+            } finally {
+                inflight.remove(key, promise);
+                promise.complete(pixels);
+            }
+        });
+        return promise;
+    }
+
+    private int[] load(TileSource source, TileAddress tile) throws IOException, InterruptedException {
+        if (source instanceof LocalTileSource local) {
+            return local.renderTile(tile.zoom(), tile.x(), tile.y());
+        }
+        byte[] bytes = fetcher.fetch(source, tile);
+        if (bytes == null) return null;
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+        if (image == null) return null;
+        int iw = image.getWidth();
+        int ih = image.getHeight();
+        int[] argb = image.getRGB(0, 0, iw, ih, null, 0, iw);
+        if (iw == TILE_SIZE && ih == TILE_SIZE) return argb;
+        // Nearest-neighbour resample of tiles served at another size
+        int[] resized = new int[TILE_SIZE * TILE_SIZE];
+        for (int y = 0; y < TILE_SIZE; y++) {
+            int row = y * ih / TILE_SIZE * iw;
+            for (int x = 0; x < TILE_SIZE; x++) {
+                resized[y * TILE_SIZE + x] = argb[row + x * iw / TILE_SIZE];
+            }
+        }
+        return resized;
+    }
+
+    /** The part of an ancestor tile {@code depth} zooms out that covers tile (x, y), enlarged. */
+    static int[] upscale(int[] parent, int depth, int x, int y) {
+        int divisor = 1 << depth;
+        int subX = x & (divisor - 1);
+        int subY = y & (divisor - 1);
+        int[] pixels = new int[TILE_SIZE * TILE_SIZE];
+        for (int dy = 0; dy < TILE_SIZE; dy++) {
+            int row = (subY * TILE_SIZE + dy) / divisor * TILE_SIZE;
+            for (int dx = 0; dx < TILE_SIZE; dx++) {
+                pixels[dy * TILE_SIZE + dx] = parent[row + (subX * TILE_SIZE + dx) / divisor];
+            }
+        }
+        return pixels;
+    }
+
+    /** Composites a tile source-over into the image at (x, y), clipped to the image. */
+    static void composite(int[] out, int width, int height, int[] tile, int x, int y) {
+        int x0 = Math.max(0, x);
+        int y0 = Math.max(0, y);
+        int x1 = Math.min(width, x + TILE_SIZE);
+        int y1 = Math.min(height, y + TILE_SIZE);
+        for (int py = y0; py < y1; py++) {
+            int src = (py - y) * TILE_SIZE - x;
+            int dst = py * width;
+            for (int px = x0; px < x1; px++) {
+                int s = tile[src + px];
+                int sa = s >>> 24;
+                if (sa == 255) {
+                    out[dst + px] = s;
+                } else if (sa != 0) {
+                    out[dst + px] = over(s, out[dst + px]);
+                }
+            }
+        }
+    }
+
+    private static int over(int src, int dst) {
+        double sa = (src >>> 24) / 255.0;
+        double da = (dst >>> 24) / 255.0;
+        double oa = sa + da * (1 - sa);
+        double dw = da * (1 - sa);
+        int r = (int) Math.round((((src >> 16) & 0xFF) * sa + ((dst >> 16) & 0xFF) * dw) / oa);
+        int g = (int) Math.round((((src >> 8) & 0xFF) * sa + ((dst >> 8) & 0xFF) * dw) / oa);
+        int b = (int) Math.round(((src & 0xFF) * sa + (dst & 0xFF) * dw) / oa);
+        return ((int) Math.round(oa * 255) << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    /** Encodes non-premultiplied ARGB pixels as a PNG. */
+    public static void writePng(int[] argb, int width, int height, OutputStream out) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, width, height, argb, 0, width);
+        if (!ImageIO.write(image, "png", out)) throw new IOException("No PNG encoder available");
+    }
+}
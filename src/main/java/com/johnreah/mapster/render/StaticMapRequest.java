@@ -0,0 +1,57 @@
+package com.johnreah.mapster.render;
+
+import com.johnreah.mapster.util.TileMath;
+import com.johnreah.mapster.util.TileSource;
+
+import java.util.List;
+
+/**
+ * One map to render headlessly: output size in pixels, zoom, the tile coordinates at the
+ * centre of the image, and the layers to compose from bottom to top. Drawing geometry is
+ * supplied as a layer too, for example a {@link com.johnreah.mapster.view.maptiles.DrawingTileSource}.
+ */
+public record StaticMapRequest(int width, int height, int zoom, double centerX, double centerY,
+                               List<TileSource> layers) {
+
+    /** Largest image edge accepted, in pixels. */
+    public static final int MAX_SIZE = 8192;
+
+    public StaticMapRequest {
+        if (width <= 0 || height <= 0 || width > MAX_SIZE || height > MAX_SIZE) {
+            throw new IllegalArgumentException("Invalid image size: " + width + "x" + height);
+        }
+        if (zoom < 0 || zoom > 30) throw new IllegalArgumentException("Invalid zoom: " + zoom);
+        layers = List.copyOf(layers);
+    }
+
+    /** A map of {@code width x height} pixels centred on a position at {@code zoom}. */
+    public static StaticMapRequest centredOn(double lat, double lon, int zoom, int width, int height,
+                                             List<TileSource> layers) {
+        return new StaticMapRequest(width, height, zoom,
+                TileMath.lonToTileX(lon, zoom), TileMath.latToTileY(lat, zoom), layers);
+    }
+
+    /**
+     * The deepest map up to {@code maxZoom} that shows the whole bounding box, with
+     * {@code paddingPixels} to spare on each side, centred on the box.
+     */
+    public static StaticMapRequest fitting(double minLat, double minLon, double maxLat, double maxLon,
+                                           int width, int height, int paddingPixels, int maxZoom,
+                                           List<TileSource> layers) {
+        // Extents in world units (0..1); latitude increases upwards, tile y downwards
+        double x0 = TileMath.lonToTileX(minLon, 0);
+        double x1 = TileMath.lonToTileX(maxLon, 0);
+        double y0 = TileMath.latToTileY(maxLat, 0);
+        double y1 = TileMath.latToTileY(minLat, 0);
+        double availableW = Math.max(1, width - 2 * paddingPixels);
+        double availableH = Math.max(1, height - 2 * paddingPixels);
+        int zoom = maxZoom;
+        while (zoom > 0) {
+            double worldPixels = TileMath.maxTile(zoom) * TileMath.TILE_SIZE;
+            if ((x1 - x0) * worldPixels <= availableW && (y1 - y0) * worldPixels <= availableH) break;
+            zoom--;
+        }
+        double tiles = TileMath.maxTile(zoom);
+        return new StaticMapRequest(width, height, zoom, (x0 + x1) / 2 * tiles, (y0 + y1) / 2 * tiles, layers);
+    }
+}
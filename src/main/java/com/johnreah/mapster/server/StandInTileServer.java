@@ -0,0 +1,310 @@
+package com.johnreah.mapster.server;
+
+import com.johnreah.mapster.util.TileAddress;
+import com.johnreah.mapster.util.TileSource;
+import com.johnreah.mapster.view.maptiles.ProceduralTileSource;
+import com.johnreah.mapster.view.maptiles.ProxyTileSource;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * An offline stand-in for a public tile server, for measuring the loader, caches and renderers
+ * without a network. Serves {@link ProceduralTileSource} tiles as PNG at {@code /{z}/{x}/{y}.png}
+ * (or {@code /{anything}/{z}/{x}/{y}.png}, so it can also stand in for a {@link TileServer}
+ * behind {@link ProxyTileSource}), with the latency, bandwidth, failure rate and conditional
+ * request handling of a {@link Profile}.
+ *
+ * <p>Tile bytes never change, so each carries a fixed {@code Last-Modified} and an {@code ETag};
+ * matching conditional requests get {@code 304} unless the profile turns that off. Failures are
+ * {@code 503} responses drawn from a seeded random sequence. Each request runs on its own virtual
+ * thread, so latency is simulated without tying up platform threads.
+ */
+public final class StandInTileServer implements Closeable {
+
+    /** Max zoom of {@link #source}, as for OpenStreetMap. */
+    public static final int MAX_ZOOM = 18;
+
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME;
+    private static final long LAST_MODIFIED_SECONDS = 1_700_000_000L;
+    private static final int MAX_ENCODED_TILES = 4096;
+    private static final int CHUNK_BYTES = 4096;
+
+    /**
+     * How the server behaves. Latency is added before every response, plus a random extra of up
+     * to {@code jitterMillis}; a {@code bytesPerSecond} of zero means unlimited bandwidth per
+     * response.
+     */
+    public record Profile(long latencyMillis, long jitterMillis, long bytesPerSecond, double errorRate,
+                          boolean conditional, long seed) {
+
+        public Profile {
+            if (latencyMillis < 0 || jitterMillis < 0 || bytesPerSecond < 0) {
+                throw new IllegalArgumentException("Latency, jitter and bandwidth must not be negative");
+            }
+            if (errorRate < 0 || errorRate > 1) throw new IllegalArgumentException("Error rate must be 0..1: " + errorRate);
+        }
+
+        /** No delay, unlimited bandwidth, no failures, 304s honoured. */
+        public static Profile instant() {
+            return new Profile(0, 0, 0, 0, true, 1);
+        }
+
+        public Profile withLatency(long millis, long jitter) {
+            return new Profile(millis, jitter, bytesPerSecond, errorRate, conditional, seed);
+        }
+
+        public Profile withBandwidth(long bytesPerSecond) {
+            return new Profile(latencyMillis, jitterMillis, bytesPerSecond, errorRate, conditional, seed);
+        }
+
+        public Profile withErrorRate(double errorRate) {
+            return new Profile(latencyMillis, jitterMillis, bytesPerSecond, errorRate, conditional, seed);
+        }
+
+        public Profile withSeed(long seed) {
+            return new Profile(latencyMillis, jitterMillis, bytesPerSecond, errorRate, conditional, seed);
+        }
+
+        /** Whether conditional requests can be answered with {@code 304}. */
+        public Profile withConditional(boolean conditional) {
+            return new Profile(latencyMillis, jitterMillis, bytesPerSecond, errorRate, conditional, seed);
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Profile profile;
+    private final ProceduralTileSource tiles;
+    private final SplittableRandom random;
+    private final Map<TileAddress, byte[]> encoded = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TileAddress, byte[]> eldest) {
+            return size() > MAX_ENCODED_TILES;
+        }
+    };
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong fullResponses = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    private StandInTileServer(HttpServer server, Profile profile) {
+        this.server = server;
+        this.profile = profile;
+        this.tiles = new ProceduralTileSource(ProceduralTileSource.ID, profile.seed());
+        this.random = new SplittableRandom(profile.seed());
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    /** Starts serving on {@code address}; port 0 picks a free port. */
+    public static StandInTileServer start(InetSocketAddress address, Profile profile) throws IOException {
+        StandInTileServer standIn = new StandInTileServer(HttpServer.create(address, 0), profile);
+        standIn.server.start();
+        return standIn;
+    }
+
+    /** Starts serving on a free loopback port. */
+    public static StandInTileServer start(Profile profile) throws IOException {
+        return start(new InetSocketAddress("127.0.0.1", 0), profile);
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public String getBaseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + getPort();
+    }
+
+    /** Requests received, whatever the outcome. */
+    public long getRequestCount() { return requests.get(); }
+
+    /** Requests answered with a tile body. */
+    public long getFullResponseCount() { return fullResponses.get(); }
+
+    /** Requests answered with 304. */
+    public long getNotModifiedCount() { return notModified.get(); }
+
+    /** Requests failed on purpose with 503. */
+    public long getErrorCount() { return errors.get(); }
+
+    /** A remote source fetching from this server, as the built-in sources fetch from theirs. */
+    public TileSource source(String id) {
+        String base = getBaseUrl();
+        return new TileSource() {
+            @Override public String getId() { return id; }
+            @Override public String getDisplayName() { return "Stand-in " + id; }
+            @Override public String getAttribution() { return ""; }
+            @Override public String getTileUrl(int zoom, int x, int y) { return base + "/" + zoom + "/" + x + "/" + y + ".png"; }
+            @Override public int getMinZoom() { return 0; }
+            @Override public int getMaxZoom() { return MAX_ZOOM; }
+            @Override public boolean isAvailable() { return true; }
+        };
+    }
+
+    /** The body served for a tile. */
+    public byte[] tileBytes(TileAddress tile) {
+        synchronized (encoded) {
+            byte[] bytes = encoded.get(tile);
+            if (bytes != null) return bytes;
+        }
+        // Encoded outside the lock; two requests racing for a new tile both encode the same bytes
+        byte[] bytes = tiles.encodeTile(tile.zoom(), tile.x(), tile.y());
+        synchronized (encoded) {
+            encoded.put(tile, bytes);
+        }
+        return bytes;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try (exchange) {
+            long delay;
+            boolean fail;
+            synchronized (random) {
+                delay = profile.latencyMillis()
+                        + (profile.jitterMillis() > 0 ? random.nextLong(profile.jitterMillis() + 1) : 0);
+                fail = profile.errorRate() > 0 && random.nextDouble() < profile.errorRate();
+            }
+            if (delay > 0) Thread.sleep(delay);
+            if (fail) {
+                errors.incrementAndGet();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            // Expect /{z}/{x}/{y}.png, optionally after one path segment naming a source
+            String[] parts = exchange.getRequestURI().getPath().split("/");
+            int first = parts.length == 5 ? 2 : 1;
+            TileAddress tile = (parts.length == 4 || parts.length == 5) && parts[parts.length - 1].endsWith(".png")
+                    ? parseTile(parts[first], parts[first + 1], parts[first + 2].replace(".png", "")) : null;
+            if (tile == null || tile.zoom() > MAX_ZOOM) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            byte[] bytes = tileBytes(tile);
+            String etag = etag(bytes);
+            Headers headers = exchange.getResponseHeaders();
+            headers.set("ETag", etag);
+            headers.set("Last-Modified", HTTP_DATE.format(
+                    ZonedDateTime.ofInstant(Instant.ofEpochSecond(LAST_MODIFIED_SECONDS), ZoneOffset.UTC)));
+            if (profile.conditional()
+                    && TileServer.isNotModified(exchange.getRequestHeaders(), etag, LAST_MODIFIED_SECONDS)) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            headers.set("Content-Type", "image/png");
+            fullResponses.incrementAndGet();
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                send(body, bytes);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Writes the body, pacing chunks to the profile's bandwidth. */
+    private void send(OutputStream body, byte[] bytes) throws IOException, InterruptedException {
+        long rate = profile.bytesPerSecond();
+        if (rate == 0) {
+            body.write(bytes);
+            return;
+        }
+        long start = System.nanoTime();
+        for (int sent = 0; sent < bytes.length; ) {
+            int n = Math.min(CHUNK_BYTES, bytes.length - sent);
+            body.write(bytes, sent, n);
+            body.flush();
+            sent += n;
+            long dueNanos = sent * 1_000_000_000L / rate;
+            long aheadMillis = (dueNanos - (System.nanoTime() - start)) / 1_000_000;
+            if (aheadMillis > 0) Thread.sleep(aheadMillis);
+        }
+    }
+
+    private static TileAddress parseTile(String z, String x, String y) {
+        try {
+            return new TileAddress(Integer.parseInt(z), Integer.parseInt(x), Integer.parseInt(y));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String etag(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return "\"" + Long.toHexString(crc.getValue()) + "\"";
+    }
+
+    /**
+     * Runs a stand-in until killed:
+     * {@code java -m com.johnreah.mapster/com.johnreah.mapster.server.StandInTileServer [--port N] [--latency MS] [--jitter MS] [--bandwidth BYTES/S] [--errors RATE] [--no-304] [--seed N]}.
+     * Point Mapster at it with {@value ProxyTileSource#PROXY_ENV} to browse with no network.
+     */
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        int port = 0;
+        Profile profile = Profile.instant();
+        long latency = 0;
+        long jitter = 0;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--no-304")) {
+                    profile = profile.withConditional(false);
+                    continue;
+                }
+                if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + arg);
+                String value = args[++i];
+                switch (arg) {
+                    case "--port" -> port = Integer.parseInt(value);
+                    case "--latency" -> latency = Long.parseLong(value);
+                    case "--jitter" -> jitter = Long.parseLong(value);
+                    case "--bandwidth" -> profile = profile.withBandwidth(Long.parseLong(value));
+                    case "--errors" -> profile = profile.withErrorRate(Double.parseDouble(value));
+                    case "--seed" -> profile = profile.withSeed(Long.parseLong(value));
+                    default -> throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            }
+            profile = profile.withLatency(latency, jitter);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: StandInTileServer [--port N] [--latency MS] [--jitter MS] [--bandwidth BYTES/S]"
+                    + " [--errors RATE] [--no-304] [--seed N]");
+            System.exit(2);
+            return;
+        }
+        StandInTileServer standIn = start(new InetSocketAddress("127.0.0.1", port), profile);
+        System.out.printf(Locale.ROOT, "Stand-in tile server on %s/{z}/{x}/{y}.png: %s%n", standIn.getBaseUrl(), profile);
+        System.out.println("Browse it offline with " + ProxyTileSource.PROXY_ENV + "=" + standIn.getBaseUrl());
+    }
+}
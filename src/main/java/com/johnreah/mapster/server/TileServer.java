@@ -0,0 +1,246 @@
+package com.johnreah.mapster.server;
+
+import com.johnreah.mapster.util.LocalTileSource;
+import com.johnreah.mapster.util.TileAddress;
+import com.johnreah.mapster.util.TileSource;
+import com.johnreah.mapster.view.maptiles.ProxyTileSource;
+import com.johnreah.mapster.view.maptiles.TileDiskStore;
+import com.johnreah.mapster.view.maptiles.TileFetcher;
+import com.johnreah.mapster.view.maptiles.TileSources;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Serves a tile cache over HTTP at {@code /{source}/{z}/{x}/{y}.png}, so several Mapster
+ * instances can share one set of downloads: the others reach it through
+ * {@link ProxyTileSource}.
+ *
+ * <p>Tiles come from a {@link TileFetcher}, so they are read from this instance's disk cache and
+ * only fetched upstream when missing or expired. Requests for a tile that is already being
+ * fetched wait for that fetch instead of starting another. Each request runs on its own
+ * virtual thread. Responses carry an {@code ETag} and {@code Last-Modified}, and conditional
+ * requests that match get {@code 304 Not Modified} with no body.
+ */
+public final class TileServer implements Closeable {
+
+    public static final int DEFAULT_PORT = 8765;
+
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME;
+    private static final String CACHE_CONTROL = "public, max-age=86400";
+
+    private record TileKey(String sourceId, TileAddress tile) {}
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, TileSource> sources = new LinkedHashMap<>();
+    private final TileFetcher fetcher;
+    private final Map<TileKey, CompletableFuture<TileDiskStore.Entry>> inflight = new ConcurrentHashMap<>();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    private TileServer(HttpServer server, List<TileSource> sources, TileFetcher fetcher) {
+        this.server = server;
+        this.fetcher = fetcher;
+        for (TileSource source : sources) {
+            // Locally rendered layers are per-instance data, not shared map tiles
+            if (!(source instanceof LocalTileSource)) this.sources.put(source.getId(), source);
+        }
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    /** Starts serving the given sources on {@code address}; port 0 picks a free port. */
+    public static TileServer start(InetSocketAddress address, List<TileSource> sources, TileFetcher fetcher)
+            throws IOException {
+        TileServer tileServer = new TileServer(HttpServer.create(address, 0), sources, fetcher);
+        tileServer.server.start();
+        return tileServer;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /** Requests received, including failed and conditional ones. */
+    public long getRequestCount() { return requests.get(); }
+
+    /** Requests answered with 304. */
+    public long getNotModifiedCount() { return notModified.get(); }
+
+    /** Tile loads started: disk reads plus any upstream fetch they needed. */
+    public long getLoadCount() { return loads.get(); }
+
+    /** Requests that joined a load another request had already started. */
+    public long getCoalescedCount() { return coalesced.get(); }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            boolean head = method.equals("HEAD");
+            if (!head && !method.equals("GET")) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            // Expect /{source}/{z}/{x}/{y}.png
+            String[] parts = exchange.getRequestURI().getPath().split("/");
+            if (parts.length != 5 || !parts[0].isEmpty() || !parts[4].endsWith(".png")) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+            TileSource source = sources.get(parts[1]);
+            TileAddress tile = parseTile(parts[2], parts[3], parts[4].substring(0, parts[4].length() - 4));
+            if (source == null || tile == null
+                    || tile.zoom() < source.getMinZoom() || tile.zoom() > source.getMaxZoom()) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            TileDiskStore.Entry entry;
+            try {
+                entry = load(source, tile).join();
+            } catch (CompletionException e) {
+                exchange.sendResponseHeaders(502, -1);
+                return;
+            }
+            if (entry == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            byte[] bytes = entry.bytes();
+            String etag = etag(bytes);
+            long lastModifiedSeconds = entry.lastModifiedMillis() / 1000;
+            Headers headers = exchange.getResponseHeaders();
+            headers.set("ETag", etag);
+            headers.set("Last-Modified", HTTP_DATE.format(
+                    ZonedDateTime.ofInstant(Instant.ofEpochSecond(lastModifiedSeconds), ZoneOffset.UTC)));
+            headers.set("Cache-Control", CACHE_CONTROL);
+            if (isNotModified(exchange.getRequestHeaders(), etag, lastModifiedSeconds)) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            headers.set("Content-Type", contentType(bytes));
+            if (head) {
+                headers.set("Content-Length", Integer.toString(bytes.length));
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(bytes);
+            }
+        }
+    }
+
+    /** Loads a tile on the calling thread, or joins the load already under way for it. */
+    private CompletableFuture<TileDiskStore.Entry> load(TileSource source, TileAddress tile) {
+        TileKey key = new TileKey(source.getId(), tile);
+        CompletableFuture<TileDiskStore.Entry> promise = new CompletableFuture<>();
+        CompletableFuture<TileDiskStore.Entry> existing = inflight.putIfAbsent(key, promise);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return existing;
+        }
+        loads.incrementAndGet();
+        try {
+            TileDiskStore.Entry entry = fetcher.fetchEntry(source, tile);
+            inflight.remove(key, promise);
+            promise.complete(entry);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+            inflight.remove(key, promise);
+            promise.completeExceptionally(e);
+        }
+        return promise;
+    }
+
+    private static TileAddress parseTile(String z, String x, String y) {
+        try {
+            return new TileAddress(Integer.parseInt(z), Integer.parseInt(x), Integer.parseInt(y));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** RFC 9110: If-None-Match takes precedence; If-Modified-Since is only checked without it. */
+    static boolean isNotModified(Headers request, String etag, long lastModifiedSeconds) {
+        String ifNoneMatch = request.getFirst("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) tag = tag.substring(2);
+                if (tag.equals("*") || tag.equals(etag)) return true;
+            }
+            return false;
+        }
+        String ifModifiedSince = request.getFirst("If-Modified-Since");
+        if (ifModifiedSince == null) return false;
+        try {
+            long since = ZonedDateTime.parse(ifModifiedSince, HTTP_DATE).toEpochSecond();
+            return lastModifiedSeconds <= since;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static String etag(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return "\"" + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(bytes.length) + "\"";
+    }
+
+    /**
+     * Serves the built-in sources from the user's tile cache until killed:
+     * {@code java -m com.johnreah.mapster/com.johnreah.mapster.server.TileServer [port] [bind address]}.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        String bind = args.length > 1 ? args[1] : "0.0.0.0";
+        List<TileSource> sources = TileSources.builtIn();
+        TileServer tileServer = start(new InetSocketAddress(bind, port), sources, TileFetcher.shared());
+        System.out.println("Serving " + String.join(", ", tileServer.sources.keySet())
+                + " on http://" + bind + ":" + tileServer.getPort() + "/{source}/{z}/{x}/{y}.png");
+        System.out.println("Point other instances at it with " + ProxyTileSource.PROXY_ENV
+                + "=http://<this host>:" + tileServer.getPort());
+    }
+
+    /** Tiles keep the upstream encoding whatever the URL says; satellite imagery is JPEG. */
+    private static String contentType(byte[] bytes) {
+        if (bytes.length > 2 && (bytes[0] & 0xFF) == 0xFF && (bytes[1] & 0xFF) == 0xD8) return "image/jpeg";
+        return "image/png";
+    }
+}
@@ -0,0 +1,29 @@
+package com.johnreah.mapster.util;
+
+/**
+ * A line of [lat, lon] points stored in fixed-size chunks that are loaded on first access.
+ * Lets renderers and hit-tests skip chunks that are both unloaded and out of view, so that
+ * opening a large drawing only ever decodes what is actually looked at.
+ */
+public interface ChunkedLine {
+
+    /** Points per chunk; chunk {@code c} holds points {@code c*chunkSize() .. (c+1)*chunkSize()-1}. */
+    int chunkSize();
+
+    /** Number of chunks. Points appended after loading are not covered by any chunk. */
+    int chunkCount();
+
+    boolean isChunkLoaded(int chunk);
+
+    /**
+     * Bounds {@code [minLat, minLon, maxLat, maxLon]} of an unloaded chunk, including the first
+     * point of the following chunk so that the connecting segment is covered too. Only valid
+     * while the chunk and the one after it are unloaded, since loaded points may be edited.
+     */
+    double[] chunkBounds(int chunk);
+
+    /** True if chunk {@code c} is unloaded and its bounds can be trusted. */
+    default boolean hasStableBounds(int chunk) {
+        return !isChunkLoaded(chunk) && (chunk + 1 >= chunkCount() || !isChunkLoaded(chunk + 1));
+    }
+}
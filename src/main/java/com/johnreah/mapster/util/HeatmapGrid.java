@@ -0,0 +1,253 @@
+package com.johnreah.mapster.util;
+
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Point density aggregated into per-zoom grids, for drawing large point sets as a heatmap.
+ *
+ * <p>Each zoom level up to {@link #MAX_ZOOM} is a sparse map from tile to a
+ * {@link #BINS_PER_TILE}-square grid of point counts, so a bin is {@link #BIN_PIXELS} screen
+ * pixels wide at every zoom. Points are binned at {@code MAX_ZOOM} by a fork-join task that
+ * splits the input and merges per-branch sparse grids; each coarser level is then derived from
+ * the finer one by summing 2x2 bins. {@link #append} only ever adds the counts of the new
+ * points, so large files can be fed in batches while earlier ones are already on screen.
+ * Higher zooms reuse the {@code MAX_ZOOM} grid.
+ *
+ * <p>Aggregation runs without a lock; only folding a finished batch into the grids and
+ * reading bins are synchronized, so tile rendering on loader threads is never held up for long.
+ */
+public final class HeatmapGrid {
+
+    public static final int BINS_PER_TILE = 32;
+    public static final int BIN_PIXELS = TileMath.TILE_SIZE / BINS_PER_TILE;
+    public static final int MAX_ZOOM = 14;
+
+    private static final int BIN_SHIFT = 5; // log2(BINS_PER_TILE)
+    private static final int SEQUENTIAL_THRESHOLD = 16_384;
+
+    private final List<Map<Long, int[]>> levels = new ArrayList<>();
+    private final int[] maxBin = new int[MAX_ZOOM + 1];
+    private final ForkJoinPool pool;
+    private long pointCount;
+
+    public HeatmapGrid() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public HeatmapGrid(ForkJoinPool pool) {
+        this.pool = pool;
+        for (int z = 0; z <= MAX_ZOOM; z++) levels.add(new HashMap<>());
+    }
+
+    static long tileKey(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Adds points {@code from..to-1} of the parallel coordinate arrays.
+     *
+     * @return world-space bounds {@code [minX, minY, maxX, maxY]} of the added points, or null
+     *         if none fell inside the map
+     */
+    public double[] append(double[] lats, double[] lons, int from, int to) {
+        if (from >= to) return null;
+        Batch batch = pool.invoke(new BinTask(lats, lons, from, to));
+
+        // Derive every coarser level's increments before taking the lock
+        List<Map<Long, int[]>> deltas = new ArrayList<>(MAX_ZOOM + 1);
+        for (int z = 0; z <= MAX_ZOOM; z++) deltas.add(null);
+        deltas.set(MAX_ZOOM, batch.tiles);
+        for (int z = MAX_ZOOM - 1; z >= 0; z--) {
+            deltas.set(z, coarsen(deltas.get(z + 1)));
+        }
+
+        synchronized (this) {
+            for (int z = 0; z <= MAX_ZOOM; z++) {
+                Map<Long, int[]> level = levels.get(z);
+                int max = maxBin[z];
+                for (Map.Entry<Long, int[]> entry : deltas.get(z).entrySet()) {
+                    int[] bins = level.get(entry.getKey());
+                    if (bins == null) {
+                        bins = entry.getValue();
+                        level.put(entry.getKey(), bins);
+                        for (int v : bins) max = Math.max(max, v);
+                    } else {
+                        int[] add = entry.getValue();
+                        for (int i = 0; i < bins.length; i++) {
+                            if (add[i] != 0) max = Math.max(max, bins[i] += add[i]);
+                        }
+                    }
+                }
+                maxBin[z] = max;
+            }
+            pointCount += to - from;
+        }
+        if (batch.minX > batch.maxX) return null;
+        return new double[]{batch.minX, batch.minY, batch.maxX, batch.maxY};
+    }
+
+    /** Sums each 2x2 block of bins into the next zoom out. */
+    private static Map<Long, int[]> coarsen(Map<Long, int[]> child) {
+        Map<Long, int[]> parent = new HashMap<>();
+        int half = BINS_PER_TILE / 2;
+        for (Map.Entry<Long, int[]> entry : child.entrySet()) {
+            long key = entry.getKey();
+            int x = (int) (key >> 32);
+            int y = (int) key;
+            int[] bins = parent.computeIfAbsent(tileKey(x >> 1, y >> 1), k -> new int[BINS_PER_TILE * BINS_PER_TILE]);
+            int ox = (x & 1) * half;
+            int oy = (y & 1) * half;
+            int[] src = entry.getValue();
+            for (int by = 0; by < BINS_PER_TILE; by++) {
+                int row = (oy + (by >> 1)) * BINS_PER_TILE + ox;
+                for (int bx = 0; bx < BINS_PER_TILE; bx++) {
+                    bins[row + (bx >> 1)] += src[by * BINS_PER_TILE + bx];
+                }
+            }
+        }
+        return parent;
+    }
+
+    /**
+     * Copies the bins of one tile at {@code zoom} (at most {@link #MAX_ZOOM}) with a border of
+     * one bin taken from the neighbouring tiles, as a {@code (BINS_PER_TILE + 2)}-square array.
+     * Returns null if the tile and its neighbours hold no points.
+     */
+    public synchronized int[] binsWithBorder(int zoom, int x, int y) {
+        Map<Long, int[]> level = levels.get(zoom);
+        int n = BINS_PER_TILE;
+        int size = n + 2;
+        int[] out = null;
+        int tiles = 1 << zoom;
+        for (int dy = -1; dy <= 1; dy++) {
+            int ty = y + dy;
+            if (ty < 0 || ty >= tiles) continue;
+            for (int dx = -1; dx <= 1; dx++) {
+                int[] bins = level.get(tileKey(Math.floorMod(x + dx, tiles), ty));
+                if (bins == null) continue;
+                if (out == null) out = new int[size * size];
+                // Destination rows/columns in the bordered array covered by this tile
+                int c0 = dx < 0 ? 0 : dx == 0 ? 1 : n + 1;
+                int c1 = dx < 0 ? 0 : dx == 0 ? n : n + 1;
+                int r0 = dy < 0 ? 0 : dy == 0 ? 1 : n + 1;
+                int r1 = dy < 0 ? 0 : dy == 0 ? n : n + 1;
+                for (int r = r0; r <= r1; r++) {
+                    int sy = r - 1 - dy * n;
+                    for (int c = c0; c <= c1; c++) {
+                        int sx = c - 1 - dx * n;
+                        out[r * size + c] = bins[sy * n + sx];
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    /** The largest single-bin count at {@code zoom}, used to normalise colours. */
+    public synchronized int maxBin(int zoom) {
+        return maxBin[Math.min(zoom, MAX_ZOOM)];
+    }
+
+    public synchronized long pointCount() {
+        return pointCount;
+    }
+
+    /** Number of allocated tile grids across all zoom levels. */
+    public synchronized int tileCount() {
+        int count = 0;
+        for (Map<Long, int[]> level : levels) count += level.size();
+        return count;
+    }
+
+    /** Approximate heap held by the bins, in bytes. */
+    public long estimatedBytes() {
+        // Bin array plus header, and the map entry with its boxed key
+        return tileCount() * (BINS_PER_TILE * BINS_PER_TILE * 4L + 16 + 64);
+    }
+
+    /** Bins at {@code MAX_ZOOM} for one split of the input, merged on join. */
+    private static final class Batch {
+        final Map<Long, int[]> tiles = new HashMap<>();
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+
+        void merge(Batch other) {
+            for (Map.Entry<Long, int[]> entry : other.tiles.entrySet()) {
+                int[] mine = tiles.putIfAbsent(entry.getKey(), entry.getValue());
+                if (mine != null) {
+                    int[] theirs = entry.getValue();
+                    for (int i = 0; i < mine.length; i++) mine[i] += theirs[i];
+                }
+            }
+            minX = Math.min(minX, other.minX);
+            minY = Math.min(minY, other.minY);
+            maxX = Math.max(maxX, other.maxX);
+            maxY = Math.max(maxY, other.maxY);
+        }
+    }
+
+    private static final class BinTask extends RecursiveTask<Batch> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final double[] lats;
+        private final double[] lons;
+        private final int from;
+        private final int to;
+
+        BinTask(double[] lats, double[] lons, int from, int to) {
+            this.lats = lats;
+            this.lons = lons;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Batch compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) return binSequentially();
+            int mid = (from + to) >>> 1;
+            BinTask left = new BinTask(lats, lons, from, mid);
+            left.fork();
+            Batch right = new BinTask(lats, lons, mid, to).compute();
+            Batch result = left.join();
+            result.merge(right);
+            return result;
+        }
+
+        private Batch binSequentially() {
+            Batch batch = new Batch();
+            long bins = 1L << (MAX_ZOOM + BIN_SHIFT);
+            long lastKey = Long.MIN_VALUE;
+            int[] last = null;
+            double[] xs = new double[to - from];
+            double[] ys = new double[to - from];
+            TileMath.lonToTileX(lons, from, xs, 0, xs.length, 0);
+            TileMath.latToTileY(lats, from, ys, 0, ys.length, 0);
+            for (int i = 0; i < xs.length; i++) {
+                double wx = xs[i];
+                double wy = ys[i];
+                if (!(wx >= 0 && wx <= 1 && wy >= 0 && wy <= 1)) continue;
+                batch.minX = Math.min(batch.minX, wx);
+                batch.minY = Math.min(batch.minY, wy);
+                batch.maxX = Math.max(batch.maxX, wx);
+                batch.maxY = Math.max(batch.maxY, wy);
+                long bx = Math.min(bins - 1, (long) (wx * bins));
+                long by = Math.min(bins - 1, (long) (wy * bins));
+                long key = tileKey((int) (bx >> BIN_SHIFT), (int) (by >> BIN_SHIFT));
+                // Consecutive GPS points usually share a tile
+                if (key != lastKey) {
+                    last = batch.tiles.computeIfAbsent(key, k -> new int[BINS_PER_TILE * BINS_PER_TILE]);
+                    lastKey = key;
+                }
+                last[(int) (by & (BINS_PER_TILE - 1)) * BINS_PER_TILE + (int) (bx & (BINS_PER_TILE - 1))]++;
+            }
+            return batch;
+        }
+    }
+}
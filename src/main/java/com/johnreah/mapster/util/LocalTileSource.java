@@ -0,0 +1,31 @@
+package com.johnreah.mapster.util;
+
+/**
+ * A {@link TileSource} whose tiles are produced in-process rather than fetched over HTTP.
+ * {@link com.johnreah.mapster.view.maptiles.TileCache} calls {@link #renderTile} on its loader
+ * threads and never touches the disk cache for these sources, so implementations must be
+ * thread-safe.
+ */
+public interface LocalTileSource extends TileSource {
+
+    /**
+     * Renders one tile as {@code TILE_SIZE * TILE_SIZE} non-premultiplied ARGB pixels, row-major.
+     * Returns null if the tile is fully transparent.
+     */
+    int[] renderTile(int zoom, int x, int y);
+
+    @Override
+    default String getTileUrl(int zoom, int x, int y) {
+        return "local://" + getId() + "/" + zoom + "/" + x + "/" + y;
+    }
+
+    @Override
+    default String getAttribution() {
+        return "";
+    }
+
+    @Override
+    default boolean isAvailable() {
+        return true;
+    }
+}
@@ -0,0 +1,227 @@
+package com.johnreah.mapster.util;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable hierarchical grid clustering of a large point set, for drawing tens of thousands
+ * of markers without drawing each one.
+ *
+ * <p>At each zoom up to {@link #MAX_CLUSTER_ZOOM} the world is divided into square cells of
+ * {@link #CELL_PIXELS} screen pixels, and all points in a cell form one cluster drawn at their
+ * centroid. Cell sizes halve exactly from one zoom to the next, so each level is built by
+ * merging 2x2 cells of the level below rather than by revisiting the points. Points are sorted
+ * into cells with parallel sorts, and each level keeps its cells in row-major order so a
+ * viewport query binary-searches one range per visible row: its cost depends on the clusters
+ * on screen, not on the size of the data set. Above {@code MAX_CLUSTER_ZOOM} the individual
+ * points in view are returned.
+ *
+ * <p>Positions are Web Mercator world coordinates, 0..1 on both axes (tile coordinates at
+ * zoom 0).
+ */
+public final class PointClusterIndex {
+
+    public static final int CELL_PIXELS = 64;
+    public static final int MAX_CLUSTER_ZOOM = 16;
+    // log2(TILE_SIZE / CELL_PIXELS): a zoom-z level has 2^(z + CELL_SHIFT) cells per axis
+    private static final int CELL_SHIFT = 2;
+    // Cell keys and point/cell indices are packed into one long for sorting
+    private static final int INDEX_BITS = 27;
+    private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+    public static final int MAX_POINTS = 1 << INDEX_BITS;
+
+    /** Receives clusters from {@link #query}; a single point is a cluster of one. */
+    @FunctionalInterface
+    public interface ClusterVisitor {
+        void visit(double worldX, double worldY, int count);
+    }
+
+    /** Cells of one zoom level in row-major key order. */
+    private static final class Level {
+        final int bits;       // bits per axis in a key
+        final long[] keys;    // (cellY << bits) | cellX
+        final int[] counts;
+        final double[] x;     // centroid
+        final double[] y;
+        final int[] firstPoint; // finest level only: start of the cell's run of sorted points
+
+        Level(int bits, long[] keys, int[] counts, double[] x, double[] y, int[] firstPoint) {
+            this.bits = bits;
+            this.keys = keys;
+            this.counts = counts;
+            this.x = x;
+            this.y = y;
+            this.firstPoint = firstPoint;
+        }
+    }
+
+    private final double[] pointX; // points sorted by finest cell
+    private final double[] pointY;
+    private final Level[] levels;
+
+    private PointClusterIndex(double[] pointX, double[] pointY, Level[] levels) {
+        this.pointX = pointX;
+        this.pointY = pointY;
+        this.levels = levels;
+    }
+
+    /** Builds the index over points given as parallel latitude and longitude arrays. */
+    public static PointClusterIndex build(double[] lats, double[] lons) {
+        if (lats.length != lons.length) throw new IllegalArgumentException("Coordinate arrays differ in length");
+        int n = lats.length;
+        if (n > MAX_POINTS) throw new IllegalArgumentException("Too many points: " + n);
+
+        int bits = MAX_CLUSTER_ZOOM + CELL_SHIFT;
+        long cells = 1L << bits;
+        double[] worldX = new double[n];
+        double[] worldY = new double[n];
+        TileMath.lonToTileX(lons, 0, worldX, 0, n, 0);
+        TileMath.latToTileY(lats, 0, worldY, 0, n, 0);
+        long[] packed = new long[n];
+        IntStream.range(0, n).parallel().forEach(i -> {
+            double wx = worldX[i];
+            double wy = worldY[i];
+            long cx = Math.max(0, Math.min(cells - 1, (long) (wx * cells)));
+            long cy = Math.max(0, Math.min(cells - 1, (long) (wy * cells)));
+            packed[i] = (((cy << bits) | cx) << INDEX_BITS) | i;
+        });
+        Arrays.parallelSort(packed);
+
+        double[] pointX = new double[n];
+        double[] pointY = new double[n];
+        IntStream.range(0, n).parallel().forEach(j -> {
+            int i = (int) (packed[j] & INDEX_MASK);
+            pointX[j] = worldX[i];
+            pointY[j] = worldY[i];
+        });
+
+        Level[] levels = new Level[MAX_CLUSTER_ZOOM + 1];
+        levels[MAX_CLUSTER_ZOOM] = finestLevel(bits, packed, pointX, pointY);
+        for (int z = MAX_CLUSTER_ZOOM - 1; z >= 0; z--) {
+            levels[z] = coarsen(levels[z + 1]);
+        }
+        return new PointClusterIndex(pointX, pointY, levels);
+    }
+
+    private static Level finestLevel(int bits, long[] packed, double[] pointX, double[] pointY) {
+        int n = packed.length;
+        int cellCount = 0;
+        for (int j = 0; j < n; j++) {
+            if (j == 0 || packed[j] >>> INDEX_BITS != packed[j - 1] >>> INDEX_BITS) cellCount++;
+        }
+        long[] keys = new long[cellCount];
+        int[] counts = new int[cellCount];
+        double[] x = new double[cellCount];
+        double[] y = new double[cellCount];
+        int[] firstPoint = new int[cellCount];
+        int c = -1;
+        for (int j = 0; j < n; j++) {
+            long key = packed[j] >>> INDEX_BITS;
+            if (c < 0 || key != keys[c]) {
+                c++;
+                keys[c] = key;
+                firstPoint[c] = j;
+            }
+            counts[c]++;
+            x[c] += pointX[j];
+            y[c] += pointY[j];
+        }
+        for (int i = 0; i < cellCount; i++) {
+            x[i] /= counts[i];
+            y[i] /= counts[i];
+        }
+        return new Level(bits, keys, counts, x, y, firstPoint);
+    }
+
+    /** Merges each 2x2 block of cells into one cell of the next zoom out. */
+    private static Level coarsen(Level child) {
+        int m = child.keys.length;
+        int childBits = child.bits;
+        int bits = childBits - 1;
+        long childMask = (1L << childBits) - 1;
+        long[] packed = new long[m];
+        IntStream.range(0, m).parallel().forEach(i -> {
+            long key = child.keys[i];
+            long cx = (key & childMask) >>> 1;
+            long cy = (key >>> childBits) >>> 1;
+            packed[i] = (((cy << bits) | cx) << INDEX_BITS) | i;
+        });
+        Arrays.parallelSort(packed);
+
+        int cellCount = 0;
+        for (int j = 0; j < m; j++) {
+            if (j == 0 || packed[j] >>> INDEX_BITS != packed[j - 1] >>> INDEX_BITS) cellCount++;
+        }
+        long[] keys = new long[cellCount];
+        int[] counts = new int[cellCount];
+        double[] x = new double[cellCount];
+        double[] y = new double[cellCount];
+        int c = -1;
+        for (int j = 0; j < m; j++) {
+            long key = packed[j] >>> INDEX_BITS;
+            int i = (int) (packed[j] & INDEX_MASK);
+            if (c < 0 || key != keys[c]) {
+                c++;
+                keys[c] = key;
+            }
+            int count = child.counts[i];
+            counts[c] += count;
+            x[c] += child.x[i] * count;
+            y[c] += child.y[i] * count;
+        }
+        for (int i = 0; i < cellCount; i++) {
+            x[i] /= counts[i];
+            y[i] /= counts[i];
+        }
+        return new Level(bits, keys, counts, x, y, null);
+    }
+
+    /** Number of points indexed. */
+    public int size() {
+        return pointX.length;
+    }
+
+    /** Number of clusters at a zoom level, or points above {@link #MAX_CLUSTER_ZOOM}. */
+    public int clusterCount(int zoom) {
+        return zoom > MAX_CLUSTER_ZOOM ? size() : levels[Math.max(0, zoom)].keys.length;
+    }
+
+    /**
+     * Visits every cluster at {@code zoom} whose cell overlaps the world rectangle. Callers
+     * should pad the rectangle by their marker radius, since a cluster is drawn at its centroid.
+     * Returns the number of clusters visited.
+     */
+    public int query(int zoom, double minX, double minY, double maxX, double maxY, ClusterVisitor visitor) {
+        boolean points = zoom > MAX_CLUSTER_ZOOM;
+        Level level = levels[Math.max(0, Math.min(MAX_CLUSTER_ZOOM, zoom))];
+        long cells = 1L << level.bits;
+        long cx0 = Math.max(0, (long) Math.floor(minX * cells));
+        long cy0 = Math.max(0, (long) Math.floor(minY * cells));
+        long cx1 = Math.min(cells - 1, (long) Math.floor(maxX * cells));
+        long cy1 = Math.min(cells - 1, (long) Math.floor(maxY * cells));
+        int visited = 0;
+        for (long cy = cy0; cy <= cy1; cy++) {
+            long rowStart = (cy << level.bits) | cx0;
+            long rowEnd = (cy << level.bits) | cx1;
+            int i = Arrays.binarySearch(level.keys, rowStart);
+            if (i < 0) i = -i - 1;
+            for (; i < level.keys.length && level.keys[i] <= rowEnd; i++) {
+                if (!points) {
+                    visitor.visit(level.x[i], level.y[i], level.counts[i]);
+                    visited++;
+                    continue;
+                }
+                int end = level.firstPoint[i] + level.counts[i];
+                for (int p = level.firstPoint[i]; p < end; p++) {
+                    double px = pointX[p];
+                    double py = pointY[p];
+                    if (px >= minX && px <= maxX && py >= minY && py <= maxY) {
+                        visitor.visit(px, py, 1);
+                        visited++;
+                    }
+                }
+            }
+        }
+        return visited;
+    }
+}
@@ -0,0 +1,86 @@
+package com.johnreah.mapster.util;
+
+/**
+ * Minimal software rasteriser over a non-premultiplied ARGB pixel array. Shapes are
+ * anti-aliased by coverage from the distance to the pixel centre and composited source-over.
+ * Unlike a JavaFX {@code Canvas} it can be used from any thread, one instance per thread.
+ */
+public final class RasterCanvas {
+
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+    private boolean empty = true;
+
+    public RasterCanvas(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.pixels = new int[width * height];
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+
+    /** Returns the backing pixel array (row-major, non-premultiplied ARGB). */
+    public int[] getPixels() { return pixels; }
+
+    /** True until something has been drawn. */
+    public boolean isEmpty() { return empty; }
+
+    public void strokeLine(double x1, double y1, double x2, double y2, double lineWidth, int argb) {
+        double half = lineWidth / 2.0;
+        int minX = Math.max(0, (int) Math.floor(Math.min(x1, x2) - half - 1));
+        int maxX = Math.min(width - 1, (int) Math.ceil(Math.max(x1, x2) + half + 1));
+        int minY = Math.max(0, (int) Math.floor(Math.min(y1, y2) - half - 1));
+        int maxY = Math.min(height - 1, (int) Math.ceil(Math.max(y1, y2) + half + 1));
+        if (minX > maxX || minY > maxY) return;
+
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double lenSq = dx * dx + dy * dy;
+        for (int py = minY; py <= maxY; py++) {
+            double cy = py + 0.5;
+            for (int px = minX; px <= maxX; px++) {
+                double cx = px + 0.5;
+                double t = lenSq == 0 ? 0 : ((cx - x1) * dx + (cy - y1) * dy) / lenSq;
+                if (t < 0) t = 0;
+                else if (t > 1) t = 1;
+                double ex = cx - (x1 + t * dx);
+                double ey = cy - (y1 + t * dy);
+                double coverage = half + 0.5 - Math.sqrt(ex * ex + ey * ey);
+                if (coverage > 0) blend(py * width + px, argb, Math.min(coverage, 1.0));
+            }
+        }
+    }
+
+    public void fillCircle(double centerX, double centerY, double radius, int argb) {
+        int minX = Math.max(0, (int) Math.floor(centerX - radius - 1));
+        int maxX = Math.min(width - 1, (int) Math.ceil(centerX + radius + 1));
+        int minY = Math.max(0, (int) Math.floor(centerY - radius - 1));
+        int maxY = Math.min(height - 1, (int) Math.ceil(centerY + radius + 1));
+        for (int py = minY; py <= maxY; py++) {
+            double ey = py + 0.5 - centerY;
+            for (int px = minX; px <= maxX; px++) {
+                double ex = px + 0.5 - centerX;
+                double coverage = radius + 0.5 - Math.sqrt(ex * ex + ey * ey);
+                if (coverage > 0) blend(py * width + px, argb, Math.min(coverage, 1.0));
+            }
+        }
+    }
+
+    /** Composites {@code argb} over the pixel at {@code index}, scaled by {@code coverage}. */
+    private void blend(int index, int argb, double coverage) {
+        double srcA = ((argb >>> 24) / 255.0) * coverage;
+        if (srcA <= 0) return;
+        empty = false;
+        int dst = pixels[index];
+        double dstA = (dst >>> 24) / 255.0;
+        double outA = srcA + dstA * (1 - srcA);
+        double dstWeight = dstA * (1 - srcA);
+        int r = (int) Math.round((((argb >> 16) & 0xFF) * srcA + ((dst >> 16) & 0xFF) * dstWeight) / outA);
+        int g = (int) Math.round((((argb >> 8) & 0xFF) * srcA + ((dst >> 8) & 0xFF) * dstWeight) / outA);
+        int b = (int) Math.round(((argb & 0xFF) * srcA + (dst & 0xFF) * dstWeight) / outA);
+        int a = (int) Math.round(outA * 255);
+        pixels[index] = (a << 24) | (r << 16) | (g << 8) | b;
+    }
+}
@@ -0,0 +1,271 @@
+package com.johnreah.mapster.util;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A tile of the Web Mercator pyramid: {@code 2^zoom} tiles per axis, x eastwards from the
+ * antimeridian and y southwards from the top of the map.
+ *
+ * <p>Within a zoom level tiles are ordered by their Morton (Z-order) code, which interleaves
+ * the bits of x and y so that each 2x2 block, then each 4x4 block and so on, is a contiguous
+ * run. The quadkey is the same code written in base 4, one digit per zoom level, so a tile's
+ * quadkey starts with those of all its ancestors. {@link #range} visits tiles in this order,
+ * and the disk cache lays files out by quadkey, so tiles that are near each other on the map
+ * are near each other in memory and on disk.
+ */
+public record TileAddress(int zoom, int x, int y) implements Comparable<TileAddress> {
+
+    /** Deepest zoom whose Morton codes fit in a {@code long}. */
+    public static final int MAX_ZOOM = 31;
+
+    public TileAddress {
+        if (zoom < 0 || zoom > MAX_ZOOM) throw new IllegalArgumentException("Zoom out of range: " + zoom);
+        long tiles = 1L << zoom;
+        if (x < 0 || x >= tiles || y < 0 || y >= tiles) {
+            throw new IllegalArgumentException("Tile out of range: " + zoom + "/" + x + "/" + y);
+        }
+    }
+
+    /** Tiles per axis at {@code zoom}. */
+    public static long tilesPerAxis(int zoom) {
+        return 1L << zoom;
+    }
+
+    /** Interleaved bits of x (even positions) and y (odd positions). */
+    public long morton() {
+        return spread(x) | (spread(y) << 1);
+    }
+
+    public static TileAddress fromMorton(int zoom, long morton) {
+        return new TileAddress(zoom, compact(morton), compact(morton >>> 1));
+    }
+
+    /**
+     * Position of this tile in the whole pyramid: all tiles of shallower zooms come first, then
+     * this zoom's tiles in Morton order. Unique across zooms, and ascending in the same order as
+     * {@link #compareTo}, so a sorted list of indices covers a region level by level.
+     */
+    public long pyramidIndex() {
+        return levelStart(zoom) + morton();
+    }
+
+    public static TileAddress fromPyramidIndex(long index) {
+        if (index < 0) throw new IllegalArgumentException("Invalid pyramid index: " + index);
+        int zoom = 0;
+        while (zoom < MAX_ZOOM && index >= levelStart(zoom + 1)) zoom++;
+        return fromMorton(zoom, index - levelStart(zoom));
+    }
+
+    /** Tiles in all zooms shallower than {@code zoom}: (4^zoom - 1) / 3. */
+    private static long levelStart(int zoom) {
+        return ((1L << (2 * zoom)) - 1) / 3;
+    }
+
+    /** Base-4 Morton code with one digit per zoom level; empty at zoom 0. */
+    public String quadKey() {
+        char[] digits = new char[zoom];
+        for (int i = zoom; i > 0; i--) {
+            int bit = i - 1;
+            digits[zoom - i] = (char) ('0' + (((x >>> bit) & 1) | (((y >>> bit) & 1) << 1)));
+        }
+        return new String(digits);
+    }
+
+    public static TileAddress fromQuadKey(String quadKey) {
+        int zoom = quadKey.length();
+        int x = 0;
+        int y = 0;
+        for (int i = 0; i < zoom; i++) {
+            int digit = quadKey.charAt(i) - '0';
+            if (digit < 0 || digit > 3) throw new IllegalArgumentException("Invalid quadkey: " + quadKey);
+            x = (x << 1) | (digit & 1);
+            y = (y << 1) | (digit >> 1);
+        }
+        return new TileAddress(zoom, x, y);
+    }
+
+    /** The tile one zoom out that contains this one, or null at zoom 0. */
+    public TileAddress parent() {
+        return zoom == 0 ? null : new TileAddress(zoom - 1, x >>> 1, y >>> 1);
+    }
+
+    /** The ancestor (or this tile) at a zoom no deeper than this one's. */
+    public TileAddress ancestor(int ancestorZoom) {
+        if (ancestorZoom > zoom || ancestorZoom < 0) throw new IllegalArgumentException("Not an ancestor zoom: " + ancestorZoom);
+        int shift = zoom - ancestorZoom;
+        return shift == 0 ? this : new TileAddress(ancestorZoom, x >>> shift, y >>> shift);
+    }
+
+    /** One of the four tiles one zoom in, numbered by quadkey digit: 0 NW, 1 NE, 2 SW, 3 SE. */
+    public TileAddress child(int quadrant) {
+        if (quadrant < 0 || quadrant > 3) throw new IllegalArgumentException("Invalid quadrant: " + quadrant);
+        return new TileAddress(zoom + 1, (x << 1) | (quadrant & 1), (y << 1) | (quadrant >> 1));
+    }
+
+    /** The four children in Morton order. */
+    public TileAddress[] children() {
+        return new TileAddress[]{child(0), child(1), child(2), child(3)};
+    }
+
+    /**
+     * The tile {@code dx} across and {@code dy} down. The map wraps east-west but not
+     * north-south, so this returns null past the top or bottom edge.
+     */
+    public TileAddress neighbour(int dx, int dy) {
+        long tiles = tilesPerAxis(zoom);
+        long ny = (long) y + dy;
+        if (ny < 0 || ny >= tiles) return null;
+        return new TileAddress(zoom, (int) Math.floorMod((long) x + dx, tiles), (int) ny);
+    }
+
+    /**
+     * World-space bounds {@code [minX, minY, maxX, maxY]} (Web Mercator, 0..1 on both axes).
+     */
+    public double[] worldBounds() {
+        double span = 1.0 / tilesPerAxis(zoom);
+        return new double[]{x * span, y * span, (x + 1) * span, (y + 1) * span};
+    }
+
+    @Override
+    public int compareTo(TileAddress other) {
+        if (zoom != other.zoom) return Integer.compare(zoom, other.zoom);
+        return Long.compareUnsigned(morton(), other.morton());
+    }
+
+    @Override
+    public String toString() {
+        return zoom + "/" + x + "/" + y;
+    }
+
+    /**
+     * Tiles at {@code zoom} within an inclusive tile rectangle, clamped to the map, in Morton
+     * order. The iteration walks down the quadtree and skips every subtree outside the
+     * rectangle, so its cost is proportional to the number of tiles returned.
+     */
+    public static Iterable<TileAddress> range(int zoom, long minX, long minY, long maxX, long maxY) {
+        long tiles = tilesPerAxis(zoom);
+        long x0 = Math.max(0, minX);
+        long y0 = Math.max(0, minY);
+        long x1 = Math.min(tiles - 1, maxX);
+        long y1 = Math.min(tiles - 1, maxY);
+        return () -> new RangeIterator(zoom, x0, y0, x1, y1);
+    }
+
+    /**
+     * Like {@link #range}, but with x wrapped around the antimeridian as the map is drawn, so a
+     * rectangle across it covers tiles at both ends of the row; y is still clamped. Each side
+     * of the antimeridian is visited in Morton order, and no tile more than once.
+     */
+    public static Iterable<TileAddress> wrappedRange(int zoom, long minX, long minY, long maxX, long maxY) {
+        long tiles = tilesPerAxis(zoom);
+        if (maxX < minX) return range(zoom, minX, minY, maxX, maxY);
+        if (maxX - minX + 1 >= tiles) return range(zoom, 0, minY, tiles - 1, maxY);
+        long x0 = Math.floorMod(minX, tiles);
+        long x1 = Math.floorMod(maxX, tiles);
+        if (x0 <= x1) return range(zoom, x0, minY, x1, maxY);
+        Iterable<TileAddress> east = range(zoom, x0, minY, tiles - 1, maxY);
+        Iterable<TileAddress> west = range(zoom, 0, minY, x1, maxY);
+        return () -> Stream.concat(StreamSupport.stream(east.spliterator(), false),
+                StreamSupport.stream(west.spliterator(), false)).iterator();
+    }
+
+    /**
+     * Tiles at {@code zoom} overlapping a world-space rectangle (Web Mercator, 0..1 on both
+     * axes), in Morton order.
+     */
+    public static Iterable<TileAddress> covering(int zoom, double minX, double minY, double maxX, double maxY) {
+        long tiles = tilesPerAxis(zoom);
+        return range(zoom, (long) Math.floor(minX * tiles), (long) Math.floor(minY * tiles),
+                (long) Math.floor(maxX * tiles), (long) Math.floor(maxY * tiles));
+    }
+
+    private static long spread(int v) {
+        long b = v & 0xFFFFFFFFL;
+        b = (b | (b << 16)) & 0x0000FFFF0000FFFFL;
+        b = (b | (b << 8)) & 0x00FF00FF00FF00FFL;
+        b = (b | (b << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        b = (b | (b << 2)) & 0x3333333333333333L;
+        b = (b | (b << 1)) & 0x5555555555555555L;
+        return b;
+    }
+
+    private static int compact(long m) {
+        long b = m & 0x5555555555555555L;
+        b = (b | (b >>> 1)) & 0x3333333333333333L;
+        b = (b | (b >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+        b = (b | (b >>> 4)) & 0x00FF00FF00FF00FFL;
+        b = (b | (b >>> 8)) & 0x0000FFFF0000FFFFL;
+        b = (b | (b >>> 16)) & 0x00000000FFFFFFFFL;
+        return (int) b;
+    }
+
+    /** Depth-first quadtree walk; the stack holds at most three siblings per level. */
+    private static final class RangeIterator implements Iterator<TileAddress> {
+        private final int zoom;
+        private final long x0, y0, x1, y1;
+        // Pending subtrees as (level, x, y), children pushed in reverse Morton order
+        private final int[] levels;
+        private final long[] xs;
+        private final long[] ys;
+        private int top;
+        private TileAddress next;
+
+        RangeIterator(int zoom, long x0, long y0, long x1, long y1) {
+            this.zoom = zoom;
+            this.x0 = x0;
+            this.y0 = y0;
+            this.x1 = x1;
+            this.y1 = y1;
+            int capacity = 3 * zoom + 1;
+            levels = new int[capacity];
+            xs = new long[capacity];
+            ys = new long[capacity];
+            if (x0 <= x1 && y0 <= y1) push(0, 0, 0);
+            advance();
+        }
+
+        private void push(int level, long x, long y) {
+            levels[top] = level;
+            xs[top] = x;
+            ys[top] = y;
+            top++;
+        }
+
+        private void advance() {
+            next = null;
+            while (top > 0) {
+                top--;
+                int level = levels[top];
+                long x = xs[top];
+                long y = ys[top];
+                int shift = zoom - level;
+                // Subtree covers tiles [x << shift, ((x + 1) << shift) - 1] on each axis
+                if (((x + 1) << shift) - 1 < x0 || x << shift > x1
+                        || ((y + 1) << shift) - 1 < y0 || y << shift > y1) continue;
+                if (level == zoom) {
+                    next = new TileAddress(zoom, (int) x, (int) y);
+                    return;
+                }
+                for (int q = 3; q >= 0; q--) {
+                    push(level + 1, (x << 1) | (q & 1), (y << 1) | (q >> 1));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public TileAddress next() {
+            if (next == null) throw new NoSuchElementException();
+            TileAddress result = next;
+            advance();
+            return result;
+        }
+    }
+}
@@ -1,9 +1,15 @@
 package com.johnreah.mapster.util;
 
+import java.util.stream.IntStream;
+
 public final class TileMath {
 
     public static final int TILE_SIZE = 256;
 
+    // Batch calls at least this long are split into BATCH_CHUNK-sized pieces run in parallel
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+    static final int BATCH_CHUNK = 1 << 13;
+
     private TileMath() {}
 
     public static double lonToTileX(double lon, int zoom) {
@@ -50,4 +56,92 @@ public final class TileMath {
         double tileY = centerY + (screenY - canvasHeight / 2.0) / TILE_SIZE;
         return new double[]{tileYToLat(tileY, zoom), tileXToLon(tileX, zoom)};
     }
+
+    // --- Batch projection ---
+    //
+    // Array-in/array-out forms of the conversions above, laid out like System.arraycopy. The
+    // linear conversions are plain counted loops that the JIT vectorises; latitude uses
+    // y = 1/2 - atanh(sin lat) / 2pi, which needs one sin and one log1p per point instead of
+    // tan, cos and log. For latitudes inside the map, |lat| <= 85.0511, results agree with the
+    // scalar methods to within 2e-14 of the world's width, i.e. under 1e-5 pixel at zoom 20;
+    // unprojection and the longitude conversions give the same results as the scalar methods.
+    // Calls of PARALLEL_THRESHOLD points or more are split into chunks run on the common
+    // fork-join pool; each chunk is written by one thread, so output arrays need no locking.
+
+    /** Batch form of {@link #lonToTileX(double, int)}. */
+    public static void lonToTileX(double[] lons, int srcPos, double[] xs, int dstPos, int count, int zoom) {
+        double scale = maxTile(zoom) / 360.0;
+        forChunks(count, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                xs[dstPos + i] = (lons[srcPos + i] + 180.0) * scale;
+            }
+        });
+    }
+
+    /** Batch form of {@link #latToTileY(double, int)}. */
+    public static void latToTileY(double[] lats, int srcPos, double[] ys, int dstPos, int count, int zoom) {
+        double max = maxTile(zoom);
+        double scale = max / (4.0 * Math.PI);
+        double half = max / 2.0;
+        forChunks(count, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                double s = Math.sin(Math.toRadians(lats[srcPos + i]));
+                // atanh(s) = log1p(2s / (1 - s)) / 2
+                ys[dstPos + i] = half - Math.log1p(2.0 * s / (1.0 - s)) * scale;
+            }
+        });
+    }
+
+    /** Batch form of {@link #tileXToLon(double, int)}. */
+    public static void tileXToLon(double[] xs, int srcPos, double[] lons, int dstPos, int count, int zoom) {
+        double scale = 360.0 / maxTile(zoom);
+        forChunks(count, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                lons[dstPos + i] = xs[srcPos + i] * scale - 180.0;
+            }
+        });
+    }
+
+    /** Batch form of {@link #tileYToLat(double, int)}. */
+    public static void tileYToLat(double[] ys, int srcPos, double[] lats, int dstPos, int count, int zoom) {
+        double scale = 2.0 * Math.PI / maxTile(zoom);
+        forChunks(count, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                lats[dstPos + i] = Math.toDegrees(Math.atan(Math.sinh(Math.PI - ys[srcPos + i] * scale)));
+            }
+        });
+    }
+
+    /**
+     * Batch form of {@link #latLonToScreen(double, double, int, double, double, double, double)}
+     * writing separate x and y arrays instead of allocating a pair per point.
+     */
+    public static void latLonToScreen(double[] lats, double[] lons, double[] screenXs, double[] screenYs,
+            int count, int zoom, double centerX, double centerY, double canvasWidth, double canvasHeight) {
+        double offsetX = canvasWidth / 2.0 - centerX * TILE_SIZE;
+        double offsetY = canvasHeight / 2.0 - centerY * TILE_SIZE;
+        lonToTileX(lons, 0, screenXs, 0, count, zoom);
+        latToTileY(lats, 0, screenYs, 0, count, zoom);
+        forChunks(count, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                screenXs[i] = offsetX + screenXs[i] * TILE_SIZE;
+                screenYs[i] = offsetY + screenYs[i] * TILE_SIZE;
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface RangeKernel {
+        void run(int from, int to);
+    }
+
+    private static void forChunks(int count, RangeKernel kernel) {
+        if (count < PARALLEL_THRESHOLD) {
+            kernel.run(0, count);
+            return;
+        }
+        int chunks = (count + BATCH_CHUNK - 1) / BATCH_CHUNK;
+        IntStream.range(0, chunks).parallel()
+                .forEach(c -> kernel.run(c * BATCH_CHUNK, Math.min(count, (c + 1) * BATCH_CHUNK)));
+    }
 }
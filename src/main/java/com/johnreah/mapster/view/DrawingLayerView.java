@@ -1,6 +1,11 @@
 package com.johnreah.mapster.view;
 
+import com.johnreah.mapster.metrics.LayerRenderEvent;
+import com.johnreah.mapster.util.ChunkedLine;
+import com.johnreah.mapster.util.Projection;
 import com.johnreah.mapster.util.TileMath;
+import com.johnreah.mapster.view.maptiles.DrawingTileSource;
+import com.johnreah.mapster.view.maptiles.TileCache;
 import com.johnreah.mapster.viewmodel.CoordinateConverter;
 import com.johnreah.mapster.viewmodel.DrawingLayerViewModel;
 import com.johnreah.mapster.viewmodel.DrawingTool;
@@ -8,6 +13,7 @@ import com.johnreah.mapster.viewmodel.MapViewport;
 
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
 import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
 
@@ -16,22 +22,46 @@ import java.util.List;
 /**
  * Renders a single drawing layer on a transparent canvas. Mouse events are not
  * consumed here — all input is routed via {@link InputOverlayPane}.
+ * <p>
+ * Drawing is split across two stacked canvases. The static canvas holds completed lines and is
+ * fully repainted only when the viewport changes; edits to completed lines repaint just the
+ * screen region they touch. The overlay canvas holds everything that changes per mouse event —
+ * the line in progress, its preview segment, and a dragged vertex with its two segments, which
+ * are left out of the static canvas for the duration of the drag.
+ * <p>
+ * When the layer is rasterised, the static canvas draws completed lines from a {@link TileCache}
+ * backed by a {@link DrawingTileSource} instead, and edits invalidate just the tiles they touch.
  */
 public class DrawingLayerView extends Pane {
 
-    private final Canvas canvas = new Canvas();
+    private static final double LINE_WIDTH = 2.0;
+    private static final double POINT_RADIUS = 4.0;
+    // Stroke and vertex marks extend this far beyond a point's screen position
+    private static final double DIRTY_PADDING = POINT_RADIUS + 2.0;
+
+    private final Canvas staticCanvas = new Canvas();
+    private final Canvas overlayCanvas = new Canvas();
     private final DrawingLayerViewModel layerViewModel;
     private final MapViewport viewport;
+    private DrawingTileSource rasterSource;
+    private TileCache rasterCache;
+    private long renderCount;
+
+    // Pending static repaint since the last render: a screen rectangle, or everything
+    private double[] staticDirtyRegion;
+    private boolean staticDirtyAll;
 
     public DrawingLayerView(DrawingLayerViewModel layerViewModel, MapViewport viewport) {
         this.layerViewModel = layerViewModel;
         this.viewport = viewport;
 
-        canvas.widthProperty().bind(widthProperty());
-        canvas.heightProperty().bind(heightProperty());
-        canvas.widthProperty().addListener(e -> render());
-        canvas.heightProperty().addListener(e -> render());
-        getChildren().add(canvas);
+        for (Canvas canvas : List.of(staticCanvas, overlayCanvas)) {
+            canvas.widthProperty().bind(widthProperty());
+            canvas.heightProperty().bind(heightProperty());
+            canvas.widthProperty().addListener(e -> render());
+            canvas.heightProperty().addListener(e -> render());
+        }
+        getChildren().addAll(staticCanvas, overlayCanvas);
 
         opacityProperty().bind(layerViewModel.opacityProperty());
         visibleProperty().bind(layerViewModel.visibleProperty());
@@ -40,31 +70,171 @@ public class DrawingLayerView extends Pane {
         setMouseTransparent(true);
 
         // Render whenever drawing state changes
-        layerViewModel.getDrawingTool().setOnChanged(this::render);
+        layerViewModel.getDrawingTool().setOnChanged(this::renderEdits);
+        layerViewModel.getDrawingTool().addLineEditListener(new DrawingTool.LineEditListener() {
+            @Override
+            public void lineEdited(int lineIndex, int fromPoint, int toPoint) {
+                onLineEdited(lineIndex, fromPoint, toPoint);
+            }
+
+            @Override
+            public void linesReplaced() {
+                onLinesReplaced();
+            }
+        });
+
+        layerViewModel.rasterisedProperty().addListener((obs, old, val) -> setRasterised(val));
+        setRasterised(layerViewModel.isRasterised());
 
         viewport.centerXProperty().addListener((obs, old, val) -> render());
         viewport.centerYProperty().addListener((obs, old, val) -> render());
         viewport.zoomProperty().addListener((obs, old, val) -> render());
+        viewport.fastProjectionProperty().addListener((obs, old, val) -> render());
     }
 
+    /** Repaints both canvases in full. */
     public void render() {
-        double w = canvas.getWidth();
-        double h = canvas.getHeight();
+        staticDirtyRegion = null;
+        staticDirtyAll = false;
+        renderStatic(null);
+        renderOverlay();
+    }
+
+    /** Repaints whatever the edits since the last render have touched. */
+    private void renderEdits() {
+        if (staticDirtyAll) {
+            renderStatic(null);
+        } else if (staticDirtyRegion != null) {
+            renderStatic(staticDirtyRegion);
+        }
+        staticDirtyRegion = null;
+        staticDirtyAll = false;
+        renderOverlay();
+    }
+
+    /** Repaints of either canvas since the layer was created; read by the performance HUD and tests. */
+    long getRenderCount() {
+        return renderCount;
+    }
+
+    /**
+     * Paints completed lines, clipped to {@code region} ({@code [minX, minY, maxX, maxY]} in
+     * screen pixels) or the whole canvas if null. A dragged vertex and its segments are skipped.
+     * Each pass is recorded as a {@link LayerRenderEvent}.
+     */
+    private void renderStatic(double[] region) {
+        double w = staticCanvas.getWidth();
+        double h = staticCanvas.getHeight();
         if (w <= 0 || h <= 0) return;
-        GraphicsContext gc = canvas.getGraphicsContext2D();
-        gc.clearRect(0, 0, w, h);
+        renderCount++;
+        GraphicsContext gc = staticCanvas.getGraphicsContext2D();
+        LayerRenderEvent event = new LayerRenderEvent(layerViewModel.getId(), "drawing");
+        event.begin();
+
+        if (rasterCache != null) {
+            gc.clearRect(0, 0, w, h);
+            renderRasterTiles(gc, w, h, event);
+            event.kind = "drawing-raster";
+            event.commit();
+            return;
+        }
+
+        double x0 = 0, y0 = 0, x1 = w, y1 = h;
+        if (region != null) {
+            x0 = Math.max(0, region[0]);
+            y0 = Math.max(0, region[1]);
+            x1 = Math.min(w, region[2]);
+            y1 = Math.min(h, region[3]);
+            if (x0 >= x1 || y0 >= y1) return;
+            event.partial = true;
+            gc.save();
+            gc.beginPath();
+            gc.rect(x0, y0, x1 - x0, y1 - y0);
+            gc.clip();
+        }
+        gc.clearRect(x0, y0, x1 - x0, y1 - y0);
+
         DrawingTool tool = layerViewModel.getDrawingTool();
         CoordinateConverter converter = createCoordinateConverter();
+        int skipLine = tool.isDraggingPoint() ? tool.getSelectedLineIndex() : -1;
+        int skipPoint = tool.getSelectedPointIndex();
+        // Anything whose marks could reach the clip rectangle
+        double cx0 = x0 - DIRTY_PADDING, cy0 = y0 - DIRTY_PADDING;
+        double cx1 = x1 + DIRTY_PADDING, cy1 = y1 + DIRTY_PADDING;
+        List<List<double[]>> lines = tool.getCompletedLines();
 
-        // Draw completed lines and their points
-        renderLines(gc, tool.getCompletedLines(), Color.BLUE, 2.0, converter);
+        gc.setStroke(Color.BLUE);
+        gc.setLineWidth(LINE_WIDTH);
         gc.setFill(Color.BLUE);
-        for (List<double[]> line : tool.getCompletedLines()) {
-            for (double[] point : line) {
-                double[] screenPos = converter.latLonToScreen(point[0], point[1]);
-                gc.fillOval(screenPos[0] - 4, screenPos[1] - 4, 8, 8);
+        for (int lineIdx = 0; lineIdx < lines.size(); lineIdx++) {
+            List<double[]> line = lines.get(lineIdx);
+            double[] prev = null;
+            for (int i = 0; i < line.size(); i++) {
+                int skipTo = skipOffscreenChunk(line, i, converter, cx0, cy0, cx1, cy1);
+                if (skipTo != i) {
+                    i = skipTo - 1;
+                    prev = null;
+                    continue;
+                }
+                double[] next = converter.latLonToScreen(line.get(i)[0], line.get(i)[1]);
+                boolean skip = prev == null || lineIdx == skipLine && (i == skipPoint || i - 1 == skipPoint);
+                if (!skip && Math.max(prev[0], next[0]) >= cx0 && Math.min(prev[0], next[0]) <= cx1
+                        && Math.max(prev[1], next[1]) >= cy0 && Math.min(prev[1], next[1]) <= cy1) {
+                    gc.strokeLine(prev[0], prev[1], next[0], next[1]);
+                }
+                prev = next;
             }
         }
+        for (int lineIdx = 0; lineIdx < lines.size(); lineIdx++) {
+            List<double[]> line = lines.get(lineIdx);
+            for (int i = 0; i < line.size(); i++) {
+                int skipTo = skipOffscreenChunk(line, i, converter, cx0, cy0, cx1, cy1);
+                if (skipTo != i) {
+                    i = skipTo - 1;
+                    continue;
+                }
+                if (lineIdx == skipLine && i == skipPoint) continue;
+                double[] screenPos = converter.latLonToScreen(line.get(i)[0], line.get(i)[1]);
+                if (screenPos[0] < cx0 || screenPos[0] > cx1 || screenPos[1] < cy0 || screenPos[1] > cy1) continue;
+                gc.fillOval(screenPos[0] - POINT_RADIUS, screenPos[1] - POINT_RADIUS,
+                        POINT_RADIUS * 2, POINT_RADIUS * 2);
+                event.vertices++;
+            }
+        }
+
+        if (region != null) gc.restore();
+        event.commit();
+    }
+
+    /**
+     * If point {@code i} starts an unloaded chunk of a lazily loaded line lying wholly outside
+     * the given screen rectangle, returns the index just past the chunk so that it is never
+     * decoded; otherwise returns {@code i}.
+     */
+    private static int skipOffscreenChunk(List<double[]> line, int i, CoordinateConverter converter,
+                                          double x0, double y0, double x1, double y1) {
+        if (!(line instanceof ChunkedLine chunked) || i % chunked.chunkSize() != 0) return i;
+        int chunk = i / chunked.chunkSize();
+        if (chunk >= chunked.chunkCount() || !chunked.hasStableBounds(chunk)) return i;
+        double[] bounds = chunked.chunkBounds(chunk);
+        double[] topLeft = converter.latLonToScreen(bounds[2], bounds[1]);
+        double[] bottomRight = converter.latLonToScreen(bounds[0], bounds[3]);
+        boolean visible = bottomRight[0] >= x0 && topLeft[0] <= x1 && bottomRight[1] >= y0 && topLeft[1] <= y1;
+        return visible ? i : Math.min(line.size(), i + chunked.chunkSize());
+    }
+
+    /** Paints the line in progress, its preview segment and any dragged vertex. */
+    private void renderOverlay() {
+        double w = overlayCanvas.getWidth();
+        double h = overlayCanvas.getHeight();
+        if (w <= 0 || h <= 0) return;
+        renderCount++;
+        GraphicsContext gc = overlayCanvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, w, h);
+        DrawingTool tool = layerViewModel.getDrawingTool();
+        CoordinateConverter converter = createCoordinateConverter();
+
+        renderDraggedPoint(gc, tool, converter);
 
         // Draw current line being drawn
         List<double[]> currentLine = tool.getCurrentLinePoints();
@@ -101,6 +271,125 @@ public class DrawingLayerView extends Pane {
         }
     }
 
+    private void renderRasterTiles(GraphicsContext gc, double w, double h, LayerRenderEvent event) {
+        int tileSize = TileMath.TILE_SIZE;
+        int zoom = viewport.getZoom();
+        int max = (int) TileMath.maxTile(zoom);
+        double offsetX = w / 2.0 - viewport.getCenterX() * tileSize;
+        double offsetY = h / 2.0 - viewport.getCenterY() * tileSize;
+
+        // Columns wrap across the antimeridian, as the map tiles do
+        int tileLeft   = (int) Math.floor(-offsetX / tileSize);
+        int tileRight  = (int) Math.floor((-offsetX + w) / tileSize);
+        int tileTop    = Math.max(0, (int) Math.floor(-offsetY / tileSize));
+        int tileBottom = Math.min(max - 1, (int) Math.floor((-offsetY + h) / tileSize));
+
+        for (int ty = tileTop; ty <= tileBottom; ty++) {
+            for (int tx = tileLeft; tx <= tileRight; tx++) {
+                Image tile = rasterCache.getTile(zoom, Math.floorMod(tx, max), ty);
+                event.tiles++;
+                if (tile != null) {
+                    gc.drawImage(tile, offsetX + tx * tileSize, offsetY + ty * tileSize, tileSize, tileSize);
+                } else {
+                    event.missingTiles++;
+                }
+            }
+        }
+    }
+
+    /** Draws the vertex being dragged and its two segments, which the static canvas leaves out. */
+    private void renderDraggedPoint(GraphicsContext gc, DrawingTool tool, CoordinateConverter converter) {
+        if (!tool.isDraggingPoint()) return;
+        List<double[]> line = tool.getCompletedLines().get(tool.getSelectedLineIndex());
+        int index = tool.getSelectedPointIndex();
+        int from = Math.max(0, index - 1);
+        int to = Math.min(line.size() - 1, index + 1);
+        renderLines(gc, List.of(line.subList(from, to + 1)), Color.BLUE, LINE_WIDTH, converter);
+        double[] point = line.get(index);
+        double[] screenPos = converter.latLonToScreen(point[0], point[1]);
+        gc.setFill(Color.BLUE);
+        gc.fillOval(screenPos[0] - POINT_RADIUS, screenPos[1] - POINT_RADIUS, POINT_RADIUS * 2, POINT_RADIUS * 2);
+    }
+
+    private void setRasterised(boolean rasterised) {
+        if (rasterised && rasterCache == null) {
+            rasterSource = new DrawingTileSource(layerViewModel.getId());
+            rasterSource.reset(layerViewModel.getDrawingTool().getCompletedLines());
+            rasterCache = new TileCache(rasterSource, () -> renderStatic(null));
+        } else if (!rasterised && rasterCache != null) {
+            rasterCache.shutdown();
+            rasterCache = null;
+            rasterSource = null;
+        }
+        render();
+    }
+
+    private void onLineEdited(int lineIndex, int fromPoint, int toPoint) {
+        DrawingTool tool = layerViewModel.getDrawingTool();
+        // A moving vertex lives on the overlay until the drag ends
+        if (tool.isDraggingPoint() && lineIndex == tool.getSelectedLineIndex()
+                && fromPoint == toPoint && fromPoint == tool.getSelectedPointIndex()) {
+            return;
+        }
+        if (rasterSource != null) {
+            updateRasterLine(lineIndex, fromPoint, toPoint);
+            return;
+        }
+        markStaticDirty(lineIndex, fromPoint - 1, toPoint + 1);
+    }
+
+    private void updateRasterLine(int lineIndex, int fromPoint, int toPoint) {
+        List<double[]> line = layerViewModel.getDrawingTool().getCompletedLines().get(lineIndex);
+        invalidateRaster(rasterSource.updateLine(lineIndex, line, fromPoint, toPoint));
+    }
+
+    /** Re-renders the tiles covering world-space bounds {@code dirty}, if not null. */
+    private void invalidateRaster(double[] dirty) {
+        if (dirty != null) {
+            rasterCache.invalidateRegion(dirty[0], dirty[1], dirty[2], dirty[3], DrawingTileSource.MARGIN_PIXELS);
+        }
+        // Redrawing the visible tiles is cheap and picks up the stale ones for re-rendering
+        staticDirtyAll = true;
+    }
+
+    private void onLinesReplaced() {
+        if (rasterSource != null) {
+            rasterSource.lift(-1, -1);
+            rasterSource.reset(layerViewModel.getDrawingTool().getCompletedLines());
+            rasterCache.invalidateRegion(0, 0, 1, 1, 0); // the whole world
+        }
+        staticDirtyAll = true;
+    }
+
+    /** Adds the screen area around points {@code from..to} (clamped) of a completed line to the static repaint. */
+    private void markStaticDirty(int lineIndex, int from, int to) {
+        List<double[]> line = layerViewModel.getDrawingTool().getCompletedLines().get(lineIndex);
+        CoordinateConverter converter = createCoordinateConverter();
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int i = Math.max(0, from); i <= Math.min(line.size() - 1, to); i++) {
+            double[] p = converter.latLonToScreen(line.get(i)[0], line.get(i)[1]);
+            minX = Math.min(minX, p[0]);
+            minY = Math.min(minY, p[1]);
+            maxX = Math.max(maxX, p[0]);
+            maxY = Math.max(maxY, p[1]);
+        }
+        if (minX > maxX) return;
+        minX -= DIRTY_PADDING;
+        minY -= DIRTY_PADDING;
+        maxX += DIRTY_PADDING;
+        maxY += DIRTY_PADDING;
+        double[] region = staticDirtyRegion;
+        staticDirtyRegion = region == null
+                ? new double[]{minX, minY, maxX, maxY}
+                : new double[]{Math.min(region[0], minX), Math.min(region[1], minY),
+                               Math.max(region[2], maxX), Math.max(region[3], maxY)};
+    }
+
+    public void shutdown() {
+        if (rasterCache != null) rasterCache.shutdown();
+    }
+
     // --- Interaction methods called by InputOverlayPane ---
 
     public boolean selectPointNearMouse(double x, double y) {
@@ -108,7 +397,18 @@ public class DrawingLayerView extends Pane {
     }
 
     public void startDraggingPoint() {
-        layerViewModel.getDrawingTool().startDraggingPoint();
+        DrawingTool tool = layerViewModel.getDrawingTool();
+        tool.startDraggingPoint();
+        if (tool.isDraggingPoint()) {
+            // Lift the vertex and its segments off the static canvas onto the overlay
+            int point = tool.getSelectedPointIndex();
+            if (rasterSource != null) {
+                invalidateRaster(rasterSource.lift(tool.getSelectedLineIndex(), point));
+            } else {
+                markStaticDirty(tool.getSelectedLineIndex(), point - 1, point + 1);
+            }
+            renderEdits();
+        }
     }
 
     public void updateDraggedPoint(double x, double y) {
@@ -116,7 +416,18 @@ public class DrawingLayerView extends Pane {
     }
 
     public void stopDraggingPoint() {
-        layerViewModel.getDrawingTool().stopDraggingPoint();
+        DrawingTool tool = layerViewModel.getDrawingTool();
+        if (tool.isDraggingPoint()) {
+            // Put the vertex back at its final position; the repaint runs on the change notification
+            int point = tool.getSelectedPointIndex();
+            if (rasterSource != null) {
+                updateRasterLine(tool.getSelectedLineIndex(), point, point);
+                invalidateRaster(rasterSource.lift(-1, -1));
+            } else {
+                markStaticDirty(tool.getSelectedLineIndex(), point - 1, point + 1);
+            }
+        }
+        tool.stopDraggingPoint();
     }
 
     public boolean isDraggingPoint() {
@@ -144,20 +455,21 @@ public class DrawingLayerView extends Pane {
     }
 
     private CoordinateConverter createCoordinateConverter() {
-        double w = canvas.getWidth();
-        double h = canvas.getHeight();
+        double w = staticCanvas.getWidth();
+        double h = staticCanvas.getHeight();
         int zoom = viewport.getZoom();
         double cx = viewport.getCenterX();
         double cy = viewport.getCenterY();
+        Projection projection = viewport.getProjection();
         return new CoordinateConverter() {
             @Override
             public double[] latLonToScreen(double lat, double lon) {
-                return TileMath.latLonToScreen(lat, lon, zoom, cx, cy, w, h);
+                return projection.latLonToScreen(lat, lon, zoom, cx, cy, w, h);
             }
 
             @Override
             public double[] screenToLatLon(double screenX, double screenY) {
-                return TileMath.screenToLatLon(screenX, screenY, zoom, cx, cy, w, h);
+                return projection.screenToLatLon(screenX, screenY, zoom, cx, cy, w, h);
             }
         };
     }
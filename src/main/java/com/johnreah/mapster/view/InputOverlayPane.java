@@ -143,7 +143,7 @@ public class InputOverlayPane extends Pane {
             if (w <= 0 || h <= 0) return;
 
             int currentZoom = viewport.getZoom();
-            double[] latLon = TileMath.screenToLatLon(
+            double[] latLon = viewport.getProjection().screenToLatLon(
                 mouseX, mouseY, currentZoom,
                 viewport.getCenterX(), viewport.getCenterY(), w, h
             );
@@ -1,10 +1,31 @@
 package com.johnreah.mapster.view;
 
 import com.johnreah.mapster.MapSession;
+import com.johnreah.mapster.io.ImportProgress;
+import com.johnreah.mapster.io.TrackBatch;
+import com.johnreah.mapster.io.TrackImporter;
+import com.johnreah.mapster.server.TileServer;
+import com.johnreah.mapster.util.HeatmapGrid;
+import com.johnreah.mapster.util.LocalTileSource;
+import com.johnreah.mapster.util.TileMath;
+import com.johnreah.mapster.util.TileSource;
+import com.johnreah.mapster.view.maptiles.ArchiveTileSource;
+import com.johnreah.mapster.view.maptiles.HeatmapTileSource;
+import com.johnreah.mapster.view.maptiles.ProxyTileSource;
+import com.johnreah.mapster.view.maptiles.TileArchive;
+import com.johnreah.mapster.view.maptiles.TileFetcher;
+import com.johnreah.mapster.viewmodel.DrawingLayerViewModel;
+import com.johnreah.mapster.viewmodel.HeatmapLayerViewModel;
 import com.johnreah.mapster.viewmodel.LayerStack;
 import com.johnreah.mapster.viewmodel.LayerViewModel;
+import com.johnreah.mapster.viewmodel.MapState;
+import com.johnreah.mapster.viewmodel.MapStateStore;
 import com.johnreah.mapster.viewmodel.MapViewport;
+import com.johnreah.mapster.viewmodel.PointLayerViewModel;
+import com.johnreah.mapster.viewmodel.TileLayerViewModel;
+import com.johnreah.mapster.viewmodel.ViewportSession;
 
+import javafx.application.Platform;
 import javafx.collections.ListChangeListener;
 import javafx.geometry.Insets;
 import javafx.geometry.Orientation;
@@ -15,14 +36,29 @@ import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public class MainWindow {
 
+    private static final int DEFAULT_WIDTH = 1024;
+    private static final int DEFAULT_HEIGHT = 768;
+
+    private MapStateStore stateStore;
+    private final CompletableFuture<Long> mapComplete = new CompletableFuture<>();
     private MapView mapView;
     private MapViewport viewport;
     private LayerStack layerStack;
@@ -30,13 +66,32 @@ public class MainWindow {
     private Label centerLatLabel;
     private Label centerLonLabel;
     private Label zoomLabel;
-
-    public void show(Stage stage, MapSession session) {
+    private Label statusLabel;
+
+    private final TrackImporter trackImporter = new TrackImporter(Platform::runLater);
+    private List<TileSource> availableSources;
+    private TileLayerViewModel baseTileLayer;
+    private TileServer tileServer;
+    private ViewportSession.Recorder sessionRecorder;
+
+    /**
+     * Shows the session's map, sized and preloaded for the view {@code stateStore} restored;
+     * the view is saved there again on {@link #shutdown}.
+     */
+    public void show(Stage stage, MapSession session, MapStateStore stateStore) {
+        this.stateStore = stateStore;
         viewport = session.viewport;
         layerStack = session.layerStack;
+        availableSources = session.availableSources;
+        baseTileLayer = session.baseTileLayer;
 
         mapView = new MapView(viewport, layerStack);
         mapView.setMinWidth(200);
+        // The restored view's tiles are read from disk while the window is built and shown;
+        // each layer redraws on the FX thread once its reads are done
+        MapState restored = stateStore.restored();
+        CompletableFuture<Integer> preload = restored == null ? CompletableFuture.completedFuture(0)
+                : mapView.preload(restored.mapWidth(), restored.mapHeight());
 
         MenuBar menuBar = buildMenuBar(stage);
         ToolBar toolBar = buildToolBar();
@@ -53,9 +108,18 @@ public class MainWindow {
         root.setTop(topArea);
         root.setCenter(splitPane);
 
-        Scene scene = new Scene(root, 1024, 768);
+        Scene scene = restored == null ? new Scene(root, DEFAULT_WIDTH, DEFAULT_HEIGHT)
+                : new Scene(root, restored.windowWidth(), restored.windowHeight());
         stage.setTitle("Mapster");
         stage.setScene(scene);
+        // Time to the first frame with every visible tile drawn, from JVM start
+        mapView.whenFrameComplete(() -> {
+            long millis = ManagementFactory.getRuntimeMXBean().getUptime();
+            mapComplete.complete(millis);
+            preload.whenCompleteAsync((tiles, error) -> statusLabel.setText(
+                    String.format("Map complete %,d ms after launch%s", millis,
+                            error == null ? " (" + tiles + " tiles read from disk cache)" : "")), Platform::runLater);
+        });
         stage.show();
 
         viewport.centerXProperty().addListener(obs -> updateState());
@@ -64,7 +128,45 @@ public class MainWindow {
         updateState();
     }
 
+    /**
+     * Completes on the FX thread when the map is first drawn with every visible tile, with
+     * the time since JVM start in milliseconds.
+     */
+    public CompletableFuture<Long> mapComplete() {
+        return mapComplete;
+    }
+
+    /** Replays a session one call a frame, handing its summary to {@code onFinished}. */
+    public void play(ViewportSession session, Consumer<String> onFinished) {
+        new SessionPlayer(session, viewport, true, onFinished).start();
+    }
+
     public void shutdown() {
+        if (mapView != null && mapView.getScene() != null) {
+            Scene scene = mapView.getScene();
+            try {
+                stateStore.save(MapState.capture(viewport, layerStack, (int) scene.getWidth(),
+                        (int) scene.getHeight(), (int) mapView.getWidth(), (int) mapView.getHeight()));
+            } catch (IOException e) {
+                System.err.println("Failed to save state: " + e.getMessage());
+            }
+        }
+        trackImporter.shutdown();
+        if (tileServer != null) {
+            tileServer.close();
+        }
+        for (LayerViewModel layer : layerStack.getLayers()) {
+            if (layer instanceof DrawingLayerViewModel drawingLayer) {
+                try {
+                    drawingLayer.saveDrawing();
+                    drawingLayer.closeDrawing();
+                } catch (IOException e) {
+                    System.err.println("Failed to save drawing: " + e.getMessage());
+                }
+            } else if (layer instanceof HeatmapLayerViewModel heatmap) {
+                heatmap.shutdown();
+            }
+        }
         if (mapView != null) {
             mapView.shutdown();
         }
@@ -85,11 +187,16 @@ public class MainWindow {
         centerLonLabel = new Label("Longitude: -");
         zoomLabel = new Label("Zoom: -");
 
+        statusLabel = new Label();
+        statusLabel.setWrapText(true);
+        statusLabel.managedProperty().bind(statusLabel.textProperty().isNotEmpty());
+
         VBox layerListPanel = buildLayerListPanel();
 
         panel.getChildren().addAll(
             mapInfoTitle, new Separator(),
             centerLatLabel, centerLonLabel, zoomLabel,
+            statusLabel,
             new Separator(),
             layerListPanel
         );
@@ -169,14 +276,383 @@ public class MainWindow {
     }
 
     private MenuBar buildMenuBar(Stage stage) {
+        MenuItem openItem = new MenuItem("_Open Drawing...");
+        openItem.setAccelerator(KeyCombination.keyCombination("Shortcut+O"));
+        openItem.setOnAction(e -> openDrawing(stage));
+
+        MenuItem saveItem = new MenuItem("_Save Drawing");
+        saveItem.setAccelerator(KeyCombination.keyCombination("Shortcut+S"));
+        saveItem.setOnAction(e -> saveDrawing(stage, false));
+
+        MenuItem saveAsItem = new MenuItem("Save Drawing _As...");
+        saveAsItem.setOnAction(e -> saveDrawing(stage, true));
+
+        MenuItem importItem = new MenuItem("_Import Track...");
+        importItem.setOnAction(e -> importTrack(stage));
+
+        MenuItem markersItem = new MenuItem("Import _Markers...");
+        markersItem.setOnAction(e -> importMarkers(stage));
+
+        MenuItem heatmapItem = new MenuItem("Import _Heatmap...");
+        heatmapItem.setOnAction(e -> importHeatmap(stage));
+
+        MenuItem exportTilesItem = new MenuItem("Export _Visible Tiles...");
+        exportTilesItem.setOnAction(e -> exportVisibleTiles(stage));
+
+        MenuItem openArchiveItem = new MenuItem("Open Tile _Archive...");
+        openArchiveItem.setOnAction(e -> openTileArchive(stage));
+
+        CheckMenuItem shareItem = new CheckMenuItem("Share Tile _Cache on Network");
+        shareItem.setOnAction(e -> shareTileCache(shareItem));
+
         MenuItem exitItem = new MenuItem("E_xit");
         exitItem.setOnAction(e -> stage.close());
 
         Menu fileMenu = new Menu("_File");
-        fileMenu.getItems().add(exitItem);
+        fileMenu.getItems().addAll(openItem, saveItem, saveAsItem, new SeparatorMenuItem(),
+                importItem, markersItem, heatmapItem, new SeparatorMenuItem(), exportTilesItem, openArchiveItem,
+                shareItem,
+                new SeparatorMenuItem(), exitItem);
+
+        // Follows whichever drawing layer is active
+        CheckMenuItem rasteriseItem = new CheckMenuItem("_Rasterise Drawing Layer");
+        if (layerStack.getActiveDrawingLayer() instanceof DrawingLayerViewModel active) {
+            rasteriseItem.selectedProperty().bindBidirectional(active.rasterisedProperty());
+        }
+        layerStack.activeDrawingLayerProperty().addListener((obs, old, val) -> {
+            if (old instanceof DrawingLayerViewModel d) {
+                rasteriseItem.selectedProperty().unbindBidirectional(d.rasterisedProperty());
+            }
+            if (val instanceof DrawingLayerViewModel d) {
+                rasteriseItem.selectedProperty().bindBidirectional(d.rasterisedProperty());
+            }
+        });
+
+        CheckMenuItem fastProjectionItem = new CheckMenuItem("_Fast Projection");
+        fastProjectionItem.selectedProperty().bindBidirectional(viewport.fastProjectionProperty());
+
+        CheckMenuItem performanceItem = new CheckMenuItem("_Performance Overlay");
+        performanceItem.setAccelerator(KeyCombination.keyCombination("F3"));
+        performanceItem.selectedProperty().bindBidirectional(mapView.performanceHudVisibleProperty());
+
+        CheckMenuItem recordItem = new CheckMenuItem("_Record Viewport Session");
+        recordItem.setOnAction(e -> recordSession(stage, recordItem));
+
+        MenuItem replayItem = new MenuItem("Re_play Viewport Session...");
+        replayItem.setOnAction(e -> replaySession(stage, false));
+
+        MenuItem replayFastItem = new MenuItem("Replay Viewport Session at Full _Speed...");
+        replayFastItem.setOnAction(e -> replaySession(stage, true));
+
+        Menu viewMenu = new Menu("_View");
+        viewMenu.getItems().addAll(rasteriseItem, fastProjectionItem, new SeparatorMenuItem(), performanceItem,
+                recordItem, replayItem, replayFastItem);
 
         MenuBar menuBar = new MenuBar();
-        menuBar.getMenus().add(fileMenu);
+        menuBar.getMenus().addAll(fileMenu, viewMenu);
         return menuBar;
     }
+
+    /** Starts or stops serving this instance's tile cache to other instances on the network. */
+    private void shareTileCache(CheckMenuItem shareItem) {
+        if (!shareItem.isSelected()) {
+            if (tileServer != null) tileServer.close();
+            tileServer = null;
+            statusLabel.setText("Stopped sharing tile cache");
+            return;
+        }
+        try {
+            tileServer = TileServer.start(new InetSocketAddress(TileServer.DEFAULT_PORT),
+                    availableSources, TileFetcher.shared());
+            statusLabel.setText("Sharing tile cache on port " + tileServer.getPort()
+                    + "; set " + ProxyTileSource.PROXY_ENV + " on other machines to use it");
+        } catch (IOException e) {
+            shareItem.setSelected(false);
+            statusLabel.setText("Could not share tile cache: " + e.getMessage());
+        }
+    }
+
+    private FileChooser archiveChooser(String title) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle(title);
+        chooser.getExtensionFilters().addAll(
+            new FileChooser.ExtensionFilter("Tile Archives", "*.mtiles"),
+            new FileChooser.ExtensionFilter("All Files", "*.*"));
+        return chooser;
+    }
+
+    /**
+     * Writes the cached tiles of the base map under the visible area to an archive, from zoom 0
+     * down to two levels deeper than the current zoom. Runs off the FX thread.
+     */
+    private void exportVisibleTiles(Stage stage) {
+        TileSource source = baseTileLayer.getTileSource();
+        if (source instanceof LocalTileSource) {
+            statusLabel.setText("Export: " + source.getDisplayName() + " is not a cached tile source");
+            return;
+        }
+        File file = archiveChooser("Export Visible Tiles").showSaveDialog(stage);
+        if (file == null) return;
+
+        int zoom = viewport.getZoom();
+        double halfWidth = mapView.getWidth() / 2 / TileMath.TILE_SIZE;
+        double halfHeight = mapView.getHeight() / 2 / TileMath.TILE_SIZE;
+        double north = TileMath.tileYToLat(Math.max(0, viewport.getCenterY() - halfHeight), zoom);
+        double south = TileMath.tileYToLat(Math.min(TileMath.maxTile(zoom), viewport.getCenterY() + halfHeight), zoom);
+        double west = TileMath.tileXToLon(viewport.getCenterX() - halfWidth, zoom);
+        double east = TileMath.tileXToLon(viewport.getCenterX() + halfWidth, zoom);
+        int maxZoom = Math.min(source.getMaxZoom(), zoom + 2);
+        Map<String, String> metadata = Map.of(TileArchive.NAME, source.getDisplayName(),
+                TileArchive.ATTRIBUTION, source.getAttribution());
+
+        long start = System.nanoTime();
+        statusLabel.setText("Exporting tiles to " + file.getName() + "...");
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return TileArchive.export(TileFetcher.shared().getDiskStore(), source.getId(),
+                        south, west, north, east, 0, maxZoom, metadata, file.toPath());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).whenComplete((count, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                statusLabel.setText("Export to " + file.getName() + " failed: " + cause.getMessage());
+            } else {
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                statusLabel.setText(String.format("Exported %,d tiles to %s in %d ms", count, file.getName(), millis));
+            }
+        }));
+    }
+
+    /** Shows an archive as a tile layer above the base map. */
+    private void openTileArchive(Stage stage) {
+        File file = archiveChooser("Open Tile Archive").showOpenDialog(stage);
+        if (file == null) return;
+        try {
+            TileArchive archive = TileArchive.open(file.toPath());
+            ArchiveTileSource source = new ArchiveTileSource(archive);
+            TileLayerViewModel layer = new TileLayerViewModel("tile-" + source.getId(), source.getDisplayName(), source);
+            int baseIndex = layerStack.getLayers().indexOf(baseTileLayer);
+            layerStack.getLayers().add(baseIndex + 1, layer);
+            statusLabel.setText(String.format("Opened %s: %,d tiles, zoom %d-%d", file.getName(),
+                    archive.getTileCount(), archive.getMinZoom(), archive.getMaxZoom()));
+        } catch (IOException e) {
+            statusLabel.setText("Open of " + file.getName() + " failed: " + e.getMessage());
+        }
+    }
+
+    private FileChooser sessionChooser(String title) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle(title);
+        chooser.getExtensionFilters().addAll(
+            new FileChooser.ExtensionFilter("Viewport Sessions", "*.mvs"),
+            new FileChooser.ExtensionFilter("All Files", "*.*"));
+        return chooser;
+    }
+
+    /** Starts recording pans and zooms, or stops and saves them, as the menu item is checked. */
+    private void recordSession(Stage stage, CheckMenuItem recordItem) {
+        if (recordItem.isSelected()) {
+            sessionRecorder = ViewportSession.record(viewport, (int) mapView.getWidth(), (int) mapView.getHeight());
+            statusLabel.setText("Recording viewport session");
+            return;
+        }
+        ViewportSession session = sessionRecorder.stop();
+        sessionRecorder = null;
+        File file = sessionChooser("Save Viewport Session").showSaveDialog(stage);
+        if (file == null) {
+            statusLabel.setText("Viewport session discarded");
+            return;
+        }
+        try {
+            session.save(file.toPath());
+            statusLabel.setText(String.format("Saved %d calls over %.1f s to %s", session.calls().size(),
+                    session.durationNanos() / 1e9, file.getName()));
+        } catch (IOException e) {
+            statusLabel.setText("Save of " + file.getName() + " failed: " + e.getMessage());
+        }
+    }
+
+    private void replaySession(Stage stage, boolean fullSpeed) {
+        File file = sessionChooser("Replay Viewport Session").showOpenDialog(stage);
+        if (file == null) return;
+        ViewportSession session;
+        try {
+            session = ViewportSession.load(file.toPath());
+        } catch (IOException e) {
+            statusLabel.setText("Open of " + file.getName() + " failed: " + e.getMessage());
+            return;
+        }
+        if (session.width() != (int) mapView.getWidth() || session.height() != (int) mapView.getHeight()) {
+            statusLabel.setText(String.format("Replaying %s, recorded in a %dx%d view", file.getName(),
+                    session.width(), session.height()));
+        } else {
+            statusLabel.setText("Replaying " + file.getName());
+        }
+        new SessionPlayer(session, viewport, fullSpeed, statusLabel::setText).start();
+    }
+
+    private FileChooser drawingChooser(String title) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle(title);
+        chooser.getExtensionFilters().addAll(
+            new FileChooser.ExtensionFilter("Mapster Drawings", "*.mdraw"),
+            new FileChooser.ExtensionFilter("All Files", "*.*"));
+        return chooser;
+    }
+
+    private void openDrawing(Stage stage) {
+        if (!(layerStack.getActiveDrawingLayer() instanceof DrawingLayerViewModel drawingLayer)) {
+            statusLabel.setText("Open: no active drawing layer");
+            return;
+        }
+        File file = drawingChooser("Open Drawing").showOpenDialog(stage);
+        if (file == null) return;
+        try {
+            long start = System.nanoTime();
+            drawingLayer.saveDrawing();
+            drawingLayer.openDrawing(file.toPath());
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            statusLabel.setText("Opened " + file.getName() + " in " + millis + " ms");
+        } catch (IOException e) {
+            statusLabel.setText("Open of " + file.getName() + " failed: " + e.getMessage());
+        }
+    }
+
+    private void saveDrawing(Stage stage, boolean saveAs) {
+        if (!(layerStack.getActiveDrawingLayer() instanceof DrawingLayerViewModel drawingLayer)) {
+            statusLabel.setText("Save: no active drawing layer");
+            return;
+        }
+        Path path = drawingLayer.getDrawingPath();
+        try {
+            if (saveAs || path == null) {
+                File file = drawingChooser("Save Drawing").showSaveDialog(stage);
+                if (file == null) return;
+                path = file.toPath();
+                drawingLayer.saveDrawingAs(path);
+            } else {
+                drawingLayer.saveDrawing();
+            }
+            statusLabel.setText("Saved " + path.getFileName());
+        } catch (IOException e) {
+            statusLabel.setText("Save failed: " + e.getMessage());
+        }
+    }
+
+    private void importMarkers(Stage stage) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Import Markers");
+        chooser.getExtensionFilters().addAll(
+            new FileChooser.ExtensionFilter("GPX and GeoJSON", "*.gpx", "*.geojson", "*.json"),
+            new FileChooser.ExtensionFilter("All Files", "*.*"));
+        File file = chooser.showOpenDialog(stage);
+        if (file == null) return;
+
+        PointLayerViewModel layer = new PointLayerViewModel("points-" + layerStack.getLayers().size(), file.getName());
+        // Markers sit above the map tiles but below the drawing being edited
+        int drawingIndex = layerStack.getLayers().indexOf(layerStack.getActiveDrawingLayer());
+        layerStack.getLayers().add(drawingIndex >= 0 ? drawingIndex : layerStack.getLayers().size(), layer);
+
+        long start = System.nanoTime();
+        statusLabel.setText("Loading markers from " + file.getName() + "...");
+        layer.loadPoints(file.toPath(), Platform::runLater).whenComplete((count, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                layerStack.removeLayer(layer);
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                statusLabel.setText("Loading markers from " + file.getName() + " failed: " + cause.getMessage());
+            } else {
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                statusLabel.setText(String.format("Loaded %,d markers in %d ms", count, millis));
+            }
+        }));
+    }
+
+    private void importHeatmap(Stage stage) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Import Heatmap");
+        chooser.getExtensionFilters().addAll(
+            new FileChooser.ExtensionFilter("GPX and GeoJSON", "*.gpx", "*.geojson", "*.json"),
+            new FileChooser.ExtensionFilter("All Files", "*.*"));
+        File file = chooser.showOpenDialog(stage);
+        if (file == null) return;
+
+        String id = "heatmap-" + layerStack.getLayers().size();
+        HeatmapGrid grid = new HeatmapGrid();
+        HeatmapLayerViewModel layer = new HeatmapLayerViewModel(id, file.getName(), grid,
+                new HeatmapTileSource(id, grid), Platform::runLater);
+        int drawingIndex = layerStack.getLayers().indexOf(layerStack.getActiveDrawingLayer());
+        layerStack.getLayers().add(drawingIndex >= 0 ? drawingIndex : layerStack.getLayers().size(), layer);
+
+        // Each parsed batch is aggregated as it arrives, so the heatmap fills in during the import
+        statusLabel.setText("Importing " + file.getName() + "...");
+        trackImporter.importFile(file.toPath(), true, new TrackImporter.Listener() {
+            @Override
+            public void onBatch(TrackBatch batch) {
+                int count = 0;
+                for (List<double[]> line : batch.lines()) count += line.size();
+                double[] lats = new double[count];
+                double[] lons = new double[count];
+                int i = 0;
+                for (List<double[]> line : batch.lines()) {
+                    for (double[] p : line) {
+                        lats[i] = p[0];
+                        lons[i++] = p[1];
+                    }
+                }
+                layer.appendPoints(lats, lons);
+                statusLabel.setText("Importing " + file.getName() + ": " + batch.progress().summary());
+            }
+
+            @Override
+            public void onComplete(ImportProgress progress) {
+                statusLabel.setText("Imported " + file.getName() + ": " + progress.summary());
+            }
+
+            @Override
+            public void onFailed(Exception error) {
+                layerStack.removeLayer(layer);
+                statusLabel.setText("Import of " + file.getName() + " failed: " + error.getMessage());
+            }
+        });
+    }
+
+    private void importTrack(Stage stage) {
+        if (!(layerStack.getActiveDrawingLayer() instanceof DrawingLayerViewModel drawingLayer)) {
+            statusLabel.setText("Import: no active drawing layer");
+            return;
+        }
+
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Import Track");
+        chooser.getExtensionFilters().addAll(
+            new FileChooser.ExtensionFilter("GPX and GeoJSON", "*.gpx", "*.geojson", "*.json"),
+            new FileChooser.ExtensionFilter("All Files", "*.*"));
+        File file = chooser.showOpenDialog(stage);
+        if (file == null) return;
+
+        statusLabel.setText("Importing " + file.getName() + "...");
+        trackImporter.importFile(file.toPath(), new TrackImporter.Listener() {
+            // The line this import is building, which the user may have drawn others after
+            private int openLine = -1;
+
+            @Override
+            public void onBatch(TrackBatch batch) {
+                openLine = drawingLayer.getDrawingTool().appendLines(batch.lines(),
+                        batch.continuesLastLine() ? openLine : -1);
+                statusLabel.setText("Importing " + file.getName() + ": " + batch.progress().summary());
+            }
+
+            @Override
+            public void onComplete(ImportProgress progress) {
+                statusLabel.setText("Imported " + file.getName() + ": " + progress.summary());
+            }
+
+            @Override
+            public void onFailed(Exception error) {
+                statusLabel.setText("Import of " + file.getName() + " failed: " + error.getMessage());
+            }
+        });
+    }
 }
@@ -4,28 +4,36 @@ import com.johnreah.mapster.viewmodel.DrawingLayerViewModel;
 import com.johnreah.mapster.viewmodel.LayerStack;
 import com.johnreah.mapster.viewmodel.LayerViewModel;
 import com.johnreah.mapster.viewmodel.MapViewport;
+import com.johnreah.mapster.viewmodel.PointLayerViewModel;
 import com.johnreah.mapster.viewmodel.TileLayerViewModel;
 
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.beans.property.BooleanProperty;
 import javafx.collections.ListChangeListener;
+import javafx.geometry.Pos;
 import javafx.scene.layout.StackPane;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
- * Container for all map layers. Maintains a StackPane of {@link TileLayerView} and
- * {@link DrawingLayerView} instances, with an {@link InputOverlayPane} on top to handle
- * all mouse and keyboard input.
+ * Container for all map layers. Maintains a StackPane of {@link TileLayerView},
+ * {@link PointLayerView} and {@link DrawingLayerView} instances, with an {@link InputOverlayPane} on top to handle
+ * all mouse and keyboard input, and a {@link PerformanceHud} above that, hidden until asked for.
  */
 public class MapView extends StackPane {
 
     private final MapViewport viewport;
     private final LayerStack layerStack;
     private final InputOverlayPane inputOverlay;
+    private final PerformanceHud performanceHud;
 
     private final Map<LayerViewModel, javafx.scene.layout.Pane> layerViewMap = new LinkedHashMap<>();
 
@@ -34,6 +42,8 @@ public class MapView extends StackPane {
         this.layerStack = layerStack;
 
         inputOverlay = new InputOverlayPane(viewport);
+        performanceHud = new PerformanceHud(Collections.unmodifiableMap(layerViewMap));
+        StackPane.setAlignment(performanceHud, Pos.TOP_LEFT);
 
         rebuildChildren();
 
@@ -49,6 +59,7 @@ public class MapView extends StackPane {
             nodes.add(view);
         }
         nodes.add(inputOverlay);
+        nodes.add(performanceHud);
         getChildren().setAll(nodes);
 
         // Shut down and remove views for layers that are no longer in the stack
@@ -57,6 +68,8 @@ public class MapView extends StackPane {
             if (!current.contains(entry.getKey())) {
                 if (entry.getValue() instanceof TileLayerView tlv) {
                     tlv.shutdown();
+                } else if (entry.getValue() instanceof DrawingLayerView dlv) {
+                    dlv.shutdown();
                 }
                 return true;
             }
@@ -72,6 +85,8 @@ public class MapView extends StackPane {
             return new TileLayerView(tlvm, viewport);
         } else if (lvm instanceof DrawingLayerViewModel dlvm) {
             return new DrawingLayerView(dlvm, viewport);
+        } else if (lvm instanceof PointLayerViewModel plvm) {
+            return new PointLayerView(plvm, viewport);
         }
         throw new IllegalArgumentException("Unknown layer type: " + lvm.getClass());
     }
@@ -96,12 +111,49 @@ public class MapView extends StackPane {
     public void zoomIn()  { viewport.zoomIn(); }
     public void zoomOut() { viewport.zoomOut(layerStack.getEffectiveMinZoom()); }
 
+    /**
+     * Starts reading the tiles of every visible tile layer for a view of the given size from
+     * disk, before the map is laid out; completes with the number of tiles read.
+     */
+    public CompletableFuture<Integer> preload(double width, double height) {
+        List<CompletableFuture<Integer>> layers = new ArrayList<>();
+        for (javafx.scene.layout.Pane view : layerViewMap.values()) {
+            if (view instanceof TileLayerView tlv) layers.add(tlv.preload(width, height));
+        }
+        return CompletableFuture.allOf(layers.toArray(CompletableFuture[]::new))
+                .thenApply(done -> layers.stream().mapToInt(CompletableFuture::join).sum());
+    }
+
+    /**
+     * Runs {@code action} once, as soon as every tile layer now visible has drawn a frame with
+     * none of its tiles missing; at once if there are none.
+     */
+    public void whenFrameComplete(Runnable action) {
+        List<TileLayerView> layers = layerViewMap.values().stream()
+                .filter(view -> view instanceof TileLayerView && view.isVisible())
+                .map(TileLayerView.class::cast)
+                .toList();
+        InvalidationListener check = new InvalidationListener() {
+            @Override
+            public void invalidated(Observable observable) {
+                if (!layers.stream().allMatch(TileLayerView::isFrameComplete)) return;
+                layers.forEach(layer -> layer.frameCompleteProperty().removeListener(this));
+                action.run();
+            }
+        };
+        layers.forEach(layer -> layer.frameCompleteProperty().addListener(check));
+        check.invalidated(null);
+    }
+
+    public BooleanProperty performanceHudVisibleProperty() { return performanceHud.visibleProperty(); }
+
     public int getZoom()              { return viewport.getZoom(); }
     public double[] getCenterLatLon() { return viewport.getCenterLatLon(); }
 
     public void shutdown() {
         layerViewMap.values().forEach(view -> {
             if (view instanceof TileLayerView tlv) tlv.shutdown();
+            else if (view instanceof DrawingLayerView dlv) dlv.shutdown();
         });
     }
 }
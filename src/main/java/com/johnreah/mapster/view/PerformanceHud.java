@@ -0,0 +1,160 @@
+package com.johnreah.mapster.view;
+
+import com.johnreah.mapster.metrics.TileMetrics;
+import com.johnreah.mapster.metrics.TileSourceMetrics;
+import com.johnreah.mapster.view.maptiles.TileCache;
+import com.johnreah.mapster.viewmodel.LayerViewModel;
+
+import javafx.animation.AnimationTimer;
+import javafx.geometry.Insets;
+import javafx.scene.control.Label;
+import javafx.scene.layout.Pane;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A corner readout of rendering and tile loading performance, for users to screenshot when
+ * the map feels slow: frame rate and frame time percentiles, repaints per second of each
+ * layer, tile cache hit rate and memory, the loading backlog and network throughput. Rates
+ * cover the last half second. Frames are timed from the FX pulse, so an overloaded FX thread
+ * shows as a low frame rate; while hidden nothing is sampled at all.
+ */
+public class PerformanceHud extends Label {
+
+    private static final long REFRESH_NANOS = 500_000_000L;
+    private static final int FRAME_SAMPLES = 240;
+    private static final double MB = 1024.0 * 1024.0;
+
+    private final Map<LayerViewModel, Pane> layerViews;
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            onPulse(now);
+        }
+    };
+
+    private final long[] frameNanos = new long[FRAME_SAMPLES];
+    private int frameCount;
+    private long lastPulse;
+    private long windowStart;
+    private final Map<Object, Long> lastRenderCounts = new HashMap<>();
+    private long lastHits;
+    private long lastMisses;
+    private long lastBytes;
+
+    /** A readout over {@code layerViews}, a live view of the map's layers in stacking order. */
+    public PerformanceHud(Map<LayerViewModel, Pane> layerViews) {
+        this.layerViews = layerViews;
+        setMouseTransparent(true);
+        setMaxSize(USE_PREF_SIZE, USE_PREF_SIZE);
+        setPadding(new Insets(6, 8, 6, 8));
+        setStyle("-fx-font-family: monospace; -fx-font-size: 11px; -fx-text-fill: white;"
+                + " -fx-background-color: rgba(0, 0, 0, 0.65); -fx-background-radius: 4;");
+        setVisible(false);
+        visibleProperty().addListener((obs, wasVisible, isVisible) -> {
+            if (isVisible) {
+                setText("Measuring...");
+                lastPulse = 0;
+                windowStart = 0;
+                timer.start();
+            } else {
+                timer.stop();
+            }
+        });
+    }
+
+    private void onPulse(long now) {
+        if (lastPulse != 0) {
+            frameNanos[frameCount % FRAME_SAMPLES] = now - lastPulse;
+            frameCount++;
+        }
+        lastPulse = now;
+        if (windowStart == 0) {
+            // Baseline for the first window's rates
+            windowStart = now;
+            frameCount = 0;
+            sample(0);
+            return;
+        }
+        if (now - windowStart >= REFRESH_NANOS) {
+            sample(now - windowStart);
+            windowStart = now;
+            frameCount = 0;
+        }
+    }
+
+    /** Refreshes the text from the counters' change over the last {@code windowNanos}; 0 only resets. */
+    private void sample(long windowNanos) {
+        double seconds = windowNanos / 1e9;
+        StringBuilder text = new StringBuilder();
+
+        int frames = Math.min(frameCount, FRAME_SAMPLES);
+        long[] sorted = Arrays.copyOf(frameNanos, frames);
+        Arrays.sort(sorted);
+        text.append(String.format(Locale.ROOT, "FPS %5.1f   frame p50 %5.1f  p95 %5.1f  p99 %5.1f ms%n",
+                seconds > 0 ? frameCount / seconds : 0,
+                percentileMillis(sorted, 0.50), percentileMillis(sorted, 0.95), percentileMillis(sorted, 0.99)));
+
+        long residentBytes = 0;
+        int residentTiles = 0;
+        int queued = 0;
+        int inFlight = 0;
+        for (Map.Entry<LayerViewModel, Pane> entry : layerViews.entrySet()) {
+            Pane view = entry.getValue();
+            long renders;
+            if (view instanceof TileLayerView tlv) {
+                renders = tlv.getRenderCount();
+                TileCache cache = tlv.getTileCache();
+                if (cache != null) {
+                    residentBytes += cache.getResidentBytes();
+                    residentTiles += cache.getResidentTileCount();
+                    queued += cache.getQueueDepth();
+                    inFlight += cache.getInFlightCount();
+                }
+            } else if (view instanceof DrawingLayerView dlv) {
+                renders = dlv.getRenderCount();
+            } else if (view instanceof PointLayerView plv) {
+                renders = plv.getRenderCount();
+            } else {
+                continue;
+            }
+            Long previous = lastRenderCounts.put(entry.getKey(), renders);
+            if (seconds > 0) {
+                text.append(String.format(Locale.ROOT, "  %-24.24s %6.1f repaints/s%n",
+                        entry.getKey().getDisplayName(), (renders - (previous == null ? renders : previous)) / seconds));
+            }
+        }
+        lastRenderCounts.keySet().retainAll(layerViews.keySet());
+
+        long hits = 0;
+        long misses = 0;
+        long bytes = 0;
+        for (TileSourceMetrics source : TileMetrics.sources()) {
+            hits += source.getMemoryHits();
+            misses += source.getMemoryMisses();
+            bytes += source.getBytesDownloaded();
+        }
+        long lookups = (hits - lastHits) + (misses - lastMisses);
+        text.append(String.format(Locale.ROOT, "Tile cache  hit %5.1f%%  resident %6.1f MB (%d tiles)%n",
+                lookups > 0 ? 100.0 * (hits - lastHits) / lookups : 100.0, residentBytes / MB, residentTiles));
+        text.append(String.format(Locale.ROOT, "Loader      queued %d  in flight %d%n", queued, inFlight));
+        text.append(String.format(Locale.ROOT, "Network     %6.2f MB/s%n",
+                seconds > 0 ? (bytes - lastBytes) / MB / seconds : 0));
+        Runtime runtime = Runtime.getRuntime();
+        text.append(String.format(Locale.ROOT, "Heap        %.0f / %.0f MB",
+                (runtime.totalMemory() - runtime.freeMemory()) / MB, runtime.maxMemory() / MB));
+        lastHits = hits;
+        lastMisses = misses;
+        lastBytes = bytes;
+        if (seconds > 0) setText(text.toString());
+    }
+
+    private static double percentileMillis(long[] sorted, double quantile) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
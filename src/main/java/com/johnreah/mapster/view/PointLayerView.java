@@ -0,0 +1,94 @@
+package com.johnreah.mapster.view;
+
+import com.johnreah.mapster.util.PointClusterIndex;
+import com.johnreah.mapster.util.TileMath;
+import com.johnreah.mapster.viewmodel.MapViewport;
+import com.johnreah.mapster.viewmodel.PointLayerViewModel;
+
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+
+/**
+ * Renders a point layer as clusters queried from its {@link PointClusterIndex} for the visible
+ * area only, so each frame draws at most a few hundred marks however many points there are.
+ * Mouse events are not consumed here.
+ */
+public class PointLayerView extends Pane {
+
+    private static final double POINT_RADIUS = 4.0;
+    private static final double MAX_CLUSTER_RADIUS = 24.0;
+    private static final Color POINT_COLOR = Color.rgb(200, 60, 20);
+    private static final Color CLUSTER_COLOR = Color.rgb(230, 110, 20, 0.8);
+
+    private final Canvas canvas = new Canvas();
+    private final PointLayerViewModel layerViewModel;
+    private final MapViewport viewport;
+    private long renderCount;
+
+    public PointLayerView(PointLayerViewModel layerViewModel, MapViewport viewport) {
+        this.layerViewModel = layerViewModel;
+        this.viewport = viewport;
+
+        canvas.widthProperty().bind(widthProperty());
+        canvas.heightProperty().bind(heightProperty());
+        canvas.widthProperty().addListener(e -> render());
+        canvas.heightProperty().addListener(e -> render());
+        getChildren().add(canvas);
+
+        opacityProperty().bind(layerViewModel.opacityProperty());
+        visibleProperty().bind(layerViewModel.visibleProperty());
+        layerViewModel.visibleProperty().addListener((obs, wasVisible, isVisible) -> { if (isVisible) render(); });
+        setMouseTransparent(true);
+
+        layerViewModel.indexProperty().addListener((obs, old, val) -> render());
+        viewport.centerXProperty().addListener((obs, old, val) -> render());
+        viewport.centerYProperty().addListener((obs, old, val) -> render());
+        viewport.zoomProperty().addListener((obs, old, val) -> render());
+    }
+
+    private void render() {
+        double w = canvas.getWidth();
+        double h = canvas.getHeight();
+        if (w <= 0 || h <= 0) return;
+        renderCount++;
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, w, h);
+        PointClusterIndex index = layerViewModel.getIndex();
+        if (index == null || !layerViewModel.isVisible()) return;
+
+        int zoom = viewport.getZoom();
+        double scale = TileMath.maxTile(zoom) * TileMath.TILE_SIZE; // screen pixels per world unit
+        double offsetX = w / 2.0 - viewport.getCenterX() * TileMath.TILE_SIZE;
+        double offsetY = h / 2.0 - viewport.getCenterY() * TileMath.TILE_SIZE;
+        double pad = MAX_CLUSTER_RADIUS / scale;
+
+        gc.setTextAlign(TextAlignment.CENTER);
+        gc.setTextBaseline(VPos.CENTER);
+        gc.setFont(Font.font(11));
+        index.query(zoom, -offsetX / scale - pad, -offsetY / scale - pad,
+                (w - offsetX) / scale + pad, (h - offsetY) / scale + pad, (x, y, count) -> {
+            double sx = offsetX + x * scale;
+            double sy = offsetY + y * scale;
+            if (count == 1) {
+                gc.setFill(POINT_COLOR);
+                gc.fillOval(sx - POINT_RADIUS, sy - POINT_RADIUS, POINT_RADIUS * 2, POINT_RADIUS * 2);
+                return;
+            }
+            double r = Math.min(MAX_CLUSTER_RADIUS, 8.0 + 6.0 * Math.log10(count));
+            gc.setFill(CLUSTER_COLOR);
+            gc.fillOval(sx - r, sy - r, r * 2, r * 2);
+            gc.setFill(Color.WHITE);
+            gc.fillText(count >= 10_000 ? (count / 1000) + "k" : Integer.toString(count), sx, sy);
+        });
+    }
+
+    /** Repaints since the layer was created. */
+    public long getRenderCount() {
+        return renderCount;
+    }
+}
@@ -0,0 +1,70 @@
+package com.johnreah.mapster.view;
+
+import com.johnreah.mapster.metrics.FrameTimes;
+import com.johnreah.mapster.metrics.TileTraffic;
+import com.johnreah.mapster.viewmodel.MapViewport;
+import com.johnreah.mapster.viewmodel.ViewportSession;
+
+import javafx.animation.AnimationTimer;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Replays a {@link ViewportSession} in the running application, on the FX thread, at the
+ * recorded pace or one call per frame. Frame times are the intervals between FX pulses, so they
+ * include everything the FX thread did, drawing too; tile traffic is counted up to the last
+ * call. The summary goes to {@code onFinished}.
+ */
+public class SessionPlayer extends AnimationTimer {
+
+    private final ViewportSession session;
+    private final MapViewport viewport;
+    private final boolean fullSpeed;
+    private final Consumer<String> onFinished;
+    private final FrameTimes frames = new FrameTimes();
+    private TileTraffic before;
+    private long startNanos;
+    private long lastPulse;
+    private int next;
+
+    public SessionPlayer(ViewportSession session, MapViewport viewport, boolean fullSpeed, Consumer<String> onFinished) {
+        this.session = session;
+        this.viewport = viewport;
+        this.fullSpeed = fullSpeed;
+        this.onFinished = onFinished;
+    }
+
+    @Override
+    public void start() {
+        session.moveToStart(viewport);
+        before = TileTraffic.snapshot();
+        startNanos = 0;
+        next = 0;
+        super.start();
+    }
+
+    @Override
+    public void handle(long now) {
+        if (startNanos == 0) {
+            startNanos = now;
+        } else {
+            frames.record(now - lastPulse);
+        }
+        lastPulse = now;
+        List<ViewportSession.Call> calls = session.calls();
+        if (fullSpeed) {
+            if (next < calls.size()) calls.get(next++).applyTo(viewport);
+        } else {
+            while (next < calls.size() && calls.get(next).atNanos() <= now - startNanos) {
+                calls.get(next++).applyTo(viewport);
+            }
+        }
+        if (next == calls.size()) {
+            stop();
+            onFinished.accept(String.format(Locale.ROOT, "Replayed %d calls in %.1f s: %s; tiles: %s",
+                    calls.size(), (now - startNanos) / 1e9, frames, TileTraffic.snapshot().since(before)));
+        }
+    }
+}
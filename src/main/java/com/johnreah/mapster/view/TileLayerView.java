@@ -1,29 +1,57 @@
 package com.johnreah.mapster.view;
 
+import com.johnreah.mapster.metrics.LayerRenderEvent;
+import com.johnreah.mapster.metrics.TileLayerMetrics;
+import com.johnreah.mapster.metrics.TileMetrics;
+import com.johnreah.mapster.view.maptiles.HeatmapTileSource;
 import com.johnreah.mapster.view.maptiles.TileCache;
+import com.johnreah.mapster.util.LocalTileSource;
+import com.johnreah.mapster.util.TileAddress;
 import com.johnreah.mapster.util.TileMath;
 import com.johnreah.mapster.util.TileSource;
+import com.johnreah.mapster.viewmodel.HeatmapLayerViewModel;
 import com.johnreah.mapster.viewmodel.MapViewport;
 import com.johnreah.mapster.viewmodel.TileLayerViewModel;
 
+import javafx.animation.PauseTransition;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.image.Image;
 import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
+import javafx.util.Duration;
+
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Renders a single tile-based map layer. Owns a {@link TileCache} and re-renders
- * whenever the shared viewport changes or tiles finish loading.
+ * whenever the shared viewport changes or tiles finish loading. For a heatmap layer,
+ * tiles under newly aggregated points are invalidated and re-rendered in the background.
+ * Frame times and the loading backlog are published as {@link TileLayerMetrics} while the
+ * layer is shown, and each frame is recorded as a {@link LayerRenderEvent}.
+ *
+ * <p>The cache, with its loader threads and decoded tiles, exists only while it is needed: it
+ * is created by the first render of a visible layer, and released once the layer has been
+ * hidden for {@link #RELEASE_AFTER_HIDDEN}, so layers that are never shown cost nothing.
  */
 public class TileLayerView extends Pane {
 
     private static final int TILE_SIZE = TileMath.TILE_SIZE;
+    private static final int PREFETCH_MARGIN = 1;
+    /** How long a hidden layer keeps its tiles, so toggling a layer back on is instant. */
+    static final Duration RELEASE_AFTER_HIDDEN = Duration.minutes(1);
 
     private final Canvas canvas = new Canvas();
     private final TileLayerViewModel layerViewModel;
     private final MapViewport viewport;
-    private TileCache tileCache;
+    private final TileLayerMetrics metrics;
+    private final PauseTransition releaseTimer = new PauseTransition(RELEASE_AFTER_HIDDEN);
+    // Null until first shown and after release; read by the metrics from the JMX thread
+    private volatile TileCache tileCache;
+    private long renderCount;
+    private final ReadOnlyBooleanWrapper frameComplete = new ReadOnlyBooleanWrapper();
 
     public TileLayerView(TileLayerViewModel layerViewModel, MapViewport viewport) {
         this.layerViewModel = layerViewModel;
@@ -37,20 +65,44 @@ public class TileLayerView extends Pane {
 
         opacityProperty().bind(layerViewModel.opacityProperty());
         visibleProperty().bind(layerViewModel.visibleProperty());
-        layerViewModel.visibleProperty().addListener((obs, wasVisible, isVisible) -> { if (isVisible) render(); });
+        releaseTimer.setOnFinished(e -> releaseCache());
+        layerViewModel.visibleProperty().addListener((obs, wasVisible, isVisible) -> {
+            if (isVisible) {
+                releaseTimer.stop();
+                render();
+            } else if (tileCache != null) {
+                releaseTimer.playFromStart();
+            }
+        });
 
-        tileCache = new TileCache(layerViewModel.getTileSource(), this::render);
+        metrics = new TileLayerMetrics(layerViewModel.getId(), () -> layerViewModel.getTileSource().getId(),
+                () -> tileCache == null ? 0 : tileCache.getQueueDepth(),
+                () -> tileCache == null ? 0 : tileCache.getInFlightCount());
+        TileMetrics.register(metrics);
 
         viewport.centerXProperty().addListener((obs, old, val) -> render());
         viewport.centerYProperty().addListener((obs, old, val) -> render());
         viewport.zoomProperty().addListener((obs, old, val) -> render());
 
         layerViewModel.tileSourceProperty().addListener((obs, oldSource, newSource) -> {
-            TileCache old = tileCache;
-            tileCache = new TileCache(newSource, this::render);
-            old.shutdown();
+            releaseCache();
             render();
         });
+
+        if (layerViewModel instanceof HeatmapLayerViewModel heatmap) {
+            heatmap.addRegionListener((minX, minY, maxX, maxY) -> {
+                // Without a cache there are no tiles to go stale
+                if (tileCache == null) return;
+                tileCache.invalidateRegion(minX, minY, maxX, maxY, HeatmapTileSource.MARGIN_PIXELS);
+                render();
+            });
+        }
+    }
+
+    private void releaseCache() {
+        TileCache old = tileCache;
+        tileCache = null;
+        if (old != null) old.shutdown();
     }
 
     private void render() {
@@ -58,6 +110,11 @@ public class TileLayerView extends Pane {
         double w = canvas.getWidth();
         double h = canvas.getHeight();
         if (w <= 0 || h <= 0) return;
+        TileCache tileCache = cache();
+        renderCount++;
+        long start = System.nanoTime();
+        LayerRenderEvent event = new LayerRenderEvent(layerViewModel.getId(), "tiles");
+        event.begin();
 
         double centerX = viewport.getCenterX();
         double centerY = viewport.getCenterY();
@@ -65,6 +122,8 @@ public class TileLayerView extends Pane {
 
         GraphicsContext gc = canvas.getGraphicsContext2D();
         gc.clearRect(0, 0, w, h);
+        // Locally rendered tiles are overlays; a grey placeholder would hide the map beneath
+        boolean placeholders = !(tileCache.getTileSource() instanceof LocalTileSource);
 
         double max = TileMath.maxTile(zoom);
         double offsetX = w / 2.0 - centerX * TILE_SIZE;
@@ -74,6 +133,8 @@ public class TileLayerView extends Pane {
         int tileRight  = (int) Math.floor((-offsetX + w) / TILE_SIZE);
         int tileTop    = (int) Math.floor(-offsetY / TILE_SIZE);
         int tileBottom = (int) Math.floor((-offsetY + h) / TILE_SIZE);
+        int tiles = 0;
+        int missing = 0;
 
         for (int ty = tileTop; ty <= tileBottom; ty++) {
             if (ty < 0 || ty >= (int) max) continue;
@@ -83,16 +144,70 @@ public class TileLayerView extends Pane {
                 double py = offsetY + ty * TILE_SIZE;
 
                 Image tile = tileCache.getTile(zoom, wrappedX, ty);
+                tiles++;
                 if (tile != null) {
                     gc.drawImage(tile, px, py, TILE_SIZE, TILE_SIZE);
                 } else {
-                    gc.setFill(Color.rgb(220, 220, 220));
-                    gc.fillRect(px, py, TILE_SIZE, TILE_SIZE);
-                    gc.setStroke(Color.rgb(200, 200, 200));
-                    gc.strokeRect(px, py, TILE_SIZE, TILE_SIZE);
+                    missing++;
+                    if (placeholders) {
+                        gc.setFill(Color.rgb(220, 220, 220));
+                        gc.fillRect(px, py, TILE_SIZE, TILE_SIZE);
+                        gc.setStroke(Color.rgb(200, 200, 200));
+                        gc.strokeRect(px, py, TILE_SIZE, TILE_SIZE);
+                    }
                 }
             }
         }
+        // Queue the ring just outside the view so short pans reveal loaded tiles
+        tileCache.prefetch(TileAddress.wrappedRange(zoom, tileLeft - PREFETCH_MARGIN, tileTop - PREFETCH_MARGIN,
+                tileRight + PREFETCH_MARGIN, tileBottom + PREFETCH_MARGIN));
+        metrics.frameRendered(System.nanoTime() - start, tiles, missing);
+        frameComplete.set(missing == 0);
+        event.tiles = tiles;
+        event.missingTiles = missing;
+        event.commit();
+    }
+
+    private TileCache cache() {
+        TileCache tileCache = this.tileCache;
+        if (tileCache == null) {
+            tileCache = new TileCache(layerViewModel.getTileSource(), this::render);
+            this.tileCache = tileCache;
+        }
+        return tileCache;
+    }
+
+    /**
+     * Starts reading from disk the tiles a {@code width} x {@code height} view of the viewport
+     * shows, before the layer has a size of its own; see {@link TileCache#preload}. Does
+     * nothing for a hidden layer.
+     */
+    public CompletableFuture<Integer> preload(double width, double height) {
+        if (!layerViewModel.isVisible()) return CompletableFuture.completedFuture(0);
+        int zoom = viewport.getZoom();
+        double left = viewport.getCenterX() - width / 2.0 / TILE_SIZE;
+        double top = viewport.getCenterY() - height / 2.0 / TILE_SIZE;
+        return cache().preload(TileAddress.wrappedRange(zoom, (long) Math.floor(left), (long) Math.floor(top),
+                (long) Math.floor(left + width / TILE_SIZE), (long) Math.floor(top + height / TILE_SIZE)));
+    }
+
+    /** Whether the last frame drew every tile in view, none of them missing. */
+    public ReadOnlyBooleanProperty frameCompleteProperty() {
+        return frameComplete.getReadOnlyProperty();
+    }
+
+    public boolean isFrameComplete() {
+        return frameComplete.get();
+    }
+
+    /** The layer's cache, or null while it has none. */
+    TileCache getTileCache() {
+        return tileCache;
+    }
+
+    /** Frames drawn since the layer was created. */
+    public long getRenderCount() {
+        return renderCount;
     }
 
     public TileSource getTileSource() {
@@ -100,6 +215,8 @@ public class TileLayerView extends Pane {
     }
 
     public void shutdown() {
-        tileCache.shutdown();
+        TileMetrics.unregister(metrics);
+        releaseTimer.stop();
+        releaseCache();
     }
 }
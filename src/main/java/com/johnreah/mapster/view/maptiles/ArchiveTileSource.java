@@ -0,0 +1,74 @@
+package com.johnreah.mapster.view.maptiles;
+
+import com.johnreah.mapster.util.LocalTileSource;
+import com.johnreah.mapster.util.TileAddress;
+import com.johnreah.mapster.util.TileMath;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Serves the tiles of a {@link TileArchive} as a map layer. Tiles are read from the mapped file
+ * and decoded on {@link TileCache}'s loader threads, with no network or disk cache involved;
+ * zooms below the archive's shallowest level are simply empty, and zooms past its deepest are
+ * enlarged by the cache like any other source.
+ */
+public class ArchiveTileSource implements LocalTileSource {
+
+    private static final int TILE_SIZE = TileMath.TILE_SIZE;
+
+    private final TileArchive archive;
+    private final String id;
+    private final String displayName;
+
+    public ArchiveTileSource(TileArchive archive) {
+        this.archive = archive;
+        String file = archive.getPath().getFileName().toString();
+        int dot = file.lastIndexOf('.');
+        String stem = dot > 0 ? file.substring(0, dot) : file;
+        this.id = "archive-" + stem;
+        this.displayName = archive.getMetadata(TileArchive.NAME, stem) + " (archive)";
+    }
+
+    public TileArchive getArchive() { return archive; }
+
+    @Override
+    public String getId() { return id; }
+
+    @Override
+    public String getDisplayName() { return displayName; }
+
+    @Override
+    public String getAttribution() { return archive.getMetadata(TileArchive.ATTRIBUTION, ""); }
+
+    @Override
+    public int getMinZoom() { return 0; }
+
+    @Override
+    public int getMaxZoom() { return archive.getMaxZoom(); }
+
+    @Override
+    public int[] renderTile(int zoom, int x, int y) {
+        byte[] bytes = archive.read(new TileAddress(zoom, x, y));
+        if (bytes == null) return null;
+        try {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+            if (image == null) return null;
+            if (image.getWidth() != TILE_SIZE || image.getHeight() != TILE_SIZE) {
+                BufferedImage scaled = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+                Graphics2D g = scaled.createGraphics();
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(image, 0, 0, TILE_SIZE, TILE_SIZE, null);
+                g.dispose();
+                image = scaled;
+            }
+            return TilePyramidBuilder.argbPixels(image);
+        } catch (IOException e) {
+            return null; // Unreadable tile: left blank
+        }
+    }
+}
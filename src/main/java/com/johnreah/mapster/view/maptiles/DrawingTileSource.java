@@ -0,0 +1,307 @@
+package com.johnreah.mapster.view.maptiles;
+
+import com.johnreah.mapster.util.LocalTileSource;
+import com.johnreah.mapster.util.RasterCanvas;
+import com.johnreah.mapster.util.TileMath;
+import com.johnreah.mapster.viewmodel.MapViewport;
+
+import java.util.List;
+
+/**
+ * Rasterises the completed lines of a drawing layer into map tiles, so that a {@link TileCache}
+ * can render and cache them on its loader threads like any other tile source.
+ *
+ * <p>Loader threads never see the live {@code DrawingTool} lists. Instead each line is mirrored
+ * as an immutable snapshot in Web Mercator world units (0..1 on both axes), split into chunks
+ * of {@link #CHUNK_SIZE} points with their own bounding boxes. An edit copies only the chunks
+ * it touches, and tile rendering skips chunks that cannot reach the tile.
+ */
+public class DrawingTileSource implements LocalTileSource {
+
+    static final int CHUNK_SIZE = 1024;
+
+    private static final int TILE_SIZE = TileMath.TILE_SIZE;
+    private static final int LINE_ARGB = 0xFF0000FF;
+    private static final double LINE_WIDTH = 2.0;
+    private static final double VERTEX_RADIUS = 4.0;
+
+    /** Half the widest mark drawn around a point, in pixels, plus one pixel of anti-aliasing. */
+    public static final double MARGIN_PIXELS = VERTEX_RADIUS + 1.0;
+
+    private final String id;
+    // Written only on the FX thread; the count is published after the array so readers never
+    // observe a slot that has not been filled
+    private volatile LineSnapshot[] lines = new LineSnapshot[16];
+    private volatile int lineCount;
+    // The vertex being dragged as {line, point}, left out with its two segments; null if none
+    private volatile int[] lifted;
+
+    public DrawingTileSource(String layerId) {
+        this.id = "drawing-" + layerId;
+    }
+
+    @Override
+    public String getId() { return id; }
+
+    @Override
+    public String getDisplayName() { return "Drawing raster " + id; }
+
+    @Override
+    public int getMinZoom() { return 0; }
+
+    @Override
+    public int getMaxZoom() { return MapViewport.MAX_ZOOM; }
+
+    /** Replaces every snapshot with the given lines. FX thread only. */
+    public void reset(List<List<double[]>> completedLines) {
+        LineSnapshot[] fresh = new LineSnapshot[Math.max(16, completedLines.size())];
+        for (int i = 0; i < completedLines.size(); i++) {
+            fresh[i] = LineSnapshot.build(completedLines.get(i));
+        }
+        lines = fresh;
+        lineCount = completedLines.size();
+    }
+
+    /**
+     * Re-snapshots points {@code fromPoint..toPoint} of one line, which may be new or have grown.
+     * FX thread only.
+     *
+     * @return world-space bounds {@code [minX, minY, maxX, maxY]} of every segment whose pixels
+     *         may have changed, before or after the edit, or null if nothing is drawn differently
+     */
+    public double[] updateLine(int lineIndex, List<double[]> points, int fromPoint, int toPoint) {
+        LineSnapshot[] arr = lines;
+        LineSnapshot old = lineIndex < lineCount ? arr[lineIndex] : null;
+        LineSnapshot updated = old == null
+                ? LineSnapshot.build(points)
+                : old.update(points, fromPoint, toPoint);
+
+        double[] dirty = null;
+        if (old != null) dirty = old.bounds(fromPoint - 1, toPoint + 1, null);
+        dirty = updated.bounds(fromPoint - 1, toPoint + 1, dirty);
+
+        if (lineIndex >= arr.length) {
+            LineSnapshot[] grown = new LineSnapshot[Math.max(arr.length * 2, lineIndex + 1)];
+            System.arraycopy(arr, 0, grown, 0, lineCount);
+            arr = grown;
+        }
+        arr[lineIndex] = updated;
+        lines = arr;
+        if (lineIndex >= lineCount) lineCount = lineIndex + 1;
+        return dirty;
+    }
+
+    /**
+     * Leaves a vertex and its two segments out of the tiles while it is dragged on the overlay,
+     * or puts the lifted one back if {@code lineIndex} is -1. FX thread only.
+     *
+     * @return world-space bounds of the segments drawn differently, or null if there are none
+     */
+    public double[] lift(int lineIndex, int pointIndex) {
+        int[] previous = lifted;
+        lifted = lineIndex < 0 ? null : new int[]{lineIndex, pointIndex};
+        double[] dirty = null;
+        for (int[] vertex : new int[][]{previous, lifted}) {
+            if (vertex != null && vertex[0] < lineCount) {
+                dirty = lines[vertex[0]].bounds(vertex[1] - 1, vertex[1] + 1, dirty);
+            }
+        }
+        return dirty;
+    }
+
+    @Override
+    public int[] renderTile(int zoom, int x, int y) {
+        LineSnapshot[] arr = lines;
+        int count = Math.min(lineCount, arr.length);
+        int[] skip = lifted;
+        int skipLine = skip == null ? -1 : skip[0];
+        int skipPoint = skip == null ? -1 : skip[1];
+
+        double scale = TileMath.maxTile(zoom) * TILE_SIZE;
+        double originX = x * (double) TILE_SIZE;
+        double originY = y * (double) TILE_SIZE;
+        double margin = MARGIN_PIXELS / scale;
+        double minX = originX / scale - margin;
+        double minY = originY / scale - margin;
+        double maxX = (originX + TILE_SIZE) / scale + margin;
+        double maxY = (originY + TILE_SIZE) / scale + margin;
+
+        RasterCanvas canvas = new RasterCanvas(TILE_SIZE, TILE_SIZE);
+
+        // Lines first, then vertices on top, matching the vector renderer
+        for (int i = 0; i < count; i++) {
+            LineSnapshot line = arr[i];
+            if (line == null || !line.intersects(minX, minY, maxX, maxY)) continue;
+            for (int c = 0; c < line.chunks.length; c++) {
+                if (!line.chunkIntersects(c, minX, minY, maxX, maxY)) continue;
+                int end = Math.min((c + 1) * CHUNK_SIZE, line.size - 1);
+                for (int p = c * CHUNK_SIZE; p < end; p++) {
+                    if (i == skipLine && (p == skipPoint || p + 1 == skipPoint)) continue;
+                    double x1 = line.x(p), y1 = line.y(p), x2 = line.x(p + 1), y2 = line.y(p + 1);
+                    if (Math.max(x1, x2) < minX || Math.min(x1, x2) > maxX
+                            || Math.max(y1, y2) < minY || Math.min(y1, y2) > maxY) continue;
+                    canvas.strokeLine(x1 * scale - originX, y1 * scale - originY,
+                            x2 * scale - originX, y2 * scale - originY, LINE_WIDTH, LINE_ARGB);
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            LineSnapshot line = arr[i];
+            if (line == null || !line.intersects(minX, minY, maxX, maxY)) continue;
+            for (int c = 0; c < line.chunks.length; c++) {
+                if (!line.chunkIntersects(c, minX, minY, maxX, maxY)) continue;
+                int end = Math.min((c + 1) * CHUNK_SIZE, line.size);
+                for (int p = c * CHUNK_SIZE; p < end; p++) {
+                    if (i == skipLine && p == skipPoint) continue;
+                    double px = line.x(p), py = line.y(p);
+                    if (px < minX || px > maxX || py < minY || py > maxY) continue;
+                    canvas.fillCircle(px * scale - originX, py * scale - originY, VERTEX_RADIUS, LINE_ARGB);
+                }
+            }
+        }
+        return canvas.isEmpty() ? null : canvas.getPixels();
+    }
+
+    /** Converts a [lat, lon] point to Web Mercator world units. */
+    static double worldX(double lon) {
+        return TileMath.lonToTileX(lon, 0);
+    }
+
+    static double worldY(double lat) {
+        return TileMath.latToTileY(lat, 0);
+    }
+
+    /**
+     * Immutable, chunked copy of one line. Chunk {@code c} holds points
+     * {@code c*CHUNK_SIZE .. (c+1)*CHUNK_SIZE-1} interleaved as x, y; its bounds also cover the
+     * first point of the next chunk so that the connecting segment is culled correctly.
+     */
+    static final class LineSnapshot {
+
+        final int size;
+        final double[][] chunks;
+        final double[][] chunkBounds;
+        final double minX, minY, maxX, maxY;
+
+        private LineSnapshot(int size, double[][] chunks, double[][] chunkBounds) {
+            this.size = size;
+            this.chunks = chunks;
+            this.chunkBounds = chunkBounds;
+            double x0 = Double.MAX_VALUE, y0 = Double.MAX_VALUE, x1 = -Double.MAX_VALUE, y1 = -Double.MAX_VALUE;
+            for (double[] b : chunkBounds) {
+                x0 = Math.min(x0, b[0]);
+                y0 = Math.min(y0, b[1]);
+                x1 = Math.max(x1, b[2]);
+                y1 = Math.max(y1, b[3]);
+            }
+            this.minX = x0;
+            this.minY = y0;
+            this.maxX = x1;
+            this.maxY = y1;
+        }
+
+        static LineSnapshot build(List<double[]> points) {
+            int size = points.size();
+            int chunkCount = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            double[][] chunks = new double[chunkCount][];
+            for (int c = 0; c < chunkCount; c++) {
+                chunks[c] = copyChunk(points, c);
+            }
+            double[][] bounds = new double[chunkCount][];
+            for (int c = 0; c < chunkCount; c++) {
+                bounds[c] = chunkBounds(chunks, c, size);
+            }
+            return new LineSnapshot(size, chunks, bounds);
+        }
+
+        /** Returns a snapshot sharing every chunk that {@code fromPoint..toPoint} did not touch. */
+        LineSnapshot update(List<double[]> points, int fromPoint, int toPoint) {
+            int newSize = points.size();
+            if (newSize < size) return build(points);
+            int chunkCount = (newSize + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            double[][] newChunks = new double[chunkCount][];
+            System.arraycopy(chunks, 0, newChunks, 0, Math.min(chunks.length, chunkCount));
+
+            int firstDirty = Math.max(0, fromPoint) / CHUNK_SIZE;
+            int lastDirty = Math.min(toPoint, newSize - 1) / CHUNK_SIZE;
+            if (newSize != size) {
+                firstDirty = Math.min(firstDirty, size / CHUNK_SIZE);
+                lastDirty = chunkCount - 1;
+            }
+            for (int c = firstDirty; c <= lastDirty; c++) {
+                newChunks[c] = copyChunk(points, c);
+            }
+
+            double[][] newBounds = new double[chunkCount][];
+            System.arraycopy(chunkBounds, 0, newBounds, 0, Math.min(chunkBounds.length, chunkCount));
+            // The chunk before the first dirty one ends with a segment into it
+            for (int c = Math.max(0, firstDirty - 1); c <= lastDirty; c++) {
+                newBounds[c] = chunkBounds(newChunks, c, newSize);
+            }
+            return new LineSnapshot(newSize, newChunks, newBounds);
+        }
+
+        double x(int point) {
+            return chunks[point / CHUNK_SIZE][(point % CHUNK_SIZE) * 2];
+        }
+
+        double y(int point) {
+            return chunks[point / CHUNK_SIZE][(point % CHUNK_SIZE) * 2 + 1];
+        }
+
+        boolean intersects(double x0, double y0, double x1, double y1) {
+            return size > 0 && maxX >= x0 && minX <= x1 && maxY >= y0 && minY <= y1;
+        }
+
+        boolean chunkIntersects(int c, double x0, double y0, double x1, double y1) {
+            double[] b = chunkBounds[c];
+            return b[2] >= x0 && b[0] <= x1 && b[3] >= y0 && b[1] <= y1;
+        }
+
+        /** Unions the bounds of points {@code from..to} (clamped) into {@code acc}. */
+        double[] bounds(int from, int to, double[] acc) {
+            from = Math.max(0, from);
+            to = Math.min(size - 1, to);
+            for (int p = from; p <= to; p++) {
+                double px = x(p), py = y(p);
+                if (acc == null) {
+                    acc = new double[]{px, py, px, py};
+                } else {
+                    acc[0] = Math.min(acc[0], px);
+                    acc[1] = Math.min(acc[1], py);
+                    acc[2] = Math.max(acc[2], px);
+                    acc[3] = Math.max(acc[3], py);
+                }
+            }
+            return acc;
+        }
+
+        private static double[] copyChunk(List<double[]> points, int c) {
+            int start = c * CHUNK_SIZE;
+            int end = Math.min(start + CHUNK_SIZE, points.size());
+            double[] chunk = new double[(end - start) * 2];
+            for (int p = start; p < end; p++) {
+                double[] latLon = points.get(p);
+                chunk[(p - start) * 2] = worldX(latLon[1]);
+                chunk[(p - start) * 2 + 1] = worldY(latLon[0]);
+            }
+            return chunk;
+        }
+
+        private static double[] chunkBounds(double[][] chunks, int c, int size) {
+            double[] chunk = chunks[c];
+            double x0 = Double.MAX_VALUE, y0 = Double.MAX_VALUE, x1 = -Double.MAX_VALUE, y1 = -Double.MAX_VALUE;
+            int n = chunk.length / 2;
+            boolean hasNext = c + 1 < chunks.length && (c + 1) * CHUNK_SIZE < size;
+            for (int i = 0; i < n + (hasNext ? 1 : 0); i++) {
+                double px = i < n ? chunk[i * 2] : chunks[c + 1][0];
+                double py = i < n ? chunk[i * 2 + 1] : chunks[c + 1][1];
+                x0 = Math.min(x0, px);
+                y0 = Math.min(y0, py);
+                x1 = Math.max(x1, px);
+                y1 = Math.max(y1, py);
+            }
+            return new double[]{x0, y0, x1, y1};
+        }
+    }
+}
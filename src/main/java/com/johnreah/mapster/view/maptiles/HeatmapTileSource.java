@@ -0,0 +1,127 @@
+package com.johnreah.mapster.view.maptiles;
+
+import com.johnreah.mapster.util.HeatmapGrid;
+import com.johnreah.mapster.util.LocalTileSource;
+import com.johnreah.mapster.util.TileMath;
+import com.johnreah.mapster.viewmodel.MapViewport;
+
+/**
+ * Colours the density bins of a {@link HeatmapGrid} into map tiles. Bins are smoothed with a
+ * small blur, scaled logarithmically against the densest bin at the tile's zoom, and
+ * interpolated bilinearly up to full tile resolution, so tiles stay smooth when zoomed in past
+ * {@link HeatmapGrid#MAX_ZOOM}.
+ */
+public class HeatmapTileSource implements LocalTileSource {
+
+    private static final int TILE_SIZE = TileMath.TILE_SIZE;
+    private static final int BINS = HeatmapGrid.BINS_PER_TILE;
+    private static final double MAX_ALPHA = 0.85;
+    // Colour ramp stops from sparse to dense: transparent blue, cyan, green, yellow, red
+    private static final int[] RAMP = {0x0000FF, 0x00FFFF, 0x00FF00, 0xFFFF00, 0xFF0000};
+
+    /** Tiles this far around a changed point can change colour, because of the blur. */
+    public static final double MARGIN_PIXELS = 2.0 * HeatmapGrid.BIN_PIXELS;
+
+    private final String id;
+    private final HeatmapGrid grid;
+
+    public HeatmapTileSource(String layerId, HeatmapGrid grid) {
+        this.id = "heatmap-" + layerId;
+        this.grid = grid;
+    }
+
+    @Override
+    public String getId() { return id; }
+
+    @Override
+    public String getDisplayName() { return "Heatmap " + id; }
+
+    @Override
+    public int getMinZoom() { return 0; }
+
+    @Override
+    public int getMaxZoom() { return MapViewport.MAX_ZOOM; }
+
+    public HeatmapGrid getGrid() { return grid; }
+
+    @Override
+    public int[] renderTile(int zoom, int x, int y) {
+        // Past the finest grid, take the part of the ancestor tile this tile covers
+        int gridZoom = Math.min(zoom, HeatmapGrid.MAX_ZOOM);
+        int depth = zoom - gridZoom;
+        int[] bins = grid.binsWithBorder(gridZoom, x >> depth, y >> depth);
+        if (bins == null) return null;
+        double max = grid.maxBin(gridZoom);
+        if (max <= 0) return null;
+
+        double[] density = blur(bins);
+        double logMax = Math.log1p(max);
+        int size = BINS + 2;
+        double binsPerPixel = (double) BINS / TILE_SIZE / (1 << depth);
+        int mask = (1 << depth) - 1;
+        double originX = (double) (x & mask) * BINS / (1 << depth);
+        double originY = (double) (y & mask) * BINS / (1 << depth);
+
+        int[] argb = new int[TILE_SIZE * TILE_SIZE];
+        boolean empty = true;
+        for (int py = 0; py < TILE_SIZE; py++) {
+            // Bin-centre coordinates in the bordered array: bin b of the tile is at index b + 1
+            double v = originY + (py + 0.5) * binsPerPixel + 0.5;
+            int r0 = (int) Math.floor(v);
+            double fy = v - r0;
+            r0 = Math.max(0, Math.min(size - 2, r0));
+            for (int px = 0; px < TILE_SIZE; px++) {
+                double u = originX + (px + 0.5) * binsPerPixel + 0.5;
+                int c0 = (int) Math.floor(u);
+                double fx = u - c0;
+                c0 = Math.max(0, Math.min(size - 2, c0));
+                int i = r0 * size + c0;
+                double d = (density[i] * (1 - fx) + density[i + 1] * fx) * (1 - fy)
+                         + (density[i + size] * (1 - fx) + density[i + size + 1] * fx) * fy;
+                if (d <= 0) continue;
+                double t = Math.min(1.0, Math.log1p(d) / logMax);
+                argb[py * TILE_SIZE + px] = colour(t);
+                empty = false;
+            }
+        }
+        return empty ? null : argb;
+    }
+
+    /** 3x3 binomial blur; the outermost ring of the result is only partly smoothed. */
+    private static double[] blur(int[] bins) {
+        int size = BINS + 2;
+        double[] horizontal = new double[size * size];
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                int i = r * size + c;
+                double left = c > 0 ? bins[i - 1] : 0;
+                double right = c < size - 1 ? bins[i + 1] : 0;
+                horizontal[i] = (left + 2.0 * bins[i] + right) / 4.0;
+            }
+        }
+        double[] out = new double[size * size];
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                int i = r * size + c;
+                double up = r > 0 ? horizontal[i - size] : 0;
+                double down = r < size - 1 ? horizontal[i + size] : 0;
+                out[i] = (up + 2.0 * horizontal[i] + down) / 4.0;
+            }
+        }
+        return out;
+    }
+
+    /** Maps normalised density 0..1 onto the colour ramp, fading in from transparent. */
+    static int colour(double t) {
+        double pos = t * (RAMP.length - 1);
+        int stop = Math.min(RAMP.length - 2, (int) pos);
+        double f = pos - stop;
+        int a = RAMP[stop];
+        int b = RAMP[stop + 1];
+        int red = (int) Math.round(((a >> 16) & 0xFF) * (1 - f) + ((b >> 16) & 0xFF) * f);
+        int green = (int) Math.round(((a >> 8) & 0xFF) * (1 - f) + ((b >> 8) & 0xFF) * f);
+        int blue = (int) Math.round((a & 0xFF) * (1 - f) + (b & 0xFF) * f);
+        int alpha = (int) Math.round(255 * MAX_ALPHA * Math.min(1.0, 0.3 + t * 1.5));
+        return (alpha << 24) | (red << 16) | (green << 8) | blue;
+    }
+}
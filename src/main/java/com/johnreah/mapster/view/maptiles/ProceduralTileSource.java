@@ -0,0 +1,147 @@
+package com.johnreah.mapster.view.maptiles;
+
+import com.johnreah.mapster.util.LocalTileSource;
+import com.johnreah.mapster.util.TileMath;
+import com.johnreah.mapster.viewmodel.MapViewport;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Generates an imaginary landscape in-process, so tile loading, caching and rendering can be
+ * measured and tested without a network. The same seed always gives the same pixels, on any
+ * machine: the terrain is fractal value noise over world coordinates built from integer
+ * hashing, wrapping east-west, so neighbouring tiles join up and each zoom adds finer detail
+ * to the one above. Every tile is fully opaque, with a one-pixel border so tile edges show.
+ */
+public class ProceduralTileSource implements LocalTileSource {
+
+    public static final String ID = "procedural";
+
+    private static final int TILE_SIZE = TileMath.TILE_SIZE;
+    // Noise frequencies per world axis run from BASE_CELLS at zoom 0 upwards, OCTAVES of them per tile
+    private static final int BASE_CELLS = 4;
+    private static final int OCTAVES = 6;
+    private static final double SEA_LEVEL = 0.5;
+    private static final int BORDER_ARGB = 0xFF808080;
+
+    private final String id;
+    private final long seed;
+
+    public ProceduralTileSource() {
+        this(ID, 0);
+    }
+
+    public ProceduralTileSource(String id, long seed) {
+        this.id = id;
+        this.seed = seed;
+    }
+
+    @Override
+    public String getId() { return id; }
+
+    @Override
+    public String getDisplayName() { return "Procedural Test Map"; }
+
+    @Override
+    public int getMinZoom() { return 0; }
+
+    @Override
+    public int getMaxZoom() { return MapViewport.MAX_ZOOM; }
+
+    @Override
+    public int[] renderTile(int zoom, int x, int y) {
+        int[] pixels = new int[TILE_SIZE * TILE_SIZE];
+        // Octaves below the tile's zoom are too coarse to show detail across one tile
+        int firstOctave = Math.max(0, zoom - 2);
+        double scale = 1.0 / ((long) TILE_SIZE << zoom);
+        for (int py = 0; py < TILE_SIZE; py++) {
+            double wy = ((long) y * TILE_SIZE + py + 0.5) * scale;
+            for (int px = 0; px < TILE_SIZE; px++) {
+                int i = py * TILE_SIZE + px;
+                if (px == 0 || py == 0) {
+                    pixels[i] = BORDER_ARGB;
+                    continue;
+                }
+                double wx = ((long) x * TILE_SIZE + px + 0.5) * scale;
+                double height = 0;
+                double weight = 1;
+                double total = 0;
+                for (int o = firstOctave; o < firstOctave + OCTAVES; o++) {
+                    height += weight * noise(o, wx, wy);
+                    total += weight;
+                    weight *= 0.55;
+                }
+                pixels[i] = colour(height / total);
+            }
+        }
+        return pixels;
+    }
+
+    /** The tile as a PNG, as a tile server would send it. */
+    public byte[] encodeTile(int zoom, int x, int y) {
+        BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, TILE_SIZE, TILE_SIZE, renderTile(zoom, x, y), 0, TILE_SIZE);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        try {
+            ImageIO.write(image, "png", out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /** Smoothly interpolated lattice noise in 0..1 with {@code BASE_CELLS << octave} cells per axis. */
+    private double noise(int octave, double wx, double wy) {
+        long cells = (long) BASE_CELLS << octave;
+        double fx = wx * cells;
+        double fy = wy * cells;
+        long x0 = (long) Math.floor(fx);
+        long y0 = (long) Math.floor(fy);
+        double tx = fade(fx - x0);
+        double ty = fade(fy - y0);
+        long x1 = (x0 + 1) % cells; // wraps at the antimeridian
+        double top = lerp(lattice(octave, x0, y0), lattice(octave, x1, y0), tx);
+        double bottom = lerp(lattice(octave, x0, y0 + 1), lattice(octave, x1, y0 + 1), tx);
+        return lerp(top, bottom, ty);
+    }
+
+    private double lattice(int octave, long x, long y) {
+        long h = seed ^ (octave * 0x9E3779B97F4A7C15L) ^ (x * 0xC2B2AE3D27D4EB4FL) ^ (y * 0x165667B19E3779F9L);
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return (h >>> 11) * 0x1.0p-53;
+    }
+
+    private static double fade(double t) {
+        return t * t * (3 - 2 * t);
+    }
+
+    private static double lerp(double a, double b, double t) {
+        return a + (b - a) * t;
+    }
+
+    /** Deep to shallow blue below sea level; green through brown to white above. */
+    private static int colour(double height) {
+        if (height < SEA_LEVEL) {
+            double depth = height / SEA_LEVEL;
+            return rgb(20 + 60 * depth, 60 + 90 * depth, 140 + 80 * depth);
+        }
+        double land = (height - SEA_LEVEL) / (1 - SEA_LEVEL);
+        if (land < 0.5) return rgb(70 + 120 * land, 150 - 20 * land, 60 + 20 * land);
+        if (land < 0.8) return rgb(130 - 40 * (land - 0.5), 120 - 60 * (land - 0.5), 70);
+        return rgb(200 + 55 * (land - 0.8) / 0.2, 200 + 55 * (land - 0.8) / 0.2, 200 + 55 * (land - 0.8) / 0.2);
+    }
+
+    private static int rgb(double r, double g, double b) {
+        return 0xFF000000 | clamp(r) << 16 | clamp(g) << 8 | clamp(b);
+    }
+
+    private static int clamp(double v) {
+        return (int) Math.max(0, Math.min(255, Math.round(v)));
+    }
+}
@@ -0,0 +1,61 @@
+package com.johnreah.mapster.view.maptiles;
+
+import com.johnreah.mapster.util.TileSource;
+
+/**
+ * Fetches another source's tiles through a Mapster {@code TileServer} instead of from the
+ * original server. Keeps the wrapped source's id, so tiles land in the same disk cache
+ * directory whichever way they were fetched.
+ */
+public class ProxyTileSource implements TileSource {
+
+    /** Environment variable holding the base URL of a shared tile server, e.g. {@code http://host:8765}. */
+    public static final String PROXY_ENV = "MAPSTER_TILE_PROXY";
+
+    private final TileSource upstream;
+    private final String baseUrl;
+
+    public ProxyTileSource(TileSource upstream, String baseUrl) {
+        this.upstream = upstream;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    public TileSource getUpstream() {
+        return upstream;
+    }
+
+    @Override
+    public String getId() {
+        return upstream.getId();
+    }
+
+    @Override
+    public String getDisplayName() {
+        return upstream.getDisplayName();
+    }
+
+    @Override
+    public String getAttribution() {
+        return upstream.getAttribution();
+    }
+
+    @Override
+    public String getTileUrl(int zoom, int x, int y) {
+        return baseUrl + "/" + upstream.getId() + "/" + zoom + "/" + x + "/" + y + ".png";
+    }
+
+    @Override
+    public int getMinZoom() {
+        return upstream.getMinZoom();
+    }
+
+    @Override
+    public int getMaxZoom() {
+        return upstream.getMaxZoom();
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return upstream.isAvailable();
+    }
+}
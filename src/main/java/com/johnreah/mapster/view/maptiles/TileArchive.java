@@ -0,0 +1,243 @@
+package com.johnreah.mapster.view.maptiles;
+
+import com.johnreah.mapster.util.TileAddress;
+import com.johnreah.mapster.util.TileMath;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A region of a tile source in one file, in the spirit of PMTiles: tiles for any bounding box
+ * and zoom range can be copied out of the disk cache, moved about as a single file, and either
+ * imported into another cache or served directly by {@link ArchiveTileSource}.
+ *
+ * <p>Layout, little-endian: a {@link #HEADER_SIZE}-byte header; the tile data; a directory of
+ * one fixed-size entry per tile (pyramid index, data offset, length), sorted by pyramid index;
+ * then the metadata as UTF-8 {@code key=value} lines. Tiles sharing identical bytes share one
+ * copy of the data. Fixed-size entries let a lookup binary-search the mapped directory in place,
+ * so opening an archive reads only the header and metadata however many tiles it holds.
+ *
+ * <p>The file is mapped read-only: the directory as one buffer and the data as overlapping
+ * {@link #WINDOW_SIZE} windows, each extended by {@link #MAX_TILE_BYTES} so no tile straddles
+ * two. Reads use absolute gets on the shared buffers, so an open archive is safe to read from
+ * any number of threads. Mapped memory is released by the garbage collector, not by
+ * {@link #close}.
+ */
+public final class TileArchive implements Closeable {
+
+    /** Metadata key for the id of the source the tiles came from. */
+    public static final String SOURCE_ID = "source";
+    /** Metadata key for a human-readable name. */
+    public static final String NAME = "name";
+    /** Metadata key for the attribution the tiles must be shown with. */
+    public static final String ATTRIBUTION = "attribution";
+    /** Metadata key for the exported region as {@code south,west,north,east} in degrees. */
+    public static final String BOUNDS = "bounds";
+
+    static final int MAGIC = 0x52415441; // "ATAR"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int ENTRY_SIZE = 20;
+    static final int MAX_TILE_BYTES = 16 << 20;
+    static final long WINDOW_SIZE = 1L << 30;
+
+    /** Receives tiles from {@link #forEach}, in archive order. */
+    @FunctionalInterface
+    public interface TileVisitor {
+        void visit(TileAddress tile, byte[] bytes) throws IOException;
+    }
+
+    private final Path path;
+    private final int minZoom;
+    private final int maxZoom;
+    private final int tileCount;
+    private final Map<String, String> metadata;
+    private final MappedByteBuffer directory;
+    private final MappedByteBuffer[] windows;
+    private volatile boolean closed;
+
+    private TileArchive(Path path, int minZoom, int maxZoom, int tileCount, Map<String, String> metadata,
+                        MappedByteBuffer directory, MappedByteBuffer[] windows) {
+        this.path = path;
+        this.minZoom = minZoom;
+        this.maxZoom = maxZoom;
+        this.tileCount = tileCount;
+        this.metadata = metadata;
+        this.directory = directory;
+        this.windows = windows;
+    }
+
+    public static TileArchive open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) throw new IOException("Not a tile archive: " + path);
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != MAGIC) throw new IOException("Not a tile archive: " + path);
+            if (header.getInt(4) != VERSION) throw new IOException("Unsupported tile archive version: " + header.getInt(4));
+            int minZoom = header.getInt(8);
+            int maxZoom = header.getInt(12);
+            long count = header.getLong(16);
+            long directoryOffset = header.getLong(24);
+            long metadataOffset = header.getLong(32);
+            int metadataLength = header.getInt(40);
+            long directoryLength = count * ENTRY_SIZE;
+            if (count < 0 || directoryLength > Integer.MAX_VALUE || directoryOffset < HEADER_SIZE
+                    || directoryOffset + directoryLength > metadataOffset
+                    || metadataLength < 0 || metadataOffset + metadataLength > size) {
+                throw new IOException("Corrupt tile archive header: " + path);
+            }
+
+            MappedByteBuffer directory = channel.map(FileChannel.MapMode.READ_ONLY, directoryOffset, directoryLength);
+            directory.order(ByteOrder.LITTLE_ENDIAN);
+            byte[] metadataBytes = new byte[metadataLength];
+            channel.map(FileChannel.MapMode.READ_ONLY, metadataOffset, metadataLength).get(metadataBytes);
+
+            int windowCount = (int) ((directoryOffset + WINDOW_SIZE - 1) / WINDOW_SIZE);
+            MappedByteBuffer[] windows = new MappedByteBuffer[windowCount];
+            for (int i = 0; i < windowCount; i++) {
+                long start = i * WINDOW_SIZE;
+                long length = Math.min(WINDOW_SIZE + MAX_TILE_BYTES, directoryOffset - start);
+                windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            }
+            return new TileArchive(path, minZoom, maxZoom, (int) count,
+                    parseMetadata(new String(metadataBytes, StandardCharsets.UTF_8)), directory, windows);
+        }
+    }
+
+    private static Map<String, String> parseMetadata(String text) {
+        Map<String, String> metadata = new LinkedHashMap<>();
+        for (String line : text.split("\n")) {
+            int eq = line.indexOf('=');
+            if (eq > 0) metadata.put(line.substring(0, eq), line.substring(eq + 1));
+        }
+        return Map.copyOf(metadata);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public int getMinZoom() {
+        return minZoom;
+    }
+
+    public int getMaxZoom() {
+        return maxZoom;
+    }
+
+    public int getTileCount() {
+        return tileCount;
+    }
+
+    public Map<String, String> getMetadata() {
+        return metadata;
+    }
+
+    /** A metadata value, or {@code fallback} if the archive does not have it. */
+    public String getMetadata(String key, String fallback) {
+        return metadata.getOrDefault(key, fallback);
+    }
+
+    /** The bytes of a tile, or null if the archive does not hold it. */
+    public byte[] read(TileAddress tile) {
+        checkOpen();
+        if (tile.zoom() < minZoom || tile.zoom() > maxZoom) return null;
+        long id = tile.pyramidIndex();
+        int lo = 0;
+        int hi = tileCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long midId = directory.getLong(mid * ENTRY_SIZE);
+            if (midId < id) lo = mid + 1;
+            else if (midId > id) hi = mid - 1;
+            else return entryBytes(mid);
+        }
+        return null;
+    }
+
+    /** Visits every tile in pyramid order, reading one at a time. */
+    public void forEach(TileVisitor visitor) throws IOException {
+        checkOpen();
+        for (int i = 0; i < tileCount; i++) {
+            visitor.visit(TileAddress.fromPyramidIndex(directory.getLong(i * ENTRY_SIZE)), entryBytes(i));
+        }
+    }
+
+    private byte[] entryBytes(int index) {
+        int at = index * ENTRY_SIZE;
+        long offset = directory.getLong(at + 8);
+        int length = directory.getInt(at + 16);
+        MappedByteBuffer window = windows[(int) (offset / WINDOW_SIZE)];
+        byte[] bytes = new byte[length];
+        window.get((int) (offset % WINDOW_SIZE), bytes);
+        return bytes;
+    }
+
+    private void checkOpen() {
+        if (closed) throw new IllegalStateException("Tile archive closed: " + path);
+    }
+
+    /**
+     * Copies every tile of {@code sourceId} in the store's cache that overlaps the bounding box,
+     * at zooms {@code minZoom} to {@code maxZoom}, into a new archive. Only tiles already on disk
+     * are exported; nothing is fetched. Returns the number of tiles written.
+     */
+    public static int export(TileDiskStore store, String sourceId, double south, double west,
+                             double north, double east, int minZoom, int maxZoom,
+                             Map<String, String> metadata, Path out) throws IOException {
+        Map<String, String> fullMetadata = new LinkedHashMap<>(metadata);
+        fullMetadata.put(SOURCE_ID, sourceId);
+        fullMetadata.put(BOUNDS, String.format(Locale.ROOT, "%.6f,%.6f,%.6f,%.6f", south, west, north, east));
+        try (TileArchiveWriter writer = new TileArchiveWriter(out, fullMetadata)) {
+            for (int zoom = minZoom; zoom <= maxZoom; zoom++) {
+                long max = TileAddress.tilesPerAxis(zoom) - 1;
+                long x0 = clamp((long) Math.floor(TileMath.lonToTileX(west, zoom)), max);
+                long x1 = clamp((long) Math.floor(TileMath.lonToTileX(east, zoom)), max);
+                long y0 = clamp((long) Math.floor(TileMath.latToTileY(north, zoom)), max);
+                long y1 = clamp((long) Math.floor(TileMath.latToTileY(south, zoom)), max);
+                // Listing the cache is cheaper than probing every tile of a large box
+                for (long code : store.tilesAt(sourceId, zoom)) {
+                    TileAddress tile = TileAddress.fromMorton(zoom, code);
+                    if (tile.x() < x0 || tile.x() > x1 || tile.y() < y0 || tile.y() > y1) continue;
+                    TileDiskStore.Entry entry = store.lookup(sourceId, tile);
+                    if (entry != null) writer.add(tile, entry.bytes());
+                }
+            }
+            return writer.getTileCount();
+        }
+    }
+
+    private static long clamp(long tile, long max) {
+        return Math.max(0, Math.min(max, tile));
+    }
+
+    /**
+     * Writes every tile into {@code store} under the archive's source id (or {@code sourceId}
+     * if given), replacing cached copies. Returns the number of tiles imported.
+     */
+    public int importInto(TileDiskStore store, String sourceId) throws IOException {
+        String id = sourceId != null ? sourceId : metadata.get(SOURCE_ID);
+        if (id == null) throw new IOException("Tile archive has no source id: " + path);
+        int[] imported = new int[1];
+        forEach((tile, bytes) -> {
+            store.write(id, tile, bytes);
+            imported[0]++;
+        });
+        return imported[0];
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
@@ -0,0 +1,174 @@
+package com.johnreah.mapster.view.maptiles;
+
+import com.johnreah.mapster.util.TileAddress;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Writes a {@link TileArchive} in one pass. Tiles must be added in ascending
+ * {@link TileAddress#pyramidIndex() pyramid order} (zoom, then Morton), which is the order they
+ * are listed in by {@link TileDiskStore#tilesAt}; their bytes go straight to the file and only
+ * the 20-byte directory entries are kept in memory until {@link #close}.
+ *
+ * <p>Tiles with identical contents, such as open sea, are stored once and shared by every
+ * directory entry that needs them. The archive is written beside its destination and renamed
+ * over it on close, so an interrupted export never leaves a truncated archive behind.
+ */
+public final class TileArchiveWriter implements Closeable {
+
+    private record Blob(long offset, int length) {}
+
+    private final Path path;
+    private final Path tempPath;
+    private final FileChannel channel;
+    private final Map<String, String> metadata;
+    // Blobs already written, by CRC32 and length, so repeated tiles are stored once
+    private final Map<Long, List<Blob>> blobs = new HashMap<>();
+    private long[] ids = new long[1024];
+    private long[] offsets = new long[1024];
+    private int[] lengths = new int[1024];
+    private int count;
+    private int minZoom = Integer.MAX_VALUE;
+    private int maxZoom = -1;
+    private long position = TileArchive.HEADER_SIZE;
+    private long uniqueBytes;
+    private boolean closed;
+
+    /**
+     * Starts an archive at {@code path}. The metadata is stored as text; see the keys in
+     * {@link TileArchive}.
+     */
+    public TileArchiveWriter(Path path, Map<String, String> metadata) throws IOException {
+        this.path = path;
+        this.tempPath = path.resolveSibling(path.getFileName() + ".part");
+        this.metadata = Map.copyOf(metadata);
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        this.channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.READ, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /** Tiles added so far. */
+    public int getTileCount() {
+        return count;
+    }
+
+    /** Bytes of tile data written so far, after removing duplicates. */
+    public long getUniqueBytes() {
+        return uniqueBytes;
+    }
+
+    public void add(TileAddress tile, byte[] bytes) throws IOException {
+        if (closed) throw new IllegalStateException("Archive already closed");
+        long id = tile.pyramidIndex();
+        if (count > 0 && id <= ids[count - 1]) {
+            throw new IllegalArgumentException("Tiles must be added in ascending order: " + tile);
+        }
+        if (bytes.length > TileArchive.MAX_TILE_BYTES) {
+            throw new IllegalArgumentException("Tile too large: " + tile + " is " + bytes.length + " bytes");
+        }
+        Blob blob = store(bytes);
+        if (count == ids.length) {
+            ids = Arrays.copyOf(ids, count * 2);
+            offsets = Arrays.copyOf(offsets, count * 2);
+            lengths = Arrays.copyOf(lengths, count * 2);
+        }
+        ids[count] = id;
+        offsets[count] = blob.offset();
+        lengths[count] = blob.length();
+        count++;
+        minZoom = Math.min(minZoom, tile.zoom());
+        maxZoom = Math.max(maxZoom, tile.zoom());
+    }
+
+    private Blob store(byte[] bytes) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        long key = crc.getValue() << 32 | bytes.length;
+        List<Blob> candidates = blobs.computeIfAbsent(key, k -> new ArrayList<>(1));
+        for (Blob candidate : candidates) {
+            if (sameBytes(candidate, bytes)) return candidate;
+        }
+        Blob blob = new Blob(position, bytes.length);
+        writeFully(ByteBuffer.wrap(bytes), position);
+        position += bytes.length;
+        uniqueBytes += bytes.length;
+        candidates.add(blob);
+        return blob;
+    }
+
+    /** Confirms a CRC match against the written copy, so a collision can never alias two tiles. */
+    private boolean sameBytes(Blob blob, byte[] bytes) throws IOException {
+        ByteBuffer stored = ByteBuffer.allocate(blob.length());
+        long at = blob.offset();
+        while (stored.hasRemaining()) {
+            int n = channel.read(stored, at);
+            if (n < 0) return false;
+            at += n;
+        }
+        return Arrays.equals(stored.array(), bytes);
+    }
+
+    private void writeFully(ByteBuffer buffer, long at) throws IOException {
+        while (buffer.hasRemaining()) at += channel.write(buffer, at);
+    }
+
+    /** Writes the directory, metadata and header, then moves the archive into place. */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try (channel) {
+            long directoryOffset = position;
+            ByteBuffer directory = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < count; i++) {
+                if (directory.remaining() < TileArchive.ENTRY_SIZE) {
+                    directory.flip();
+                    writeFully(directory, position);
+                    position += directory.limit();
+                    directory.clear();
+                }
+                directory.putLong(ids[i]).putLong(offsets[i]).putInt(lengths[i]);
+            }
+            directory.flip();
+            writeFully(directory, position);
+            position += directory.limit();
+
+            StringBuilder text = new StringBuilder();
+            metadata.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(e ->
+                    text.append(e.getKey()).append('=').append(e.getValue().replace('\n', ' ')).append('\n'));
+            byte[] metadataBytes = text.toString().getBytes(StandardCharsets.UTF_8);
+            long metadataOffset = position;
+            writeFully(ByteBuffer.wrap(metadataBytes), position);
+            position += metadataBytes.length;
+
+            ByteBuffer header = ByteBuffer.allocate(TileArchive.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(TileArchive.MAGIC).putInt(TileArchive.VERSION)
+                    .putInt(count == 0 ? 0 : minZoom).putInt(Math.max(0, maxZoom))
+                    .putLong(count).putLong(directoryOffset)
+                    .putLong(metadataOffset).putInt(metadataBytes.length);
+            header.position(0);
+            writeFully(header, 0);
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
+        }
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
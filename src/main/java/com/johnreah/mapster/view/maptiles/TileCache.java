@@ -1,5 +1,11 @@
 package com.johnreah.mapster.view.maptiles;
 
+import com.johnreah.mapster.metrics.TileLoadEvent;
+import com.johnreah.mapster.metrics.TileMetrics;
+import com.johnreah.mapster.metrics.TileScaleEvent;
+import com.johnreah.mapster.metrics.TileSourceMetrics;
+import com.johnreah.mapster.util.LocalTileSource;
+import com.johnreah.mapster.util.TileAddress;
 import com.johnreah.mapster.util.TileMath;
 import com.johnreah.mapster.util.TileSource;
 import javafx.application.Platform;
@@ -8,42 +14,93 @@ import javafx.scene.image.PixelFormat;
 import javafx.scene.image.WritableImage;
 
 import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Loads and caches the tiles of one {@link TileSource}, keyed by {@link TileAddress}. Remote
+ * tiles come from the shared {@link TileFetcher} (disk cache, then network); {@link LocalTileSource}s are
+ * rendered on the loader threads. Everything cached belongs to the current source, since
+ * {@link #setTileSource} clears the cache and results for a replaced source are dropped.
+ *
+ * <p>A cache is confined to one thread, the FX thread in the application: {@link #getTile} and
+ * the other public methods are called there, and loaded tiles are handed back to it through the
+ * publisher executor, {@code Platform::runLater} by default. Tiles {@linkplain #preload preloaded}
+ * from disk are the exception: they go straight into the cache from the reading threads, so
+ * they are there for a frame drawn before the owning thread gets back to its queue.
+ *
+ * <p>Tiles whose bytes are identical, such as open sea, share one decoded {@link Image}: images
+ * are remembered by {@linkplain TileDiskStore#contentHash content hash} for as long as any
+ * tile still holds them, and a tile with the same content reuses the image instead of
+ * decoding its own.
+ *
+ * <p>Memory hits and misses and the time to turn loaded tiles into images are counted in the
+ * source's {@link TileMetrics}. Each load is recorded as a {@link TileLoadEvent} and each
+ * overzoomed tile as a {@link TileScaleEvent} for Flight Recorder.
+ */
 public class TileCache {
 
     private static final int MAX_ENTRIES = 512;
-    private static final long TILE_MAX_AGE_MS = 30L * 24 * 60 * 60 * 1000;
-    private static final Path DISK_CACHE_DIR = Path.of(System.getProperty("user.home"), ".mapster", "tiles");
+    private static final int LOADER_THREADS = 2;
+    // Loader threads start with the first load and exit after this long idle
+    private static final long LOADER_IDLE_SECONDS = 30;
 
-    private final Map<String, Image> cache;
-    private final Set<String> inflight = ConcurrentHashMap.newKeySet();
-    private final ExecutorService executor = Executors.newFixedThreadPool(2);
-    private final HttpClient httpClient;
+    private final Map<TileAddress, Image> cache;
+    // Decoded images by content hash, dropped once no cached tile holds them
+    private final Map<String, WeakReference<Image>> decoded = new ConcurrentHashMap<>();
+    private final Set<TileAddress> inflight = ConcurrentHashMap.newKeySet();
+    // Tiles invalidated by invalidateRegion(), mapped to the generation at which they went stale
+    private final Map<TileAddress, Long> stale = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private Image emptyTile;
+    private final ThreadPoolExecutor executor;
     private final Runnable onTileLoaded;
+    private final TileFetcher fetcher;
+    private final Executor publisher;
     private volatile TileSource tileSource;
+    private TileSourceMetrics metrics;
 
     public TileCache(TileSource tileSource, Runnable onTileLoaded) {
+        this(tileSource, onTileLoaded, TileFetcher.shared(), Platform::runLater);
+    }
+
+    /**
+     * A cache loading remote tiles through {@code fetcher} and running {@code publisher} tasks
+     * on the thread that owns the cache, e.g. a benchmark's own thread with {@code Runnable::run}.
+     */
+    public TileCache(TileSource tileSource, Runnable onTileLoaded, TileFetcher fetcher, Executor publisher) {
         this.tileSource = tileSource;
+        this.metrics = TileMetrics.source(tileSource.getId());
         this.onTileLoaded = onTileLoaded;
-        this.httpClient = HttpClient.newBuilder()
-                .followRedirects(HttpClient.Redirect.NORMAL)
-                .build();
+        this.fetcher = fetcher;
+        this.publisher = publisher;
+        this.executor = new ThreadPoolExecutor(LOADER_THREADS, LOADER_THREADS, LOADER_IDLE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "tile-loader");
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
         this.cache = new LinkedHashMap<>(MAX_ENTRIES, 0.75f, true) {
             @Override
-            protected boolean removeEldestEntry(Map.Entry<String, Image> eldest) {
+            protected boolean removeEldestEntry(Map.Entry<TileAddress, Image> eldest) {
                 return size() > MAX_ENTRIES;
             }
         };
@@ -55,20 +112,50 @@ public class TileCache {
 
     public void setTileSource(TileSource tileSource) {
         this.tileSource = tileSource;
+        this.metrics = TileMetrics.source(tileSource.getId());
         inflight.clear();
+        stale.clear();
         synchronized (cache) {
             cache.clear();
         }
     }
 
+    /**
+     * Marks every cached or loading tile that overlaps a world-space rectangle (Web Mercator,
+     * 0..1 on both axes, grown by {@code marginPixels} at each tile's zoom) as stale. Stale tiles
+     * are still returned by {@link #getTile} until their replacement arrives, so an edit never
+     * flashes blank; only meaningful for {@link LocalTileSource}s, whose tiles can change.
+     */
+    public void invalidateRegion(double minX, double minY, double maxX, double maxY, double marginPixels) {
+        Set<TileAddress> keys = new HashSet<>(inflight);
+        synchronized (cache) {
+            keys.addAll(cache.keySet());
+        }
+        long gen = generation.incrementAndGet();
+        for (TileAddress key : keys) {
+            double[] bounds = key.worldBounds();
+            double margin = marginPixels * (bounds[2] - bounds[0]) / TileMath.TILE_SIZE;
+            if (maxX + margin >= bounds[0] && minX - margin <= bounds[2]
+                    && maxY + margin >= bounds[1] && minY - margin <= bounds[3]) {
+                stale.put(key, gen);
+            }
+        }
+    }
+
     public Image getTile(int zoom, int x, int y) {
         TileSource source = this.tileSource;
-        String key = source.getId() + "/" + zoom + "/" + x + "/" + y;
+        TileAddress key = new TileAddress(zoom, x, y);
 
         // Check cache first
         synchronized (cache) {
             Image img = cache.get(key);
-            if (img != null) return img;
+            if (img != null) {
+                if (stale.containsKey(key) && inflight.add(key)) {
+                    submitLoad(source, key);
+                }
+                metrics.memoryHit();
+                return img;
+            }
         }
 
         // If zoom exceeds source's max zoom, scale from the highest available zoom
@@ -78,32 +165,136 @@ public class TileCache {
                 synchronized (cache) {
                     cache.put(key, scaledTile);
                 }
+                metrics.memoryHit();
                 return scaledTile;
             }
             // Try to fetch the lower zoom tile if not in cache
-            int effectiveZoom = source.getMaxZoom();
-            int zoomDiff = zoom - effectiveZoom;
-            int divisor = 1 << zoomDiff;
-            int effectiveX = x / divisor;
-            int effectiveY = y / divisor;
-            String effectiveKey = source.getId() + "/" + effectiveZoom + "/" + effectiveX + "/" + effectiveY;
+            TileAddress effectiveKey = key.ancestor(source.getMaxZoom());
             if (inflight.add(effectiveKey)) {
-                executor.submit(() -> loadTile(source, effectiveKey, effectiveZoom, effectiveX, effectiveY));
+                submitLoad(source, effectiveKey);
             }
+            metrics.memoryMiss();
             return null;
         }
 
         // Normal flow: load from disk or network on background thread
         if (inflight.add(key)) {
-            executor.submit(() -> loadTile(source, key, zoom, x, y));
+            submitLoad(source, key);
         }
+        metrics.memoryMiss();
         return null;
     }
 
-    private Image getScaledTile(TileSource source, int requestedZoom, int x, int y) {
-        if (!Platform.isFxApplicationThread()) {
-            throw new IllegalStateException("getScaledTile() must be called on the JavaFX Application Thread");
+    /**
+     * Queues background loads for tiles that are not yet cached, such as a ring around the
+     * viewport, so they are ready before they scroll into view. Tiles are loaded in the order
+     * given, after anything already queued; pass them in Morton order (as
+     * {@link TileAddress#range} yields them) to read the disk cache block by block. Locally
+     * rendered sources are not prefetched.
+     */
+    public void prefetch(Iterable<TileAddress> tiles) {
+        TileSource source = this.tileSource;
+        if (source instanceof LocalTileSource) return;
+        for (TileAddress tile : tiles) {
+            TileAddress key = tile.zoom() > source.getMaxZoom() ? tile.ancestor(source.getMaxZoom()) : tile;
+            synchronized (cache) {
+                if (cache.containsKey(key)) continue;
+            }
+            if (inflight.add(key)) {
+                submitLoad(source, key);
+            }
+        }
+    }
+
+    /**
+     * Reads tiles that are not yet cached from the disk cache all at once, one virtual thread
+     * per tile, decoding them there and caching each as it arrives, so a view restored at
+     * startup can be drawn complete in its first frame. Tiles missing or expired on disk are
+     * left to {@link #getTile}, which fetches them as usual. The future completes with the
+     * number of tiles cached once every read has finished, and {@code onTileLoaded} then runs
+     * once through the publisher. Locally rendered sources are not preloaded.
+     */
+    public CompletableFuture<Integer> preload(Iterable<TileAddress> tiles) {
+        TileSource source = this.tileSource;
+        if (source instanceof LocalTileSource) return CompletableFuture.completedFuture(0);
+        AtomicInteger cached = new AtomicInteger();
+        List<CompletableFuture<Void>> reads = new ArrayList<>();
+        ExecutorService readers = Executors.newVirtualThreadPerTaskExecutor();
+        for (TileAddress tile : tiles) {
+            TileAddress key = tile.zoom() > source.getMaxZoom() ? tile.ancestor(source.getMaxZoom()) : tile;
+            synchronized (cache) {
+                if (cache.containsKey(key)) continue;
+            }
+            if (inflight.add(key)) {
+                reads.add(CompletableFuture.runAsync(() -> preloadTile(source, key, cached), readers));
+            }
+        }
+        // Lets the reader threads finish and the executor go without waiting for them here
+        readers.shutdown();
+        if (reads.isEmpty()) return CompletableFuture.completedFuture(0);
+        return CompletableFuture.allOf(reads.toArray(CompletableFuture[]::new)).thenApply(done -> {
+            if (cached.get() > 0) publisher.execute(onTileLoaded);
+            return cached.get();
+        });
+    }
+
+    private void preloadTile(TileSource source, TileAddress key, AtomicInteger cached) {
+        TileLoadEvent event = new TileLoadEvent(source.getId(), key);
+        event.begin();
+        try {
+            long start = System.nanoTime();
+            byte[] bytes = fetcher.getDiskStore().read(source.getId(), key);
+            long loaded = System.nanoTime();
+            event.load = loaded - start;
+            if (bytes == null) {
+                event.finish("not-on-disk");
+                return;
+            }
+            event.bytes = bytes.length;
+            TileSourceMetrics sourceMetrics = TileMetrics.source(source.getId());
+            sourceMetrics.diskHit();
+            Image img = decode(bytes, TileDiskStore.contentHash(bytes), sourceMetrics, event);
+            if (img.isError()) {
+                event.finish("failed");
+                return;
+            }
+            synchronized (cache) {
+                if (source != tileSource) {
+                    event.finish("dropped");
+                    return;
+                }
+                cache.put(key, img);
+            }
+            cached.incrementAndGet();
+            event.finish("preloaded");
+        } finally {
+            inflight.remove(key);
         }
+    }
+
+    /**
+     * The image of a tile's bytes: the one already decoded from the same content if a tile
+     * still holds it, otherwise a new one, timed in {@code event} and {@code sourceMetrics}.
+     */
+    private Image decode(byte[] bytes, String hash, TileSourceMetrics sourceMetrics, TileLoadEvent event) {
+        WeakReference<Image> shared = decoded.get(hash);
+        Image img = shared == null ? null : shared.get();
+        if (img != null) {
+            event.shared = true;
+            return img;
+        }
+        long start = System.nanoTime();
+        img = new Image(new ByteArrayInputStream(bytes));
+        event.decode = System.nanoTime() - start;
+        sourceMetrics.decoded(event.decode);
+        if (!img.isError()) {
+            if (decoded.size() >= MAX_ENTRIES) decoded.values().removeIf(ref -> ref.get() == null);
+            decoded.put(hash, new WeakReference<>(img));
+        }
+        return img;
+    }
+
+    private Image getScaledTile(TileSource source, int requestedZoom, int x, int y) {
         int effectiveZoom = source.getMaxZoom();
         int zoomDiff = requestedZoom - effectiveZoom;
         int divisor = 1 << zoomDiff;
@@ -113,7 +304,7 @@ public class TileCache {
         int parentY = y / divisor;
 
         // Check if parent tile is in cache
-        String parentKey = source.getId() + "/" + effectiveZoom + "/" + parentX + "/" + parentY;
+        TileAddress parentKey = new TileAddress(effectiveZoom, parentX, parentY);
         Image parentTile;
         synchronized (cache) {
             parentTile = cache.get(parentKey);
@@ -123,14 +314,14 @@ public class TileCache {
             return null;
         }
 
+        TileScaleEvent event = new TileScaleEvent();
+        event.begin();
         // Calculate which sub-region of the parent tile to extract and scale up
         int subX = x % divisor;
         int subY = y % divisor;
         int tileSize = TileMath.TILE_SIZE;
 
-        // Scale the sub-region to a full tile via pixel manipulation.
-        // NOTE: WritableImage is a JavaFX class. This method is only called from getTile(),
-        // which is called from TileLayerView.render() on the JavaFX Application Thread.
+        // Scale the sub-region to a full tile via pixel manipulation, on the cache's own thread
         int[] pixels = new int[tileSize * tileSize];
         var reader = parentTile.getPixelReader();
         for (int dy = 0; dy < tileSize; dy++) {
@@ -143,64 +334,133 @@ public class TileCache {
         WritableImage scaled = new WritableImage(tileSize, tileSize);
         scaled.getPixelWriter().setPixels(0, 0, tileSize, tileSize,
                 PixelFormat.getIntArgbInstance(), pixels, 0, tileSize);
+        if (event.shouldCommit()) {
+            event.source = source.getId();
+            event.zoom = requestedZoom;
+            event.x = x;
+            event.y = y;
+            event.ancestorZoom = effectiveZoom;
+            event.commit();
+        }
         return scaled;
     }
 
-    private void loadTile(TileSource source, String key, int zoom, int x, int y) {
+    private void submitLoad(TileSource source, TileAddress key) {
+        TileLoadEvent event = new TileLoadEvent(source.getId(), key);
+        event.begin();
+        long queued = System.nanoTime();
+        executor.submit(() -> loadTile(source, key, event, queued));
+    }
+
+    private void loadTile(TileSource source, TileAddress key, TileLoadEvent event, long queued) {
+        long start = System.nanoTime();
+        event.queued = start - queued;
+        if (source instanceof LocalTileSource local) {
+            renderLocalTile(local, key, event, start);
+            return;
+        }
         try {
-            byte[] bytes = readBytesFromDisk(source, zoom, x, y);
-            if (bytes == null) {
-                HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(source.getTileUrl(zoom, x, y)))
-                        .header("User-Agent", "Mapster/1.0")
-                        .GET()
-                        .build();
-                HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
-                if (response.statusCode() == 200) {
-                    bytes = response.body();
-                    writeToDisk(source, zoom, x, y, bytes);
-                }
-            }
+            byte[] bytes = fetcher.fetch(source, key);
+            long loaded = System.nanoTime();
+            event.load = loaded - start;
             if (bytes != null) {
                 final byte[] finalBytes = bytes;
-                Platform.runLater(() -> {
-                    Image img = new Image(new ByteArrayInputStream(finalBytes));
+                // Hashed here rather than on the publishing thread
+                String hash = TileDiskStore.contentHash(bytes);
+                event.bytes = bytes.length;
+                publisher.execute(() -> {
+                    if (source != tileSource) {
+                        event.finish("dropped");
+                        return;
+                    }
+                    event.publishDelay = System.nanoTime() - loaded;
+                    Image img = decode(finalBytes, hash, metrics, event);
                     synchronized (cache) {
                         cache.put(key, img);
                     }
+                    event.finish("published");
                     onTileLoaded.run();
                 });
+            } else {
+                event.finish("not-found");
             }
         } catch (Exception e) {
             // Load failed — will be retried on next render
+            event.finish("failed");
         } finally {
             inflight.remove(key);
         }
     }
 
-    private byte[] readBytesFromDisk(TileSource source, int zoom, int x, int y) {
-        Path file = DISK_CACHE_DIR.resolve(source.getId() + "/" + zoom + "/" + x + "/" + y + ".png");
+    private void renderLocalTile(LocalTileSource source, TileAddress key, TileLoadEvent event, long start) {
         try {
-            if (Files.exists(file)) {
-                long age = System.currentTimeMillis() - Files.getLastModifiedTime(file).toMillis();
-                if (age < TILE_MAX_AGE_MS) {
-                    return Files.readAllBytes(file);
+            // Read before rendering: an invalidation that lands mid-render keeps the tile stale
+            long gen = generation.get();
+            int[] pixels = source.renderTile(key.zoom(), key.x(), key.y());
+            long rendered = System.nanoTime();
+            event.load = rendered - start;
+            TileMetrics.source(source.getId()).decoded(event.load);
+            publisher.execute(() -> {
+                if (source != tileSource) {
+                    inflight.remove(key);
+                    event.finish("dropped");
+                    return;
                 }
-            }
-        } catch (IOException e) {
-            // Disk read failed — fall through to network fetch
+                long decodeStart = System.nanoTime();
+                event.publishDelay = decodeStart - rendered;
+                Image img;
+                if (pixels == null) {
+                    if (emptyTile == null) emptyTile = new WritableImage(1, 1);
+                    img = emptyTile;
+                } else {
+                    int tileSize = TileMath.TILE_SIZE;
+                    WritableImage image = new WritableImage(tileSize, tileSize);
+                    image.getPixelWriter().setPixels(0, 0, tileSize, tileSize,
+                            PixelFormat.getIntArgbInstance(), pixels, 0, tileSize);
+                    img = image;
+                }
+                event.decode = System.nanoTime() - decodeStart;
+                synchronized (cache) {
+                    cache.put(key, img);
+                }
+                stale.computeIfPresent(key, (k, staleGen) -> staleGen <= gen ? null : staleGen);
+                // Cleared only once published so a render in between does not queue a duplicate
+                inflight.remove(key);
+                event.finish("published");
+                onTileLoaded.run();
+            });
+        } catch (RuntimeException e) {
+            inflight.remove(key);
+            event.finish("failed");
         }
-        return null;
     }
 
-    private void writeToDisk(TileSource source, int zoom, int x, int y, byte[] bytes) {
-        Path file = DISK_CACHE_DIR.resolve(source.getId() + "/" + zoom + "/" + x + "/" + y + ".png");
-        try {
-            Files.createDirectories(file.getParent());
-            Files.write(file, bytes);
-        } catch (IOException e) {
-            // Disk write failed — tile still served from memory
+    public int getResidentTileCount() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /** Memory held by the cached images' pixels, at four bytes a pixel, counting shared images once. */
+    public long getResidentBytes() {
+        long bytes = 0;
+        Set<Image> counted = Collections.newSetFromMap(new IdentityHashMap<>());
+        synchronized (cache) {
+            for (Image image : cache.values()) {
+                if (counted.add(image)) bytes += (long) image.getWidth() * (long) image.getHeight() * 4;
+            }
         }
+        return bytes;
+    }
+
+    /** Loads waiting for a loader thread. Safe to call from any thread. */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /** Loads not yet published, queued ones included. Safe to call from any thread. */
+    public int getInFlightCount() {
+        return inflight.size();
     }
 
     public void shutdown() {
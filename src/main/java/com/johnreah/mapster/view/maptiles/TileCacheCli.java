@@ -0,0 +1,109 @@
+package com.johnreah.mapster.view.maptiles;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Command-line tools for a tile cache: {@link TilePyramidBuilder} and {@link TileArchive} export
+ * and import. Runs without a display:
+ *
+ * <pre>
+ * java -m com.johnreah.mapster/com.johnreah.mapster.view.maptiles.TileCacheCli \
+ *     export osm 51.4,-0.3,51.6,0.1 10 16 london.tiles
+ * </pre>
+ *
+ * The user's tile cache is used unless {@code --cache DIR} comes first.
+ */
+public final class TileCacheCli {
+
+    private static final String USAGE = """
+            Usage: TileCacheCli [--cache DIR] pyramid <source id> <from zoom> [to zoom]
+                   TileCacheCli [--cache DIR] export <source id> <S,W,N,E> <min zoom> <max zoom> <file>
+                   TileCacheCli [--cache DIR] import <file> [source id]
+              pyramid   build each lower zoom, down to [to zoom] (default 0), from the tiles below it
+              export    copy a region of the cache into an archive file
+              import    copy an archive's tiles into the cache, under its own or the given source id
+            """;
+
+    private TileCacheCli() {
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int status;
+        try {
+            status = run(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            status = 2;
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            status = 1;
+        }
+        System.exit(status);
+    }
+
+    static int run(String[] args) throws IOException {
+        TileDiskStore store = null;
+        int first = 0;
+        if (args.length >= 2 && args[0].equals("--cache")) {
+            store = new TileDiskStore(Path.of(args[1]), Long.MAX_VALUE);
+            first = 2;
+        }
+        if (args.length == first) throw new IllegalArgumentException("No command given");
+        if (store == null) store = TileFetcher.shared().getDiskStore();
+        String command = args[first];
+        String[] operands = Arrays.copyOfRange(args, first + 1, args.length);
+        long start = System.nanoTime();
+        switch (command) {
+            case "pyramid" -> {
+                if (operands.length < 2 || operands.length > 3) throw new IllegalArgumentException("pyramid takes 2 or 3 operands");
+                long total = new TilePyramidBuilder(store).build(operands[0], parseInt(operands[1]),
+                        operands.length > 2 ? parseInt(operands[2]) : 0,
+                        (zoom, tiles, millis) -> System.out.printf("zoom %d: %,d tiles in %,d ms%n", zoom, tiles, millis));
+                System.out.printf("%,d tiles written in %,d ms%n", total, elapsedMillis(start));
+            }
+            case "export" -> {
+                if (operands.length != 5) throw new IllegalArgumentException("export takes 5 operands");
+                String[] box = operands[1].split(",");
+                if (box.length != 4) throw new IllegalArgumentException("Bounding box must be S,W,N,E: " + operands[1]);
+                int count = TileArchive.export(store, operands[0], parseDouble(box[0]), parseDouble(box[1]),
+                        parseDouble(box[2]), parseDouble(box[3]), parseInt(operands[2]), parseInt(operands[3]),
+                        Map.of(), Path.of(operands[4]));
+                System.out.printf("Exported %,d tiles to %s in %,d ms%n", count, operands[4], elapsedMillis(start));
+            }
+            case "import" -> {
+                if (operands.length < 1 || operands.length > 2) throw new IllegalArgumentException("import takes 1 or 2 operands");
+                try (TileArchive archive = TileArchive.open(Path.of(operands[0]))) {
+                    int count = archive.importInto(store, operands.length > 1 ? operands[1] : null);
+                    System.out.printf("Imported %,d tiles in %,d ms%n", count, elapsedMillis(start));
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown command: " + command);
+        }
+        return 0;
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a whole number: " + value);
+        }
+    }
+
+    private static double parseDouble(String value) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + value);
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,323 @@
+package com.johnreah.mapster.view.maptiles;
+
+import com.johnreah.mapster.util.TileAddress;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Which tiles a {@link TileDiskStore} holds, so a lookup can answer without touching the file
+ * system: a tile never downloaded is a definite miss, and a stored one is read at once. Each
+ * source is scanned on a background thread the first time it is looked up; a zoom is answered
+ * from the sorted Morton codes its scan found, kept current as the store writes and deletes
+ * tiles, and left to the file system until its scan is done, or for good if the scan found
+ * files it could not place, such as tiles still in the older layout.
+ *
+ * <p>It also dates the tiles this process has written or revalidated, as a tile linked to a
+ * shared blob carries the blob's date rather than its own.
+ *
+ * <p>Tiles written by other processes sharing the directory after the scan are not seen; they
+ * read as misses and are fetched again, which is harmless since writes replace files whole.
+ */
+final class TileDiskIndex {
+
+    enum Presence { STORED, ABSENT, UNKNOWN }
+
+    private final TileDiskStore store;
+    private final Map<String, Source> sources = new ConcurrentHashMap<>();
+
+    TileDiskIndex(TileDiskStore store) {
+        this.store = store;
+    }
+
+    Presence presence(String sourceId, TileAddress tile) {
+        return source(sourceId).presence(tile.zoom(), tile.morton());
+    }
+
+    void written(String sourceId, TileAddress tile, long nowMillis) {
+        source(sourceId).written(tile.zoom(), tile.morton(), nowMillis);
+    }
+
+    /** Records that a stored tile was revalidated at {@code nowMillis}. */
+    void fetched(String sourceId, TileAddress tile, long nowMillis) {
+        source(sourceId).fetched(tile.zoom(), tile.morton(), nowMillis);
+    }
+
+    /** When a tile was last written or revalidated by this process, or 0 if it has not been. */
+    long fetchedAt(String sourceId, TileAddress tile) {
+        return source(sourceId).fetchedAt(tile.zoom(), tile.morton());
+    }
+
+    void removed(String sourceId, TileAddress tile) {
+        source(sourceId).removed(tile.zoom(), tile.morton());
+    }
+
+    /** Blocks until the source's scan has finished; for tests. */
+    void awaitScan(String sourceId) throws InterruptedException {
+        source(sourceId).scanned.await();
+    }
+
+    private Source source(String sourceId) {
+        Source source = sources.get(sourceId);
+        if (source != null) return source;
+        return sources.computeIfAbsent(sourceId, id -> {
+            Source created = new Source();
+            Thread.ofVirtual().name("tile-index-" + id).start(() -> scan(id, created));
+            return created;
+        });
+    }
+
+    private void scan(String sourceId, Source source) {
+        try {
+            for (int zoom = 0; zoom <= TileAddress.MAX_ZOOM; zoom++) {
+                long[] codes;
+                try {
+                    TileDiskStore.Listing listing = store.list(sourceId, zoom);
+                    codes = listing.unplaced() ? null : listing.codes();
+                } catch (IOException e) {
+                    codes = null;
+                }
+                source.scanned(zoom, codes);
+            }
+        } finally {
+            source.scanFinished();
+        }
+    }
+
+    /** One source's zooms, each created when first written to or found by the scan. */
+    private static final class Source {
+        private final Level[] levels = new Level[TileAddress.MAX_ZOOM + 1];
+        private final CountDownLatch scanned = new CountDownLatch(1);
+        private boolean scanDone;
+
+        synchronized Presence presence(int zoom, long morton) {
+            Level level = levels[zoom];
+            if (level == null) return scanDone ? Presence.ABSENT : Presence.UNKNOWN;
+            return level.presence(morton);
+        }
+
+        synchronized void written(int zoom, long morton, long millis) {
+            Level level = level(zoom);
+            level.add(morton);
+            level.fetched(morton, millis);
+        }
+
+        synchronized void fetched(int zoom, long morton, long millis) {
+            level(zoom).fetched(morton, millis);
+        }
+
+        synchronized long fetchedAt(int zoom, long morton) {
+            Level level = levels[zoom];
+            return level == null || level.times == null ? 0 : level.times.get(morton);
+        }
+
+        synchronized void removed(int zoom, long morton) {
+            if (levels[zoom] != null || !scanDone) level(zoom).remove(morton);
+        }
+
+        /** Installs a zoom's scan: its sorted codes, or null if it is left to the file system. */
+        synchronized void scanned(int zoom, long[] codes) {
+            // A zoom without tiles needs no level once the scan is done
+            if (levels[zoom] == null && codes != null && codes.length == 0) return;
+            level(zoom).install(codes);
+        }
+
+        synchronized void scanFinished() {
+            scanDone = true;
+            scanned.countDown();
+        }
+
+        private Level level(int zoom) {
+            Level level = levels[zoom];
+            if (level == null) {
+                level = new Level(scanDone);
+                levels[zoom] = level;
+            }
+            return level;
+        }
+    }
+
+    private static final class Level {
+        // Null until the scan of this zoom is installed, and for good if it could not be completed
+        private Codes stored;
+        // Changes made before the scan was installed, applied to its result; null once it is
+        private SortedLongs added = new SortedLongs();
+        private SortedLongs deleted = new SortedLongs();
+        // Created by the first write or revalidation
+        private Times times;
+
+        Level(boolean scanned) {
+            if (scanned) install(new long[0]);
+        }
+
+        Presence presence(long morton) {
+            if (stored == null) return Presence.UNKNOWN;
+            return stored.contains(morton) ? Presence.STORED : Presence.ABSENT;
+        }
+
+        void add(long morton) {
+            if (stored != null) {
+                stored.add(morton);
+            } else if (added != null) {
+                deleted.remove(morton);
+                added.add(morton);
+            }
+        }
+
+        void remove(long morton) {
+            if (stored != null) {
+                stored.remove(morton);
+            } else if (added != null) {
+                added.remove(morton);
+                deleted.add(morton);
+            }
+        }
+
+        void fetched(long morton, long millis) {
+            if (times == null) times = new Times();
+            times.put(morton, millis);
+        }
+
+        void install(long[] codes) {
+            if (codes != null) {
+                stored = new Codes(codes);
+                for (int i = 0; i < deleted.size; i++) stored.remove(deleted.values[i]);
+                for (int i = 0; i < added.size; i++) stored.add(added.values[i]);
+            }
+            added = null;
+            deleted = null;
+        }
+    }
+
+    /**
+     * A set of Morton codes held as a sorted array, with recent additions and deletions kept
+     * in two small sorted arrays and merged into it in one pass once they grow, so a change
+     * costs little more than a binary search however many tiles the zoom has.
+     */
+    private static final class Codes {
+        private static final int MERGE_AT = 512;
+
+        private long[] base;
+        // Codes not in base, and codes of base since deleted
+        private final SortedLongs added = new SortedLongs();
+        private final SortedLongs deleted = new SortedLongs();
+
+        Codes(long[] sorted) {
+            this.base = sorted;
+        }
+
+        boolean contains(long morton) {
+            if (added.contains(morton)) return true;
+            return Arrays.binarySearch(base, morton) >= 0 && !deleted.contains(morton);
+        }
+
+        void add(long morton) {
+            if (deleted.remove(morton)) return;
+            if (Arrays.binarySearch(base, morton) < 0) added.add(morton);
+            mergeIfLarge();
+        }
+
+        void remove(long morton) {
+            if (added.remove(morton)) return;
+            if (Arrays.binarySearch(base, morton) >= 0) deleted.add(morton);
+            mergeIfLarge();
+        }
+
+        private void mergeIfLarge() {
+            if (added.size + deleted.size < MERGE_AT) return;
+            long[] merged = new long[base.length - deleted.size + added.size];
+            int b = 0, a = 0, d = 0, n = 0;
+            while (b < base.length || a < added.size) {
+                if (a == added.size || (b < base.length && base[b] < added.values[a])) {
+                    long code = base[b++];
+                    while (d < deleted.size && deleted.values[d] < code) d++;
+                    if (d < deleted.size && deleted.values[d] == code) continue;
+                    merged[n++] = code;
+                } else {
+                    merged[n++] = added.values[a++];
+                }
+            }
+            base = merged;
+            added.clear();
+            deleted.clear();
+        }
+    }
+
+    /** Times by Morton code in an open-addressed table; a time of 0 marks an empty slot. */
+    private static final class Times {
+        private long[] keys = new long[16];
+        private long[] values = new long[16];
+        private int size;
+
+        long get(long key) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); values[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == key) return values[i];
+            }
+            return 0;
+        }
+
+        void put(long key, long value) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (values[i] != 0 && keys[i] != key) i = (i + 1) & mask;
+            if (values[i] == 0 && ++size * 2 > keys.length) {
+                grow();
+                put(key, value);
+                return;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new long[oldValues.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != 0) put(oldKeys[i], oldValues[i]);
+            }
+        }
+
+        private static int slot(long key, int mask) {
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        }
+    }
+
+    /** A small set of longs in a sorted array. */
+    private static final class SortedLongs {
+        private long[] values = new long[16];
+        private int size;
+
+        boolean contains(long value) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+
+        void add(long value) {
+            int i = Arrays.binarySearch(values, 0, size, value);
+            if (i >= 0) return;
+            i = -i - 1;
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            System.arraycopy(values, i, values, i + 1, size - i);
+            values[i] = value;
+            size++;
+        }
+
+        boolean remove(long value) {
+            int i = Arrays.binarySearch(values, 0, size, value);
+            if (i < 0) return false;
+            System.arraycopy(values, i + 1, values, i, size - i - 1);
+            size--;
+            return true;
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package com.johnreah.mapster.view.maptiles;
+
+import com.johnreah.mapster.util.TileAddress;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Downloaded tile images on disk, one file per tile under {@code <root>/<source id>/<zoom>/}.
+ *
+ * <p>Files are grouped by quadkey: a tile's directory is named by all but the last
+ * {@link #BLOCK_DIGITS} digits of its quadkey and its file by the rest, so each directory holds
+ * one 16x16 block of neighbouring tiles and a region of the map is read from a handful of
+ * directories. Files in the older {@code <zoom>/<x>/<y>.png} layout are moved across the
+ * first time they are read.
+ *
+ * <p>Several processes can share one store without locks. A tile is written to a temporary
+ * file beside its final path and renamed over it in one atomic step, so a reader, in this
+ * process or another, sees the old file or the new one and never part of either; concurrent
+ * writers of the same tile each rename a complete file, and the last one wins. Each file ends
+ * with a CRC-32C of the tile, checked on every read, so a file left incomplete by a crash
+ * before it reached the disk is treated as missing, fetched again and replaced rather than
+ * served until it expires.
+ *
+ * <p>Small tiles with the same bytes, such as open sea or empty land, share one file: each
+ * distinct content is stored once as a blob under {@code <root>/.blobs/}, named by its SHA-256,
+ * and every tile holding it is a hard link to that blob, so reads see an ordinary file. A blob
+ * is deleted when the last tile linking to it is replaced or deleted, found by its link count;
+ * on a file system that does not count links, or cannot make them, each tile gets its own copy.
+ * A tile is dated by its file, except that a linked tile shares its blob's date, which is when
+ * the blob was first written: the tiles written or revalidated since are dated by the index
+ * instead, and the rest may look older than they are and be revalidated early, never late.
+ *
+ * <p>A {@link TileDiskIndex} of the stored tiles, built in the background, lets a lookup skip
+ * the file system for a tile that was never stored and go straight to the read for one that
+ * was.
+ */
+public final class TileDiskStore {
+
+    /** Quadkey digits in a file name; a directory holds up to {@code 4^BLOCK_DIGITS} tiles. */
+    static final int BLOCK_DIGITS = 4;
+
+    // Trailer after the tile's bytes: CRC-32C of the tile, then this marker
+    private static final int TRAILER_BYTES = 8;
+    private static final int TRAILER_MAGIC = 0x4D544331; // "MTC1"
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] PNG_END = {'I', 'E', 'N', 'D', (byte) 0xAE, 0x42, 0x60, (byte) 0x82};
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String BLOB_DIR = ".blobs";
+    // Blank tiles that repeat compress to a few hundred bytes; a detailed tile almost never
+    // repeats, so a blob would only add a second name for it
+    private static final int SHARED_MAX_BYTES = 4096;
+    // Temporary names are unique across processes by pid and within one by this counter
+    private static final AtomicLong tempCounter = new AtomicLong();
+
+    /** A stored tile; {@code fresh} is false once it is older than the store's maximum age. */
+    public record Entry(byte[] bytes, long lastModifiedMillis, boolean fresh) {}
+
+    /** The tiles found at one zoom, and whether files were found there that are not in the layout. */
+    record Listing(long[] codes, boolean unplaced) {}
+
+    private final Path root;
+    private final long maxAgeMillis;
+    private final TileDiskIndex index = new TileDiskIndex(this);
+    // Null until the first write checks that the file system counts links; cleared if it refuses one
+    private volatile Boolean linking;
+
+    public TileDiskStore(Path root, long maxAgeMillis) {
+        this(root, maxAgeMillis, true);
+    }
+
+    /** A store that gives every tile its own copy unless {@code linking} and the file system allow. */
+    TileDiskStore(Path root, long maxAgeMillis, boolean linking) {
+        this.root = root;
+        this.maxAgeMillis = maxAgeMillis;
+        this.linking = linking ? null : false;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /** Where a tile of the given source is stored. */
+    public Path pathOf(String sourceId, TileAddress tile) {
+        String quadKey = tile.quadKey();
+        int split = Math.max(0, quadKey.length() - BLOCK_DIGITS);
+        Path dir = root.resolve(sourceId).resolve(Integer.toString(tile.zoom()));
+        if (split > 0) dir = dir.resolve(quadKey.substring(0, split));
+        // Zoom 0 has an empty quadkey
+        return dir.resolve((quadKey.isEmpty() ? "t" : quadKey.substring(split)) + ".png");
+    }
+
+    /**
+     * Morton codes of every tile stored for a source at {@code zoom}, in ascending order. Tiles
+     * still in the older layout are not listed until they have been read once.
+     */
+    public long[] tilesAt(String sourceId, int zoom) throws IOException {
+        return list(sourceId, zoom).codes();
+    }
+
+    Listing list(String sourceId, int zoom) throws IOException {
+        Path dir = root.resolve(sourceId).resolve(Integer.toString(zoom));
+        if (!Files.isDirectory(dir)) return new Listing(new long[0], false);
+        int prefixLength = Math.max(0, zoom - BLOCK_DIGITS);
+        long[] codes = new long[64];
+        int count = 0;
+        boolean unplaced = false;
+        try (Stream<Path> files = Files.walk(dir, prefixLength > 0 ? 2 : 1)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                // Below zoom 5 tiles sit directly in the zoom's directory, so a subdirectory is the older layout
+                if (prefixLength == 0 && !file.equals(dir) && Files.isDirectory(file)) unplaced = true;
+                String name = file.getFileName().toString();
+                if (!name.endsWith(".png") || !Files.isRegularFile(file)) continue;
+                String stem = name.substring(0, name.length() - 4);
+                String prefix = prefixLength > 0 && !file.getParent().equals(dir)
+                        ? file.getParent().getFileName().toString() : "";
+                String quadKey = zoom == 0 && stem.equals("t") ? "" : prefix + stem;
+                if (quadKey.length() != zoom || prefix.length() != prefixLength
+                        || !quadKey.chars().allMatch(c -> c >= '0' && c <= '3')) {
+                    unplaced = true;
+                    continue;
+                }
+                if (count == codes.length) codes = Arrays.copyOf(codes, count * 2);
+                codes[count++] = TileAddress.fromQuadKey(quadKey).morton();
+            }
+        }
+        long[] result = Arrays.copyOf(codes, count);
+        Arrays.sort(result);
+        return new Listing(result, unplaced);
+    }
+
+    /** Where the blob holding tiles with the given {@linkplain #contentHash content hash} is stored. */
+    Path blobPathOf(String hash) {
+        return root.resolve(BLOB_DIR).resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    /** The SHA-256 of a tile's bytes in hex, naming its blob and sharing its decoded image. */
+    static String contentHash(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required of every Java platform", e);
+        }
+    }
+
+    private Path legacyPathOf(String sourceId, TileAddress tile) {
+        return root.resolve(sourceId + "/" + tile.zoom() + "/" + tile.x() + "/" + tile.y() + ".png");
+    }
+
+    /** The stored bytes of a tile, or null if it is missing, expired or unreadable. */
+    public byte[] read(String sourceId, TileAddress tile) {
+        Entry entry = lookup(sourceId, tile);
+        return entry != null && entry.fresh() ? entry.bytes() : null;
+    }
+
+    /**
+     * The stored copy of a tile whatever its age, so an expired tile can be revalidated with
+     * the server rather than downloaded again; null if it is missing or unreadable.
+     */
+    public Entry lookup(String sourceId, TileAddress tile) {
+        TileDiskIndex.Presence presence = index.presence(sourceId, tile);
+        if (presence == TileDiskIndex.Presence.ABSENT) return null;
+        Path file = pathOf(sourceId, tile);
+        try {
+            if (presence == TileDiskIndex.Presence.UNKNOWN && !Files.exists(file)) {
+                Path legacy = legacyPathOf(sourceId, tile);
+                if (!Files.exists(legacy)) return null;
+                Files.createDirectories(file.getParent());
+                Files.move(legacy, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            long modified = index.fetchedAt(sourceId, tile);
+            if (modified == 0) modified = Files.getLastModifiedTime(file).toMillis();
+            byte[] bytes = verified(Files.readAllBytes(file));
+            // A damaged file is left for the refetched tile to replace
+            if (bytes == null) return null;
+            return new Entry(bytes, modified, System.currentTimeMillis() - modified < maxAgeMillis);
+        } catch (NoSuchFileException e) {
+            // Deleted behind the store's back since it was indexed
+            index.removed(sourceId, tile);
+            return null;
+        } catch (IOException e) {
+            // Disk read failed — caller falls through to network fetch
+            return null;
+        }
+    }
+
+    /**
+     * The tile in a stored file, or null if it is damaged: the bytes before the trailer if its
+     * checksum matches, or for a file written before trailers were added, the whole file
+     * unless it is a PNG or JPEG cut short.
+     */
+    static byte[] verified(byte[] stored) {
+        int length = stored.length - TRAILER_BYTES;
+        ByteBuffer buffer = ByteBuffer.wrap(stored);
+        if (length >= 0 && buffer.getInt(length + 4) == TRAILER_MAGIC) {
+            CRC32C crc = new CRC32C();
+            crc.update(stored, 0, length);
+            return (int) crc.getValue() == buffer.getInt(length) ? Arrays.copyOf(stored, length) : null;
+        }
+        if (stored.length == 0) return null;
+        if (startsWith(stored, PNG_SIGNATURE)) return endsWith(stored, PNG_END) ? stored : null;
+        if (startsWith(stored, new byte[]{(byte) 0xFF, (byte) 0xD8})) {
+            return endsWith(stored, new byte[]{(byte) 0xFF, (byte) 0xD9}) ? stored : null;
+        }
+        return stored;
+    }
+
+    private static boolean startsWith(byte[] bytes, byte[] prefix) {
+        return bytes.length >= prefix.length && Arrays.equals(bytes, 0, prefix.length, prefix, 0, prefix.length);
+    }
+
+    private static boolean endsWith(byte[] bytes, byte[] suffix) {
+        return bytes.length >= suffix.length
+                && Arrays.equals(bytes, bytes.length - suffix.length, bytes.length, suffix, 0, suffix.length);
+    }
+
+    /** Blocks until the index of a source's tiles has been built; for tests. */
+    void awaitIndex(String sourceId) throws InterruptedException {
+        index.awaitScan(sourceId);
+    }
+
+    /** Removes a stored tile, if there is one, so it reads as missing until written again. */
+    public void delete(String sourceId, TileAddress tile) throws IOException {
+        Path file = pathOf(sourceId, tile);
+        Path blob = linkedBlob(file, null);
+        Files.deleteIfExists(file);
+        index.removed(sourceId, tile);
+        if (blob != null) collect(blob);
+    }
+
+    /** Marks a stored tile as fresh again after the server confirmed it is unchanged. */
+    public void touch(String sourceId, TileAddress tile, long nowMillis) {
+        index.fetched(sourceId, tile, nowMillis);
+        try {
+            // A linked tile's date is its blob's, shared with other tiles
+            Path file = pathOf(sourceId, tile);
+            if (linkCount(file) < 2) Files.setLastModifiedTime(file, FileTime.fromMillis(nowMillis));
+        } catch (IOException e) {
+            // Left expired — revalidated again next time
+        }
+    }
+
+    /**
+     * Stores a tile with its checksum, linked to the blob of its content if it is small, replacing any stored
+     * copy atomically. Failures are ignored: the tile is still served from memory.
+     */
+    public void write(String sourceId, TileAddress tile, byte[] bytes) {
+        Path file = pathOf(sourceId, tile);
+        Path temp = tempBeside(file);
+        CRC32C crc = new CRC32C();
+        crc.update(bytes);
+        byte[] stored = Arrays.copyOf(bytes, bytes.length + TRAILER_BYTES);
+        ByteBuffer.wrap(stored, bytes.length, TRAILER_BYTES).putInt((int) crc.getValue()).putInt(TRAILER_MAGIC);
+        try {
+            Files.createDirectories(file.getParent());
+            Path blob = bytes.length <= SHARED_MAX_BYTES && linking(file.getParent())
+                    ? blobPathOf(contentHash(bytes)) : null;
+            Path previous = linkedBlob(file, blob);
+            // Fetching a tile again with the content it already links to usually means its blob is damaged
+            boolean refetched = blob != null && blob.equals(previous);
+            if (!refetched || !intact(blob, stored)) {
+                boolean linked = blob != null && linkToBlob(blob, stored, temp, refetched);
+                if (!linked) writeNew(temp, stored);
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                // Renaming a link over another link to the same blob does nothing, leaving the temporary name
+                if (linked) deleteTemp(temp);
+            }
+            index.written(sourceId, tile, System.currentTimeMillis());
+            if (previous != null && !previous.equals(blob)) collect(previous);
+        } catch (IOException e) {
+            // Disk write failed, or on Windows another process has the file open — tile still served from memory
+            deleteTemp(temp);
+        }
+    }
+
+    /**
+     * Links {@code temp} to the blob holding {@code stored}, first writing the blob if it is
+     * missing, the wrong size or known to be {@code damaged}; false if the file system cannot
+     * link. A blob of the right size is trusted, as its name is the hash of its content.
+     */
+    private boolean linkToBlob(Path blob, byte[] stored, Path temp, boolean damaged) throws IOException {
+        boolean retried = false;
+        while (true) {
+            if (damaged || !hasSize(blob, stored.length)) {
+                damaged = false;
+                Files.createDirectories(blob.getParent());
+                Path blobTemp = tempBeside(blob);
+                try {
+                    writeNew(blobTemp, stored);
+                    // Tiles still linked to a damaged blob keep it until they are rewritten
+                    Files.move(blobTemp, blob, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    deleteTemp(blobTemp);
+                }
+            }
+            try {
+                Files.createLink(temp, blob);
+                return true;
+            } catch (NoSuchFileException e) {
+                // Collected by another writer since it was checked; written again once
+                if (retried) throw e;
+                retried = true;
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                linking = Boolean.FALSE;
+                return false;
+            }
+        }
+    }
+
+    private static boolean hasSize(Path blob, long size) {
+        try {
+            return Files.size(blob) == size;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean intact(Path blob, byte[] stored) {
+        try {
+            return hasSize(blob, stored.length) && Arrays.equals(Files.readAllBytes(blob), stored);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The blob a stored tile is linked to, or null if it is missing, not linked, damaged or the
+     * file system does not count links. {@code likely} is checked first, without reading the tile.
+     */
+    private Path linkedBlob(Path file, Path likely) {
+        try {
+            if (linkCount(file) < 2) return null;
+            if (likely != null && isSameFile(file, likely)) return likely;
+            byte[] bytes = verified(Files.readAllBytes(file));
+            if (bytes == null) return null;
+            Path blob = blobPathOf(contentHash(bytes));
+            return isSameFile(file, blob) ? blob : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** Deletes a blob once no tile links to it. */
+    private static void collect(Path blob) {
+        try {
+            if (linkCount(blob) == 1) Files.deleteIfExists(blob);
+        } catch (IOException ignored) {
+            // Left behind; linked again if a tile with its content is written
+        }
+    }
+
+    /** The number of names a file has, or 0 if the file system does not say. */
+    private static int linkCount(Path file) throws IOException {
+        try {
+            return ((Number) Files.getAttribute(file, "unix:nlink")).intValue();
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            return 0;
+        }
+    }
+
+    private static boolean isSameFile(Path file, Path other) {
+        try {
+            return Files.isSameFile(file, other);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Whether tiles are linked to blobs: only where the file system counts links, checked once
+     * on the first write, as without the count a blob could never be deleted.
+     */
+    private boolean linking(Path dir) {
+        Boolean result = linking;
+        if (result == null) {
+            try {
+                result = linkCount(dir) > 0;
+            } catch (IOException e) {
+                result = false;
+            }
+            linking = result;
+        }
+        return result;
+    }
+
+    private static Path tempBeside(Path file) {
+        return file.resolveSibling("." + file.getFileName() + "." + ProcessHandle.current().pid()
+                + "." + tempCounter.incrementAndGet() + TEMP_SUFFIX);
+    }
+
+    private static void writeNew(Path file, byte[] bytes) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            out.write(bytes);
+        }
+    }
+
+    private static void deleteTemp(Path temp) {
+        try {
+            Files.deleteIfExists(temp);
+        } catch (IOException ignored) {
+            // Left behind; never read, as it does not end in .png
+        }
+    }
+}
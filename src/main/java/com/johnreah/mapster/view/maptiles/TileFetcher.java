@@ -0,0 +1,119 @@
+package com.johnreah.mapster.view.maptiles;
+
+import com.johnreah.mapster.metrics.TileFetchEvent;
+import com.johnreah.mapster.metrics.TileMetrics;
+import com.johnreah.mapster.metrics.TileSourceMetrics;
+import com.johnreah.mapster.util.TileAddress;
+import com.johnreah.mapster.util.TileSource;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Fetches the encoded image of a remote tile, from a {@link TileDiskStore} if it holds a fresh
+ * copy and otherwise over HTTP, storing what it downloads and revalidating expired copies. Blocking and thread-safe; shared by
+ * the interactive {@link TileCache} and headless rendering.
+ */
+public class TileFetcher {
+
+    private static final long TILE_MAX_AGE_MS = 30L * 24 * 60 * 60 * 1000;
+    private static final Path DISK_CACHE_DIR = Path.of(System.getProperty("user.home"), ".mapster", "tiles");
+
+    private static final class Shared {
+        static final TileFetcher INSTANCE = new TileFetcher(new TileDiskStore(DISK_CACHE_DIR, TILE_MAX_AGE_MS));
+    }
+
+    private final TileDiskStore diskStore;
+    private final HttpClient httpClient;
+
+    public TileFetcher(TileDiskStore diskStore) {
+        this.diskStore = diskStore;
+        this.httpClient = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /** The fetcher over the user's tile cache in {@code ~/.mapster/tiles}. */
+    public static TileFetcher shared() {
+        return Shared.INSTANCE;
+    }
+
+    public TileDiskStore getDiskStore() {
+        return diskStore;
+    }
+
+    /** The tile's encoded bytes, or null if the server has no such tile. */
+    public byte[] fetch(TileSource source, TileAddress tile) throws IOException, InterruptedException {
+        TileDiskStore.Entry entry = fetchEntry(source, tile);
+        return entry == null ? null : entry.bytes();
+    }
+
+    /**
+     * The tile with its modification time. A fresh disk copy is returned as is; an expired one
+     * is revalidated with {@code If-Modified-Since} and kept if the server answers 304, or if
+     * the server cannot be reached. Returns null if there is no copy and the server has no
+     * such tile. Disk hits and network responses are counted in the source's
+     * {@link TileMetrics}, and each call is recorded as a {@link TileFetchEvent}.
+     */
+    public TileDiskStore.Entry fetchEntry(TileSource source, TileAddress tile) throws IOException, InterruptedException {
+        TileFetchEvent event = new TileFetchEvent(source.getId(), tile);
+        event.begin();
+        event.origin = "none";
+        try {
+            TileDiskStore.Entry entry = fetchEntry(source, tile, event);
+            if (entry != null) event.bytes = entry.bytes().length;
+            return entry;
+        } finally {
+            event.commit();
+        }
+    }
+
+    private TileDiskStore.Entry fetchEntry(TileSource source, TileAddress tile, TileFetchEvent event)
+            throws IOException, InterruptedException {
+        TileSourceMetrics metrics = TileMetrics.source(source.getId());
+        TileDiskStore.Entry stored = diskStore.lookup(source.getId(), tile);
+        if (stored != null && stored.fresh()) {
+            metrics.diskHit();
+            event.origin = "disk";
+            return stored;
+        }
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+                .uri(URI.create(source.getTileUrl(tile.zoom(), tile.x(), tile.y())))
+                .header("User-Agent", "Mapster/1.0")
+                .GET();
+        if (stored != null) {
+            request.header("If-Modified-Since", DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                    ZonedDateTime.ofInstant(Instant.ofEpochMilli(stored.lastModifiedMillis()), ZoneOffset.UTC)));
+            event.origin = "stale";
+        }
+        HttpResponse<byte[]> response;
+        try {
+            response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            metrics.networkFailure();
+            if (stored != null) return stored;
+            throw e;
+        }
+        event.status = response.statusCode();
+        metrics.networkResponse(response.statusCode(), response.body().length);
+        long now = System.currentTimeMillis();
+        if (response.statusCode() == 304 && stored != null) {
+            diskStore.touch(source.getId(), tile, now);
+            event.origin = "revalidated";
+            return new TileDiskStore.Entry(stored.bytes(), now, true);
+        }
+        if (response.statusCode() != 200) return stored;
+        byte[] bytes = response.body();
+        diskStore.write(source.getId(), tile, bytes);
+        event.origin = "network";
+        return new TileDiskStore.Entry(bytes, now, true);
+    }
+}
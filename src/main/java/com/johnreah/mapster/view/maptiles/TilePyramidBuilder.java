@@ -0,0 +1,262 @@
+package com.johnreah.mapster.view.maptiles;
+
+import com.johnreah.mapster.util.TileAddress;
+import com.johnreah.mapster.util.TileMath;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serial;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates the lower zoom levels of a source from the tiles already in its disk cache, for
+ * imagery that only exists at its highest zoom. {@link TileCache} can enlarge a tile for zooms
+ * past a source's maximum but never shrink one, so without this a source is unusable zoomed out.
+ *
+ * <p>Each parent tile is the 2x2 box-filtered reduction of its four children (missing children
+ * leave their quarter transparent). Levels are built one at a time from the deepest: the tiles
+ * of a level are listed as sorted Morton codes, so the children of one parent are adjacent and
+ * the parents of a level are just the distinct codes shifted right by two bits. A fork-join
+ * task splits the parents of a level into ranges; each worker reads at most four children and
+ * writes one parent at a time, so memory is bounded by the tile lists, not the imagery.
+ * Parents are written into the same {@link TileDiskStore}, where {@link TileFetcher} serves
+ * them before trying the network.
+ */
+public class TilePyramidBuilder {
+
+    private static final int TILE_SIZE = TileMath.TILE_SIZE;
+    private static final int SEQUENTIAL_THRESHOLD = 16;
+    // High enough that re-encoding once per level does not visibly degrade the top of the pyramid
+    private static final float JPEG_QUALITY = 0.92f;
+
+    /** Receives progress after each level; called on the thread running {@link #build}. */
+    @FunctionalInterface
+    public interface Listener {
+        void levelBuilt(int zoom, int tiles, long millis);
+    }
+
+    private final TileDiskStore store;
+    private final ForkJoinPool pool;
+
+    public TilePyramidBuilder(TileDiskStore store) {
+        this(store, ForkJoinPool.commonPool());
+    }
+
+    public TilePyramidBuilder(TileDiskStore store, ForkJoinPool pool) {
+        this.store = store;
+        this.pool = pool;
+    }
+
+    /**
+     * Builds zooms {@code fromZoom - 1} down to {@code toZoom} from the tiles stored at
+     * {@code fromZoom}, replacing any tiles already stored at those zooms.
+     *
+     * @return the number of tiles written
+     */
+    public long build(String sourceId, int fromZoom, int toZoom, Listener listener) throws IOException {
+        if (toZoom < 0 || toZoom >= fromZoom) throw new IllegalArgumentException("Invalid zoom range " + fromZoom + " to " + toZoom);
+        long[] children = store.tilesAt(sourceId, fromZoom);
+        long written = 0;
+        for (int zoom = fromZoom - 1; zoom >= toZoom && children.length > 0; zoom--) {
+            long start = System.nanoTime();
+            long[] parents = parentsOf(children);
+            AtomicInteger built = new AtomicInteger();
+            try {
+                pool.invoke(new LevelTask(sourceId, zoom, parents, children, 0, parents.length, built));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            written += built.get();
+            if (listener != null) listener.levelBuilt(zoom, built.get(), (System.nanoTime() - start) / 1_000_000);
+            children = parents;
+        }
+        return written;
+    }
+
+    /** Distinct parent codes of sorted child codes, in order. */
+    static long[] parentsOf(long[] children) {
+        long[] parents = new long[children.length];
+        int count = 0;
+        for (long child : children) {
+            long parent = child >>> 2;
+            if (count == 0 || parents[count - 1] != parent) parents[count++] = parent;
+        }
+        return Arrays.copyOf(parents, count);
+    }
+
+    private final class LevelTask extends RecursiveAction {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final String sourceId;
+        private final int zoom;
+        private final long[] parents;
+        private final long[] children;
+        private final int from;
+        private final int to;
+        private final AtomicInteger built;
+
+        LevelTask(String sourceId, int zoom, long[] parents, long[] children, int from, int to, AtomicInteger built) {
+            this.sourceId = sourceId;
+            this.zoom = zoom;
+            this.parents = parents;
+            this.children = children;
+            this.from = from;
+            this.to = to;
+            this.built = built;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                // First child of this range's first parent
+                int c = Arrays.binarySearch(children, parents[from] << 2);
+                if (c < 0) c = -c - 1;
+                for (int p = from; p < to; p++) {
+                    long parent = parents[p];
+                    int[][] quarters = new int[4][];
+                    for (; c < children.length && children[c] >>> 2 == parent; c++) {
+                        quarters[(int) (children[c] & 3)] = readPixels(TileAddress.fromMorton(zoom + 1, children[c]));
+                    }
+                    int[] merged = merge(quarters);
+                    if (merged != null) {
+                        store.write(sourceId, TileAddress.fromMorton(zoom, parent), encode(merged));
+                        built.incrementAndGet();
+                    }
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new LevelTask(sourceId, zoom, parents, children, from, mid, built),
+                      new LevelTask(sourceId, zoom, parents, children, mid, to, built));
+        }
+
+        private int[] readPixels(TileAddress tile) {
+            TileDiskStore.Entry entry = store.lookup(sourceId, tile);
+            if (entry == null) return null;
+            try {
+                BufferedImage image = ImageIO.read(new ByteArrayInputStream(entry.bytes()));
+                if (image == null || image.getWidth() != TILE_SIZE || image.getHeight() != TILE_SIZE) return null;
+                return argbPixels(image);
+            } catch (IOException e) {
+                return null; // Unreadable tile: its quarter stays transparent
+            }
+        }
+    }
+
+    /** The image as ARGB, reading the common JPEG and PNG layouts without per-pixel conversion. */
+    static int[] argbPixels(BufferedImage image) {
+        int n = TILE_SIZE * TILE_SIZE;
+        switch (image.getType()) {
+            case BufferedImage.TYPE_3BYTE_BGR -> {
+                byte[] bgr = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+                int[] argb = new int[n];
+                for (int i = 0, j = 0; i < n; i++, j += 3) {
+                    argb[i] = 0xFF000000 | (bgr[j + 2] & 0xFF) << 16 | (bgr[j + 1] & 0xFF) << 8 | (bgr[j] & 0xFF);
+                }
+                return argb;
+            }
+            case BufferedImage.TYPE_4BYTE_ABGR -> {
+                byte[] abgr = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+                int[] argb = new int[n];
+                for (int i = 0, j = 0; i < n; i++, j += 4) {
+                    argb[i] = (abgr[j] & 0xFF) << 24 | (abgr[j + 3] & 0xFF) << 16 | (abgr[j + 2] & 0xFF) << 8 | (abgr[j + 1] & 0xFF);
+                }
+                return argb;
+            }
+            default -> {
+                return image.getRGB(0, 0, TILE_SIZE, TILE_SIZE, null, 0, TILE_SIZE);
+            }
+        }
+    }
+
+    /**
+     * Halves four child tiles (indexed by quadkey digit, null if missing) into one parent tile
+     * of non-premultiplied ARGB, averaging colour weighted by alpha so transparent pixels do not
+     * darken edges. Returns null if every child is missing.
+     */
+    static int[] merge(int[][] quarters) {
+        if (quarters[0] == null && quarters[1] == null && quarters[2] == null && quarters[3] == null) return null;
+        int half = TILE_SIZE / 2;
+        int[] out = new int[TILE_SIZE * TILE_SIZE];
+        for (int q = 0; q < 4; q++) {
+            int[] child = quarters[q];
+            if (child == null) continue;
+            int ox = (q & 1) * half;
+            int oy = (q >> 1) * half;
+            for (int y = 0; y < half; y++) {
+                int row = 2 * y * TILE_SIZE;
+                for (int x = 0; x < half; x++) {
+                    int i = row + 2 * x;
+                    out[(oy + y) * TILE_SIZE + ox + x] = average(child[i], child[i + 1],
+                            child[i + TILE_SIZE], child[i + TILE_SIZE + 1]);
+                }
+            }
+        }
+        return out;
+    }
+
+    private static int average(int p0, int p1, int p2, int p3) {
+        int a0 = p0 >>> 24, a1 = p1 >>> 24, a2 = p2 >>> 24, a3 = p3 >>> 24;
+        int alphaSum = a0 + a1 + a2 + a3;
+        if (alphaSum == 0) return 0;
+        int r = (((p0 >> 16) & 0xFF) * a0 + ((p1 >> 16) & 0xFF) * a1 + ((p2 >> 16) & 0xFF) * a2 + ((p3 >> 16) & 0xFF) * a3
+                + alphaSum / 2) / alphaSum;
+        int g = (((p0 >> 8) & 0xFF) * a0 + ((p1 >> 8) & 0xFF) * a1 + ((p2 >> 8) & 0xFF) * a2 + ((p3 >> 8) & 0xFF) * a3
+                + alphaSum / 2) / alphaSum;
+        int b = ((p0 & 0xFF) * a0 + (p1 & 0xFF) * a1 + (p2 & 0xFF) * a2 + (p3 & 0xFF) * a3
+                + alphaSum / 2) / alphaSum;
+        int a = (alphaSum + 2) / 4;
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * Fully opaque tiles (imagery) are stored as JPEG, several times faster to encode than PNG
+     * and far smaller; tiles with transparent parts keep their alpha as PNG.
+     */
+    static byte[] encode(int[] argb) {
+        boolean opaque = true;
+        for (int p : argb) {
+            if (p >>> 24 != 0xFF) {
+                opaque = false;
+                break;
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32 * 1024);
+        try {
+            if (opaque) {
+                BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+                image.setRGB(0, 0, TILE_SIZE, TILE_SIZE, argb, 0, TILE_SIZE);
+                ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+                try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+                    ImageWriteParam param = writer.getDefaultWriteParam();
+                    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                    param.setCompressionQuality(JPEG_QUALITY);
+                    writer.setOutput(stream);
+                    writer.write(null, new IIOImage(image, null, null), param);
+                } finally {
+                    writer.dispose();
+                }
+            } else {
+                BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+                image.setRGB(0, 0, TILE_SIZE, TILE_SIZE, argb, 0, TILE_SIZE);
+                ImageIO.write(image, "png", out);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
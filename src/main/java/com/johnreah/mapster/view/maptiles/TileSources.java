@@ -0,0 +1,40 @@
+package com.johnreah.mapster.view.maptiles;
+
+import com.johnreah.mapster.util.TileSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** The tile sources the application offers, shared by the window, the tile server and the CLI. */
+public final class TileSources {
+
+    private TileSources() {}
+
+    /**
+     * The built-in base map sources, with Ordnance Survey layers only when an API key is set.
+     * When {@value ProxyTileSource#PROXY_ENV} names a shared tile server, every source fetches
+     * through it. The procedural test map comes last, for working without a network.
+     */
+    public static List<TileSource> builtIn() {
+        List<TileSource> sources = new ArrayList<>();
+        sources.add(new OsmTileSource());
+        sources.add(new GoogleStreetMapsTileSource());
+        sources.add(new GoogleSatelliteTileSource());
+
+        OrdnanceSurveyTileSource osRoad = new OrdnanceSurveyTileSource(
+                OrdnanceSurveyTileSource.ROAD_LAYER, OrdnanceSurveyTileSource.ROAD_DISPLAY_NAME);
+        if (osRoad.isAvailable()) sources.add(osRoad);
+
+        OrdnanceSurveyTileSource osOutdoor = new OrdnanceSurveyTileSource(
+                OrdnanceSurveyTileSource.OUTDOOR_LAYER, OrdnanceSurveyTileSource.OUTDOOR_DISPLAY_NAME);
+        if (osOutdoor.isAvailable()) sources.add(osOutdoor);
+
+        String proxy = System.getenv(ProxyTileSource.PROXY_ENV);
+        if (proxy != null && !proxy.isBlank()) {
+            sources.replaceAll(source -> new ProxyTileSource(source, proxy.trim()));
+        }
+        // Generated in-process, so always available and never proxied
+        sources.add(new ProceduralTileSource());
+        return sources;
+    }
+}
@@ -1,16 +1,71 @@
 package com.johnreah.mapster.viewmodel;
 
+import com.johnreah.mapster.io.DrawingFile;
+
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
 /**
  * ViewModel for a drawing layer. Owns the {@link DrawingTool} that holds all
- * drawing state and behaviour for this layer.
+ * drawing state and behaviour for this layer, and the {@link DrawingFile} it was
+ * opened from or last saved to, if any.
  */
 public class DrawingLayerViewModel extends LayerViewModel {
 
     private final DrawingTool drawingTool = new DrawingTool();
+    private final BooleanProperty rasterised = new SimpleBooleanProperty(false);
+    private DrawingFile drawingFile;
 
     public DrawingLayerViewModel(String id, String displayName) {
         super(id, displayName);
+        // Every edit is noted so that saving only has to journal what changed
+        drawingTool.addLineEditListener((lineIndex, fromPoint, toPoint) -> {
+            if (drawingFile != null) drawingFile.recordEdit(lineIndex, fromPoint, toPoint);
+        });
     }
 
     public DrawingTool getDrawingTool() { return drawingTool; }
+
+    /**
+     * When true, completed lines are drawn from cached raster tiles rendered in the background
+     * instead of being re-stroked every frame. Only the line in progress and a dragged vertex
+     * are drawn live.
+     */
+    public BooleanProperty rasterisedProperty() { return rasterised; }
+    public boolean isRasterised() { return rasterised.get(); }
+
+    /** The file this layer is saved to, or null if it has never been saved. */
+    public Path getDrawingPath() {
+        return drawingFile != null ? drawingFile.getPath() : null;
+    }
+
+    /** Replaces this layer's lines with those of a drawing file. Points are loaded lazily. */
+    public void openDrawing(Path path) throws IOException {
+        DrawingFile opened = DrawingFile.open(path);
+        closeDrawing();
+        drawingFile = opened;
+        drawingTool.replaceLines(opened.getLines());
+    }
+
+    /** Saves the edits made since the last save or open. Does nothing if there is no file yet. */
+    public void saveDrawing() throws IOException {
+        if (drawingFile != null) drawingFile.save(drawingTool.getCompletedLines());
+    }
+
+    /** Writes all lines to a new file, which later saves then update incrementally. */
+    public void saveDrawingAs(Path path) throws IOException {
+        DrawingFile created = DrawingFile.create(path, drawingTool.getCompletedLines());
+        closeDrawing();
+        drawingFile = created;
+    }
+
+    public void closeDrawing() throws IOException {
+        if (drawingFile != null) {
+            drawingFile.close();
+            drawingFile = null;
+        }
+    }
 }
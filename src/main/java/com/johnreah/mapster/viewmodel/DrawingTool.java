@@ -1,5 +1,7 @@
 package com.johnreah.mapster.viewmodel;
 
+import com.johnreah.mapster.util.ChunkedLine;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -20,16 +22,39 @@ public class DrawingTool {
     private double currentMouseY = 0;
 
     private Runnable onChanged;
+    private final List<LineEditListener> lineEditListeners = new ArrayList<>();
+
+    /** Receives the extent of every change to a completed line. Point indices are inclusive. */
+    public interface LineEditListener {
+        void lineEdited(int lineIndex, int fromPoint, int toPoint);
+
+        /** Called when the whole set of completed lines is replaced, e.g. by opening a file. */
+        default void linesReplaced() {}
+    }
 
     /** Registers a callback invoked whenever drawing state changes and a re-render is needed. */
     public void setOnChanged(Runnable onChanged) {
         this.onChanged = onChanged;
     }
 
+    /**
+     * Adds a callback invoked before {@code onChanged} whenever a completed line is added or
+     * modified, so caches of completed geometry can invalidate just the affected region.
+     */
+    public void addLineEditListener(LineEditListener listener) {
+        lineEditListeners.add(listener);
+    }
+
     private void notifyChanged() {
         if (onChanged != null) onChanged.run();
     }
 
+    private void notifyLineEdited(int lineIndex, int fromPoint, int toPoint) {
+        for (LineEditListener listener : lineEditListeners) {
+            listener.lineEdited(lineIndex, fromPoint, toPoint);
+        }
+    }
+
     // Editing state
     private int selectedLineIndex = -1;
     private int selectedPointIndex = -1;
@@ -58,8 +83,10 @@ public class DrawingTool {
                 // Finalize the line
                 if (currentLinePoints.size() >= 2) {
                     completedLines.add(new ArrayList<>(currentLinePoints));
+                    notifyLineEdited(completedLines.size() - 1, 0, currentLinePoints.size() - 1);
                 }
                 currentLinePoints.clear();
+                notifyChanged();
                 return;
             }
         }
@@ -108,6 +135,11 @@ public class DrawingTool {
         for (int lineIdx = 0; lineIdx < completedLines.size(); lineIdx++) {
             List<double[]> line = completedLines.get(lineIdx);
             for (int pointIdx = 0; pointIdx < line.size(); pointIdx++) {
+                int skipTo = skipUnloadedChunk(line, pointIdx, mouseX, mouseY, converter);
+                if (skipTo != pointIdx) {
+                    pointIdx = skipTo - 1;
+                    continue;
+                }
                 double[] point = line.get(pointIdx);
                 double[] screenPos = converter.latLonToScreen(point[0], point[1]);
 
@@ -135,7 +167,13 @@ public class DrawingTool {
      */
     public boolean isPointNearMouse(double mouseX, double mouseY, CoordinateConverter converter) {
         for (List<double[]> line : completedLines) {
-            for (double[] point : line) {
+            for (int pointIdx = 0; pointIdx < line.size(); pointIdx++) {
+                int skipTo = skipUnloadedChunk(line, pointIdx, mouseX, mouseY, converter);
+                if (skipTo != pointIdx) {
+                    pointIdx = skipTo - 1;
+                    continue;
+                }
+                double[] point = line.get(pointIdx);
                 double[] screenPos = converter.latLonToScreen(point[0], point[1]);
 
                 double distance = Math.sqrt(
@@ -151,6 +189,24 @@ public class DrawingTool {
         return false;
     }
 
+    /**
+     * If {@code pointIdx} starts a chunk of a lazily loaded line that is still unloaded and lies
+     * well away from the mouse, returns the index just past that chunk, so hit-testing does not
+     * force the chunk to be decoded. Otherwise returns {@code pointIdx}.
+     */
+    private int skipUnloadedChunk(List<double[]> line, int pointIdx, double mouseX, double mouseY,
+                                  CoordinateConverter converter) {
+        if (!(line instanceof ChunkedLine chunked) || pointIdx % chunked.chunkSize() != 0) return pointIdx;
+        int chunk = pointIdx / chunked.chunkSize();
+        if (chunk >= chunked.chunkCount() || !chunked.hasStableBounds(chunk)) return pointIdx;
+        double[] bounds = chunked.chunkBounds(chunk);
+        double[] topLeft = converter.latLonToScreen(bounds[2], bounds[1]);
+        double[] bottomRight = converter.latLonToScreen(bounds[0], bounds[3]);
+        boolean near = mouseX > topLeft[0] - NODE_PROXIMITY_THRESHOLD && mouseX < bottomRight[0] + NODE_PROXIMITY_THRESHOLD
+                && mouseY > topLeft[1] - NODE_PROXIMITY_THRESHOLD && mouseY < bottomRight[1] + NODE_PROXIMITY_THRESHOLD;
+        return near ? pointIdx : Math.min(line.size(), pointIdx + chunked.chunkSize());
+    }
+
     /**
      * Start dragging the currently selected point.
      */
@@ -171,6 +227,7 @@ public class DrawingTool {
             double[] newLatLon = converter.screenToLatLon(screenX, screenY);
             completedLines.get(selectedLineIndex).get(selectedPointIndex)[0] = newLatLon[0];
             completedLines.get(selectedLineIndex).get(selectedPointIndex)[1] = newLatLon[1];
+            notifyLineEdited(selectedLineIndex, selectedPointIndex, selectedPointIndex);
             notifyChanged();
         }
     }
@@ -179,9 +236,11 @@ public class DrawingTool {
      * Stop dragging the currently selected point.
      */
     public void stopDraggingPoint() {
+        boolean wasDragging = isDraggingPoint;
         isDraggingPoint = false;
         selectedLineIndex = -1;
         selectedPointIndex = -1;
+        if (wasDragging) notifyChanged();
     }
 
     public enum CursorType { DEFAULT, CLOSED_HAND }
@@ -196,12 +255,55 @@ public class DrawingTool {
      */
     public CursorType getCursorType(double mouseX, double mouseY, CoordinateConverter converter, boolean isNavigationMode) {
         if (isNavigationMode) {
+            // The dragged point is always under the mouse; skip the scan over every vertex
+            if (isDraggingPoint) return CursorType.DEFAULT;
             return isPointNearMouse(mouseX, mouseY, converter) ? CursorType.DEFAULT : CursorType.CLOSED_HAND;
         } else {
             return CursorType.DEFAULT;
         }
     }
 
+    /**
+     * Append bulk-loaded lines (e.g. from a file import) as completed lines.
+     * @param lines Lines of [lat, lon] points
+     * @param continueLine index of the completed line the first line extends, or -1 if it is new
+     * @return index of the completed line holding the last of {@code lines}, for the next call to continue
+     */
+    public int appendLines(List<List<double[]>> lines, int continueLine) {
+        int start = 0;
+        int lineIndex = continueLine;
+        if (continueLine >= 0 && continueLine < completedLines.size() && !lines.isEmpty()) {
+            List<double[]> line = completedLines.get(continueLine);
+            int from = line.size();
+            line.addAll(lines.get(0));
+            notifyLineEdited(continueLine, from, line.size() - 1);
+            start = 1;
+        }
+        for (int i = start; i < lines.size(); i++) {
+            completedLines.add(new ArrayList<>(lines.get(i)));
+            lineIndex = completedLines.size() - 1;
+            notifyLineEdited(lineIndex, 0, lines.get(i).size() - 1);
+        }
+        notifyChanged();
+        return lineIndex;
+    }
+
+    /**
+     * Replace all completed lines, e.g. with those of an opened drawing file. The given line
+     * lists are adopted as-is rather than copied, so lazily loaded lines stay lazy.
+     */
+    public void replaceLines(List<List<double[]>> lines) {
+        completedLines = new ArrayList<>(lines);
+        currentLinePoints.clear();
+        isDraggingPoint = false;
+        selectedLineIndex = -1;
+        selectedPointIndex = -1;
+        for (LineEditListener listener : lineEditListeners) {
+            listener.linesReplaced();
+        }
+        notifyChanged();
+    }
+
     public List<List<double[]>> getCompletedLines() {
         return Collections.unmodifiableList(completedLines);
     }
@@ -213,6 +315,9 @@ public class DrawingTool {
     public double getCurrentMouseX() { return currentMouseX; }
     public double getCurrentMouseY() { return currentMouseY; }
 
+    public int getSelectedLineIndex() { return selectedLineIndex; }
+    public int getSelectedPointIndex() { return selectedPointIndex; }
+
     public boolean isDraggingPoint() {
         return isDraggingPoint;
     }
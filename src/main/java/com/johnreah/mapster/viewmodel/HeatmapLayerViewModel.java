@@ -0,0 +1,92 @@
+package com.johnreah.mapster.viewmodel;
+
+import com.johnreah.mapster.util.HeatmapGrid;
+import com.johnreah.mapster.util.TileSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * ViewModel for a point density heatmap. It is a tile layer whose source colours the bins of a
+ * {@link HeatmapGrid}, so it is drawn by the usual tile layer view with its own tile cache.
+ * Points are aggregated in batches on a background thread as they arrive, and listeners are
+ * told which part of the world changed so that only those tiles are re-rendered.
+ */
+public class HeatmapLayerViewModel extends TileLayerViewModel {
+
+    /** Receives the world-space rectangle (Web Mercator, 0..1) whose density has changed. */
+    @FunctionalInterface
+    public interface RegionListener {
+        void regionChanged(double minX, double minY, double maxX, double maxY);
+    }
+
+    // Colours are scaled against the densest bin, so once that has grown by this factor every
+    // tile is out of date, not just those under the new points
+    private static final double RENORMALISE_FACTOR = 1.25;
+
+    private final HeatmapGrid grid;
+    private final Executor deliveryExecutor;
+    private final ExecutorService aggregator = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "heatmap-aggregate");
+        t.setDaemon(true);
+        return t;
+    });
+    private final List<RegionListener> listeners = new ArrayList<>();
+    private final int[] normalisedAt = new int[HeatmapGrid.MAX_ZOOM + 1];
+
+    /**
+     * @param source           tile source that renders {@code grid}
+     * @param deliveryExecutor where change notifications run (the FX thread in the app)
+     */
+    public HeatmapLayerViewModel(String id, String displayName, HeatmapGrid grid, TileSource source,
+                                 Executor deliveryExecutor) {
+        super(id, displayName, source);
+        this.grid = grid;
+        this.deliveryExecutor = deliveryExecutor;
+    }
+
+    public HeatmapGrid getGrid() { return grid; }
+
+    public void addRegionListener(RegionListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Queues points for aggregation. Batches are applied in the order they are appended; the
+     * arrays must not be modified afterwards.
+     */
+    public void appendPoints(double[] lats, double[] lons) {
+        aggregator.execute(() -> {
+            double[] bounds = grid.append(lats, lons, 0, lats.length);
+            if (bounds == null) return;
+            double[] changed = needsRenormalising() ? new double[]{0, 0, 1, 1} : bounds;
+            deliveryExecutor.execute(() -> {
+                for (RegionListener listener : listeners) {
+                    listener.regionChanged(changed[0], changed[1], changed[2], changed[3]);
+                }
+            });
+        });
+    }
+
+    /** Aggregator thread only. */
+    private boolean needsRenormalising() {
+        boolean renormalise = false;
+        for (int z = 0; z <= HeatmapGrid.MAX_ZOOM; z++) {
+            int max = grid.maxBin(z);
+            if (max > normalisedAt[z] * RENORMALISE_FACTOR) {
+                renormalise = true;
+            }
+        }
+        if (renormalise) {
+            for (int z = 0; z <= HeatmapGrid.MAX_ZOOM; z++) normalisedAt[z] = grid.maxBin(z);
+        }
+        return renormalise;
+    }
+
+    public void shutdown() {
+        aggregator.shutdownNow();
+    }
+}
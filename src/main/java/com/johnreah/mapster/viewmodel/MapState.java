@@ -0,0 +1,150 @@
+package com.johnreah.mapster.viewmodel;
+
+import com.johnreah.mapster.util.TileSource;
+import javafx.collections.ObservableList;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * What the user was looking at when the application last closed: window and map size, the
+ * viewport, and each layer's source, visibility and opacity in stack order. Restored at the
+ * next launch so the map reopens where it was left, and sized so its tiles can be read from
+ * disk before the window is shown.
+ *
+ * <p>Saved as text after a short header, layers bottom-first:
+ * <pre>
+ * # Mapster state
+ * window 1024 768
+ * map 815 703
+ * view 12 2047.58 1361.22 exact
+ * layer tile-0 osm visible 1.0
+ * layer tile-satellite google-satellite hidden 0.6
+ * layer drawing-0 - visible 1.0
+ * </pre>
+ * A layer without a tile source has {@code -} in place of a source id.
+ */
+public record MapState(int windowWidth, int windowHeight, int mapWidth, int mapHeight,
+                       int zoom, double centerX, double centerY, boolean fastProjection, List<Layer> layers) {
+
+    private static final String HEADER = "# Mapster state";
+    private static final String NO_SOURCE = "-";
+
+    public MapState {
+        layers = List.copyOf(layers);
+    }
+
+    /** One layer's saved settings; {@code sourceId} is null for layers without a tile source. */
+    public record Layer(String id, String sourceId, boolean visible, double opacity) {}
+
+    /** The current state of a window showing {@code viewport} and {@code layerStack}. */
+    public static MapState capture(MapViewport viewport, LayerStack layerStack,
+                                   int windowWidth, int windowHeight, int mapWidth, int mapHeight) {
+        List<Layer> layers = new ArrayList<>();
+        for (LayerViewModel layer : layerStack.getLayers()) {
+            String sourceId = layer instanceof TileLayerViewModel tiles ? tiles.getTileSource().getId() : null;
+            layers.add(new Layer(layer.getId(), sourceId, layer.isVisible(), layer.getOpacity()));
+        }
+        return new MapState(windowWidth, windowHeight, mapWidth, mapHeight, viewport.getZoom(),
+                viewport.getCenterX(), viewport.getCenterY(), viewport.fastProjectionProperty().get(), layers);
+    }
+
+    /**
+     * Restores the viewport and the saved settings of every layer still in the stack. Layers
+     * the stack no longer has are ignored, and layers not saved keep their place and settings;
+     * saved layers are put back in their saved order, in the positions they now occupy. A
+     * saved source is restored only if it is among {@code sources}.
+     */
+    public void applyTo(MapViewport viewport, LayerStack layerStack, List<TileSource> sources) {
+        viewport.fastProjectionProperty().set(fastProjection);
+        viewport.setZoom(zoom);
+        viewport.moveTo(centerX, centerY);
+
+        ObservableList<LayerViewModel> stack = layerStack.getLayers();
+        List<Integer> slots = new ArrayList<>();
+        List<LayerViewModel> restored = new ArrayList<>();
+        for (Layer saved : layers) {
+            for (int i = 0; i < stack.size(); i++) {
+                LayerViewModel layer = stack.get(i);
+                if (!layer.getId().equals(saved.id()) || restored.contains(layer)) continue;
+                layer.visibleProperty().set(saved.visible());
+                layer.opacityProperty().set(saved.opacity());
+                if (layer instanceof TileLayerViewModel tiles && saved.sourceId() != null) {
+                    sources.stream()
+                            .filter(s -> s.getId().equals(saved.sourceId()))
+                            .findFirst()
+                            .ifPresent(tiles::setTileSource);
+                }
+                slots.add(i);
+                restored.add(layer);
+                break;
+            }
+        }
+        slots.sort(null);
+        List<LayerViewModel> reordered = new ArrayList<>(stack);
+        for (int i = 0; i < slots.size(); i++) reordered.set(slots.get(i), restored.get(i));
+        if (!reordered.equals(stack)) stack.setAll(reordered);
+    }
+
+    public void save(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.newLine();
+            out.write("window " + windowWidth + " " + windowHeight);
+            out.newLine();
+            out.write("map " + mapWidth + " " + mapHeight);
+            out.newLine();
+            out.write("view " + zoom + " " + centerX + " " + centerY + " " + (fastProjection ? "fast" : "exact"));
+            out.newLine();
+            for (Layer layer : layers) {
+                out.write("layer " + layer.id() + " " + (layer.sourceId() == null ? NO_SOURCE : layer.sourceId())
+                        + " " + (layer.visible() ? "visible" : "hidden") + " " + layer.opacity());
+                out.newLine();
+            }
+        }
+    }
+
+    public static MapState load(Path file) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(in.readLine())) throw new IOException("Not a saved map state: " + file);
+            String[] window = fields(in.readLine(), "window", 3, file);
+            String[] map = fields(in.readLine(), "map", 3, file);
+            String[] view = fields(in.readLine(), "view", 5, file);
+            List<Layer> layers = new ArrayList<>();
+            String line;
+            int lineNumber = 4;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || line.startsWith("#")) continue;
+                String[] f = fields(line, "layer", 5, file);
+                try {
+                    layers.add(new Layer(f[1], NO_SOURCE.equals(f[2]) ? null : f[2],
+                            "visible".equals(f[3].toLowerCase(Locale.ROOT)), Double.parseDouble(f[4])));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Malformed layer on line " + lineNumber + " of " + file, e);
+                }
+            }
+            try {
+                return new MapState(Integer.parseInt(window[1]), Integer.parseInt(window[2]),
+                        Integer.parseInt(map[1]), Integer.parseInt(map[2]), Integer.parseInt(view[1]),
+                        Double.parseDouble(view[2]), Double.parseDouble(view[3]), "fast".equals(view[4]), layers);
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed header in " + file, e);
+            }
+        }
+    }
+
+    private static String[] fields(String line, String keyword, int count, Path file) throws IOException {
+        String[] f = line == null ? new String[0] : line.trim().split("\\s+");
+        if (f.length != count || !f[0].equals(keyword)) throw new IOException("Expected '" + keyword + "' line in " + file);
+        return f;
+    }
+}
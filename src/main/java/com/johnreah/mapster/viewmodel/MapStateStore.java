@@ -0,0 +1,53 @@
+package com.johnreah.mapster.viewmodel;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Where the {@link MapState} is kept between runs. A store without a file, as used for
+ * scripted runs, restores nothing and saves nothing.
+ */
+public final class MapStateStore {
+
+    /** The state file of an ordinary run. */
+    public static final Path DEFAULT_FILE = Path.of(System.getProperty("user.home"), ".mapster", "state.txt");
+
+    private final Path file;
+    private MapState restored;
+    private boolean read;
+
+    public MapStateStore(Path file) {
+        this.file = file;
+    }
+
+    public static MapStateStore none() {
+        return new MapStateStore(null);
+    }
+
+    /**
+     * The state saved by the last run, read on first call; null on a first run, for a store
+     * without a file, or if the file cannot be read.
+     */
+    public MapState restored() {
+        if (!read) {
+            read = true;
+            restored = load();
+        }
+        return restored;
+    }
+
+    public void save(MapState state) throws IOException {
+        if (file != null) state.save(file);
+    }
+
+    private MapState load() {
+        if (file == null || !Files.exists(file)) return null;
+        try {
+            return MapState.load(file);
+        } catch (IOException e) {
+            System.err.println("Ignoring saved state: " + e.getMessage());
+            return null;
+        }
+    }
+}
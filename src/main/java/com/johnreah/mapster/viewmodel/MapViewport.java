@@ -1,8 +1,11 @@
 package com.johnreah.mapster.viewmodel;
 
+import com.johnreah.mapster.util.Projection;
 import com.johnreah.mapster.util.TileMath;
+import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 
@@ -17,6 +20,19 @@ public class MapViewport {
     private final DoubleProperty centerX = new SimpleDoubleProperty();
     private final DoubleProperty centerY = new SimpleDoubleProperty();
     private final IntegerProperty zoom = new SimpleIntegerProperty();
+    private final BooleanProperty fastProjection = new SimpleBooleanProperty(false);
+    private CallListener callListener;
+
+    /**
+     * Observer of the calls that move the viewport, told of each call with its arguments before
+     * it takes effect, so that a session can be recorded and replayed call for call.
+     */
+    public interface CallListener {
+        void moveTo(double centerX, double centerY);
+        void zoomTo(int zoom, double pivotLat, double pivotLon, double mouseOffsetXPixels, double mouseOffsetYPixels);
+        /** Any change of zoom about the current centre: zoom in or out, or a forced level. */
+        void setZoom(int zoom);
+    }
 
     public MapViewport() {
         int defaultZoom = 10;
@@ -33,10 +49,27 @@ public class MapViewport {
     public double getCenterY() { return centerY.get(); }
     public int getZoom() { return zoom.get(); }
 
+    /**
+     * Opt-in: when true, interactive work (zooming, screen conversions while drawing) uses the
+     * sub-pixel-accurate {@link Projection#FAST} latitude approximations instead of exact math.
+     */
+    public BooleanProperty fastProjectionProperty() { return fastProjection; }
+
+    /** Sets the one listener told of every move and zoom, or removes it with null. */
+    public void setCallListener(CallListener listener) {
+        this.callListener = listener;
+    }
+
+    /** The projection interactive code should use for screen conversions. */
+    public Projection getProjection() {
+        return fastProjection.get() ? Projection.FAST : Projection.EXACT;
+    }
+
     /**
      * Pan to a new center position, clamping to valid tile bounds.
      */
     public void moveTo(double newCenterX, double newCenterY) {
+        if (callListener != null) callListener.moveTo(newCenterX, newCenterY);
         double max = TileMath.maxTile(zoom.get());
         newCenterX = ((newCenterX % max) + max) % max;
         if (newCenterY < 0) newCenterY = 0;
@@ -56,8 +89,9 @@ public class MapViewport {
      */
     public void zoomTo(int newZoom, double pivotLat, double pivotLon,
                        double mouseOffsetXPixels, double mouseOffsetYPixels) {
+        if (callListener != null) callListener.zoomTo(newZoom, pivotLat, pivotLon, mouseOffsetXPixels, mouseOffsetYPixels);
         double tileXAfter = TileMath.lonToTileX(pivotLon, newZoom);
-        double tileYAfter = TileMath.latToTileY(pivotLat, newZoom);
+        double tileYAfter = getProjection().latToTileY(pivotLat, newZoom);
         double newCenterX = tileXAfter - mouseOffsetXPixels / TileMath.TILE_SIZE;
         double newCenterY = tileYAfter - mouseOffsetYPixels / TileMath.TILE_SIZE;
         double max = TileMath.maxTile(newZoom);
@@ -101,11 +135,12 @@ public class MapViewport {
     }
 
     private void changeZoom(int newZoom) {
+        if (callListener != null) callListener.setZoom(newZoom);
         int currentZoom = zoom.get();
         double lon = TileMath.tileXToLon(centerX.get(), currentZoom);
-        double lat = TileMath.tileYToLat(centerY.get(), currentZoom);
+        double lat = getProjection().tileYToLat(centerY.get(), currentZoom);
         double newCX = TileMath.lonToTileX(lon, newZoom);
-        double newCY = TileMath.latToTileY(lat, newZoom);
+        double newCY = getProjection().latToTileY(lat, newZoom);
         double max = TileMath.maxTile(newZoom);
         newCX = ((newCX % max) + max) % max;
         if (newCY < 0) newCY = 0;
@@ -0,0 +1,53 @@
+package com.johnreah.mapster.viewmodel;
+
+import com.johnreah.mapster.io.PointCollector;
+import com.johnreah.mapster.util.PointClusterIndex;
+
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * ViewModel for a layer of point markers, drawn as clusters. The observable {@code index}
+ * property is replaced wholesale when a new point set has been loaded and clustered.
+ */
+public class PointLayerViewModel extends LayerViewModel {
+
+    private final ObjectProperty<PointClusterIndex> index = new SimpleObjectProperty<>();
+
+    public PointLayerViewModel(String id, String displayName) {
+        super(id, displayName);
+    }
+
+    public ObjectProperty<PointClusterIndex> indexProperty() { return index; }
+    public PointClusterIndex getIndex() { return index.get(); }
+
+    /**
+     * Reads every point of a GPX or GeoJSON file and clusters them on a background thread, then
+     * publishes the new index through {@code deliveryExecutor} (the FX thread in the app). The
+     * returned future completes with the number of points once the index is published.
+     */
+    public CompletableFuture<Integer> loadPoints(Path path, Executor deliveryExecutor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                PointCollector points = PointCollector.read(path);
+                return PointClusterIndex.build(points.lats(), points.lons());
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, PointLayerViewModel::startLoaderThread).thenApplyAsync(built -> {
+            index.set(built);
+            return built.size();
+        }, deliveryExecutor);
+    }
+
+    private static void startLoaderThread(Runnable task) {
+        Thread thread = new Thread(task, "point-load");
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
@@ -0,0 +1,230 @@
+package com.johnreah.mapster.viewmodel;
+
+import com.johnreah.mapster.util.TileMath;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A recorded pan/zoom session: the viewport's starting state and view size, then every
+ * {@link MapViewport} call that moved it, timestamped from the start. Replaying the calls
+ * against a viewport of the same size reproduces the session exactly, property change for
+ * property change, at the recorded pace or as fast as possible.
+ *
+ * <p>Saved as text, one call a line after a short header:
+ * <pre>
+ * # Mapster viewport session
+ * view 1280 800 exact
+ * start 10 511.744 340.283
+ * 0 move 511.8 340.283
+ * 16742001 zoom-at 11 51.5 -0.09 -120.0 35.0
+ * 250000000 zoom 12
+ * </pre>
+ * Times are nanoseconds; doubles are written exactly.
+ */
+public record ViewportSession(int width, int height, boolean fastProjection,
+                              int startZoom, double startCenterX, double startCenterY, List<Call> calls) {
+
+    private static final String HEADER = "# Mapster viewport session";
+    private static final int TOUR_STEPS = 36;
+    // Tiles from the centre of the view to the centre of each tour circle
+    private static final double TOUR_RADIUS = 1.5;
+
+    public ViewportSession {
+        calls = List.copyOf(calls);
+    }
+
+    /** One call on the viewport, {@code atNanos} after the session started. */
+    public sealed interface Call {
+        long atNanos();
+
+        void applyTo(MapViewport viewport);
+    }
+
+    public record Move(long atNanos, double centerX, double centerY) implements Call {
+        @Override
+        public void applyTo(MapViewport viewport) {
+            viewport.moveTo(centerX, centerY);
+        }
+    }
+
+    public record ZoomAt(long atNanos, int zoom, double pivotLat, double pivotLon,
+                         double offsetX, double offsetY) implements Call {
+        @Override
+        public void applyTo(MapViewport viewport) {
+            viewport.zoomTo(zoom, pivotLat, pivotLon, offsetX, offsetY);
+        }
+    }
+
+    public record Zoom(long atNanos, int zoom) implements Call {
+        @Override
+        public void applyTo(MapViewport viewport) {
+            viewport.setZoom(zoom);
+        }
+    }
+
+    /** Time from the start to the last call. */
+    public long durationNanos() {
+        return calls.isEmpty() ? 0 : calls.get(calls.size() - 1).atNanos();
+    }
+
+    /** Puts the viewport where the session started, with the projection it was recorded with. */
+    public void moveToStart(MapViewport viewport) {
+        viewport.fastProjectionProperty().set(fastProjection);
+        viewport.setZoom(startZoom);
+        viewport.moveTo(startCenterX, startCenterY);
+    }
+
+    /**
+     * A scripted session that needs no recording, for training and startup measurement: from
+     * London at zoom 10, a circle of {@code TOUR_STEPS} moves at each zoom in to 16, then
+     * back out to 4 with a shorter circle at each level, one call a frame at 60 Hz.
+     */
+    public static ViewportSession tour(int width, int height) {
+        double lat = 51.505;
+        double lon = -0.09;
+        long frame = 16_666_667L;
+        List<Call> calls = new ArrayList<>();
+        int[] zooms = {10, 11, 12, 13, 14, 15, 16, 15, 14, 13, 12, 11, 10, 9, 8, 7, 6, 5, 4};
+        for (int i = 0; i < zooms.length; i++) {
+            int zoom = zooms[i];
+            if (i > 0) calls.add(new Zoom(calls.size() * frame, zoom));
+            int steps = i <= 6 ? TOUR_STEPS : TOUR_STEPS / 3;
+            double centerX = TileMath.lonToTileX(lon, zoom);
+            double centerY = TileMath.latToTileY(lat, zoom);
+            for (int step = 1; step <= steps; step++) {
+                double angle = 2 * Math.PI * step / steps;
+                calls.add(new Move(calls.size() * frame, centerX + TOUR_RADIUS * Math.sin(angle),
+                        centerY - TOUR_RADIUS * (1 - Math.cos(angle))));
+            }
+        }
+        return new ViewportSession(width, height, false, 10,
+                TileMath.lonToTileX(lon, 10), TileMath.latToTileY(lat, 10), calls);
+    }
+
+    /** Starts recording the calls made on {@code viewport}, shown in a view of the given size. */
+    public static Recorder record(MapViewport viewport, int width, int height) {
+        return new Recorder(viewport, width, height);
+    }
+
+    /** Records until {@link #stop}; calls must come from the viewport's thread. */
+    public static final class Recorder implements MapViewport.CallListener {
+
+        private final MapViewport viewport;
+        private final int width;
+        private final int height;
+        private final boolean fastProjection;
+        private final int startZoom;
+        private final double startCenterX;
+        private final double startCenterY;
+        private final long startNanos = System.nanoTime();
+        private final List<Call> calls = new ArrayList<>();
+
+        private Recorder(MapViewport viewport, int width, int height) {
+            this.viewport = viewport;
+            this.width = width;
+            this.height = height;
+            this.fastProjection = viewport.fastProjectionProperty().get();
+            this.startZoom = viewport.getZoom();
+            this.startCenterX = viewport.getCenterX();
+            this.startCenterY = viewport.getCenterY();
+            viewport.setCallListener(this);
+        }
+
+        @Override
+        public void moveTo(double centerX, double centerY) {
+            calls.add(new Move(now(), centerX, centerY));
+        }
+
+        @Override
+        public void zoomTo(int zoom, double pivotLat, double pivotLon, double offsetX, double offsetY) {
+            calls.add(new ZoomAt(now(), zoom, pivotLat, pivotLon, offsetX, offsetY));
+        }
+
+        @Override
+        public void setZoom(int zoom) {
+            calls.add(new Zoom(now(), zoom));
+        }
+
+        private long now() {
+            return System.nanoTime() - startNanos;
+        }
+
+        public int getCallCount() {
+            return calls.size();
+        }
+
+        /** Stops listening and returns the session so far. */
+        public ViewportSession stop() {
+            viewport.setCallListener(null);
+            return new ViewportSession(width, height, fastProjection, startZoom, startCenterX, startCenterY, calls);
+        }
+    }
+
+    public void save(Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.newLine();
+            out.write("view " + width + " " + height + " " + (fastProjection ? "fast" : "exact"));
+            out.newLine();
+            out.write("start " + startZoom + " " + startCenterX + " " + startCenterY);
+            out.newLine();
+            for (Call call : calls) {
+                out.write(switch (call) {
+                    case Move m -> m.atNanos() + " move " + m.centerX() + " " + m.centerY();
+                    case ZoomAt z -> z.atNanos() + " zoom-at " + z.zoom() + " " + z.pivotLat() + " " + z.pivotLon()
+                            + " " + z.offsetX() + " " + z.offsetY();
+                    case Zoom z -> z.atNanos() + " zoom " + z.zoom();
+                });
+                out.newLine();
+            }
+        }
+    }
+
+    public static ViewportSession load(Path file) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(in.readLine())) throw new IOException("Not a viewport session: " + file);
+            String[] view = fields(in.readLine(), "view", 4, file);
+            String[] start = fields(in.readLine(), "start", 4, file);
+            List<Call> calls = new ArrayList<>();
+            String line;
+            int lineNumber = 3;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || line.startsWith("#")) continue;
+                String[] f = line.trim().split("\\s+");
+                try {
+                    long at = Long.parseLong(f[0]);
+                    calls.add(switch (f.length > 1 ? f[1].toLowerCase(Locale.ROOT) : "") {
+                        case "move" -> new Move(at, Double.parseDouble(f[2]), Double.parseDouble(f[3]));
+                        case "zoom-at" -> new ZoomAt(at, Integer.parseInt(f[2]), Double.parseDouble(f[3]),
+                                Double.parseDouble(f[4]), Double.parseDouble(f[5]), Double.parseDouble(f[6]));
+                        case "zoom" -> new Zoom(at, Integer.parseInt(f[2]));
+                        default -> throw new IOException("Unknown call on line " + lineNumber + " of " + file);
+                    });
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    throw new IOException("Malformed call on line " + lineNumber + " of " + file, e);
+                }
+            }
+            try {
+                return new ViewportSession(Integer.parseInt(view[1]), Integer.parseInt(view[2]), "fast".equals(view[3]),
+                        Integer.parseInt(start[1]), Double.parseDouble(start[2]), Double.parseDouble(start[3]), calls);
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed header in " + file, e);
+            }
+        }
+    }
+
+    private static String[] fields(String line, String keyword, int count, Path file) throws IOException {
+        String[] f = line == null ? new String[0] : line.trim().split("\\s+");
+        if (f.length != count || !f[0].equals(keyword)) throw new IOException("Expected '" + keyword + "' line in " + file);
+        return f;
+    }
+}
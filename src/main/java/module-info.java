@@ -2,7 +2,13 @@ module com.johnreah.mapster {
     requires javafx.controls;
     requires javafx.graphics;
     requires java.net.http;
+    requires java.xml;
+    requires java.desktop;
+    requires jdk.httpserver;
+    requires java.management;
+    requires jdk.jfr;
 
     exports com.johnreah.mapster;
+    exports com.johnreah.mapster.metrics to java.management;
     opens com.johnreah.mapster to javafx.graphics;
 }
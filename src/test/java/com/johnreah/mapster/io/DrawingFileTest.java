@@ -0,0 +1,189 @@
+package com.johnreah.mapster.io;
+
+import com.johnreah.mapster.util.ChunkedLine;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DrawingFileTest {
+
+    @TempDir
+    Path dir;
+
+    private static List<List<double[]>> track(int lines, int points) {
+        List<List<double[]>> result = new ArrayList<>();
+        for (int l = 0; l < lines; l++) {
+            List<double[]> line = new ArrayList<>();
+            for (int i = 0; i < points; i++) {
+                line.add(new double[]{51.5 + l * 0.1 + i * 1e-5, -0.12 + i * 2.3e-5});
+            }
+            result.add(line);
+        }
+        return result;
+    }
+
+    private static void assertSameLines(List<List<double[]>> expected, List<List<double[]>> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int l = 0; l < expected.size(); l++) {
+            assertEquals(expected.get(l).size(), actual.get(l).size(), "line " + l);
+            for (int i = 0; i < expected.get(l).size(); i++) {
+                assertEquals(expected.get(l).get(i)[0], actual.get(l).get(i)[0], 1e-7);
+                assertEquals(expected.get(l).get(i)[1], actual.get(l).get(i)[1], 1e-7);
+            }
+        }
+    }
+
+    @Test
+    void roundTripsLinesWithinFixedPointPrecision() throws IOException {
+        List<List<double[]>> lines = track(3, 2500);
+        Path path = dir.resolve("a.mdraw");
+        DrawingFile.create(path, lines).close();
+
+        try (DrawingFile file = DrawingFile.open(path)) {
+            assertSameLines(lines, file.getLines());
+        }
+    }
+
+    @Test
+    void chunksAreDecodedOnlyWhenTouched() throws IOException {
+        Path path = dir.resolve("lazy.mdraw");
+        DrawingFile.create(path, track(2, 5000)).close();
+
+        try (DrawingFile file = DrawingFile.open(path)) {
+            List<double[]> line = file.getLines().get(0);
+            assertFalse(DrawingFile.anyChunkLoaded(line));
+            assertEquals(5000, line.size());
+            line.get(4000);
+            ChunkedLine chunked = (ChunkedLine) line;
+            assertTrue(chunked.isChunkLoaded(3));
+            assertFalse(chunked.isChunkLoaded(0));
+            assertFalse(DrawingFile.anyChunkLoaded(file.getLines().get(1)));
+        }
+    }
+
+    @Test
+    void savedEditsAreReplayedFromJournal() throws IOException {
+        Path path = dir.resolve("edit.mdraw");
+        List<List<double[]>> expected = track(2, 3000);
+        DrawingFile.create(path, expected).close();
+        long baseSize = Files.size(path);
+
+        try (DrawingFile file = DrawingFile.open(path)) {
+            List<List<double[]>> lines = file.getLines();
+            lines.get(1).get(2000)[0] = 10.0;
+            file.recordEdit(1, 2000, 2000);
+            lines.get(0).add(new double[]{52.0, 1.0});
+            file.recordEdit(0, 3000, 3000);
+            lines.add(new ArrayList<>(List.of(new double[]{1, 2}, new double[]{3, 4})));
+            file.recordEdit(2, 0, 1);
+            file.save(lines);
+            assertFalse(file.hasUnsavedEdits());
+        }
+        assertEquals(baseSize, Files.size(path), "saving should only append to the journal");
+
+        expected.get(1).get(2000)[0] = 10.0;
+        expected.get(0).add(new double[]{52.0, 1.0});
+        expected.add(List.of(new double[]{1, 2}, new double[]{3, 4}));
+        try (DrawingFile file = DrawingFile.open(path)) {
+            assertSameLines(expected, file.getLines());
+        }
+    }
+
+    @Test
+    void tornJournalTailIsIgnored() throws IOException {
+        Path path = dir.resolve("torn.mdraw");
+        List<List<double[]>> expected = track(1, 10);
+        DrawingFile.create(path, expected).close();
+        try (DrawingFile file = DrawingFile.open(path)) {
+            file.getLines().get(0).get(3)[1] = 5.0;
+            file.recordEdit(0, 3, 3);
+            file.save(file.getLines());
+            file.getLines().get(0).get(4)[1] = 6.0;
+            file.recordEdit(0, 4, 4);
+            file.save(file.getLines());
+        }
+        Path journal = dir.resolve("torn.mdraw.journal");
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 2);
+        }
+
+        expected.get(0).get(3)[1] = 5.0;
+        try (DrawingFile file = DrawingFile.open(path)) {
+            assertSameLines(expected, file.getLines());
+        }
+    }
+
+    @Test
+    void largeJournalIsCompactedIntoBase() throws IOException {
+        Path path = dir.resolve("compact.mdraw");
+        List<List<double[]>> expected = track(1, 100);
+        DrawingFile.create(path, expected).close();
+
+        try (DrawingFile file = DrawingFile.open(path)) {
+            List<List<double[]>> lines = file.getLines();
+            // Enough appended points to push the journal past the compaction threshold
+            List<double[]> added = track(1, 400_000).get(0);
+            lines.add(added);
+            file.recordEdit(1, 0, added.size() - 1);
+            file.save(lines);
+            expected.add(added);
+        }
+        Path journal = dir.resolve("compact.mdraw.journal");
+        assertTrue(Files.size(journal) < 100, "journal should be reset after compaction");
+        try (DrawingFile file = DrawingFile.open(path)) {
+            assertSameLines(expected, file.getLines());
+        }
+    }
+
+    @Test
+    void savingOverTheOpenFileReadsUnloadedChunksFirst() throws IOException {
+        Path path = dir.resolve("self.mdraw");
+        List<List<double[]>> expected = track(2, 5000);
+        DrawingFile.create(path, expected).close();
+
+        try (DrawingFile opened = DrawingFile.open(path)) {
+            assertFalse(DrawingFile.anyChunkLoaded(opened.getLines().get(0)));
+            DrawingFile.create(path, opened.getLines()).close();
+        }
+        try (DrawingFile file = DrawingFile.open(path)) {
+            assertSameLines(expected, file.getLines());
+        }
+    }
+
+    @Test
+    void compactedLinesAreRemappedOntoTheNewBase() throws IOException {
+        Path path = dir.resolve("remap.mdraw");
+        List<List<double[]>> expected = track(1, 5000);
+        DrawingFile.create(path, expected).close();
+
+        try (DrawingFile file = DrawingFile.open(path)) {
+            List<List<double[]>> lines = file.getLines();
+            double[] moved = {52.0, 0.5};
+            lines.get(0).set(0, moved);
+            file.recordEdit(0, 0, 0);
+            file.save(lines);
+            expected.get(0).set(0, moved);
+            file.compact(lines);
+            MappedLine line = (MappedLine) lines.get(0);
+            assertTrue(line.isChunkLoaded(0), "edited chunk kept in memory");
+            assertFalse(line.isChunkLoaded(3));
+
+            // A second compaction copies the untouched chunks from the first's mapping
+            file.compact(lines);
+            assertFalse(line.isChunkLoaded(3), "unchanged chunks copied without decoding");
+            assertSameLines(expected, lines);
+        }
+        try (DrawingFile file = DrawingFile.open(path)) {
+            assertSameLines(expected, file.getLines());
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.johnreah.mapster.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrackImporterTest {
+
+    /** Collects sink calls into plain lists of [lat, lon] points. */
+    static class CollectingSink implements TrackSink {
+        final List<List<double[]>> lines = new ArrayList<>();
+
+        @Override
+        public void startLine() {
+            lines.add(new ArrayList<>());
+        }
+
+        @Override
+        public void point(double lat, double lon) {
+            lines.get(lines.size() - 1).add(new double[]{lat, lon});
+        }
+
+        @Override
+        public void endLine() {
+        }
+    }
+
+    /** Rebuilds full lines from delivered batches, honouring continuesLastLine. */
+    static class CollectingListener implements TrackImporter.Listener {
+        final List<List<double[]>> lines = new ArrayList<>();
+        int batches;
+        ImportProgress completed;
+        Exception failure;
+
+        @Override
+        public void onBatch(TrackBatch batch) {
+            batches++;
+            int start = 0;
+            if (batch.continuesLastLine()) {
+                lines.get(lines.size() - 1).addAll(batch.lines().get(0));
+                start = 1;
+            }
+            for (int i = start; i < batch.lines().size(); i++) {
+                lines.add(new ArrayList<>(batch.lines().get(i)));
+            }
+        }
+
+        @Override
+        public void onComplete(ImportProgress progress) {
+            completed = progress;
+        }
+
+        @Override
+        public void onFailed(Exception error) {
+            failure = error;
+        }
+    }
+
+    private static ByteArrayInputStream stream(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void gpxTrackSegmentsAndRoutesBecomeLines() throws IOException {
+        String gpx = """
+                <?xml version="1.0"?>
+                <gpx version="1.1" xmlns="http://www.topografix.com/GPX/1/1">
+                  <wpt lat="1" lon="1"/>
+                  <trk><trkseg>
+                    <trkpt lat="51.5" lon="-0.1"><ele>10</ele></trkpt>
+                    <trkpt lat="51.6" lon="-0.2"/>
+                  </trkseg><trkseg>
+                    <trkpt lat="52.0" lon="0.5"/>
+                  </trkseg></trk>
+                  <rte><rtept lat="10" lon="20"/><rtept lat="11" lon="21"/></rte>
+                </gpx>
+                """;
+        CollectingSink sink = new CollectingSink();
+        new GpxReader().read(stream(gpx), sink);
+
+        assertEquals(3, sink.lines.size());
+        assertEquals(2, sink.lines.get(0).size());
+        assertArrayEquals(new double[]{51.6, -0.2}, sink.lines.get(0).get(1));
+        assertEquals(1, sink.lines.get(1).size());
+        assertArrayEquals(new double[]{11, 21}, sink.lines.get(2).get(1));
+    }
+
+    @Test
+    void geoJsonSwapsLonLatAndSkipsPoints() throws IOException {
+        String json = """
+                {"type": "FeatureCollection", "features": [
+                  {"type": "Feature", "properties": {"name": "a \\"quoted\\" [name]", "n": null},
+                   "geometry": {"type": "LineString", "coordinates": [[-0.1, 51.5, 12.0], [-0.2, 51.6]]}},
+                  {"type": "Feature", "geometry": {"type": "Point", "coordinates": [5, 6]}},
+                  {"type": "Feature", "geometry": {"type": "MultiPoint", "coordinates": [[5, 6], [7, 8]]}},
+                  {"type": "Feature", "geometry": {"type": "MultiPolygon", "coordinates":
+                    [[[[0, 0], [1, 0], [1, 1], [0, 0]]], [[[2, 2], [3, 2], [2, 2]], [[4, 4], [5, 5], [4, 4]]]]}},
+                  {"type": "Feature", "geometry": {"type": "GeometryCollection", "geometries": [
+                    {"coordinates": [[1e1, -2.5E1], [11, -26]], "type": "LineString"}]}}
+                ]}
+                """;
+        CollectingSink sink = new CollectingSink();
+        new GeoJsonReader().read(stream(json), sink);
+
+        assertEquals(5, sink.lines.size());
+        assertArrayEquals(new double[]{51.5, -0.1}, sink.lines.get(0).get(0));
+        assertEquals(4, sink.lines.get(1).size());
+        assertEquals(3, sink.lines.get(3).size());
+        assertArrayEquals(new double[]{-25, 10}, sink.lines.get(4).get(0));
+    }
+
+    @Test
+    void malformedGeoJsonIsReported() {
+        assertThrows(IOException.class, () ->
+                new GeoJsonReader().read(stream("{\"coordinates\": [[1, 2], [3"), new CollectingSink()));
+    }
+
+    @Test
+    void longLineIsSplitAcrossBatchesAndReassembled() {
+        int n = TrackImporter.MAX_BATCH_POINTS + 12_345;
+        StringBuilder json = new StringBuilder("{\"type\":\"LineString\",\"coordinates\":[");
+        for (int i = 0; i < n; i++) {
+            if (i > 0) json.append(',');
+            json.append('[').append(i % 360 - 180).append(',').append(i % 170 - 85).append(']');
+        }
+        json.append("]}");
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+
+        CollectingListener listener = new CollectingListener();
+        new TrackImporter(Runnable::run).importStream(new GeoJsonReader(),
+                new TrackImporter.CountingInputStream(new ByteArrayInputStream(bytes)), listener);
+
+        assertNull(listener.failure);
+        assertTrue(listener.batches >= 2);
+        assertEquals(1, listener.lines.size());
+        assertEquals(n, listener.lines.get(0).size());
+        assertArrayEquals(new double[]{(n - 1) % 170 - 85, (n - 1) % 360 - 180},
+                listener.lines.get(0).get(n - 1));
+        assertEquals(n, listener.completed.points());
+        assertEquals(bytes.length, listener.completed.bytesRead());
+    }
+
+    @Test
+    void unsupportedFileTypeIsReportedToTheListener(@TempDir Path dir) throws Exception {
+        Path file = Files.writeString(dir.resolve("track.txt"), "51.5,-0.1");
+        CollectingListener listener = new CollectingListener();
+        TrackImporter importer = new TrackImporter(Runnable::run);
+        try {
+            importer.importFile(file, listener).get();
+        } finally {
+            importer.shutdown();
+        }
+
+        assertInstanceOf(IllegalArgumentException.class, listener.failure);
+        assertNull(listener.completed);
+    }
+
+    @Test
+    void cancellationStopsWithinABatch() {
+        StringBuilder gpx = new StringBuilder("<gpx><trk><trkseg>");
+        for (int i = 0; i < 100; i++) gpx.append("<trkpt lat=\"51.5\" lon=\"-0.1\"/>");
+        gpx.append("</trkseg></trk></gpx>");
+
+        CollectingListener listener = new CollectingListener();
+        Thread.currentThread().interrupt();
+        try {
+            new TrackImporter(Runnable::run).importStream(new GpxReader(),
+                    new TrackImporter.CountingInputStream(stream(gpx.toString())), listener);
+        } finally {
+            Thread.interrupted();
+        }
+
+        assertEquals(0, listener.batches);
+        assertNull(listener.completed);
+        assertNull(listener.failure);
+    }
+}
@@ -0,0 +1,87 @@
+package com.johnreah.mapster.metrics;
+
+import com.johnreah.mapster.server.StandInTileServer;
+import com.johnreah.mapster.util.TileAddress;
+import com.johnreah.mapster.util.TileSource;
+import com.johnreah.mapster.view.maptiles.TileCache;
+import com.johnreah.mapster.view.maptiles.TileDiskStore;
+import com.johnreah.mapster.view.maptiles.TileFetcher;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TileEventsTest {
+
+    @TempDir
+    Path dir;
+
+    private List<RecordedEvent> record(String eventName, ThrowingRunnable work) throws Exception {
+        try (Recording recording = new Recording()) {
+            recording.enable(eventName);
+            recording.start();
+            work.run();
+            recording.stop();
+            Path file = dir.resolve("events.jfr");
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file).stream()
+                    .filter(e -> e.getEventType().getName().equals(eventName))
+                    .toList();
+        }
+    }
+
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+
+    @Test
+    void fetchEventsRecordWhereEachTileCameFrom() throws Exception {
+        try (StandInTileServer standIn = StandInTileServer.start(StandInTileServer.Profile.instant())) {
+            TileSource source = standIn.source("jfr-fetch");
+            TileFetcher fetcher = new TileFetcher(new TileDiskStore(dir.resolve("cache"), Long.MAX_VALUE));
+            TileAddress tile = new TileAddress(7, 63, 42);
+            List<RecordedEvent> events = record("com.johnreah.mapster.TileFetch", () -> {
+                fetcher.fetch(source, tile);
+                fetcher.fetch(source, tile);
+            });
+
+            assertEquals(2, events.size());
+            assertEquals("network", events.get(0).getString("origin"));
+            assertEquals(200, events.get(0).getInt("status"));
+            assertEquals(standIn.tileBytes(tile).length, events.get(0).getLong("bytes"));
+            assertEquals("disk", events.get(1).getString("origin"));
+            assertEquals(0, events.get(1).getInt("status"));
+            assertEquals("jfr-fetch", events.get(1).getString("source"));
+            assertEquals(42, events.get(1).getInt("y"));
+        }
+    }
+
+    @Test
+    void loadEventsCoverTheWholeLoad() throws Exception {
+        try (StandInTileServer standIn = StandInTileServer.start(StandInTileServer.Profile.instant().withErrorRate(1))) {
+            TileFetcher fetcher = new TileFetcher(new TileDiskStore(dir.resolve("cache"), Long.MAX_VALUE));
+            TileCache cache = new TileCache(standIn.source("jfr-load"), () -> {}, fetcher, Runnable::run);
+            List<RecordedEvent> events = record("com.johnreah.mapster.TileLoad", () -> {
+                assertNull(cache.getTile(5, 15, 10));
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+                while (cache.getInFlightCount() > 0 && System.nanoTime() < deadline) Thread.sleep(5);
+            });
+            cache.shutdown();
+
+            assertEquals(1, events.size());
+            RecordedEvent event = events.get(0);
+            assertEquals("not-found", event.getString("outcome"));
+            assertEquals(5, event.getInt("zoom"));
+            assertEquals(15, event.getInt("x"));
+            assertTrue(event.getDuration("load").toNanos() > 0);
+            assertFalse(event.getDuration().minus(event.getDuration("load")).isNegative());
+        }
+    }
+}
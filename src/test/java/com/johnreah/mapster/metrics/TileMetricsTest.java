@@ -0,0 +1,86 @@
+package com.johnreah.mapster.metrics;
+
+import com.johnreah.mapster.server.StandInTileServer;
+import com.johnreah.mapster.util.TileAddress;
+import com.johnreah.mapster.util.TileSource;
+import com.johnreah.mapster.view.maptiles.TileDiskStore;
+import com.johnreah.mapster.view.maptiles.TileFetcher;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TileMetricsTest {
+
+    @TempDir
+    Path cache;
+
+    @Test
+    void histogramPercentilesAreBucketBounds() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileMillis(0.95));
+        for (int i = 0; i < 99; i++) histogram.record(3_000);       // 3 µs, under 4 µs
+        histogram.record(5_000_000);                                // 5 ms, under 8.192 ms
+        assertEquals(100, histogram.getCount());
+        assertEquals(0.004, histogram.getPercentileMillis(0.5), 1e-9);
+        assertEquals(0.004, histogram.getPercentileMillis(0.99), 1e-9);
+        assertEquals(5.0, histogram.getPercentileMillis(1.0), 1e-9);
+        assertEquals(5.0, histogram.getMaxMillis(), 1e-9);
+        assertEquals((99 * 3_000 + 5_000_000) / 1e6 / 100, histogram.getMeanMillis(), 1e-9);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+    }
+
+    @Test
+    void fetcherCountsDiskHitsAndNetworkResponses() throws Exception {
+        try (StandInTileServer standIn = StandInTileServer.start(StandInTileServer.Profile.instant())) {
+            TileSource source = standIn.source("metrics-test");
+            TileSourceMetrics metrics = TileMetrics.source("metrics-test");
+            metrics.reset();
+            TileFetcher fetcher = new TileFetcher(new TileDiskStore(cache, Long.MAX_VALUE));
+            TileAddress tile = new TileAddress(6, 31, 21);
+            byte[] bytes = fetcher.fetch(source, tile);
+            fetcher.fetch(source, tile);
+            fetcher.fetch(source, new TileAddress(19, 0, 0));
+
+            assertEquals(1, metrics.getDiskHits());
+            assertEquals(Map.of(200, 1L, 404, 1L), metrics.getNetworkFetchesByStatus());
+            assertEquals(bytes.length, metrics.getBytesDownloaded());
+            assertEquals(0, metrics.getNetworkFailures());
+        }
+    }
+
+    @Test
+    void metricsArePublishedOverJmx() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        TileSourceMetrics source = TileMetrics.source("jmx-test");
+        source.reset();
+        source.memoryHit();
+        source.memoryHit();
+        source.memoryMiss();
+        source.networkResponse(304, 0);
+        ObjectName sourceName = new ObjectName("com.johnreah.mapster:type=TileSource,name=\"jmx-test\"");
+        assertEquals(2L, server.getAttribute(sourceName, "MemoryHits"));
+        assertEquals(2.0 / 3, (double) server.getAttribute(sourceName, "MemoryHitRatio"), 1e-9);
+        TabularData byStatus = (TabularData) server.getAttribute(sourceName, "NetworkFetchesByStatus");
+        assertEquals(1L, byStatus.get(new Object[]{304}).get("value"));
+
+        TileLayerMetrics layer = new TileLayerMetrics("layer-test", () -> "jmx-test", () -> 3, () -> 5);
+        TileMetrics.register(layer);
+        ObjectName layerName = TileMetrics.objectName("TileLayer", "layer-test");
+        layer.frameRendered(2_000_000, 40, 7);
+        assertEquals(1L, server.getAttribute(layerName, "Frames"));
+        assertEquals(7, server.getAttribute(layerName, "LastFrameMissing"));
+        assertEquals(3, server.getAttribute(layerName, "QueueDepth"));
+        assertEquals("jmx-test", server.getAttribute(layerName, "SourceId"));
+        TileMetrics.unregister(layer);
+        assertFalse(server.isRegistered(layerName));
+    }
+}
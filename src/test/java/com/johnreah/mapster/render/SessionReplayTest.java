@@ -0,0 +1,58 @@
+package com.johnreah.mapster.render;
+
+import com.johnreah.mapster.server.StandInTileServer;
+import com.johnreah.mapster.util.TileMath;
+import com.johnreah.mapster.view.maptiles.TileDiskStore;
+import com.johnreah.mapster.view.maptiles.TileFetcher;
+import com.johnreah.mapster.viewmodel.ViewportSession;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionReplayTest {
+
+    @TempDir
+    Path cache;
+
+    /** A steady pan east at zoom 12 over 0.2 s, then a zoom in about the centre. */
+    private static ViewportSession panAndZoom() {
+        int zoom = 12;
+        double x = TileMath.lonToTileX(-0.1, zoom);
+        double y = TileMath.latToTileY(51.5, zoom);
+        List<ViewportSession.Call> calls = new ArrayList<>();
+        for (int i = 1; i <= 12; i++) {
+            calls.add(new ViewportSession.Move(i * 16_000_000L, x + i * 0.25, y));
+        }
+        calls.add(new ViewportSession.ZoomAt(200_000_000L, zoom + 1, 51.5, -0.1, 0, 0));
+        return new ViewportSession(800, 600, false, zoom, x, y, calls);
+    }
+
+    @Test
+    void replayReportsFramesAndTileTraffic() throws Exception {
+        ViewportSession session = panAndZoom();
+        try (StandInTileServer standIn = StandInTileServer.start(StandInTileServer.Profile.instant())) {
+            TileFetcher fetcher = new TileFetcher(new TileDiskStore(cache, Long.MAX_VALUE));
+            SessionReplay.Result result = SessionReplay.replay(session,
+                    List.of(standIn.source("replay-test")), fetcher, SessionReplay.Speed.RECORDED);
+
+            // One frame per property change at least: each move changes x, the zoom changes all three
+            assertTrue(result.frames().getCount() > session.calls().size() + 3, result.toString());
+            assertTrue(result.replayNanos() >= session.durationNanos());
+            assertTrue(result.traffic().networkFetches() > 0, result.toString());
+            assertEquals(standIn.getFullResponseCount(), result.traffic().networkFetches());
+            assertTrue(result.traffic().bytesDownloaded() > 0);
+            assertTrue(result.traffic().memoryHits() > 0, result.toString());
+
+            // Everything is on disk now: a second replay fetches nothing
+            SessionReplay.Result again = SessionReplay.replay(session,
+                    List.of(standIn.source("replay-test")), fetcher, SessionReplay.Speed.MAXIMUM);
+            assertEquals(0, again.traffic().networkFetches(), again.toString());
+            assertTrue(again.traffic().diskHits() > 0);
+        }
+    }
+}
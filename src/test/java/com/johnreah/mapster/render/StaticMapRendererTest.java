@@ -0,0 +1,148 @@
+package com.johnreah.mapster.render;
+
+import com.johnreah.mapster.util.LocalTileSource;
+import com.johnreah.mapster.util.TileMath;
+import com.johnreah.mapster.util.TileSource;
+import com.johnreah.mapster.view.maptiles.DrawingTileSource;
+import com.johnreah.mapster.view.maptiles.TileDiskStore;
+import com.johnreah.mapster.view.maptiles.TileFetcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StaticMapRendererTest {
+
+    private static final int TILE_SIZE = TileMath.TILE_SIZE;
+
+    /** Tiles filled with one colour that encodes the tile's x and y, counting renders. */
+    static class SolidTileSource implements LocalTileSource {
+        final AtomicInteger renders = new AtomicInteger();
+        final int maxZoom;
+
+        SolidTileSource(int maxZoom) {
+            this.maxZoom = maxZoom;
+        }
+
+        @Override public String getId() { return "solid"; }
+        @Override public String getDisplayName() { return "Solid"; }
+        @Override public int getMinZoom() { return 0; }
+        @Override public int getMaxZoom() { return maxZoom; }
+
+        @Override
+        public int[] renderTile(int zoom, int x, int y) {
+            renders.incrementAndGet();
+            int[] pixels = new int[TILE_SIZE * TILE_SIZE];
+            Arrays.fill(pixels, colour(x, y));
+            return pixels;
+        }
+
+        static int colour(int x, int y) {
+            return 0xFF000000 | (x & 0xFF) << 8 | (y & 0xFF);
+        }
+    }
+
+    @TempDir
+    Path cacheDir;
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private StaticMapRenderer renderer() {
+        return new StaticMapRenderer(new TileFetcher(new TileDiskStore(cacheDir, 1000)), pool);
+    }
+
+    @Test
+    void tilesArePlacedAroundTheCentre() {
+        SolidTileSource source = new SolidTileSource(18);
+        // Centre on the corner shared by tiles (4..5, 6..7) at zoom 4
+        StaticMapRequest request = new StaticMapRequest(100, 60, 4, 5.0, 7.0, List.of(source));
+        int[] pixels = renderer().render(request);
+        assertEquals(SolidTileSource.colour(4, 6), pixels[0]);
+        assertEquals(SolidTileSource.colour(5, 6), pixels[99]);
+        assertEquals(SolidTileSource.colour(4, 7), pixels[59 * 100]);
+        assertEquals(SolidTileSource.colour(5, 7), pixels[59 * 100 + 99]);
+        assertEquals(4, source.renders.get());
+    }
+
+    @Test
+    void wrapsAcrossTheAntimeridianAndUpscalesPastMaxZoom() {
+        SolidTileSource source = new SolidTileSource(3);
+        // Zoom 5 centred on the left edge of the world: tiles x = 31 and 0 at zoom 5
+        int[] pixels = renderer().render(new StaticMapRequest(40, 20, 5, 0.0, 17.5, List.of(source)));
+        assertEquals(SolidTileSource.colour(7, 4), pixels[0]);
+        assertEquals(SolidTileSource.colour(0, 4), pixels[39]);
+        // Both zoom-5 tiles come from just two zoom-3 tiles
+        assertEquals(2, source.renders.get());
+    }
+
+    @Test
+    void drawingLayerIsComposedOverTheBaseMap() {
+        SolidTileSource base = new SolidTileSource(18);
+        DrawingTileSource drawing = new DrawingTileSource("test");
+        drawing.reset(List.of(List.of(new double[]{51.5, -0.2}, new double[]{51.5, 0.0})));
+        StaticMapRequest request = StaticMapRequest.centredOn(51.5, -0.1, 12, 400, 100, List.of(base, drawing));
+        int[] pixels = renderer().render(request);
+        // The line runs along the middle row; at least one pixel across it is fully covered
+        boolean covered = false;
+        for (int row = 47; row <= 52; row++) covered |= pixels[row * 400 + 200] == 0xFF0000FF;
+        assertTrue(covered);
+        int offLine = pixels[5 * 400 + 200];
+        assertEquals(0xFF, offLine >>> 24);
+        assertNotEquals(0xFF0000FF, offLine);
+    }
+
+    @Test
+    void fittingChoosesDeepestZoomShowingTheBox() {
+        StaticMapRequest request = StaticMapRequest.fitting(51.4, -0.3, 51.6, 0.1, 800, 600, 16, 20, List.of());
+        double worldPixels = TileMath.maxTile(request.zoom()) * TILE_SIZE;
+        double boxWidth = (TileMath.lonToTileX(0.1, 0) - TileMath.lonToTileX(-0.3, 0)) * worldPixels;
+        assertTrue(boxWidth <= 800 - 32);
+        assertTrue(boxWidth * 2 > 800 - 32);
+        assertEquals(TileMath.lonToTileX(-0.1, request.zoom()), request.centerX(), 1e-9);
+    }
+
+    @Test
+    void concurrentRendersProducePngs() throws Exception {
+        StaticMapRenderer renderer = renderer();
+        SolidTileSource source = new SolidTileSource(18);
+        ExecutorService jobs = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                StaticMapRequest request = StaticMapRequest.centredOn(10 * i, 20 * i, 6, 300, 200, List.of((TileSource) source));
+                results.add(jobs.submit(() -> {
+                    ByteArrayOutputStream png = new ByteArrayOutputStream();
+                    StaticMapRenderer.writePng(renderer.render(request), 300, 200, png);
+                    return png.toByteArray();
+                }));
+            }
+            for (Future<byte[]> result : results) {
+                BufferedImage image = ImageIO.read(new ByteArrayInputStream(result.get()));
+                assertEquals(300, image.getWidth());
+                assertEquals(200, image.getHeight());
+                assertEquals(0xFF, image.getRGB(150, 100) >>> 24);
+            }
+        } finally {
+            jobs.shutdownNow();
+        }
+    }
+}
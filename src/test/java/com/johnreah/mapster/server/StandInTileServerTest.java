@@ -0,0 +1,104 @@
+package com.johnreah.mapster.server;
+
+import com.johnreah.mapster.util.TileAddress;
+import com.johnreah.mapster.view.maptiles.TileDiskStore;
+import com.johnreah.mapster.view.maptiles.TileFetcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StandInTileServerTest {
+
+    @TempDir
+    Path cache;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private StandInTileServer standIn;
+
+    @AfterEach
+    void stop() {
+        if (standIn != null) standIn.close();
+    }
+
+    private HttpResponse<byte[]> get(String path, String... headers) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(standIn.getBaseUrl() + path));
+        for (int i = 0; i < headers.length; i += 2) request.header(headers[i], headers[i + 1]);
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    @Test
+    void servesDecodableTilesWithValidators() throws Exception {
+        standIn = StandInTileServer.start(StandInTileServer.Profile.instant());
+        HttpResponse<byte[]> response = get("/10/511/340.png");
+        assertEquals(200, response.statusCode());
+        assertEquals("image/png", response.headers().firstValue("Content-Type").orElseThrow());
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(response.body()));
+        assertEquals(256, image.getWidth());
+        assertArrayEquals(response.body(), get("/osm/10/511/340.png").body());
+
+        String etag = response.headers().firstValue("ETag").orElseThrow();
+        assertEquals(304, get("/10/511/340.png", "If-None-Match", etag).statusCode());
+        assertEquals(404, get("/19/0/0.png").statusCode());
+        assertEquals(404, get("/2/9/0.png").statusCode());
+        assertEquals(2, standIn.getFullResponseCount());
+        assertEquals(1, standIn.getNotModifiedCount());
+    }
+
+    @Test
+    void conditionalRequestsCanBeIgnored() throws Exception {
+        standIn = StandInTileServer.start(StandInTileServer.Profile.instant().withConditional(false));
+        String etag = get("/3/1/2.png").headers().firstValue("ETag").orElseThrow();
+        assertEquals(200, get("/3/1/2.png", "If-None-Match", etag).statusCode());
+        assertEquals(0, standIn.getNotModifiedCount());
+    }
+
+    @Test
+    void latencyAndBandwidthAreSimulated() throws Exception {
+        standIn = StandInTileServer.start(StandInTileServer.Profile.instant().withLatency(100, 0));
+        long start = System.nanoTime();
+        get("/4/8/5.png");
+        assertTrue(System.nanoTime() - start >= 100_000_000L);
+        standIn.close();
+
+        standIn = StandInTileServer.start(StandInTileServer.Profile.instant());
+        int size = standIn.tileBytes(new TileAddress(4, 8, 5)).length;
+        standIn.close();
+        // Two seconds' worth of bytes at the throttled rate
+        standIn = StandInTileServer.start(StandInTileServer.Profile.instant().withBandwidth(size / 2));
+        start = System.nanoTime();
+        assertEquals(size, get("/4/8/5.png").body().length);
+        assertTrue(System.nanoTime() - start >= 1_500_000_000L);
+    }
+
+    @Test
+    void failuresFollowTheErrorRate() throws Exception {
+        standIn = StandInTileServer.start(StandInTileServer.Profile.instant().withErrorRate(0.5));
+        int failed = 0;
+        for (int i = 0; i < 200; i++) {
+            if (get("/1/0/0.png").statusCode() == 503) failed++;
+        }
+        assertEquals(failed, standIn.getErrorCount());
+        assertTrue(failed > 60 && failed < 140, failed + " of 200 failed");
+    }
+
+    @Test
+    void fetcherLoadsAndCachesStandInTiles() throws Exception {
+        standIn = StandInTileServer.start(StandInTileServer.Profile.instant());
+        TileFetcher fetcher = new TileFetcher(new TileDiskStore(cache, Long.MAX_VALUE));
+        TileAddress tile = new TileAddress(12, 2047, 1361);
+        assertArrayEquals(standIn.tileBytes(tile), fetcher.fetch(standIn.source("stand-in"), tile));
+        fetcher.fetch(standIn.source("stand-in"), tile);
+        assertEquals(1, standIn.getRequestCount());
+    }
+}
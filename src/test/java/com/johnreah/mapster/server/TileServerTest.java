@@ -0,0 +1,124 @@
+package com.johnreah.mapster.server;
+
+import com.johnreah.mapster.util.TileAddress;
+import com.johnreah.mapster.util.TileSource;
+import com.johnreah.mapster.view.maptiles.ProxyTileSource;
+import com.johnreah.mapster.view.maptiles.TileDiskStore;
+import com.johnreah.mapster.view.maptiles.TileFetcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TileServerTest {
+
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    @TempDir
+    Path serverCache;
+
+    @TempDir
+    Path clientCache;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private StandInTileServer upstream;
+    private TileServer server;
+
+    @AfterEach
+    void stop() {
+        if (server != null) server.close();
+        if (upstream != null) upstream.close();
+    }
+
+    private String start(long latencyMillis, long maxAgeMillis) throws Exception {
+        upstream = StandInTileServer.start(StandInTileServer.Profile.instant().withLatency(latencyMillis, 0));
+        server = TileServer.start(new InetSocketAddress("127.0.0.1", 0), List.of(upstream.source("stub")),
+                new TileFetcher(new TileDiskStore(serverCache, maxAgeMillis)));
+        return "http://127.0.0.1:" + server.getPort();
+    }
+
+    private HttpResponse<byte[]> get(String url, String... headers) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url));
+        for (int i = 0; i < headers.length; i += 2) request.header(headers[i], headers[i + 1]);
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    @Test
+    void concurrentRequestsShareOneUpstreamFetch() throws Exception {
+        String base = start(300, DAY_MS);
+        ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            List<Future<HttpResponse<byte[]>>> responses = new ArrayList<>();
+            for (int i = 0; i < 20; i++) responses.add(clients.submit(() -> get(base + "/stub/10/511/340.png")));
+            for (Future<HttpResponse<byte[]>> response : responses) {
+                assertEquals(200, response.get().statusCode());
+                assertArrayEquals(upstream.tileBytes(new TileAddress(10, 511, 340)), response.get().body());
+            }
+        } finally {
+            clients.shutdown();
+        }
+        assertEquals(1, upstream.getFullResponseCount());
+        assertEquals(20, server.getRequestCount());
+    }
+
+    @Test
+    void proxySourceFetchesThroughTheServer() throws Exception {
+        String base = start(0, DAY_MS);
+        TileSource proxied = new ProxyTileSource(upstream.source("stub"), base + "/");
+        TileFetcher clientFetcher = new TileFetcher(new TileDiskStore(clientCache, DAY_MS));
+        byte[] bytes = clientFetcher.fetch(proxied, new TileAddress(12, 2047, 1361));
+        assertArrayEquals(upstream.tileBytes(new TileAddress(12, 2047, 1361)), bytes);
+        assertEquals(1, server.getRequestCount());
+        // Served from the client's own disk cache the second time
+        clientFetcher.fetch(proxied, new TileAddress(12, 2047, 1361));
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    void conditionalRequestsAreNotModified() throws Exception {
+        String base = start(0, DAY_MS);
+        HttpResponse<byte[]> first = get(base + "/stub/3/1/2.png");
+        String etag = first.headers().firstValue("ETag").orElseThrow();
+        String lastModified = first.headers().firstValue("Last-Modified").orElseThrow();
+
+        assertEquals(304, get(base + "/stub/3/1/2.png", "If-None-Match", etag).statusCode());
+        assertEquals(304, get(base + "/stub/3/1/2.png", "If-Modified-Since", lastModified).statusCode());
+        assertEquals(200, get(base + "/stub/3/1/2.png", "If-None-Match", "\"other\"").statusCode());
+        assertEquals(2, server.getNotModifiedCount());
+        assertEquals(1, upstream.getFullResponseCount());
+    }
+
+    @Test
+    void expiredTilesAreRevalidatedUpstream() throws Exception {
+        String base = start(0, 0);
+        assertEquals(200, get(base + "/stub/5/3/4.png").statusCode());
+        HttpResponse<byte[]> again = get(base + "/stub/5/3/4.png");
+        assertEquals(200, again.statusCode());
+        assertArrayEquals(upstream.tileBytes(new TileAddress(5, 3, 4)), again.body());
+        assertEquals(1, upstream.getFullResponseCount());
+        assertEquals(1, upstream.getNotModifiedCount());
+    }
+
+    @Test
+    void rejectsUnknownTiles() throws Exception {
+        String base = start(0, DAY_MS);
+        assertEquals(404, get(base + "/nope/1/0/0.png").statusCode());
+        assertEquals(404, get(base + "/stub/19/0/0.png").statusCode());
+        assertEquals(404, get(base + "/stub/2/9/0.png").statusCode());
+        assertEquals(400, get(base + "/stub/2/0.png").statusCode());
+        assertEquals(0, upstream.getFullResponseCount());
+    }
+}
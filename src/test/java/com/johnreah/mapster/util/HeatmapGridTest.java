@@ -0,0 +1,95 @@
+package com.johnreah.mapster.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeatmapGridTest {
+
+    private static double[][] randomPoints(int n, long seed) {
+        Random random = new Random(seed);
+        double[] lats = new double[n];
+        double[] lons = new double[n];
+        for (int i = 0; i < n; i++) {
+            lats[i] = 51 + random.nextGaussian() * 0.5;
+            lons[i] = -1 + random.nextGaussian() * 0.5;
+        }
+        return new double[][]{lats, lons};
+    }
+
+    /** Sum of every bin of every tile at a zoom, read back through the public accessor. */
+    private static long total(HeatmapGrid grid, int zoom) {
+        long sum = 0;
+        int tiles = 1 << zoom;
+        int n = HeatmapGrid.BINS_PER_TILE;
+        for (int y = 0; y < tiles; y++) {
+            for (int x = 0; x < tiles; x++) {
+                int[] bins = grid.binsWithBorder(zoom, x, y);
+                if (bins == null) continue;
+                for (int r = 1; r <= n; r++) {
+                    for (int c = 1; c <= n; c++) sum += bins[r * (n + 2) + c];
+                }
+            }
+        }
+        return sum;
+    }
+
+    @Test
+    void everyZoomCountsEveryPoint() {
+        double[][] points = randomPoints(100_000, 1);
+        HeatmapGrid grid = new HeatmapGrid();
+        grid.append(points[0], points[1], 0, points[0].length);
+        assertEquals(100_000, grid.pointCount());
+        for (int zoom = 0; zoom <= 6; zoom++) {
+            assertEquals(100_000, total(grid, zoom), "zoom " + zoom);
+        }
+    }
+
+    @Test
+    void incrementalAppendsMatchOneBulkAppend() {
+        double[][] points = randomPoints(50_000, 2);
+        HeatmapGrid bulk = new HeatmapGrid();
+        bulk.append(points[0], points[1], 0, 50_000);
+        HeatmapGrid incremental = new HeatmapGrid();
+        for (int from = 0; from < 50_000; from += 7_000) {
+            incremental.append(points[0], points[1], from, Math.min(50_000, from + 7_000));
+        }
+
+        for (int zoom : new int[]{0, 5, 9, HeatmapGrid.MAX_ZOOM}) {
+            assertEquals(bulk.maxBin(zoom), incremental.maxBin(zoom));
+            int x = (int) TileMath.lonToTileX(-1, zoom);
+            int y = (int) TileMath.latToTileY(51, zoom);
+            assertArrayEquals(bulk.binsWithBorder(zoom, x, y), incremental.binsWithBorder(zoom, x, y));
+        }
+        assertEquals(bulk.tileCount(), incremental.tileCount());
+    }
+
+    @Test
+    void appendReportsBoundsOfNewPoints() {
+        HeatmapGrid grid = new HeatmapGrid();
+        double[] bounds = grid.append(new double[]{51.0, 52.0}, new double[]{-1.0, 1.0}, 0, 2);
+        assertEquals(TileMath.lonToTileX(-1.0, 0), bounds[0], 1e-12);
+        assertEquals(TileMath.latToTileY(52.0, 0), bounds[1], 1e-12);
+        assertEquals(TileMath.lonToTileX(1.0, 0), bounds[2], 1e-12);
+        assertEquals(TileMath.latToTileY(51.0, 0), bounds[3], 1e-12);
+    }
+
+    @Test
+    void borderComesFromNeighbouringTiles() {
+        int zoom = 10;
+        int n = HeatmapGrid.BINS_PER_TILE;
+        // A point in the top-left bin of tile (500, 300), seen from its left neighbour
+        double lon = TileMath.tileXToLon(500 + 0.1 / n, zoom);
+        double lat = TileMath.tileYToLat(300 + 0.1 / n, zoom);
+        HeatmapGrid grid = new HeatmapGrid();
+        grid.append(new double[]{lat}, new double[]{lon}, 0, 1);
+
+        int[] own = grid.binsWithBorder(zoom, 500, 300);
+        assertEquals(1, own[(n + 2) + 1]);
+        int[] left = grid.binsWithBorder(zoom, 499, 300);
+        assertEquals(1, left[(n + 2) + n + 1]);
+        assertNull(grid.binsWithBorder(zoom, 502, 300));
+    }
+}
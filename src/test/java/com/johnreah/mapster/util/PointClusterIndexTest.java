@@ -0,0 +1,69 @@
+package com.johnreah.mapster.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PointClusterIndexTest {
+
+    private static PointClusterIndex randomIndex(int n, long seed) {
+        Random random = new Random(seed);
+        double[] lats = new double[n];
+        double[] lons = new double[n];
+        for (int i = 0; i < n; i++) {
+            lats[i] = 50 + random.nextDouble() * 5;
+            lons[i] = -5 + random.nextDouble() * 6;
+        }
+        return PointClusterIndex.build(lats, lons);
+    }
+
+    @Test
+    void everyZoomAccountsForEveryPoint() {
+        PointClusterIndex index = randomIndex(20_000, 1);
+        for (int zoom = 0; zoom <= PointClusterIndex.MAX_CLUSTER_ZOOM + 1; zoom++) {
+            AtomicInteger total = new AtomicInteger();
+            index.query(zoom, 0, 0, 1, 1, (x, y, count) -> total.addAndGet(count));
+            assertEquals(20_000, total.get(), "zoom " + zoom);
+        }
+    }
+
+    @Test
+    void clustersGetFinerAsZoomIncreases() {
+        PointClusterIndex index = randomIndex(20_000, 2);
+        assertTrue(index.clusterCount(0) <= 2); // the data straddles the prime meridian
+        for (int zoom = 1; zoom <= PointClusterIndex.MAX_CLUSTER_ZOOM; zoom++) {
+            assertTrue(index.clusterCount(zoom) >= index.clusterCount(zoom - 1));
+        }
+        assertEquals(20_000, index.clusterCount(PointClusterIndex.MAX_CLUSTER_ZOOM + 1));
+    }
+
+    @Test
+    void queryReturnsOnlyClustersNearTheViewport() {
+        PointClusterIndex index = randomIndex(50_000, 3);
+        double x0 = TileMath.lonToTileX(-1.0, 0), x1 = TileMath.lonToTileX(-0.9, 0);
+        double y0 = TileMath.latToTileY(52.1, 0), y1 = TileMath.latToTileY(52.0, 0);
+        int zoom = 12;
+        double cell = (double) PointClusterIndex.CELL_PIXELS / (TileMath.TILE_SIZE * TileMath.maxTile(zoom));
+        int visited = index.query(zoom, x0, y0, x1, y1, (x, y, count) -> {
+            assertTrue(x >= x0 - cell && x <= x1 + cell);
+            assertTrue(y >= y0 - cell && y <= y1 + cell);
+        });
+        assertTrue(visited > 0);
+        assertTrue(visited < index.clusterCount(zoom) / 10);
+    }
+
+    @Test
+    void singlePointClusterSitsOnThePoint() {
+        PointClusterIndex index = PointClusterIndex.build(new double[]{51.5}, new double[]{-0.12});
+        for (int zoom : new int[]{0, 10, PointClusterIndex.MAX_CLUSTER_ZOOM + 2}) {
+            index.query(zoom, 0, 0, 1, 1, (x, y, count) -> {
+                assertEquals(1, count);
+                assertEquals(TileMath.lonToTileX(-0.12, 0), x, 1e-12);
+                assertEquals(TileMath.latToTileY(51.5, 0), y, 1e-12);
+            });
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.johnreah.mapster.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProjectionTest {
+
+    private static final int ZOOM = 20;
+    private static final double PIXEL = 1.0 / TileMath.TILE_SIZE; // one screen pixel in tiles
+
+    @Test
+    void fastForwardIsSubPixelAtZoom20() {
+        double worst = 0;
+        for (int i = 0; i <= 100_000; i++) {
+            double lat = -Projection.MAX_LATITUDE + 2 * Projection.MAX_LATITUDE * i / 100_000.0;
+            double exact = Projection.EXACT.latToTileY(lat, ZOOM);
+            worst = Math.max(worst, Math.abs(Projection.FAST.latToTileY(lat, ZOOM) - exact));
+        }
+        assertTrue(worst < 0.01 * PIXEL, "worst error " + worst / PIXEL + " px");
+    }
+
+    @Test
+    void fastInverseReprojectsToSamePosition() {
+        double max = TileMath.maxTile(ZOOM);
+        for (int i = 0; i <= 10_000; i++) {
+            double tileY = max * i / 10_000.0;
+            double lat = Projection.FAST.tileYToLat(tileY, ZOOM);
+            assertEquals(Projection.EXACT.tileYToLat(tileY, ZOOM), lat, 1e-9);
+            assertEquals(tileY, Projection.EXACT.latToTileY(lat, ZOOM), 0.01 * PIXEL);
+        }
+    }
+
+    @Test
+    void fastFallsBackToExactOutsideMap() {
+        assertEquals(Projection.EXACT.latToTileY(89.0, 5), Projection.FAST.latToTileY(89.0, 5));
+        assertEquals(Projection.EXACT.tileYToLat(-3.0, 5), Projection.FAST.tileYToLat(-3.0, 5));
+    }
+
+    @Test
+    void screenConversionsMatchTileMath() {
+        double[] exact = TileMath.latLonToScreen(51.505, -0.09, ZOOM, 523_000.5, 348_000.25, 800, 600);
+        double[] fast = Projection.FAST.latLonToScreen(51.505, -0.09, ZOOM, 523_000.5, 348_000.25, 800, 600);
+        assertEquals(exact[0], fast[0], 1e-6);
+        assertEquals(exact[1], fast[1], 0.01);
+        double[] latLon = Projection.FAST.screenToLatLon(fast[0], fast[1], ZOOM, 523_000.5, 348_000.25, 800, 600);
+        assertEquals(51.505, latLon[0], 1e-8);
+        assertEquals(-0.09, latLon[1], 1e-8);
+    }
+}
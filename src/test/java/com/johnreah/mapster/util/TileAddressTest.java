@@ -0,0 +1,103 @@
+package com.johnreah.mapster.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TileAddressTest {
+
+    @Test
+    void quadKeyMatchesBingExample() {
+        // Tile 3/3/5 is "213" in the Bing Maps tile system documentation
+        TileAddress tile = new TileAddress(3, 3, 5);
+        assertEquals("213", tile.quadKey());
+        assertEquals(tile, TileAddress.fromQuadKey("213"));
+        assertEquals("", new TileAddress(0, 0, 0).quadKey());
+    }
+
+    @Test
+    void mortonRoundTrip() {
+        TileAddress tile = new TileAddress(20, 523_413, 348_101);
+        assertEquals(tile, TileAddress.fromMorton(20, tile.morton()));
+        TileAddress deepest = new TileAddress(TileAddress.MAX_ZOOM, Integer.MAX_VALUE, 12_345);
+        assertEquals(deepest, TileAddress.fromMorton(TileAddress.MAX_ZOOM, deepest.morton()));
+        assertEquals(0b1110, new TileAddress(2, 2, 3).morton());
+    }
+
+    @Test
+    void pyramidIndexOrdersByZoomThenMorton() {
+        assertEquals(0, new TileAddress(0, 0, 0).pyramidIndex());
+        assertEquals(1, new TileAddress(1, 0, 0).pyramidIndex());
+        assertEquals(5, new TileAddress(2, 0, 0).pyramidIndex());
+        assertEquals(5 + 0b1110, new TileAddress(2, 2, 3).pyramidIndex());
+        assertTrue(new TileAddress(1, 1, 1).pyramidIndex() < new TileAddress(2, 0, 0).pyramidIndex());
+        TileAddress deepest = new TileAddress(TileAddress.MAX_ZOOM, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        assertTrue(deepest.pyramidIndex() > 0);
+        for (TileAddress tile : List.of(new TileAddress(0, 0, 0), new TileAddress(3, 3, 5),
+                new TileAddress(20, 523_413, 348_101), deepest)) {
+            assertEquals(tile, TileAddress.fromPyramidIndex(tile.pyramidIndex()));
+        }
+    }
+
+    @Test
+    void parentChildAndNeighbours() {
+        TileAddress tile = new TileAddress(10, 511, 340);
+        assertEquals(new TileAddress(9, 255, 170), tile.parent());
+        assertNull(new TileAddress(0, 0, 0).parent());
+        for (TileAddress child : tile.children()) {
+            assertEquals(tile, child.parent());
+            assertTrue(child.quadKey().startsWith(tile.quadKey()));
+        }
+        assertEquals(new TileAddress(7, 63, 42), tile.ancestor(7));
+
+        assertEquals(new TileAddress(10, 0, 340), new TileAddress(10, 1023, 340).neighbour(1, 0));
+        assertEquals(new TileAddress(10, 1023, 341), new TileAddress(10, 0, 340).neighbour(-1, 1));
+        assertNull(new TileAddress(10, 5, 0).neighbour(0, -1));
+    }
+
+    @Test
+    void rangeVisitsRectangleInMortonOrder() {
+        List<TileAddress> tiles = new ArrayList<>();
+        TileAddress.range(6, 5, 9, 17, 12).forEach(tiles::add);
+        assertEquals(13 * 4, tiles.size());
+        for (int i = 1; i < tiles.size(); i++) {
+            assertTrue(tiles.get(i - 1).morton() < tiles.get(i).morton());
+        }
+        for (TileAddress tile : tiles) {
+            assertTrue(tile.x() >= 5 && tile.x() <= 17 && tile.y() >= 9 && tile.y() <= 12);
+        }
+
+        // Clamped to the map
+        List<TileAddress> clamped = new ArrayList<>();
+        TileAddress.range(1, -3, -3, 5, 0).forEach(clamped::add);
+        assertEquals(List.of(new TileAddress(1, 0, 0), new TileAddress(1, 1, 0)), clamped);
+        assertFalse(TileAddress.range(3, 4, 4, 3, 4).iterator().hasNext());
+    }
+
+    @Test
+    void wrappedRangeCrossesTheAntimeridian() {
+        List<TileAddress> tiles = new ArrayList<>();
+        TileAddress.wrappedRange(3, -2, 1, 1, 1).forEach(tiles::add);
+        assertEquals(List.of(new TileAddress(3, 6, 1), new TileAddress(3, 7, 1),
+                new TileAddress(3, 0, 1), new TileAddress(3, 1, 1)), tiles);
+
+        List<TileAddress> east = new ArrayList<>();
+        TileAddress.wrappedRange(3, 7, 0, 9, 0).forEach(east::add);
+        assertEquals(List.of(new TileAddress(3, 7, 0), new TileAddress(3, 0, 0), new TileAddress(3, 1, 0)), east);
+
+        // Wider than the world: each tile once
+        List<TileAddress> all = new ArrayList<>();
+        TileAddress.wrappedRange(1, -5, 0, 5, 1).forEach(all::add);
+        assertEquals(4, all.size());
+    }
+
+    @Test
+    void rejectsTilesOffTheMap() {
+        assertThrows(IllegalArgumentException.class, () -> new TileAddress(2, 4, 0));
+        assertThrows(IllegalArgumentException.class, () -> new TileAddress(-1, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> TileAddress.fromQuadKey("0149"));
+    }
+}
@@ -85,4 +85,61 @@ class TileMathTest {
             assertEquals(lat, TileMath.tileYToLat(tileY, zoom), DELTA, "lat round-trip failed at zoom " + zoom);
         }
     }
+
+    @Test
+    void batchProjectionMatchesScalarWithinStatedBound() {
+        // Large enough to take the parallel path
+        int n = TileMath.PARALLEL_THRESHOLD * 2 + 17;
+        double[] lats = new double[n];
+        double[] lons = new double[n];
+        for (int i = 0; i < n; i++) {
+            lats[i] = -85.0511 + 170.1022 * i / (n - 1);
+            lons[i] = -180.0 + 360.0 * i / (n - 1);
+        }
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        int zoom = 20;
+        TileMath.lonToTileX(lons, 0, xs, 0, n, zoom);
+        TileMath.latToTileY(lats, 0, ys, 0, n, zoom);
+        double bound = 2e-14 * TileMath.maxTile(zoom);
+        for (int i = 0; i < n; i++) {
+            assertEquals(TileMath.lonToTileX(lons[i], zoom), xs[i], bound);
+            assertEquals(TileMath.latToTileY(lats[i], zoom), ys[i], bound);
+        }
+
+        double[] backLat = new double[n];
+        double[] backLon = new double[n];
+        TileMath.tileXToLon(xs, 0, backLon, 0, n, zoom);
+        TileMath.tileYToLat(ys, 0, backLat, 0, n, zoom);
+        for (int i = 0; i < n; i++) {
+            assertEquals(lons[i], backLon[i], DELTA);
+            assertEquals(lats[i], backLat[i], DELTA);
+        }
+    }
+
+    @Test
+    void batchProjectionHonoursOffsets() {
+        double[] lats = {0, 0, 51.505, -33.86, 0};
+        double[] ys = new double[4];
+        TileMath.latToTileY(lats, 2, ys, 1, 2, 10);
+        assertEquals(0.0, ys[0]);
+        assertEquals(TileMath.latToTileY(51.505, 10), ys[1], 1e-9);
+        assertEquals(TileMath.latToTileY(-33.86, 10), ys[2], 1e-9);
+        assertEquals(0.0, ys[3]);
+    }
+
+    @Test
+    void batchScreenProjectionMatchesScalar() {
+        double[] lats = {51.505, 51.51, 51.49};
+        double[] lons = {-0.09, -0.1, -0.08};
+        double[] sx = new double[3];
+        double[] sy = new double[3];
+        double cx = TileMath.lonToTileX(-0.09, 14), cy = TileMath.latToTileY(51.5, 14);
+        TileMath.latLonToScreen(lats, lons, sx, sy, 3, 14, cx, cy, 800, 600);
+        for (int i = 0; i < 3; i++) {
+            double[] expected = TileMath.latLonToScreen(lats[i], lons[i], 14, cx, cy, 800, 600);
+            assertEquals(expected[0], sx[i], 1e-6);
+            assertEquals(expected[1], sy[i], 1e-6);
+        }
+    }
 }
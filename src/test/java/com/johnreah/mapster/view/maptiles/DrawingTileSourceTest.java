@@ -0,0 +1,106 @@
+package com.johnreah.mapster.view.maptiles;
+
+import com.johnreah.mapster.util.TileMath;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DrawingTileSourceTest {
+
+    private static List<double[]> horizontalLine(double lat, double lonFrom, double lonTo, int points) {
+        List<double[]> line = new ArrayList<>();
+        for (int i = 0; i < points; i++) {
+            line.add(new double[]{lat, lonFrom + (lonTo - lonFrom) * i / (points - 1)});
+        }
+        return line;
+    }
+
+    @Test
+    void emptySourceRendersNothing() {
+        DrawingTileSource source = new DrawingTileSource("d");
+        assertNull(source.renderTile(0, 0, 0));
+    }
+
+    @Test
+    void lineIsRasterisedOnlyIntoTilesItCrosses() {
+        DrawingTileSource source = new DrawingTileSource("d");
+        // Equator, west hemisphere only: at zoom 1 this is the boundary of tiles (0,0) and (0,1)
+        source.updateLine(0, horizontalLine(0, -170, -10, 50), 0, 49);
+
+        int[] pixels = source.renderTile(1, 0, 1);
+        assertNotNull(pixels);
+        int tileSize = TileMath.TILE_SIZE;
+        // Row 0 is on the line at the top edge of the southern tile
+        assertEquals(0xFF0000FF, pixels[tileSize / 2]);
+        assertEquals(0, pixels[(tileSize / 2) * tileSize + tileSize / 2]);
+        assertNull(source.renderTile(1, 1, 1));
+    }
+
+    @Test
+    void draggingOnePointDirtiesOnlyItsNeighbours() {
+        DrawingTileSource source = new DrawingTileSource("d");
+        List<double[]> line = horizontalLine(10, -100, 100, 201);
+        source.updateLine(0, line, 0, 200);
+
+        line.get(100)[0] = 20;
+        double[] dirty = source.updateLine(0, line, 100, 100);
+
+        assertEquals(DrawingTileSource.worldX(-1), dirty[0], 1e-12);
+        assertEquals(DrawingTileSource.worldX(1), dirty[2], 1e-12);
+        assertEquals(DrawingTileSource.worldY(20), dirty[1], 1e-12);
+        assertEquals(DrawingTileSource.worldY(10), dirty[3], 1e-12);
+    }
+
+    @Test
+    void liftedVertexIsLeftOutWithItsSegments() {
+        DrawingTileSource source = new DrawingTileSource("d");
+        source.updateLine(0, horizontalLine(0, -90, 90, 3), 0, 2);
+        int centre = (TileMath.TILE_SIZE / 2) * TileMath.TILE_SIZE + TileMath.TILE_SIZE / 2;
+        int onSegment = (TileMath.TILE_SIZE / 2) * TileMath.TILE_SIZE + TileMath.TILE_SIZE / 2 - 20;
+        assertEquals(0xFF0000FF, source.renderTile(0, 0, 0)[centre]);
+
+        double[] dirty = source.lift(0, 1);
+        assertEquals(DrawingTileSource.worldX(-90), dirty[0], 1e-12);
+        assertEquals(DrawingTileSource.worldX(90), dirty[2], 1e-12);
+        int[] lifted = source.renderTile(0, 0, 0);
+        assertEquals(0, lifted[centre]);
+        assertEquals(0, lifted[onSegment]);
+
+        assertNotNull(source.lift(-1, -1));
+        assertEquals(0xFF0000FF, source.renderTile(0, 0, 0)[onSegment]);
+    }
+
+    @Test
+    void updateSharesUntouchedChunks() {
+        int n = DrawingTileSource.CHUNK_SIZE * 3 + 10;
+        List<double[]> points = horizontalLine(0, -90, 90, n);
+        DrawingTileSource.LineSnapshot before = DrawingTileSource.LineSnapshot.build(points);
+
+        points.get(DrawingTileSource.CHUNK_SIZE + 5)[0] = 5;
+        DrawingTileSource.LineSnapshot after = before.update(points, DrawingTileSource.CHUNK_SIZE + 5,
+                DrawingTileSource.CHUNK_SIZE + 5);
+
+        assertSame(before.chunks[0], after.chunks[0]);
+        assertNotSame(before.chunks[1], after.chunks[1]);
+        assertSame(before.chunks[2], after.chunks[2]);
+        assertEquals(DrawingTileSource.worldY(5), after.y(DrawingTileSource.CHUNK_SIZE + 5), 1e-12);
+    }
+
+    @Test
+    void appendExtendsLastChunkAndCoversConnectingSegment() {
+        int n = DrawingTileSource.CHUNK_SIZE;
+        List<double[]> points = horizontalLine(0, -90, 0, n);
+        DrawingTileSource.LineSnapshot before = DrawingTileSource.LineSnapshot.build(points);
+        points.add(new double[]{0, 45});
+
+        DrawingTileSource.LineSnapshot after = before.update(points, n, n);
+
+        assertEquals(n + 1, after.size);
+        assertEquals(2, after.chunks.length);
+        assertEquals(DrawingTileSource.worldX(45), after.chunkBounds[0][2], 1e-12);
+        assertEquals(DrawingTileSource.worldX(45), after.maxX, 1e-12);
+    }
+}
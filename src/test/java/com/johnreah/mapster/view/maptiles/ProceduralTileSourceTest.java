@@ -0,0 +1,55 @@
+package com.johnreah.mapster.view.maptiles;
+
+import com.johnreah.mapster.util.TileMath;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProceduralTileSourceTest {
+
+    private static final int TILE_SIZE = TileMath.TILE_SIZE;
+
+    @Test
+    void sameSeedGivesSamePixels() {
+        int[] first = new ProceduralTileSource().renderTile(12, 2047, 1361);
+        int[] second = new ProceduralTileSource().renderTile(12, 2047, 1361);
+        assertArrayEquals(first, second);
+        assertFalse(Arrays.equals(first, new ProceduralTileSource("other", 42).renderTile(12, 2047, 1361)));
+        assertArrayEquals(new ProceduralTileSource().encodeTile(3, 1, 2), new ProceduralTileSource().encodeTile(3, 1, 2));
+    }
+
+    @Test
+    void tilesAreOpaqueAndVaried() {
+        int[] pixels = new ProceduralTileSource().renderTile(6, 31, 21);
+        assertEquals(TILE_SIZE * TILE_SIZE, pixels.length);
+        long distinct = Arrays.stream(pixels).distinct().count();
+        assertTrue(distinct > 50, "only " + distinct + " colours");
+        for (int p : pixels) assertEquals(0xFF, p >>> 24);
+    }
+
+    @Test
+    void neighbouringTilesJoinUp() {
+        ProceduralTileSource source = new ProceduralTileSource();
+        // The last column of one tile and the second of the next (the first is the border)
+        // are adjacent pixels of the same terrain, so they should differ only slightly
+        int[] west = source.renderTile(10, 511, 340);
+        int[] east = source.renderTile(10, 512, 340);
+        int[] wrappedEast = source.renderTile(10, 0, 340);
+        int[] wrappedWest = source.renderTile(10, 1023, 340);
+        int close = 0;
+        int wrappedClose = 0;
+        for (int y = 1; y < TILE_SIZE; y++) {
+            if (difference(west[y * TILE_SIZE + TILE_SIZE - 1], east[y * TILE_SIZE + 1]) <= 24) close++;
+            if (difference(wrappedWest[y * TILE_SIZE + TILE_SIZE - 1], wrappedEast[y * TILE_SIZE + 1]) <= 24) wrappedClose++;
+        }
+        assertTrue(close > TILE_SIZE * 9 / 10, close + " of " + TILE_SIZE);
+        assertTrue(wrappedClose > TILE_SIZE * 9 / 10, "antimeridian: " + wrappedClose + " of " + TILE_SIZE);
+    }
+
+    private static int difference(int a, int b) {
+        return Math.abs((a >> 16 & 0xFF) - (b >> 16 & 0xFF)) + Math.abs((a >> 8 & 0xFF) - (b >> 8 & 0xFF))
+                + Math.abs((a & 0xFF) - (b & 0xFF));
+    }
+}
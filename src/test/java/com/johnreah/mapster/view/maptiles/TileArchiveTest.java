@@ -0,0 +1,138 @@
+package com.johnreah.mapster.view.maptiles;
+
+import com.johnreah.mapster.util.TileAddress;
+import com.johnreah.mapster.util.TileMath;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.imageio.ImageIO;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TileArchiveTest {
+
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void writeThenReadBack() throws Exception {
+        Path file = dir.resolve("region.mtiles");
+        List<TileAddress> tiles = new ArrayList<>();
+        for (int zoom = 0; zoom <= 4; zoom++) {
+            TileAddress.range(zoom, 0, 0, 3, 3).forEach(tiles::add);
+        }
+        try (TileArchiveWriter writer = new TileArchiveWriter(file, Map.of(TileArchive.NAME, "Test"))) {
+            for (TileAddress tile : tiles) writer.add(tile, bytesFor(tile));
+        }
+        assertFalse(Files.exists(dir.resolve("region.mtiles.part")));
+
+        try (TileArchive archive = TileArchive.open(file)) {
+            assertEquals(tiles.size(), archive.getTileCount());
+            assertEquals(0, archive.getMinZoom());
+            assertEquals(4, archive.getMaxZoom());
+            assertEquals("Test", archive.getMetadata(TileArchive.NAME, null));
+            for (TileAddress tile : tiles) assertArrayEquals(bytesFor(tile), archive.read(tile), tile.toString());
+            assertNull(archive.read(new TileAddress(4, 15, 15)));
+            assertNull(archive.read(new TileAddress(5, 0, 0)));
+
+            List<TileAddress> visited = new ArrayList<>();
+            archive.forEach((tile, bytes) -> {
+                assertArrayEquals(bytesFor(tile), bytes);
+                visited.add(tile);
+            });
+            assertEquals(tiles, visited);
+        }
+    }
+
+    @Test
+    void rejectsTilesOutOfOrder() throws Exception {
+        try (TileArchiveWriter writer = new TileArchiveWriter(dir.resolve("bad.mtiles"), Map.of())) {
+            writer.add(new TileAddress(2, 1, 1), new byte[]{1});
+            assertThrows(IllegalArgumentException.class, () -> writer.add(new TileAddress(1, 1, 1), new byte[]{2}));
+            assertThrows(IllegalArgumentException.class, () -> writer.add(new TileAddress(2, 1, 1), new byte[]{2}));
+        }
+    }
+
+    @Test
+    void identicalTilesAreStoredOnce() throws Exception {
+        Path file = dir.resolve("sea.mtiles");
+        byte[] sea = new byte[4096];
+        try (TileArchiveWriter writer = new TileArchiveWriter(file, Map.of())) {
+            for (TileAddress tile : TileAddress.range(3, 0, 0, 7, 7)) writer.add(tile, sea);
+            writer.add(new TileAddress(4, 0, 0), new byte[]{7});
+            assertEquals(sea.length + 1, writer.getUniqueBytes());
+        }
+        assertTrue(Files.size(file) < 2 * sea.length);
+        try (TileArchive archive = TileArchive.open(file)) {
+            assertArrayEquals(sea, archive.read(new TileAddress(3, 5, 6)));
+            assertArrayEquals(new byte[]{7}, archive.read(new TileAddress(4, 0, 0)));
+        }
+    }
+
+    @Test
+    void exportsCachedRegionAndImportsIntoAnotherCache() throws Exception {
+        TileDiskStore source = new TileDiskStore(dir.resolve("cache-a"), DAY_MS);
+        // London at zoom 10, plus a tile on the far side of the world that must be left out
+        TileAddress london = new TileAddress(10, 511, 340);
+        TileAddress inside = london.neighbour(1, 0);
+        TileAddress outside = new TileAddress(10, 10, 10);
+        for (TileAddress tile : List.of(london, inside, outside, london.parent(), london.child(3))) {
+            source.write("osm", tile, bytesFor(tile));
+        }
+
+        Path file = dir.resolve("london.mtiles");
+        double north = TileMath.tileYToLat(london.y() + 0.5, 10);
+        double south = TileMath.tileYToLat(london.y() + 0.6, 10);
+        double west = TileMath.tileXToLon(london.x() + 0.5, 10);
+        double east = TileMath.tileXToLon(inside.x() + 0.5, 10);
+        int exported = TileArchive.export(source, "osm", south, west, north, east, 9, 10, Map.of(), file);
+        assertEquals(3, exported);
+
+        TileDiskStore target = new TileDiskStore(dir.resolve("cache-b"), DAY_MS);
+        try (TileArchive archive = TileArchive.open(file)) {
+            assertEquals("osm", archive.getMetadata(TileArchive.SOURCE_ID, null));
+            assertEquals(3, archive.importInto(target, null));
+        }
+        assertArrayEquals(bytesFor(london), target.read("osm", london));
+        assertArrayEquals(bytesFor(inside), target.read("osm", inside));
+        assertArrayEquals(bytesFor(london.parent()), target.read("osm", london.parent()));
+        assertNull(target.read("osm", outside));
+        assertNull(target.read("osm", london.child(3)));
+    }
+
+    @Test
+    void archiveTileSourceDecodesTiles() throws Exception {
+        BufferedImage image = new BufferedImage(TileMath.TILE_SIZE, TileMath.TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(10, 20, 0xFF123456);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        Path file = dir.resolve("overlay.mtiles");
+        try (TileArchiveWriter writer = new TileArchiveWriter(file, Map.of(TileArchive.NAME, "Overlay"))) {
+            writer.add(new TileAddress(5, 3, 4), png.toByteArray());
+        }
+
+        try (TileArchive archive = TileArchive.open(file)) {
+            ArchiveTileSource source = new ArchiveTileSource(archive);
+            assertEquals("archive-overlay", source.getId());
+            assertEquals("Overlay (archive)", source.getDisplayName());
+            assertEquals(5, source.getMaxZoom());
+            int[] pixels = source.renderTile(5, 3, 4);
+            assertEquals(0xFF123456, pixels[20 * TileMath.TILE_SIZE + 10]);
+            assertEquals(0, pixels[0]);
+            assertNull(source.renderTile(5, 3, 5));
+        }
+    }
+
+    private static byte[] bytesFor(TileAddress tile) {
+        return tile.toString().getBytes();
+    }
+}
@@ -1,12 +1,26 @@
 package com.johnreah.mapster.view.maptiles;
 
+import com.johnreah.mapster.util.TileAddress;
 import com.johnreah.mapster.util.TileSource;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class TileCacheTest {
 
+    @TempDir
+    Path diskCache;
+
     static class FakeTileSource implements TileSource {
         private final String id;
 
@@ -69,4 +83,75 @@ class TileCacheTest {
         assertEquals(source2, cache.getTileSource());
         cache.shutdown();
     }
+
+    private static Set<Thread> loaderThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.getName().equals("tile-loader"))
+                .collect(Collectors.toSet());
+    }
+
+    @Test
+    void loaderThreadsStartWithTheFirstLoad() throws Exception {
+        Set<Thread> before = loaderThreads();
+        AtomicReference<Thread> renderer = new AtomicReference<>();
+        CountDownLatch rendered = new CountDownLatch(1);
+        ProceduralTileSource source = new ProceduralTileSource() {
+            @Override
+            public int[] renderTile(int zoom, int x, int y) {
+                renderer.set(Thread.currentThread());
+                rendered.countDown();
+                return null;
+            }
+        };
+        // Published results are dropped: nothing here needs the FX toolkit
+        TileCache cache = new TileCache(source, () -> {}, TileFetcher.shared(), task -> {});
+        assertTrue(before.containsAll(loaderThreads()), "No loader threads before the first load");
+
+        assertNull(cache.getTile(3, 1, 1));
+        assertTrue(rendered.await(10, TimeUnit.SECONDS));
+        assertEquals("tile-loader", renderer.get().getName());
+        assertFalse(before.contains(renderer.get()));
+        assertTrue(renderer.get().isDaemon());
+        cache.shutdown();
+    }
+
+    @Test
+    void preloadCachesTheTilesFoundOnDisk() throws Exception {
+        FakeTileSource source = new FakeTileSource("preload");
+        TileDiskStore store = new TileDiskStore(diskCache, Long.MAX_VALUE);
+        ProceduralTileSource pixels = new ProceduralTileSource();
+        TileAddress first = new TileAddress(10, 511, 340);
+        TileAddress second = new TileAddress(10, 512, 340);
+        TileAddress absent = new TileAddress(10, 513, 340);
+        store.write(source.getId(), first, pixels.encodeTile(10, 511, 340));
+        store.write(source.getId(), second, pixels.encodeTile(10, 512, 340));
+
+        AtomicInteger loaded = new AtomicInteger();
+        TileCache cache = new TileCache(source, loaded::incrementAndGet, new TileFetcher(store), Runnable::run);
+        assertEquals(2, cache.preload(List.of(first, second, absent)).get(10, TimeUnit.SECONDS));
+        assertEquals(1, loaded.get(), "One repaint for the whole preload");
+        assertEquals(0, cache.getInFlightCount());
+        // Cached before the first frame asks for them, without going through the publisher
+        assertNotNull(cache.getTile(10, 511, 340));
+        assertNotNull(cache.getTile(10, 512, 340));
+        assertEquals(0, cache.preload(List.of(first, second)).get(10, TimeUnit.SECONDS));
+        cache.shutdown();
+    }
+
+    @Test
+    void identicalTilesShareOneImage() throws Exception {
+        FakeTileSource source = new FakeTileSource("shared");
+        TileDiskStore store = new TileDiskStore(diskCache, Long.MAX_VALUE);
+        byte[] sea = new ProceduralTileSource().encodeTile(10, 511, 340);
+        List<TileAddress> tiles = List.of(new TileAddress(10, 100, 200), new TileAddress(10, 700, 900));
+        for (TileAddress tile : tiles) store.write(source.getId(), tile, sea);
+
+        TileCache cache = new TileCache(source, () -> {}, new TileFetcher(store), Runnable::run);
+        // One at a time, so the second finds the first's image
+        assertEquals(1, cache.preload(tiles.subList(0, 1)).get(10, TimeUnit.SECONDS));
+        assertEquals(1, cache.preload(tiles.subList(1, 2)).get(10, TimeUnit.SECONDS));
+        assertSame(cache.getTile(10, 100, 200), cache.getTile(10, 700, 900));
+        assertEquals(256L * 256 * 4, cache.getResidentBytes());
+        cache.shutdown();
+    }
 }
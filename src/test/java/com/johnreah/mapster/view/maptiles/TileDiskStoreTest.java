@@ -0,0 +1,289 @@
+package com.johnreah.mapster.view.maptiles;
+
+import com.johnreah.mapster.util.TileAddress;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TileDiskStoreTest {
+
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    @TempDir
+    Path root;
+
+    @Test
+    void neighbouringTilesShareADirectory() {
+        TileDiskStore store = new TileDiskStore(root, DAY_MS);
+        TileAddress tile = new TileAddress(12, 2047, 1361);
+        Path path = store.pathOf("osm", tile);
+        assertEquals(root.resolve("osm/12/" + tile.quadKey().substring(0, 8) + "/" + tile.quadKey().substring(8) + ".png"), path);
+        assertEquals(path.getParent(), store.pathOf("osm", tile.neighbour(-1, 1)).getParent());
+        assertEquals(root.resolve("osm/0/t.png"), store.pathOf("osm", new TileAddress(0, 0, 0)));
+    }
+
+    @Test
+    void writeThenRead() {
+        TileDiskStore store = new TileDiskStore(root, DAY_MS);
+        TileAddress tile = new TileAddress(15, 16370, 10896);
+        assertNull(store.read("osm", tile));
+        store.write("osm", tile, new byte[]{1, 2, 3});
+        assertArrayEquals(new byte[]{1, 2, 3}, store.read("osm", tile));
+        assertNull(store.read("other", tile));
+    }
+
+    @Test
+    void legacyFilesAreMovedOnRead() throws Exception {
+        TileDiskStore store = new TileDiskStore(root, DAY_MS);
+        Path legacy = root.resolve("osm/10/511/340.png");
+        Files.createDirectories(legacy.getParent());
+        Files.write(legacy, new byte[]{9});
+        TileAddress tile = new TileAddress(10, 511, 340);
+        assertArrayEquals(new byte[]{9}, store.read("osm", tile));
+        assertFalse(Files.exists(legacy));
+        assertTrue(Files.exists(store.pathOf("osm", tile)));
+    }
+
+    @Test
+    void identicalTilesShareOneFile() throws Exception {
+        TileDiskStore store = new TileDiskStore(root, DAY_MS);
+        TileAddress sea = new TileAddress(8, 10, 90);
+        TileAddress moreSea = new TileAddress(9, 300, 40);
+        store.write("osm", sea, new byte[]{7, 7});
+        store.write("osm", moreSea, new byte[]{7, 7});
+        assertTrue(Files.isSameFile(store.pathOf("osm", sea), store.pathOf("osm", moreSea)));
+        assertTrue(Files.isSameFile(store.pathOf("osm", sea), store.blobPathOf(TileDiskStore.contentHash(new byte[]{7, 7}))));
+
+        // Rewriting one tile leaves the other's content alone
+        store.write("osm", moreSea, new byte[]{8});
+        assertArrayEquals(new byte[]{7, 7}, store.read("osm", sea));
+        assertArrayEquals(new byte[]{8}, store.read("osm", moreSea));
+    }
+
+    @Test
+    void tilesSharingABlobKeepTheirOwnAge() throws Exception {
+        TileDiskStore store = new TileDiskStore(root, DAY_MS);
+        TileAddress sea = new TileAddress(8, 10, 90);
+        TileAddress moreSea = new TileAddress(9, 300, 40);
+        store.write("osm", sea, new byte[]{7, 7});
+        store.write("osm", moreSea, new byte[]{7, 7});
+        long now = System.currentTimeMillis();
+        store.touch("osm", sea, now - 2 * DAY_MS);
+
+        TileDiskStore.Entry expired = store.lookup("osm", sea);
+        assertEquals(now - 2 * DAY_MS, expired.lastModifiedMillis());
+        assertFalse(expired.fresh());
+        assertTrue(store.lookup("osm", moreSea).fresh());
+
+        store.touch("osm", sea, now);
+        assertTrue(store.lookup("osm", sea).fresh());
+
+        // Once the index is gone a linked tile is dated by its blob, which is never later than the tile
+        long blobWritten = Files.getLastModifiedTime(store.blobPathOf(TileDiskStore.contentHash(new byte[]{7, 7}))).toMillis();
+        assertEquals(blobWritten, new TileDiskStore(root, DAY_MS).lookup("osm", moreSea).lastModifiedMillis());
+    }
+
+    @Test
+    void blobsAreDeletedWithTheirLastTile() throws Exception {
+        TileDiskStore store = new TileDiskStore(root, DAY_MS);
+        TileAddress sea = new TileAddress(8, 10, 90);
+        TileAddress moreSea = new TileAddress(9, 300, 40);
+        Path seaBlob = store.blobPathOf(TileDiskStore.contentHash(new byte[]{7, 7}));
+        Path landBlob = store.blobPathOf(TileDiskStore.contentHash(new byte[]{8}));
+        store.write("osm", sea, new byte[]{7, 7});
+        store.write("osm", moreSea, new byte[]{7, 7});
+
+        store.write("osm", sea, new byte[]{8});
+        assertTrue(Files.exists(seaBlob), "Still linked from the other tile");
+        store.delete("osm", moreSea);
+        assertFalse(Files.exists(seaBlob));
+
+        store.write("osm", sea, new byte[]{8});
+        assertTrue(Files.exists(landBlob));
+        store.delete("osm", sea);
+        assertFalse(Files.exists(landBlob));
+    }
+
+    @Test
+    void withoutLinkingEachTileHasItsOwnCopy() throws Exception {
+        TileDiskStore store = new TileDiskStore(root, DAY_MS, false);
+        TileAddress sea = new TileAddress(8, 10, 90);
+        TileAddress moreSea = new TileAddress(9, 300, 40);
+        store.write("osm", sea, new byte[]{7, 7});
+        store.write("osm", moreSea, new byte[]{7, 7});
+        assertFalse(Files.isSameFile(store.pathOf("osm", sea), store.pathOf("osm", moreSea)));
+        assertFalse(Files.exists(root.resolve(".blobs")));
+
+        long now = System.currentTimeMillis();
+        store.touch("osm", sea, now - 2 * DAY_MS);
+        assertFalse(new TileDiskStore(root, DAY_MS, false).lookup("osm", sea).fresh(), "Dated by its own file");
+        assertTrue(store.lookup("osm", moreSea).fresh());
+
+        store.delete("osm", sea);
+        assertNull(store.read("osm", sea));
+        assertArrayEquals(new byte[]{7, 7}, store.read("osm", moreSea));
+    }
+
+    @Test
+    void indexedZoomsAreAnsweredWithoutTheFileSystem() throws Exception {
+        TileDiskStore store = new TileDiskStore(root, DAY_MS);
+        TileAddress stored = new TileAddress(12, 2047, 1361);
+        TileAddress unknown = stored.neighbour(-1, 1);
+        store.write("osm", stored, new byte[]{1});
+        store.awaitIndex("osm");
+
+        // Not written by the store after its scan, so not looked for
+        Files.write(store.pathOf("osm", unknown), new byte[]{2});
+        assertNull(store.read("osm", unknown));
+        assertArrayEquals(new byte[]{1}, store.read("osm", stored));
+
+        store.write("osm", unknown, new byte[]{3});
+        assertArrayEquals(new byte[]{3}, store.read("osm", unknown));
+    }
+
+    @Test
+    void deletedTilesReadAsMissing() throws Exception {
+        TileDiskStore store = new TileDiskStore(root, DAY_MS);
+        TileAddress evicted = new TileAddress(12, 2047, 1361);
+        TileAddress removedBehindTheStore = evicted.neighbour(-1, 1);
+        store.write("osm", evicted, new byte[]{1});
+        store.write("osm", removedBehindTheStore, new byte[]{2});
+        store.awaitIndex("osm");
+
+        store.delete("osm", evicted);
+        assertFalse(Files.exists(store.pathOf("osm", evicted)));
+        assertNull(store.read("osm", evicted));
+
+        Files.delete(store.pathOf("osm", removedBehindTheStore));
+        assertNull(store.read("osm", removedBehindTheStore));
+        // Now known to be missing, so a file put back by hand is no longer looked for
+        Files.write(store.pathOf("osm", removedBehindTheStore), new byte[]{3});
+        assertNull(store.read("osm", removedBehindTheStore));
+
+        store.write("osm", evicted, new byte[]{4});
+        assertArrayEquals(new byte[]{4}, store.read("osm", evicted));
+    }
+
+    @Test
+    void indexStaysCurrentThroughManyChanges() throws Exception {
+        TileDiskStore store = new TileDiskStore(root, DAY_MS);
+        List<TileAddress> tiles = new ArrayList<>();
+        TileAddress.range(10, 0, 0, 39, 39).forEach(tiles::add);
+        store.write("osm", tiles.get(0), new byte[]{0});
+        store.awaitIndex("osm");
+
+        // Enough changes to merge the index's pending additions and deletions several times
+        for (TileAddress tile : tiles) store.write("osm", tile, new byte[]{1});
+        for (int i = 0; i < tiles.size(); i += 3) store.delete("osm", tiles.get(i));
+        for (int i = 0; i < tiles.size(); i += 6) store.write("osm", tiles.get(i), new byte[]{2});
+        for (int i = 0; i < tiles.size(); i++) {
+            byte[] expected = i % 6 == 0 ? new byte[]{2} : i % 3 == 0 ? null : new byte[]{1};
+            assertArrayEquals(expected, store.read("osm", tiles.get(i)), "tile " + i);
+        }
+    }
+
+    @Test
+    void zoomsInTheOlderLayoutAreLeftToTheFileSystem() throws Exception {
+        Path legacy = root.resolve("osm/10/511/340.png");
+        Files.createDirectories(legacy.getParent());
+        Files.write(legacy, new byte[]{9});
+        TileDiskStore store = new TileDiskStore(root, DAY_MS);
+        store.awaitIndex("osm");
+        assertArrayEquals(new byte[]{9}, store.read("osm", new TileAddress(10, 511, 340)));
+    }
+
+    @Test
+    void damagedFilesReadAsMissingUntilRewritten() throws Exception {
+        TileDiskStore store = new TileDiskStore(root, DAY_MS);
+        TileAddress tile = new TileAddress(12, 2047, 1361);
+        byte[] png = new ProceduralTileSource().encodeTile(12, 2047, 1361);
+        store.write("osm", tile, png);
+        Path file = store.pathOf("osm", tile);
+        byte[] stored = Files.readAllBytes(file);
+
+        byte[] flipped = stored.clone();
+        flipped[100] ^= 1;
+        Files.write(file, flipped);
+        assertNull(store.read("osm", tile));
+        // Damage the same size as the tile is found when it is fetched again
+        store.write("osm", tile, png);
+        assertArrayEquals(png, store.read("osm", tile));
+        Files.write(file, flipped);
+        Files.write(file, Arrays.copyOf(stored, stored.length / 2));
+        assertNull(store.read("osm", tile));
+        Files.write(file, new byte[0]);
+        assertNull(store.read("osm", tile));
+
+        store.write("osm", tile, png);
+        assertArrayEquals(png, store.read("osm", tile));
+    }
+
+    @Test
+    void untrailedImagesAreCheckedForTheirEnd() throws Exception {
+        TileDiskStore store = new TileDiskStore(root, DAY_MS);
+        TileAddress tile = new TileAddress(12, 2047, 1361);
+        byte[] png = new ProceduralTileSource().encodeTile(12, 2047, 1361);
+        Path file = store.pathOf("osm", tile);
+        Files.createDirectories(file.getParent());
+        Files.write(file, png);
+        assertArrayEquals(png, store.read("osm", tile));
+        Files.write(file, Arrays.copyOf(png, png.length - 20));
+        assertNull(store.read("osm", tile));
+        Files.write(file, new byte[]{(byte) 0xFF, (byte) 0xD8, 1, 2});
+        assertNull(store.read("osm", tile));
+    }
+
+    @Test
+    void concurrentWritersNeverExposeAPartialTile() throws Exception {
+        TileDiskStore store = new TileDiskStore(root, DAY_MS);
+        TileAddress tile = new TileAddress(15, 16370, 10896);
+        int writers = 4;
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService threads = Executors.newFixedThreadPool(writers + 2);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                byte[] version = new byte[256 * 1024];
+                Arrays.fill(version, (byte) (w + 1));
+                tasks.add(threads.submit(() -> {
+                    for (int i = 0; i < 200; i++) store.write("osm", tile, version);
+                }));
+            }
+            List<Future<Integer>> readers = new ArrayList<>();
+            for (int r = 0; r < 2; r++) {
+                readers.add(threads.submit(() -> {
+                    int reads = 0;
+                    while (!done.get()) {
+                        byte[] bytes = store.read("osm", tile);
+                        if (bytes == null) continue;
+                        assertEquals(256 * 1024, bytes.length);
+                        byte first = bytes[0];
+                        for (byte b : bytes) assertEquals(first, b);
+                        reads++;
+                    }
+                    return reads;
+                }));
+            }
+            for (Future<?> task : tasks) task.get();
+            done.set(true);
+            for (Future<Integer> reader : readers) assertTrue(reader.get() > 0);
+        } finally {
+            threads.shutdownNow();
+        }
+        try (Stream<Path> files = Files.list(store.pathOf("osm", tile).getParent())) {
+            assertEquals(List.of(store.pathOf("osm", tile)), files.toList(), "No temporary files left behind");
+        }
+    }
+}
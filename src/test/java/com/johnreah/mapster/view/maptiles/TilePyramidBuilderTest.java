@@ -0,0 +1,100 @@
+package com.johnreah.mapster.view.maptiles;
+
+import com.johnreah.mapster.util.TileAddress;
+import com.johnreah.mapster.util.TileMath;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TilePyramidBuilderTest {
+
+    private static final int TILE_SIZE = TileMath.TILE_SIZE;
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    @TempDir
+    Path root;
+
+    private static byte[] solidPng(int argb) throws Exception {
+        BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = new int[TILE_SIZE * TILE_SIZE];
+        Arrays.fill(pixels, argb);
+        image.setRGB(0, 0, TILE_SIZE, TILE_SIZE, pixels, 0, TILE_SIZE);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static int pixel(TileDiskStore store, TileAddress tile, int x, int y) throws Exception {
+        byte[] bytes = store.read("imagery", tile);
+        assertNotNull(bytes, "missing " + tile);
+        return ImageIO.read(new ByteArrayInputStream(bytes)).getRGB(x, y);
+    }
+
+    private static void assertColour(int expected, int actual) {
+        for (int shift = 0; shift < 32; shift += 8) {
+            int e = (expected >>> shift) & 0xFF;
+            int a = (actual >>> shift) & 0xFF;
+            assertTrue(Math.abs(e - a) <= 4, String.format("expected %08X but was %08X", expected, actual));
+        }
+    }
+
+    @Test
+    void buildsEveryLowerZoomFromTheDeepestTiles() throws Exception {
+        TileDiskStore store = new TileDiskStore(root, DAY_MS);
+        // A 2x2 block of tiles at zoom 6 under one zoom-5 parent, plus one tile elsewhere
+        store.write("imagery", new TileAddress(6, 10, 20), solidPng(0xFFFF0000));
+        store.write("imagery", new TileAddress(6, 11, 20), solidPng(0xFF00FF00));
+        store.write("imagery", new TileAddress(6, 10, 21), solidPng(0xFF0000FF));
+        store.write("imagery", new TileAddress(6, 11, 21), solidPng(0xFFFFFFFF));
+        store.write("imagery", new TileAddress(6, 40, 3), solidPng(0xFF808080));
+
+        List<int[]> levels = new ArrayList<>();
+        long written = new TilePyramidBuilder(store).build("imagery", 6, 0,
+                (zoom, tiles, millis) -> levels.add(new int[]{zoom, tiles}));
+
+        // The two areas stay in separate tiles down to zoom 1 and meet at zoom 0
+        assertEquals(2 + 2 + 2 + 2 + 2 + 1, written);
+        assertEquals(6, levels.size());
+        assertArrayEquals(new int[]{5, 2}, levels.get(0));
+        assertArrayEquals(new int[]{0, 1}, levels.get(5));
+
+        // Opaque parents are stored as JPEG, so colours are close rather than exact
+        TileAddress parent = new TileAddress(5, 5, 10);
+        assertColour(0xFFFF0000, pixel(store, parent, 10, 10));
+        assertColour(0xFF00FF00, pixel(store, parent, 200, 10));
+        assertColour(0xFF0000FF, pixel(store, parent, 10, 200));
+        assertColour(0xFFFFFFFF, pixel(store, parent, 200, 200));
+
+        // One level up the red tile fills a sixteenth; the other quarters are empty
+        TileAddress grandparent = new TileAddress(4, 2, 5);
+        assertColour(0xFFFF0000, pixel(store, grandparent, 130, 2));
+        assertEquals(0, pixel(store, grandparent, 2, 2) >>> 24);
+
+        assertNotNull(store.read("imagery", new TileAddress(0, 0, 0)));
+        assertArrayEquals(new long[]{new TileAddress(6, 10, 20).morton(), new TileAddress(6, 11, 20).morton(),
+                        new TileAddress(6, 10, 21).morton(), new TileAddress(6, 11, 21).morton(),
+                        new TileAddress(6, 40, 3).morton()},
+                Arrays.stream(store.tilesAt("imagery", 6)).toArray());
+    }
+
+    @Test
+    void mergeAveragesByAlpha() {
+        int[] child = new int[TILE_SIZE * TILE_SIZE];
+        // One opaque red pixel beside three transparent ones keeps its colour at quarter alpha
+        child[0] = 0xFFFF0000;
+        int[] merged = TilePyramidBuilder.merge(new int[][]{child, null, null, null});
+        assertEquals(0x40FF0000, merged[0]);
+        assertEquals(0, merged[1]);
+        assertNull(TilePyramidBuilder.merge(new int[4][]));
+    }
+}
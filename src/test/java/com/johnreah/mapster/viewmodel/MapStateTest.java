@@ -0,0 +1,92 @@
+package com.johnreah.mapster.viewmodel;
+
+import com.johnreah.mapster.util.TileSource;
+import com.johnreah.mapster.view.maptiles.ProceduralTileSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MapStateTest {
+
+    @TempDir
+    Path dir;
+
+    private final TileSource base = new ProceduralTileSource("base", 0);
+    private final TileSource other = new ProceduralTileSource("other", 1);
+
+    private LayerStack stack() {
+        LayerStack stack = new LayerStack();
+        stack.addLayer(new TileLayerViewModel("tile-0", "Base", base));
+        stack.addLayer(new TileLayerViewModel("tile-1", "Overlay", base));
+        stack.addLayer(new DrawingLayerViewModel("drawing-0", "Drawing"));
+        return stack;
+    }
+
+    @Test
+    void savedStateRestoresViewAndLayers() throws IOException {
+        MapViewport viewport = new MapViewport();
+        viewport.fastProjectionProperty().set(true);
+        viewport.setZoom(13);
+        viewport.moveTo(4093.25, 2722.5);
+        LayerStack saved = stack();
+        TileLayerViewModel overlay = (TileLayerViewModel) saved.getLayers().get(1);
+        overlay.setTileSource(other);
+        overlay.visibleProperty().set(false);
+        overlay.opacityProperty().set(0.35);
+        saved.moveDown(overlay);
+
+        Path file = dir.resolve("state.txt");
+        MapState state = MapState.capture(viewport, saved, 1280, 800, 1024, 700);
+        state.save(file);
+        assertEquals(state, MapState.load(file));
+
+        MapViewport restoredViewport = new MapViewport();
+        LayerStack restored = stack();
+        MapState.load(file).applyTo(restoredViewport, restored, List.of(base, other));
+        assertEquals(13, restoredViewport.getZoom());
+        assertEquals(4093.25, restoredViewport.getCenterX());
+        assertEquals(2722.5, restoredViewport.getCenterY());
+        assertTrue(restoredViewport.fastProjectionProperty().get());
+        assertEquals(List.of("tile-1", "tile-0", "drawing-0"),
+                restored.getLayers().stream().map(LayerViewModel::getId).toList());
+        TileLayerViewModel restoredOverlay = (TileLayerViewModel) restored.getLayers().get(0);
+        assertSame(other, restoredOverlay.getTileSource());
+        assertFalse(restoredOverlay.isVisible());
+        assertEquals(0.35, restoredOverlay.getOpacity());
+    }
+
+    @Test
+    void layersNoLongerPresentAreIgnored() throws IOException {
+        Path file = dir.resolve("state.txt");
+        Files.writeString(file, """
+                # Mapster state
+                window 1024 768
+                map 800 700
+                view 5 16.5 10.5 exact
+                layer tile-gone other hidden 0.5
+                layer drawing-0 - visible 0.8
+                layer tile-0 missing-source hidden 1.0
+                """);
+        MapViewport viewport = new MapViewport();
+        LayerStack stack = stack();
+        MapState.load(file).applyTo(viewport, stack, List.of(base, other));
+        assertEquals(List.of("drawing-0", "tile-1", "tile-0"),
+                stack.getLayers().stream().map(LayerViewModel::getId).toList());
+        assertEquals(0.8, stack.getLayers().get(0).getOpacity());
+        assertSame(base, ((TileLayerViewModel) stack.getLayers().get(2)).getTileSource());
+        assertFalse(stack.getLayers().get(2).isVisible());
+    }
+
+    @Test
+    void otherFilesAreRejected() throws IOException {
+        Path file = dir.resolve("state.txt");
+        Files.writeString(file, "# Mapster viewport session\n");
+        assertThrows(IOException.class, () -> MapState.load(file));
+    }
+}
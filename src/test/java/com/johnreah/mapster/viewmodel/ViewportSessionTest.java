@@ -0,0 +1,91 @@
+package com.johnreah.mapster.viewmodel;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ViewportSessionTest {
+
+    @TempDir
+    Path dir;
+
+    private static ViewportSession recordSample(MapViewport viewport) {
+        ViewportSession.Recorder recorder = ViewportSession.record(viewport, 1280, 800);
+        viewport.moveTo(viewport.getCenterX() + 0.37, viewport.getCenterY() - 0.21);
+        viewport.zoomTo(12, 51.51, -0.12, -140.5, 33.25);
+        viewport.zoomIn();
+        viewport.moveTo(-3.5, 1e9);
+        viewport.zoomOut(0);
+        return recorder.stop();
+    }
+
+    @Test
+    void recordsEveryCallInOrder() {
+        MapViewport viewport = new MapViewport();
+        ViewportSession session = recordSample(viewport);
+        assertEquals(5, session.calls().size());
+        assertInstanceOf(ViewportSession.Move.class, session.calls().get(0));
+        assertEquals(new ViewportSession.Zoom(session.calls().get(2).atNanos(), 13), session.calls().get(2));
+        assertEquals(-3.5, ((ViewportSession.Move) session.calls().get(3)).centerX());
+        for (int i = 1; i < session.calls().size(); i++) {
+            assertTrue(session.calls().get(i).atNanos() >= session.calls().get(i - 1).atNanos());
+        }
+
+        viewport.moveTo(0, 0);
+        assertEquals(5, session.calls().size(), "Recording stops with stop()");
+    }
+
+    @Test
+    void savedSessionReplaysToTheSameState() throws IOException {
+        MapViewport recorded = new MapViewport();
+        recorded.fastProjectionProperty().set(true);
+        ViewportSession session = recordSample(recorded);
+        Path file = dir.resolve("session.mvs");
+        session.save(file);
+        ViewportSession loaded = ViewportSession.load(file);
+        assertEquals(session, loaded);
+
+        MapViewport replayed = new MapViewport();
+        loaded.moveToStart(replayed);
+        for (ViewportSession.Call call : loaded.calls()) call.applyTo(replayed);
+        assertEquals(recorded.getZoom(), replayed.getZoom());
+        assertEquals(recorded.getCenterX(), replayed.getCenterX());
+        assertEquals(recorded.getCenterY(), replayed.getCenterY());
+    }
+
+    @Test
+    void malformedFilesAreRejected() throws IOException {
+        Path file = dir.resolve("bad.mvs");
+        Files.writeString(file, "# Mapster viewport session\nview 800 600 exact\nstart 10 1 2\n5 spin 3\n");
+        assertThrows(IOException.class, () -> ViewportSession.load(file));
+        Files.writeString(file, "not a session\n");
+        assertThrows(IOException.class, () -> ViewportSession.load(file));
+    }
+
+    @Test
+    void tourIsScriptedAndEndsZoomedOut() throws IOException {
+        ViewportSession tour = ViewportSession.tour(1024, 768);
+        assertEquals(tour, ViewportSession.tour(1024, 768));
+        Path file = dir.resolve("tour.mvs");
+        tour.save(file);
+        assertEquals(tour, ViewportSession.load(file));
+
+        MapViewport viewport = new MapViewport();
+        tour.moveToStart(viewport);
+        int deepest = 0;
+        for (ViewportSession.Call call : tour.calls()) {
+            call.applyTo(viewport);
+            deepest = Math.max(deepest, viewport.getZoom());
+        }
+        assertEquals(16, deepest);
+        assertEquals(4, viewport.getZoom());
+        // Each circle ends where it began, so every zoom is about London
+        assertEquals(51.505, viewport.getCenterLatLon()[0], 1e-9);
+        assertEquals(-0.09, viewport.getCenterLatLon()[1], 1e-9);
+    }
+}